@@ -0,0 +1,128 @@
+package com.jayantkrish.jklol.ccg;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.jayantkrish.jklol.ccg.data.CcgExampleFormat;
+import com.jayantkrish.jklol.ccg.data.CcgSyntaxTreeFormat;
+import com.jayantkrish.jklol.ccg.supertag.ListSupertaggedSentence;
+import com.jayantkrish.jklol.ccg.supertag.SupertaggedSentence;
+import com.jayantkrish.jklol.models.parametric.SufficientStatistics;
+import com.jayantkrish.jklol.testing.PerformanceParameter;
+import com.jayantkrish.jklol.testing.PerformanceTest;
+import com.jayantkrish.jklol.testing.PerformanceTestCase;
+import com.jayantkrish.jklol.testing.PerformanceTestRunner;
+import com.jayantkrish.jklol.training.NullLogFunction;
+
+/**
+ * Performance tests for CCG parsing and for computing CCG training
+ * gradients.
+ *
+ * @author jayantk
+ */
+public class CcgParserPerformanceTest extends PerformanceTestCase {
+
+  private static final String[] lexicon = {
+      "block,N{0},(lambda x (pred:block x)),0 pred:block",
+      "object,N{0},(lambda x (pred:object x)),0 pred:object",
+      "red,(N{1}/N{1}){0},(lambda $1 (lambda x (and ($1 x) (pred:red x)))),0 pred:red,pred:red 1 1",
+      "green,(N{1}/N{1}){0},(lambda $1 (lambda x (and ($1 x) (pred:green x)))),0 pred:green,pred:green 1 1",
+      "green,N{0},(lambda x (pred:green x)),0 pred:green",
+      "the,(N{1}/N{1}){0},(lambda $1 $1),0 the",
+      "near,((N{1}\\N{1}){0}/N{2}){0},(lambda $2 $1 (lambda x (exists y (and ($1 x) (pred:close x y) ($2 y))))),0 pred:close,pred:close 1 1,pred:close 2 2",
+      "near,((N{1}\\N{1}){0}/N{2}){0},(lambda $2 $1 (lambda x (exists y (and ($1 x) (pred:near x y) ($2 y))))),0 pred:near,pred:near 1 1,pred:near 2 2",
+      "near,((S{1}/(S{1}\\N{0}){1}){0}/N{2}){0},(lambda $2 $1 ($1 (lambda x (exists y (and (pred:near x y) ($2 y)))))),0 pred:near,pred:near 2 2",
+      "near,(PP{0}/N{1}){0},(lambda $1 $1),0 pred:near,pred:near 2 1",
+      "is,((S{0}\\N{1}){0}/N{2}){0},(lambda $2 $1 (exists x y (and ($1 x) (pred:equals x y) ($2 y)))),0 pred:equals,pred:equals 1 1,pred:equals 2 2",
+  };
+
+  private static final String[] ruleArray = {"N{0} (S{1}/(S{1}\\N{0}){1}){1}"};
+
+  private static final String trainingExample = "red block near the green block###pred:red (N{1}/N{1}){0} 0 1 pred:block 1,pred:green (N{1}/N{1}){0} 4 1 pred:block 5,pred:near ((N{1}\\N{1}){0}/N{2}){0} 2 1 pred:block 1,pred:near ((N{1}\\N{1}){0}/N{2}){0} 2 2 pred:block 5######(lambda x (exists y (and (pred:red x) (pred:block x) (pred:near x y) (pred:green y) (pred:block y))))";
+
+  // Number of "near the green block" phrases attached to the parsed
+  // sentence. Sentence length is 2 + 4 * this value.
+  @PerformanceParameter(value = {"1", "3", "5"},
+      tests = {"testBeamSearch", "testExactParse", "testAStarParse"})
+  int numPhrases;
+
+  @PerformanceParameter(value = {"10", "100"}, tests = {"testBeamSearch", "testGradientStep"})
+  int beamSize;
+
+  // Whether the parser uses hash-indexed tensors for lookups, as
+  // opposed to binary search.
+  @PerformanceParameter(value = {"false", "true"},
+      tests = {"testBeamSearch", "testExactParse", "testAStarParse", "testGradientStep"})
+  boolean hashIndexTensors;
+
+  // Number of threads used to fill the chart in testBeamSearch.
+  @PerformanceParameter(value = {"1", "4"}, tests = {"testBeamSearch"})
+  int numThreads;
+
+  ParametricCcgParser family;
+  SufficientStatistics parameters;
+  CcgParser parser;
+  CcgLoglikelihoodOracle oracle;
+  CcgExample example;
+  SupertaggedSentence sentence;
+
+  public void setUp() {
+    Set<String> posTags = Sets.newHashSet(ParametricCcgParser.DEFAULT_POS_TAG);
+    family = ParametricCcgParser.parseFromLexicon(Arrays.asList(lexicon), Arrays.asList(ruleArray),
+        new DefaultCcgFeatureFactory(null, true), posTags, true, null, false, false);
+    parameters = family.getNewSufficientStatistics();
+    parameters.perturb(0.1);
+    // Keeping every weight below 1 makes the A* outside bound
+    // admissible, so testAStarParse does not fall back to exact search.
+    parameters.increment(-1.0);
+    parser = family.getModelFromParameters(parameters).useHashIndexedTensors(hashIndexTensors);
+    oracle = new CcgLoglikelihoodOracle(family, beamSize);
+
+    example = new CcgExampleFormat(new CcgSyntaxTreeFormat(), false).parseFrom(trainingExample);
+
+    List<String> words = Lists.newArrayList("red", "block");
+    for (int i = 0; i < numPhrases; i++) {
+      words.addAll(Arrays.asList("near", "the", "green", "block"));
+    }
+    sentence = ListSupertaggedSentence.createWithUnobservedSupertags(words,
+        Collections.nCopies(words.size(), ParametricCcgParser.DEFAULT_POS_TAG));
+  }
+
+  @PerformanceTest(value = 10, warmup = 3)
+  public List<CcgParse> testBeamSearch() {
+    return parser.beamSearch(sentence, beamSize, null, new NullLogFunction(), -1,
+        Integer.MAX_VALUE, numThreads);
+  }
+
+  @PerformanceTest(value = 10, warmup = 3)
+  public CcgParse testExactParse() {
+    return parser.parse(sentence, null, null, -1L, Integer.MAX_VALUE, 1);
+  }
+
+  @PerformanceTest(value = 10, warmup = 3)
+  public CcgParse testAStarParse() {
+    return parser.parseAStar(sentence, null, null, -1L, Integer.MAX_VALUE);
+  }
+
+  @PerformanceTest(value = 10, warmup = 3)
+  public CcgParser testInstantiateModel() {
+    return oracle.instantiateModel(parameters);
+  }
+
+  @PerformanceTest(value = 10, warmup = 3)
+  public SufficientStatistics testGradientStep() {
+    SufficientStatistics gradient = oracle.initializeGradient();
+    oracle.accumulateGradient(gradient, parameters, parser, example, new NullLogFunction());
+    SufficientStatistics newParameters = parameters.duplicate();
+    newParameters.increment(gradient, 0.1);
+    return newParameters;
+  }
+
+  public static void main(String[] args) {
+    PerformanceTestRunner.run(new CcgParserPerformanceTest());
+  }
+}
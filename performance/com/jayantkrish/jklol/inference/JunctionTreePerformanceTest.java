@@ -83,18 +83,18 @@ public class JunctionTreePerformanceTest extends PerformanceTestCase {
   }
 
   @PerformanceTest
-  public void testFactorProductRightSubset() {
-    factor2.product(factor3);
+  public Factor testFactorProductRightSubset() {
+    return factor2.product(factor3);
   }
 
   @PerformanceTest
-  public void testFactorProductLeftSubset() {
-    factor2.product(factor4);
+  public Factor testFactorProductLeftSubset() {
+    return factor2.product(factor4);
   }
 
   @PerformanceTest
-  public void testFactorProductLeftSubsetBig() {
-    factor5.product(factor4);
+  public Factor testFactorProductLeftSubsetBig() {
+    return factor5.product(factor4);
   }
 
   @PerformanceTest
@@ -145,14 +145,14 @@ public class JunctionTreePerformanceTest extends PerformanceTestCase {
   }
 
   @PerformanceTest
-  public void testFactorSumProductSubset() {
+  public Factor testFactorSumProductSubset() {
     Factor product = factor2.product(factor3);
-    product.marginalize(Arrays.asList(new Integer[] {0, 2}));
+    return product.marginalize(Arrays.asList(new Integer[] {0, 2}));
   }
 
   @PerformanceTest
-  public void testMarginals() {
-    t.computeMarginals(f);
+  public MarginalSet testMarginals() {
+    return t.computeMarginals(f);
   }
 
   @PerformanceTest
@@ -167,13 +167,13 @@ public class JunctionTreePerformanceTest extends PerformanceTestCase {
   }
   
   @PerformanceTest(3)
-  public void testSingleFactorMarginals() {
-    t.computeMarginals(FactorGraph.createFromFactors(Arrays.<Factor>asList(factor1)));
+  public MarginalSet testSingleFactorMarginals() {
+    return t.computeMarginals(FactorGraph.createFromFactors(Arrays.<Factor>asList(factor1)));
   }
   
   @PerformanceTest(3)
-  public void testSingleFactorMaxMarginals() {
-    t.computeMaxMarginals(FactorGraph.createFromFactors(Arrays.<Factor>asList(factor1)));
+  public MaxMarginalSet testSingleFactorMaxMarginals() {
+    return t.computeMaxMarginals(FactorGraph.createFromFactors(Arrays.<Factor>asList(factor1)));
   }
   
   @PerformanceTest(1)
@@ -183,8 +183,8 @@ public class JunctionTreePerformanceTest extends PerformanceTestCase {
   }
 
   @PerformanceTest
-  public void testConditional() {
-    factor2.conditional(new Assignment(0, 0));
+  public Factor testConditional() {
+    return factor2.conditional(new Assignment(0, 0));
   }	
 
   public static void main(String[] args) {
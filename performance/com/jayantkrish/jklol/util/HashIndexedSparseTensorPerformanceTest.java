@@ -0,0 +1,15 @@
+package com.jayantkrish.jklol.util;
+
+import com.jayantkrish.jklol.tensor.HashIndexedSparseTensor;
+import com.jayantkrish.jklol.testing.PerformanceTestRunner;
+
+public class HashIndexedSparseTensorPerformanceTest extends TensorPerformanceTest {
+
+  public HashIndexedSparseTensorPerformanceTest() {
+    super(HashIndexedSparseTensor.getFactory());
+  }
+
+  public static void main(String[] args) {
+    PerformanceTestRunner.run(new HashIndexedSparseTensorPerformanceTest());
+  }
+}
@@ -1,12 +1,15 @@
 package com.jayantkrish.jklol.util;
 
+import java.util.Arrays;
 import java.util.Iterator;
 
 import com.google.common.primitives.Ints;
+import com.jayantkrish.jklol.tensor.AbstractTensor;
 import com.jayantkrish.jklol.tensor.Tensor;
 import com.jayantkrish.jklol.tensor.TensorBase.KeyValue;
 import com.jayantkrish.jklol.tensor.TensorBuilder;
 import com.jayantkrish.jklol.tensor.TensorFactory;
+import com.jayantkrish.jklol.testing.PerformanceParameter;
 import com.jayantkrish.jklol.testing.PerformanceTest;
 import com.jayantkrish.jklol.testing.PerformanceTestCase;
 
@@ -18,7 +21,11 @@ import com.jayantkrish.jklol.testing.PerformanceTestCase;
 public abstract class TensorPerformanceTest extends PerformanceTestCase {
 
   private final TensorFactory tensorFactory;
-  
+
+  // Size of the first dimension of table012 and table01.
+  @PerformanceParameter({"100", "1000"})
+  int firstDimSize = 1000;
+
   double[][] assignmentNums;
   double[] firstTestArray,secondTestArray;
   long[] firstArrayKeys,secondArrayKeys;
@@ -33,15 +40,15 @@ public abstract class TensorPerformanceTest extends PerformanceTestCase {
   public void setUp() {
     varNums = new int[] {0, 1, 2};
 
-    TensorBuilder builder = tensorFactory.getBuilder(varNums, new int[] {1000, 100, 100});
-    for (int i = 0; i < 10000000; i++) {
+    TensorBuilder builder = tensorFactory.getBuilder(varNums, new int[] {firstDimSize, 100, 100});
+    for (int i = 0; i < firstDimSize * 10000; i++) {
       builder.put(new int[] {(i / 10000), (i / 100) % 100, i % 100}, 1.0);
     }
     table012 = builder.build();
     table012Copy = builder.build();
     
-    builder = tensorFactory.getBuilder(new int[] {0, 1}, new int[] {1000, 100});
-    for (int i = 0; i < 100000; i++) {
+    builder = tensorFactory.getBuilder(new int[] {0, 1}, new int[] {firstDimSize, 100});
+    for (int i = 0; i < firstDimSize * 100; i++) {
       builder.put(new int[] {i / 100, i % 100}, 1.0);
     }
     table01 = builder.build();
@@ -65,53 +72,89 @@ public abstract class TensorPerformanceTest extends PerformanceTestCase {
   }
   
   @PerformanceTest(20)
-  public void testProductSelf() {
-    table012.elementwiseProduct(table012Copy);
+  public Tensor testProductSelf() {
+    return table012.elementwiseProduct(table012Copy);
   }
 
   @PerformanceTest(20)
-  public void testProductLeftAligned() {
-    table012.elementwiseProduct(table01);
+  public Tensor testProductLeftAligned() {
+    return table012.elementwiseProduct(table01);
   }
 
   @PerformanceTest(20)
-  public void testProductRightAligned() {
-    table012.elementwiseProduct(table12);
+  public Tensor testProductRightAligned() {
+    return table012.elementwiseProduct(table12);
   }
   
   @PerformanceTest(20)
-  public void testProductConstant() {
-    table012.elementwiseProduct(3.0);
+  public Tensor testProductList() {
+    return table012.elementwiseProduct(Arrays.asList(table012Copy, table01, table12));
+  }
+
+  @PerformanceTest(20)
+  public Tensor testProductListPairwise() {
+    return table012.elementwiseProduct(table012Copy).elementwiseProduct(table01)
+        .elementwiseProduct(table12);
+  }
+
+  @PerformanceTest(20)
+  public Tensor testProductSumOut() {
+    return table012.productSumOutDimensions(Arrays.asList(table01, table12), Arrays.asList(0, 2));
+  }
+
+  @PerformanceTest(20)
+  public Tensor testProductSumOutPairwise() {
+    return table012.elementwiseProduct(table01).elementwiseProduct(table12).sumOutDimensions(0, 2);
+  }
+
+  @PerformanceTest(20)
+  public Tensor testLogSumOut() {
+    return table012.logSumOutDimensions(Arrays.asList(0, 2));
+  }
+
+  @PerformanceTest(20)
+  public Tensor testLogSumOutMultiPass() {
+    return AbstractTensor.logSumOutDimensions(table012, Arrays.asList(0, 2));
+  }
+
+  @PerformanceTest(20)
+  public Tensor testProductConstant() {
+    return table012.elementwiseProduct(3.0);
   }
   
   @PerformanceTest(20)
-  public void testInnerProduct() {
-    table012.innerProduct(table012Copy);
+  public Tensor testInnerProduct() {
+    return table012.innerProduct(table012Copy);
   }
 
   @PerformanceTest(20)
-  public void testElementwiseAdditionSelf() {
-    table012.elementwiseAddition(table012Copy);
+  public Tensor testMatrixInnerProduct() {
+    return table01.matrixInnerProduct(table12);
+  }
+
+  @PerformanceTest(20)
+  public Tensor testElementwiseAdditionSelf() {
+    return table012.elementwiseAddition(table012Copy);
   }
   
   @PerformanceTest(20)
-  public void testSumRightAligned() {
-    table012.sumOutDimensions(Ints.asList(2));
+  public Tensor testSumRightAligned() {
+    return table012.sumOutDimensions(Ints.asList(2));
   }
   
   @PerformanceTest(20)
-  public void testElementwiseExp() {
-    table012.elementwiseExp();
+  public Tensor testElementwiseExp() {
+    return table012.elementwiseExp();
   }
   
   @PerformanceTest(20)
-  public void testElementwiseInverse() {
-    table012.elementwiseInverse();
+  public Tensor testElementwiseInverse() {
+    return table012.elementwiseInverse();
   }
   
   @PerformanceTest(20)
-  public void testElementwiseLog() {
-    table012.elementwiseLog();
+  public Tensor testElementwiseLog() {
+    return table012.elementwiseLog();
   }
   
   @PerformanceTest(20)
@@ -141,13 +184,26 @@ public abstract class TensorPerformanceTest extends PerformanceTestCase {
   }
 
   @PerformanceTest
-  public void testRelabelDims() {
-    table012.relabelDimensions(new int[] {3, 2, 1});
+  public Tensor testRelabelDims() {
+    return table012.relabelDimensions(new int[] {3, 2, 1});
   }
   
   @PerformanceTest
-  public void testRelabelDimsNoChange() {
-    table012.relabelDimensions(new int[] {1, 2, 3});
+  public Tensor testRelabelDimsNoChange() {
+    return table012.relabelDimensions(new int[] {1, 2, 3});
+  }
+
+  @PerformanceTest(20)
+  public double testLookup() {
+    // Look up both present and absent keys in a pseudorandom order.
+    long maxKeyNum = table012.getMaxKeyNum();
+    long keyNum = 0;
+    double sum = 0.0;
+    for (int i = 0; i < 1000000; i++) {
+      keyNum = (keyNum + 7919 * 127) % maxKeyNum;
+      sum += table01.get(keyNum % table01.getMaxKeyNum()) + table012.get(keyNum);
+    }
+    return sum;
   }
 
   @PerformanceTest
@@ -159,11 +215,11 @@ public abstract class TensorPerformanceTest extends PerformanceTestCase {
   }
   
   @PerformanceTest
-  public void testBuild() {
+  public Tensor testBuild() {
     TensorBuilder builder = tensorFactory.getBuilder(varNums, new int[] {100, 100, 10});
     for (int i = 0; i < 100000; i++) {
       builder.put(new int[] {(i / 1000), (i / 100) % 10, i % 10}, 1.0);
     }
-    builder.build();
+    return builder.build();
   }
 }
\ No newline at end of file
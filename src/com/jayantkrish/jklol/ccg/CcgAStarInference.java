@@ -0,0 +1,95 @@
+package com.jayantkrish.jklol.ccg;
+
+import java.util.Set;
+
+import com.google.common.base.Preconditions;
+import com.jayantkrish.jklol.ccg.chart.CcgAStarChart;
+import com.jayantkrish.jklol.ccg.chart.CcgExactHashTableChart;
+import com.jayantkrish.jklol.ccg.chart.ChartCost;
+import com.jayantkrish.jklol.ccg.chart.SumChartCost;
+import com.jayantkrish.jklol.ccg.chart.SyntacticChartCost;
+import com.jayantkrish.jklol.ccg.lambda.Expression;
+import com.jayantkrish.jklol.ccg.supertag.SupertagChartCost;
+import com.jayantkrish.jklol.ccg.supertag.SupertaggedSentence;
+import com.jayantkrish.jklol.training.LogFunction;
+
+/**
+ * Agenda-based A* CCG parsing. Chart entries are explored in order
+ * of their probability times an upper bound on the probability of the
+ * words outside of their span, which is computed from the weights of
+ * the lexicon entries permitted by the sentence's supertags. Search
+ * stops at the first complete parse. If the bound is not admissible
+ * (see {@link CcgParser#parseAStar}), exact search is used instead.
+ *
+ * @author jayantk
+ */
+public class CcgAStarInference implements CcgInference {
+
+  // Optional constraint to use during inference. Null if
+  // no constraints are imposed on the search.
+  private final ChartCost searchFilter;
+
+  // Maximum number of milliseconds to spend parsing a single sentence.
+  private final long maxParseTimeMillis;
+
+  // Maximum number of chart entries for a single sentence.
+  private final int maxChartSize;
+
+  public CcgAStarInference(ChartCost searchFilter, long maxParseTimeMillis, int maxChartSize) {
+    this.searchFilter = searchFilter;
+    this.maxParseTimeMillis = maxParseTimeMillis;
+    this.maxChartSize = maxChartSize;
+  }
+
+  public static CcgAStarInference createDefault() {
+    return new CcgAStarInference(null, -1L, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public CcgParse getBestParse(CcgParser parser, SupertaggedSentence sentence,
+      ChartCost chartFilter, LogFunction log) {
+    ChartCost filter = SumChartCost.create(searchFilter, chartFilter,
+        new SupertagChartCost(sentence.getSupertags()));
+
+    return parser.parseAStar(sentence, filter, log, maxParseTimeMillis, maxChartSize);
+  }
+
+  @Override
+  public CcgPartialParse getBestPartialParse(CcgParser parser, SupertaggedSentence sentence,
+      ChartCost chartFilter, LogFunction log, ParseCancellation cancellation) {
+    ChartCost filter = SumChartCost.create(searchFilter, chartFilter,
+        new SupertagChartCost(sentence.getSupertags()));
+
+    if (!parser.hasAdmissibleAStarBound()) {
+      // Fall back to exact search, as in CcgParser.parseAStar.
+      CcgExactHashTableChart chart = new CcgExactHashTableChart(sentence, maxChartSize);
+      parser.parseCommon(chart, sentence, filter, log, maxParseTimeMillis, 1, cancellation);
+      return parser.decodeBestPartialParse(chart);
+    }
+
+    CcgAStarChart chart = parser.parseAStarChart(sentence, filter, log, maxParseTimeMillis,
+        maxChartSize, cancellation);
+    return parser.decodeBestPartialParse(chart);
+  }
+
+  @Override
+  public CcgParse getBestConditionalParse(CcgParser parser, SupertaggedSentence sentence,
+      ChartCost chartFilter, LogFunction log, CcgSyntaxTree observedSyntacticTree,
+      Set<DependencyStructure> observedDependencies, Expression observedLogicalForm) {
+    Preconditions.checkArgument(observedDependencies == null && observedLogicalForm == null);
+
+    ChartCost conditionalChartFilter = null;
+    if (observedSyntacticTree != null) {
+      conditionalChartFilter = SumChartCost.create(
+          SyntacticChartCost.createAgreementCost(observedSyntacticTree), searchFilter,
+          new SupertagChartCost(sentence.getSupertags()));
+    } else {
+      conditionalChartFilter = SumChartCost.create(
+          new SupertagChartCost(sentence.getSupertags()), searchFilter);
+    }
+
+    // Note that the returned parse may be null, if parsing failed.
+    return parser.parseAStar(sentence, conditionalChartFilter, log, maxParseTimeMillis,
+        maxChartSize);
+  }
+}
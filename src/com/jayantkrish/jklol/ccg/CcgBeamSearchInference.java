@@ -3,6 +3,9 @@ package com.jayantkrish.jklol.ccg;
 import java.util.List;
 import java.util.Set;
 
+import com.google.common.base.Preconditions;
+import com.jayantkrish.jklol.ccg.chart.BeamPruningStrategy;
+import com.jayantkrish.jklol.ccg.chart.CcgBeamSearchChart;
 import com.jayantkrish.jklol.ccg.chart.ChartCost;
 import com.jayantkrish.jklol.ccg.chart.SumChartCost;
 import com.jayantkrish.jklol.ccg.chart.SyntacticChartCost;
@@ -24,8 +27,9 @@ public class CcgBeamSearchInference implements CcgInference {
   // no constraints are imposed on the search.
   private final ChartCost searchFilter;
 
-  // Size of the beam used during inference (which uses beam search).
-  private final int beamSize;
+  // Determines the size of the beam used during inference (which
+  // uses beam search).
+  private final BeamPruningStrategy pruningStrategy;
   
   // Maximum number of milliseconds to spend parsing a single sentence.
   private final long maxParseTimeMillis;
@@ -41,8 +45,14 @@ public class CcgBeamSearchInference implements CcgInference {
 
   public CcgBeamSearchInference(ChartCost searchFilter, int beamSize, long maxParseTimeMillis,
       int maxChartSize, int numThreads, boolean verbose) {
+    this(searchFilter, BeamPruningStrategy.fixedBeam(beamSize), maxParseTimeMillis,
+        maxChartSize, numThreads, verbose);
+  }
+
+  public CcgBeamSearchInference(ChartCost searchFilter, BeamPruningStrategy pruningStrategy,
+      long maxParseTimeMillis, int maxChartSize, int numThreads, boolean verbose) {
     this.searchFilter = searchFilter;
-    this.beamSize = beamSize;
+    this.pruningStrategy = Preconditions.checkNotNull(pruningStrategy);
     this.maxParseTimeMillis = maxParseTimeMillis;
     this.maxChartSize = maxChartSize;
     this.numThreads = numThreads;
@@ -62,12 +72,23 @@ public class CcgBeamSearchInference implements CcgInference {
     }
   }
   
+  @Override
+  public CcgPartialParse getBestPartialParse(CcgParser parser, SupertaggedSentence sentence,
+      ChartCost chartFilter, LogFunction log, ParseCancellation cancellation) {
+    ChartCost filter = SumChartCost.create(searchFilter, chartFilter,
+        new SupertagChartCost(sentence.getSupertags()));
+
+    CcgBeamSearchChart chart = parser.beamSearchChart(sentence, pruningStrategy, filter, log,
+        maxParseTimeMillis, maxChartSize, numThreads, cancellation);
+    return parser.decodeBestPartialParse(chart);
+  }
+
   public List<CcgParse> beamSearch(CcgParser parser, SupertaggedSentence sentence,
       ChartCost chartFilter, LogFunction log) {
     ChartCost filter = SumChartCost.create(searchFilter, chartFilter,
         new SupertagChartCost(sentence.getSupertags()));
 
-    return parser.beamSearch(sentence, beamSize, filter, log,
+    return parser.beamSearch(sentence, pruningStrategy, filter, log,
         maxParseTimeMillis, maxChartSize, numThreads);
   }
 
@@ -80,12 +101,12 @@ public class CcgBeamSearchInference implements CcgInference {
     if (observedSyntacticTree != null) {
       ChartCost conditionalChartFilter = SumChartCost.create(SyntacticChartCost.createAgreementCost(observedSyntacticTree),
           new SupertagChartCost(sentence.getSupertags()), searchFilter);
-      possibleParses = parser.beamSearch(sentence, beamSize, conditionalChartFilter,
+      possibleParses = parser.beamSearch(sentence, pruningStrategy, conditionalChartFilter,
           log, -1, maxChartSize, numThreads);
     } else {
       ChartCost conditionalChartFilter = SumChartCost.create(
           new SupertagChartCost(sentence.getSupertags()), searchFilter);
-      possibleParses = parser.beamSearch(sentence, beamSize, conditionalChartFilter,
+      possibleParses = parser.beamSearch(sentence, pruningStrategy, conditionalChartFilter,
           log, -1, maxChartSize, numThreads);
     }
 
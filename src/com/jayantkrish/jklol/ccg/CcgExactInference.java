@@ -3,6 +3,7 @@ package com.jayantkrish.jklol.ccg;
 import java.util.Set;
 
 import com.google.common.base.Preconditions;
+import com.jayantkrish.jklol.ccg.chart.CcgExactHashTableChart;
 import com.jayantkrish.jklol.ccg.chart.ChartCost;
 import com.jayantkrish.jklol.ccg.chart.SumChartCost;
 import com.jayantkrish.jklol.ccg.chart.SyntacticChartCost;
@@ -47,6 +48,17 @@ public class CcgExactInference implements CcgInference {
     return parser.parse(sentence, filter, log, maxParseTimeMillis, maxChartSize, numThreads);
   }
 
+  @Override
+  public CcgPartialParse getBestPartialParse(CcgParser parser, SupertaggedSentence sentence,
+      ChartCost chartFilter, LogFunction log, ParseCancellation cancellation) {
+    ChartCost filter = SumChartCost.create(searchFilter, chartFilter,
+        new SupertagChartCost(sentence.getSupertags()));
+
+    CcgExactHashTableChart chart = new CcgExactHashTableChart(sentence, maxChartSize);
+    parser.parseCommon(chart, sentence, filter, log, maxParseTimeMillis, numThreads, cancellation);
+    return parser.decodeBestPartialParse(chart);
+  }
+
   @Override
   public CcgParse getBestConditionalParse(CcgParser parser, SupertaggedSentence sentence,
       ChartCost chartFilter, LogFunction log, CcgSyntaxTree observedSyntacticTree,
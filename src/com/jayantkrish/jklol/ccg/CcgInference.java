@@ -29,6 +29,23 @@ public interface CcgInference {
   public CcgParse getBestParse(CcgParser parser, SupertaggedSentence sentence,
       ChartCost chartFilter, LogFunction log);
 
+  /**
+   * Same as {@link #getBestParse}, except that parsing can be stopped
+   * early, either by cancelling {@code cancellation} or by exceeding
+   * the time limit of this inference algorithm. If parsing stops
+   * early, the returned value contains the best available partial
+   * analysis of {@code sentence} instead of a complete parse.
+   *
+   * @param parser
+   * @param sentence
+   * @param chartFilter
+   * @param log
+   * @param cancellation May be {@code null}.
+   * @return
+   */
+  public CcgPartialParse getBestPartialParse(CcgParser parser, SupertaggedSentence sentence,
+      ChartCost chartFilter, LogFunction log, ParseCancellation cancellation);
+
   /**
    * Finds the best parse of a supertagged {@code sentence},
    * conditioned on observing any of the true syntactic tree,
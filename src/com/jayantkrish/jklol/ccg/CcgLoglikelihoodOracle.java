@@ -6,6 +6,8 @@ import java.util.Set;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.jayantkrish.jklol.ccg.chart.BeamPruningStrategy;
+import com.jayantkrish.jklol.ccg.chart.CcgBeamSearchChart;
 import com.jayantkrish.jklol.ccg.chart.ChartCost;
 import com.jayantkrish.jklol.ccg.chart.SyntacticChartCost;
 import com.jayantkrish.jklol.ccg.lambda.Expression;
@@ -23,12 +25,21 @@ public class CcgLoglikelihoodOracle implements GradientOracle<CcgParser, CcgExam
 
   private final ParametricCcgParser family;
 
-  // Size of the beam used during inference (which uses beam search).
-  private final int beamSize;
+  // Determines the size of the beam used during inference (which
+  // uses beam search).
+  private final BeamPruningStrategy pruningStrategy;
+
+  // The most recently instantiated parser. Its structure is reused
+  // when instantiating parsers with new parameters.
+  private CcgParser previousModel;
 
   public CcgLoglikelihoodOracle(ParametricCcgParser family, int beamSize) {
+    this(family, BeamPruningStrategy.fixedBeam(beamSize));
+  }
+
+  public CcgLoglikelihoodOracle(ParametricCcgParser family, BeamPruningStrategy pruningStrategy) {
     this.family = Preconditions.checkNotNull(family);
-    this.beamSize = beamSize;
+    this.pruningStrategy = Preconditions.checkNotNull(pruningStrategy);
   }
 
   @Override
@@ -38,7 +49,9 @@ public class CcgLoglikelihoodOracle implements GradientOracle<CcgParser, CcgExam
 
   @Override
   public CcgParser instantiateModel(SufficientStatistics parameters) {
-    return family.getModelFromParameters(parameters);
+    CcgParser model = family.getModelFromParameters(parameters, previousModel);
+    previousModel = model;
+    return model;
   }
 
   @Override
@@ -49,9 +62,25 @@ public class CcgLoglikelihoodOracle implements GradientOracle<CcgParser, CcgExam
     // CCG parses.
     log.startTimer("update_gradient/input_marginal");
     // Calculate the unconditional distribution over CCG parses.
-    List<CcgParse> parses = instantiatedParser.beamSearch(example.getSentence(), 
-        beamSize, log);
-    if (parses.size() == 0) {
+    CcgBeamSearchChart chart = instantiatedParser.beamSearchChart(example.getSentence(),
+        pruningStrategy, null, log, -1, Integer.MAX_VALUE, 1);
+    // The parses in the chart are only decoded if they're needed.
+    // Expected feature counts are computed directly from the chart,
+    // unless the parser skips words, in which case the parses are
+    // drawn from multiple spans of the chart.
+    boolean useChartExpectations = !instantiatedParser.allowsWordSkipping();
+    List<CcgParse> parses = null;
+    double unconditionalPartitionFunction = 0.0;
+    if (useChartExpectations) {
+      if (chart.isFinishedParsing()) {
+        unconditionalPartitionFunction = chart.getPartitionFunction();
+      }
+    } else {
+      parses = instantiatedParser.decodeBeamSearchChart(chart);
+      unconditionalPartitionFunction = getPartitionFunction(parses);
+    }
+
+    if (unconditionalPartitionFunction == 0.0) {
       // Search error: couldn't find any parses.
       throw new ZeroProbabilityError();      
     }
@@ -63,9 +92,12 @@ public class CcgLoglikelihoodOracle implements GradientOracle<CcgParser, CcgExam
     List<CcgParse> possibleParses = null;
     if (example.hasSyntacticParse()) {
       ChartCost conditionalChartFilter = SyntacticChartCost.createAgreementCost(example.getSyntacticParse());
-      possibleParses = instantiatedParser.beamSearch(example.getSentence(), beamSize,
+      possibleParses = instantiatedParser.beamSearch(example.getSentence(), pruningStrategy,
         conditionalChartFilter, log, -1, Integer.MAX_VALUE, 1);
     } else {
+      if (parses == null) {
+        parses = instantiatedParser.decodeBeamSearchChart(chart);
+      }
       possibleParses = Lists.newArrayList(parses);
     }
 
@@ -81,10 +113,14 @@ public class CcgLoglikelihoodOracle implements GradientOracle<CcgParser, CcgExam
 
     log.startTimer("update_gradient/increment_gradient");
     // Subtract the unconditional expected feature counts.
-    double unconditionalPartitionFunction = getPartitionFunction(parses);
-    for (CcgParse parse : parses) {
-      family.incrementSufficientStatistics(gradient, currentParameters, parse, -1.0 * 
-          parse.getSubtreeProbability() / unconditionalPartitionFunction);
+    if (useChartExpectations) {
+      family.incrementExpectedSufficientStatistics(gradient, currentParameters, chart,
+          instantiatedParser, -1.0);
+    } else {
+      for (CcgParse parse : parses) {
+        family.incrementSufficientStatistics(gradient, currentParameters, parse, -1.0 * 
+            parse.getSubtreeProbability() / unconditionalPartitionFunction);
+      }
     }
 
     // Add conditional expected feature counts.
@@ -8,14 +8,12 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
@@ -25,11 +23,18 @@ import com.google.common.collect.Sets;
 import com.google.common.primitives.Ints;
 import com.google.common.primitives.Longs;
 import com.jayantkrish.jklol.ccg.SyntacticCategory.Direction;
+import com.jayantkrish.jklol.ccg.chart.AbstractCcgChart;
+import com.jayantkrish.jklol.ccg.chart.BeamPruningStrategy;
+import com.jayantkrish.jklol.ccg.chart.CcgAStarChart;
+import com.jayantkrish.jklol.ccg.chart.CcgAStarChart.AgendaEntry;
 import com.jayantkrish.jklol.ccg.chart.CcgBeamSearchChart;
 import com.jayantkrish.jklol.ccg.chart.CcgChart;
 import com.jayantkrish.jklol.ccg.chart.CcgExactHashTableChart;
+import com.jayantkrish.jklol.ccg.chart.CcgPackedBeamSearchChart;
 import com.jayantkrish.jklol.ccg.chart.ChartCost;
 import com.jayantkrish.jklol.ccg.chart.ChartEntry;
+import com.jayantkrish.jklol.ccg.chart.DependencyScoreCache;
+import com.jayantkrish.jklol.ccg.chart.PackedChartEntries;
 import com.jayantkrish.jklol.ccg.lexicon.CcgLexicon;
 import com.jayantkrish.jklol.ccg.supertag.SupertaggedSentence;
 import com.jayantkrish.jklol.models.DiscreteFactor;
@@ -37,6 +42,9 @@ import com.jayantkrish.jklol.models.DiscreteFactor.Outcome;
 import com.jayantkrish.jklol.models.DiscreteVariable;
 import com.jayantkrish.jklol.models.TableFactorBuilder;
 import com.jayantkrish.jklol.models.VariableNumMap;
+import com.jayantkrish.jklol.parallel.ForkJoinPools;
+import com.jayantkrish.jklol.tensor.FactoredTensor;
+import com.jayantkrish.jklol.tensor.HashIndexedSparseTensor;
 import com.jayantkrish.jklol.tensor.SparseTensor;
 import com.jayantkrish.jklol.tensor.SparseTensorBuilder;
 import com.jayantkrish.jklol.tensor.Tensor;
@@ -94,6 +102,26 @@ public class CcgParser implements Serializable {
   private static final int MAX_CHART_DEPS = 100;
   private static final int MAX_CHART_VAR_INDEX = 100;
 
+  // Parameters for controlling the size of each chart's cache of
+  // dependency weights. Once the cache is full, further dependencies
+  // are scored without caching.
+  private static final int DEPENDENCY_CACHE_SIZE_PER_WORD_PAIR = 8;
+  private static final int MIN_DEPENDENCY_CACHE_SIZE = 256;
+  private static final int MAX_DEPENDENCY_CACHE_SIZE = 1 << 16;
+
+  // The number of pairs of chart entries combined between checks
+  // for whether parsing has been cancelled.
+  private static final int CANCELLATION_CHECK_INTERVAL = 256;
+
+  // Per-thread scratch arrays for calculateInsideBeam. These are
+  // reused across spans, sentences and parsers on the same thread.
+  private static final ThreadLocal<InsideScratch> INSIDE_SCRATCH = new ThreadLocal<InsideScratch>() {
+    @Override
+    protected InsideScratch initialValue() {
+      return new InsideScratch();
+    }
+  };
+
   // Default names for the variables in the syntactic distribution
   // built by buildSyntacticDistribution
   public static final String LEFT_SYNTAX_VAR_NAME = "leftSyntax";
@@ -171,6 +199,7 @@ public class CcgParser implements Serializable {
   private final VariableNumMap combinatorVar;
   private final DiscreteVariable syntaxVarType;
   private final DiscreteVariable combinatorVarType;
+  private final transient Tensor binaryRuleTensor;
   private final DiscreteFactor binaryRuleDistribution;
   
   // Unary type changing/raising rules.
@@ -179,7 +208,7 @@ public class CcgParser implements Serializable {
   private final int unaryRuleVarNum;
   private final DiscreteFactor unaryRuleFactor;
   private final DiscreteVariable unaryRuleVarType;
-  private final Tensor unaryRuleTensor;
+  private final transient Tensor unaryRuleTensor;
 
   // Weights on binary combination rules incorporating head information
   private final VariableNumMap headedBinaryPredicateVar;
@@ -188,13 +217,17 @@ public class CcgParser implements Serializable {
   private final long headedBinaryRuleCombinatorOffset;
   private final long headedBinaryRulePredicateOffset;
   private final long headedBinaryRulePosOffset;
-  private final Tensor headedBinaryRuleTensor;
+  private final transient Tensor headedBinaryRuleTensor;
 
   // Indicator tensor specifying possible ways to combine pairs of
   // syntactic categories.
   private final VariableNumMap searchMoveVar;
   private final DiscreteVariable searchMoveType;
   private final DiscreteFactor compiledSyntaxDistribution;
+  // The search moves in compiledSyntaxDistribution, indexed by the
+  // pair of syntactic categories they combine. Recompiled from
+  // compiledSyntaxDistribution on deserialization.
+  private final transient CcgSearchMoveTable searchMoveTable;
 
   // Weights on the syntactic category of the root of the CCG parse.
   private final VariableNumMap rootSyntaxVar;
@@ -214,6 +247,17 @@ public class CcgParser implements Serializable {
   private final boolean allowWordSkipping;
   private final boolean normalFormOnly;
 
+  // If true, sparse tensors that are queried for individual entries
+  // during parsing are given hash indexes, which replace binary search
+  // with expected constant time lookups. Parsers serialized before
+  // this option existed deserialize with it set to false.
+  private final boolean hashIndexTensors;
+
+  // Whether all weights other than the lexicon entry weights are at
+  // most 1, which makes the A* outside bound admissible. Computed on
+  // first use by hasAdmissibleAStarBound.
+  private transient Boolean admissibleAStarBound;
+
   public CcgParser(CcgLexicon lexicon, VariableNumMap dependencyHeadVar, VariableNumMap dependencySyntaxVar,
       VariableNumMap dependencyArgNumVar, VariableNumMap dependencyArgVar,
       VariableNumMap dependencyHeadPosVar, VariableNumMap dependencyArgPosVar,
@@ -229,7 +273,42 @@ public class CcgParser implements Serializable {
       VariableNumMap rootSyntaxVar, VariableNumMap rootPredicateVar, VariableNumMap rootPosVar, 
       DiscreteFactor rootSyntaxDistribution, DiscreteFactor headedRootSyntaxDistribution,
       boolean allowWordSkipping, boolean normalFormOnly) {
+    this(lexicon, dependencyHeadVar, dependencySyntaxVar, dependencyArgNumVar, dependencyArgVar,
+        dependencyHeadPosVar, dependencyArgPosVar, dependencyDistribution, wordDistanceVar,
+        wordDistanceFactor, puncDistanceVar, puncDistanceFactor, puncTagSet, verbDistanceVar,
+        verbDistanceFactor, verbTagSet, leftSyntaxVar, rightSyntaxVar, parentSyntaxVar,
+        binaryRuleDistribution, unaryRuleInputVar, unaryRuleVar, unaryRuleFactor,
+        headedBinaryPredicateVar, headedBinaryPosVar, headedBinaryRuleDistribution,
+        searchMoveVar, compiledSyntaxDistribution, rootSyntaxVar, rootPredicateVar, rootPosVar,
+        rootSyntaxDistribution, headedRootSyntaxDistribution, allowWordSkipping, normalFormOnly,
+        false);
+  }
+
+  /**
+   * Identical to the constructor above, except that
+   * {@code hashIndexTensors} determines whether parameter tensors that
+   * are frequently queried during parsing are replaced by
+   * {@link HashIndexedSparseTensor}s. Hash indexing makes individual
+   * lookups faster at the cost of additional memory and time to build
+   * the index for each parsed sentence.
+   */
+  public CcgParser(CcgLexicon lexicon, VariableNumMap dependencyHeadVar, VariableNumMap dependencySyntaxVar,
+      VariableNumMap dependencyArgNumVar, VariableNumMap dependencyArgVar,
+      VariableNumMap dependencyHeadPosVar, VariableNumMap dependencyArgPosVar,
+      DiscreteFactor dependencyDistribution, VariableNumMap wordDistanceVar,
+      DiscreteFactor wordDistanceFactor, VariableNumMap puncDistanceVar,
+      DiscreteFactor puncDistanceFactor, Set<String> puncTagSet, VariableNumMap verbDistanceVar,
+      DiscreteFactor verbDistanceFactor, Set<String> verbTagSet, VariableNumMap leftSyntaxVar,
+      VariableNumMap rightSyntaxVar, VariableNumMap parentSyntaxVar,
+      DiscreteFactor binaryRuleDistribution, VariableNumMap unaryRuleInputVar,
+      VariableNumMap unaryRuleVar, DiscreteFactor unaryRuleFactor, VariableNumMap headedBinaryPredicateVar,
+      VariableNumMap headedBinaryPosVar, DiscreteFactor headedBinaryRuleDistribution,
+      VariableNumMap searchMoveVar, DiscreteFactor compiledSyntaxDistribution,
+      VariableNumMap rootSyntaxVar, VariableNumMap rootPredicateVar, VariableNumMap rootPosVar, 
+      DiscreteFactor rootSyntaxDistribution, DiscreteFactor headedRootSyntaxDistribution,
+      boolean allowWordSkipping, boolean normalFormOnly, boolean hashIndexTensors) {
     this.lexicon = Preconditions.checkNotNull(lexicon);
+    this.hashIndexTensors = hashIndexTensors;
 
     Preconditions.checkArgument(dependencyDistribution.getVars().equals(VariableNumMap.unionAll(
         dependencyHeadVar, dependencySyntaxVar, dependencyArgNumVar, dependencyArgVar,
@@ -305,13 +384,14 @@ public class CcgParser implements Serializable {
     this.syntaxVarType = leftSyntaxVar.getDiscreteVariables().get(0);
     this.combinatorVarType = parentSyntaxVar.getDiscreteVariables().get(0);
     this.binaryRuleDistribution = binaryRuleDistribution;
+    this.binaryRuleTensor = indexTensor(binaryRuleDistribution.getWeights());
 
     this.unaryRuleInputVar = Preconditions.checkNotNull(unaryRuleInputVar);
     this.unaryRuleVar = Preconditions.checkNotNull(unaryRuleVar);
     this.unaryRuleVarNum = unaryRuleVar.getOnlyVariableNum();
     this.unaryRuleFactor = Preconditions.checkNotNull(unaryRuleFactor);
     this.unaryRuleVarType = unaryRuleVar.getDiscreteVariables().get(0);
-    this.unaryRuleTensor = unaryRuleFactor.getWeights();
+    this.unaryRuleTensor = indexTensor(unaryRuleFactor.getWeights());
 
     this.headedBinaryPredicateVar = headedBinaryPredicateVar;
     Preconditions.checkArgument(headedBinaryPredicateVar.getDiscreteVariables().get(0).equals(dependencyHeadType));
@@ -321,7 +401,7 @@ public class CcgParser implements Serializable {
     Preconditions.checkArgument(headedBinaryRuleDistribution.getVars().equals(
         VariableNumMap.unionAll(binaryRuleDistribution.getVars(), headedBinaryPredicateVar, headedBinaryPosVar)));
     
-    headedBinaryRuleTensor = headedBinaryRuleDistribution.getWeights();
+    headedBinaryRuleTensor = indexTensor(headedBinaryRuleDistribution.getWeights());
     long[] headedBinaryOffsets = headedBinaryRuleTensor.getDimensionOffsets();
     headedBinaryRuleCombinatorOffset = headedBinaryOffsets[2];
     headedBinaryRulePredicateOffset = headedBinaryOffsets[3];
@@ -332,6 +412,8 @@ public class CcgParser implements Serializable {
     Preconditions.checkArgument(compiledSyntaxDistribution.getVars().equals(
         VariableNumMap.unionAll(leftSyntaxVar, rightSyntaxVar, searchMoveVar)));
     this.compiledSyntaxDistribution = Preconditions.checkNotNull(compiledSyntaxDistribution);
+    this.searchMoveTable = CcgSearchMoveTable.fromSyntaxDistribution(compiledSyntaxDistribution,
+        binaryRuleTensor, unaryRuleTensor);
 
     this.rootSyntaxVar = Preconditions.checkNotNull(rootSyntaxVar);
     this.rootPredicateVar = Preconditions.checkNotNull(rootPredicateVar);
@@ -369,6 +451,121 @@ public class CcgParser implements Serializable {
     Preconditions.checkArgument(dependencySyntaxType.numValues() < MAX_SYNTACTIC_CATEGORIES);
   }
 
+  /**
+   * Creates a parser with the structure of {@code structure} and new
+   * weights. All of the given factors must be defined over the same
+   * variables as the corresponding factors of {@code structure}. See
+   * {@link #rebindWeights}.
+   */
+  private CcgParser(CcgParser structure, CcgLexicon lexicon, DiscreteFactor dependencyDistribution,
+      DiscreteFactor wordDistanceFactor, DiscreteFactor puncDistanceFactor,
+      DiscreteFactor verbDistanceFactor, DiscreteFactor binaryRuleDistribution,
+      DiscreteFactor unaryRuleFactor, DiscreteFactor headedBinaryRuleDistribution,
+      DiscreteFactor rootSyntaxDistribution, DiscreteFactor headedRootSyntaxDistribution) {
+    this.lexicon = Preconditions.checkNotNull(lexicon);
+    this.hashIndexTensors = structure.hashIndexTensors;
+
+    Preconditions.checkArgument(dependencyDistribution.getVars().equals(
+        structure.dependencyDistribution.getVars()));
+    this.dependencyHeadVar = structure.dependencyHeadVar;
+    this.dependencySyntaxVar = structure.dependencySyntaxVar;
+    this.dependencyArgNumVar = structure.dependencyArgNumVar;
+    this.dependencyArgVar = structure.dependencyArgVar;
+    this.dependencyHeadPosVar = structure.dependencyHeadPosVar;
+    this.dependencyArgPosVar = structure.dependencyArgPosVar;
+    this.dependencyDistribution = dependencyDistribution;
+    this.dependencyHeadType = structure.dependencyHeadType;
+    this.dependencySyntaxType = structure.dependencySyntaxType;
+    this.dependencyArgNumType = structure.dependencyArgNumType;
+    this.dependencyPosType = structure.dependencyPosType;
+    this.dependencyTensor = dependencyDistribution.getWeights();
+    this.dependencyHeadOffset = structure.dependencyHeadOffset;
+    this.dependencySyntaxOffset = structure.dependencySyntaxOffset;
+    this.dependencyArgNumOffset = structure.dependencyArgNumOffset;
+    this.dependencyObjectOffset = structure.dependencyObjectOffset;
+    this.dependencyHeadPosOffset = structure.dependencyHeadPosOffset;
+    this.dependencyObjectPosOffset = structure.dependencyObjectPosOffset;
+
+    Preconditions.checkArgument(wordDistanceFactor.getVars().equals(
+        structure.wordDistanceFactor.getVars()));
+    this.wordDistanceVar = structure.wordDistanceVar;
+    this.wordDistanceFactor = wordDistanceFactor;
+    this.wordDistanceTensor = wordDistanceFactor.getWeights();
+
+    Preconditions.checkArgument(puncDistanceFactor.getVars().equals(
+        structure.puncDistanceFactor.getVars()));
+    this.puncDistanceVar = structure.puncDistanceVar;
+    this.puncDistanceFactor = puncDistanceFactor;
+    this.puncDistanceTensor = puncDistanceFactor.getWeights();
+    this.puncTagSet = structure.puncTagSet;
+
+    Preconditions.checkArgument(verbDistanceFactor.getVars().equals(
+        structure.verbDistanceFactor.getVars()));
+    this.verbDistanceVar = structure.verbDistanceVar;
+    this.verbDistanceFactor = verbDistanceFactor;
+    this.verbDistanceTensor = verbDistanceFactor.getWeights();
+    this.verbTagSet = structure.verbTagSet;
+
+    this.distanceHeadOffset = structure.distanceHeadOffset;
+    this.distanceSyntaxOffset = structure.distanceSyntaxOffset;
+    this.distanceArgNumOffset = structure.distanceArgNumOffset;
+    this.distanceHeadPosOffset = structure.distanceHeadPosOffset;
+    this.distanceDistanceOffset = structure.distanceDistanceOffset;
+
+    Preconditions.checkArgument(binaryRuleDistribution.getVars().equals(
+        structure.binaryRuleDistribution.getVars()));
+    this.leftSyntaxVar = structure.leftSyntaxVar;
+    this.rightSyntaxVar = structure.rightSyntaxVar;
+    this.combinatorVar = structure.combinatorVar;
+    this.syntaxVarType = structure.syntaxVarType;
+    this.combinatorVarType = structure.combinatorVarType;
+    this.binaryRuleDistribution = binaryRuleDistribution;
+    this.binaryRuleTensor = indexTensor(binaryRuleDistribution.getWeights());
+
+    Preconditions.checkArgument(unaryRuleFactor.getVars().equals(
+        structure.unaryRuleFactor.getVars()));
+    this.unaryRuleInputVar = structure.unaryRuleInputVar;
+    this.unaryRuleVar = structure.unaryRuleVar;
+    this.unaryRuleVarNum = structure.unaryRuleVarNum;
+    this.unaryRuleFactor = unaryRuleFactor;
+    this.unaryRuleVarType = structure.unaryRuleVarType;
+    this.unaryRuleTensor = indexTensor(unaryRuleFactor.getWeights());
+
+    Preconditions.checkArgument(headedBinaryRuleDistribution.getVars().equals(
+        structure.headedBinaryRuleDistribution.getVars()));
+    this.headedBinaryPredicateVar = structure.headedBinaryPredicateVar;
+    this.headedBinaryPosVar = structure.headedBinaryPosVar;
+    this.headedBinaryRuleDistribution = headedBinaryRuleDistribution;
+    this.headedBinaryRuleTensor = indexTensor(headedBinaryRuleDistribution.getWeights());
+    this.headedBinaryRuleCombinatorOffset = structure.headedBinaryRuleCombinatorOffset;
+    this.headedBinaryRulePredicateOffset = structure.headedBinaryRulePredicateOffset;
+    this.headedBinaryRulePosOffset = structure.headedBinaryRulePosOffset;
+
+    // The compiled rules are reused; only their weights are updated.
+    this.searchMoveVar = structure.searchMoveVar;
+    this.searchMoveType = structure.searchMoveType;
+    this.compiledSyntaxDistribution = structure.compiledSyntaxDistribution;
+    this.searchMoveTable = structure.searchMoveTable.replaceRuleWeights(binaryRuleTensor,
+        unaryRuleTensor);
+
+    Preconditions.checkArgument(rootSyntaxDistribution.getVars().equals(
+        structure.rootSyntaxDistribution.getVars()));
+    Preconditions.checkArgument(headedRootSyntaxDistribution.getVars().equals(
+        structure.headedRootSyntaxDistribution.getVars()));
+    this.rootSyntaxVar = structure.rootSyntaxVar;
+    this.rootPredicateVar = structure.rootPredicateVar;
+    this.rootPosVar = structure.rootPosVar;
+    this.rootSyntaxDistribution = rootSyntaxDistribution;
+    this.headedRootSyntaxDistribution = headedRootSyntaxDistribution;
+    this.headedRootSyntaxOffset = structure.headedRootSyntaxOffset;
+    this.headedRootPredicateOffset = structure.headedRootPredicateOffset;
+    this.headedRootPosOffset = structure.headedRootPosOffset;
+
+    this.predicatesInRules = structure.predicatesInRules;
+    this.allowWordSkipping = structure.allowWordSkipping;
+    this.normalFormOnly = structure.normalFormOnly;
+  }
+
   public static DiscreteVariable buildSyntacticCategoryDictionary(Iterable<HeadedSyntacticCategory> syntacticCategories) {
     Set<String> featureValues = Sets.newHashSet();
     for (HeadedSyntacticCategory cat : syntacticCategories) {
@@ -1076,7 +1273,72 @@ public class CcgParser implements Serializable {
         binaryRuleDistribution, unaryRuleInputVar, unaryRuleVar, unaryRuleFactor, 
         headedBinaryPredicateVar, headedBinaryPosVar, headedBinaryRuleDistribution,
         searchMoveVar, newCompiledSyntaxDistribution, rootSyntaxVar, rootPredicateVar, rootPosVar, 
-        rootSyntaxDistribution, headedRootSyntaxDistribution, allowWordSkipping, normalFormOnly);
+        rootSyntaxDistribution, headedRootSyntaxDistribution, allowWordSkipping, normalFormOnly,
+        hashIndexTensors);
+  }
+
+  /**
+   * Gets a parser with the same structure as this parser (variables,
+   * compiled rules, etc.), but with new weights. Each factor must be
+   * defined over the same variables as the corresponding factor of
+   * this parser. This method is faster than constructing a new parser
+   * because it reuses the compiled search moves and other structures
+   * derived from the grammar, which do not depend on the weights.
+   * The compiled syntax distribution of this parser is also retained.
+   * 
+   * @param lexicon
+   * @param dependencyDistribution
+   * @param wordDistanceFactor
+   * @param puncDistanceFactor
+   * @param verbDistanceFactor
+   * @param binaryRuleDistribution
+   * @param unaryRuleFactor
+   * @param headedBinaryRuleDistribution
+   * @param rootSyntaxDistribution
+   * @param headedRootSyntaxDistribution
+   * @return
+   */
+  public CcgParser rebindWeights(CcgLexicon lexicon, DiscreteFactor dependencyDistribution,
+      DiscreteFactor wordDistanceFactor, DiscreteFactor puncDistanceFactor,
+      DiscreteFactor verbDistanceFactor, DiscreteFactor binaryRuleDistribution,
+      DiscreteFactor unaryRuleFactor, DiscreteFactor headedBinaryRuleDistribution,
+      DiscreteFactor rootSyntaxDistribution, DiscreteFactor headedRootSyntaxDistribution) {
+    return new CcgParser(this, lexicon, dependencyDistribution, wordDistanceFactor,
+        puncDistanceFactor, verbDistanceFactor, binaryRuleDistribution, unaryRuleFactor,
+        headedBinaryRuleDistribution, rootSyntaxDistribution, headedRootSyntaxDistribution);
+  }
+
+  /**
+   * Gets a copy of this parser which uses hash-indexed lookup tensors
+   * if {@code hashIndexTensors} is {@code true}, and binary search
+   * otherwise. The two parsers produce identical parses.
+   *
+   * @param hashIndexTensors
+   * @return
+   */
+  public CcgParser useHashIndexedTensors(boolean hashIndexTensors) {
+    return new CcgParser(lexicon, dependencyHeadVar, dependencySyntaxVar,
+        dependencyArgNumVar, dependencyArgVar, dependencyHeadPosVar, dependencyArgPosVar, dependencyDistribution,
+        wordDistanceVar, wordDistanceFactor, puncDistanceVar, puncDistanceFactor, puncTagSet,
+        verbDistanceVar, verbDistanceFactor, verbTagSet, leftSyntaxVar, rightSyntaxVar, combinatorVar,
+        binaryRuleDistribution, unaryRuleInputVar, unaryRuleVar, unaryRuleFactor, 
+        headedBinaryPredicateVar, headedBinaryPosVar, headedBinaryRuleDistribution,
+        searchMoveVar, compiledSyntaxDistribution, rootSyntaxVar, rootPredicateVar, rootPosVar, 
+        rootSyntaxDistribution, headedRootSyntaxDistribution, allowWordSkipping, normalFormOnly,
+        hashIndexTensors);
+  }
+
+  /**
+   * The rule tensors and the search move table are derived from the
+   * rule distributions and {@code compiledSyntaxDistribution}, and are
+   * not serialized. Rebuilds them for a deserialized parser.
+   */
+  private Object readResolve() {
+    return useHashIndexedTensors(hashIndexTensors);
+  }
+
+  private Tensor indexTensor(Tensor tensor) {
+    return hashIndexTensors ? HashIndexedSparseTensor.indexIfSparse(tensor) : tensor;
   }
 
   public DiscreteFactor getBinaryRuleDistribution() {
@@ -1127,9 +1389,137 @@ public class CcgParser implements Serializable {
    */
   public List<CcgParse> beamSearch(SupertaggedSentence input, int beamSize, ChartCost beamFilter,
       LogFunction log, long maxParseTimeMillis, int maxChartSize, int numThreads) {
-    CcgBeamSearchChart chart = new CcgBeamSearchChart(input, maxChartSize, beamSize);
-    parseCommon(chart, input, beamFilter, log, maxParseTimeMillis, numThreads);
+    return beamSearch(input, BeamPruningStrategy.fixedBeam(beamSize), beamFilter, log,
+        maxParseTimeMillis, maxChartSize, numThreads);
+  }
+
+  /**
+   * Same as
+   * {@link #beamSearch(SupertaggedSentence, int, ChartCost, LogFunction, long, int, int)},
+   * except that the chart is pruned using {@code pruningStrategy}.
+   * 
+   * @param input
+   * @param pruningStrategy
+   * @param beamFilter
+   * @param log
+   * @param maxParseTimeMillis
+   * @param maxChartSize
+   * @param numThreads
+   * @return
+   */
+  public List<CcgParse> beamSearch(SupertaggedSentence input, BeamPruningStrategy pruningStrategy,
+      ChartCost beamFilter, LogFunction log, long maxParseTimeMillis, int maxChartSize,
+      int numThreads) {
+    return decodeBeamSearchChart(beamSearchChart(input, pruningStrategy, beamFilter, log,
+        maxParseTimeMillis, maxChartSize, numThreads));
+  }
+
+  /**
+   * Performs a beam search to parse {@code input}, returning the
+   * resulting chart. The chart contains parses only if
+   * {@link CcgChart#isFinishedParsing()} is {@code true}. The
+   * arguments are the same as those of
+   * {@link #beamSearch(SupertaggedSentence, int, ChartCost, LogFunction, long, int, int)}.
+   * 
+   * @param input
+   * @param beamSize
+   * @param beamFilter
+   * @param log
+   * @param maxParseTimeMillis
+   * @param maxChartSize
+   * @param numThreads
+   * @return
+   */
+  public CcgBeamSearchChart beamSearchChart(SupertaggedSentence input, int beamSize,
+      ChartCost beamFilter, LogFunction log, long maxParseTimeMillis, int maxChartSize,
+      int numThreads) {
+    return beamSearchChart(input, BeamPruningStrategy.fixedBeam(beamSize), beamFilter, log,
+        maxParseTimeMillis, maxChartSize, numThreads);
+  }
+
+  /**
+   * Same as
+   * {@link #beamSearchChart(SupertaggedSentence, int, ChartCost, LogFunction, long, int, int)},
+   * except that the chart is pruned using {@code pruningStrategy}.
+   * 
+   * @param input
+   * @param pruningStrategy
+   * @param beamFilter
+   * @param log
+   * @param maxParseTimeMillis
+   * @param maxChartSize
+   * @param numThreads
+   * @return
+   */
+  public CcgBeamSearchChart beamSearchChart(SupertaggedSentence input,
+      BeamPruningStrategy pruningStrategy, ChartCost beamFilter, LogFunction log,
+      long maxParseTimeMillis, int maxChartSize, int numThreads) {
+    return beamSearchChart(input, pruningStrategy, beamFilter, log, maxParseTimeMillis,
+        maxChartSize, numThreads, null);
+  }
 
+  /**
+   * Same as
+   * {@link #beamSearchChart(SupertaggedSentence, BeamPruningStrategy, ChartCost, LogFunction, long, int, int)},
+   * except that parsing stops early if {@code cancellation} is
+   * cancelled.
+   * 
+   * @param input
+   * @param pruningStrategy
+   * @param beamFilter
+   * @param log
+   * @param maxParseTimeMillis
+   * @param maxChartSize
+   * @param numThreads
+   * @param cancellation May be {@code null}.
+   * @return
+   */
+  public CcgBeamSearchChart beamSearchChart(SupertaggedSentence input,
+      BeamPruningStrategy pruningStrategy, ChartCost beamFilter, LogFunction log,
+      long maxParseTimeMillis, int maxChartSize, int numThreads, ParseCancellation cancellation) {
+    CcgBeamSearchChart chart = new CcgPackedBeamSearchChart(input, maxChartSize, pruningStrategy);
+    parseCommon(chart, input, beamFilter, log, maxParseTimeMillis, numThreads, cancellation);
+    return chart;
+  }
+
+  /**
+   * Gets the best parse in {@code chart} if parsing completed.
+   * Otherwise, e.g., if parsing timed out or was cancelled, gets the
+   * best sequence of fragments covering the sentence (see
+   * {@link AbstractCcgChart#decodeBestFragmentCover}). The fragment
+   * cover is also returned if parsing completed without finding a
+   * parse of the entire sentence.
+   * 
+   * @param chart
+   * @return
+   */
+  public CcgPartialParse decodeBestPartialParse(AbstractCcgChart chart) {
+    if (chart.isFinishedParsing()) {
+      CcgParse parse = null;
+      if (allowWordSkipping) {
+        parse = Iterables.getFirst(chart.decodeBestParsesForSubspan(0, chart.size() - 1, 1, this),
+            null);
+      } else {
+        parse = chart.decodeBestParse(this);
+      }
+
+      if (parse != null) {
+        return CcgPartialParse.fromCompleteParse(addSentenceToParse(parse, chart));
+      }
+    }
+    return CcgPartialParse.fromFragments(addSentenceToParses(
+        chart.decodeBestFragmentCover(this), chart));
+  }
+
+  /**
+   * Gets the parses in a chart produced by {@link #beamSearchChart},
+   * in the same order as {@link #beamSearch}.
+   * 
+   * @param chart
+   * @return
+   */
+  public List<CcgParse> decodeBeamSearchChart(CcgBeamSearchChart chart) {
+    int beamSize = chart.getBeamSize();
     if (chart.isFinishedParsing()) {
       if (allowWordSkipping) {
         return addSentenceToParses(chart.decodeBestParsesForSubspan(
@@ -1176,6 +1566,205 @@ public class CcgParser implements Serializable {
     }
   }
   
+  /**
+   * Finds the highest-scoring parse of {@code input} using A* search.
+   * Chart entries are processed in order of their inside probability
+   * times an upper bound on their outside probability, and search
+   * stops as soon as a complete parse is found, which typically
+   * requires processing only a small fraction of the chart. The
+   * outside bound is computed from the maximum lexicon entry weight
+   * for each word (see {@link CcgAStarChart}).
+   * <p>
+   * The outside bound is only admissible if all weights other than
+   * the lexicon entry weights (i.e., the weights of combinators, unary
+   * rules, dependencies, distances and root categories) are at most 1
+   * and {@code chartFilter} never increases the weight of an entry.
+   * If any of these weights is greater than 1, this method falls back
+   * to exact search (see {@link #hasAdmissibleAStarBound}), so the
+   * returned parse is always the highest-scoring parse. This parser
+   * does not support word skipping.
+   * 
+   * @param input sentence to parse.
+   * @param chartFilter May be {@code null}, in which case no chart entries are pruned.
+   * @param log May be {@code null} to suppress logging output.
+   * @param maxParseTimeMillis maximum parsing time, in milliseconds. If parsing
+   * exceeds this time, it is cancelled and null is returned.
+   * @param maxChartSize maximum number of entries allowed in the parse chart. If the
+   * chart exceeds this size, parsing is cancelled and null is returned.
+   * @return
+   */
+  public CcgParse parseAStar(SupertaggedSentence input, ChartCost chartFilter, LogFunction log,
+      long maxParseTimeMillis, int maxChartSize) {
+    if (!hasAdmissibleAStarBound()) {
+      return parse(input, chartFilter, log, maxParseTimeMillis, maxChartSize, 1);
+    }
+
+    CcgAStarChart chart = parseAStarChart(input, chartFilter, log, maxParseTimeMillis,
+        maxChartSize, null);
+
+    if (chart.isFinishedParsing()) {
+      return addSentenceToParse(chart.decodeBestParse(this), chart);
+    } else {
+      System.out.println("CCG Parser Timeout");
+      return null;
+    }
+  }
+
+  /**
+   * Performs the search of {@link #parseAStar}, returning the
+   * resulting chart. Search stops early if {@code cancellation} is
+   * cancelled. Unlike {@code parseAStar}, this method always performs
+   * A* search, even if {@link #hasAdmissibleAStarBound} is
+   * {@code false}.
+   * 
+   * @param input
+   * @param chartFilter
+   * @param log
+   * @param maxParseTimeMillis
+   * @param maxChartSize
+   * @param cancellation May be {@code null}.
+   * @return
+   */
+  public CcgAStarChart parseAStarChart(SupertaggedSentence input, ChartCost chartFilter,
+      LogFunction log, long maxParseTimeMillis, int maxChartSize, ParseCancellation cancellation) {
+    Preconditions.checkState(!allowWordSkipping, "A* parsing does not support word skipping.");
+    if (log == null) {
+      log = new NullLogFunction();
+    }
+
+    CcgAStarChart chart = new CcgAStarChart(input, maxChartSize);
+    chart.setParseDeadline(Long.MAX_VALUE, cancellation);
+    log.startTimer("initialize_chart");
+    initializeChart(chart, input, chartFilter);
+    lexicon.initializeChartTerminals(input, chart, this);
+    chart.startSearch();
+    log.stopTimer("initialize_chart");
+
+    log.startTimer("calculate_inside_astar");
+    boolean finishedParsing = calculateInsideAStar(chart, maxParseTimeMillis);
+    log.stopTimer("calculate_inside_astar");
+    chart.setFinishedParsing(finishedParsing);
+    return chart;
+  }
+
+  /**
+   * Returns {@code true} if all weights other than the lexicon entry
+   * weights are at most 1, in which case the outside bound used by
+   * {@link #parseAStar} is admissible.
+   * 
+   * @return
+   */
+  public boolean hasAdmissibleAStarBound() {
+    if (admissibleAStarBound == null) {
+      admissibleAStarBound = weightsAtMostOne(binaryRuleDistribution)
+          && weightsAtMostOne(unaryRuleFactor) && weightsAtMostOne(headedBinaryRuleDistribution)
+          && weightsAtMostOne(dependencyDistribution) && weightsAtMostOne(wordDistanceFactor)
+          && weightsAtMostOne(puncDistanceFactor) && weightsAtMostOne(verbDistanceFactor)
+          && weightsAtMostOne(rootSyntaxDistribution)
+          && weightsAtMostOne(headedRootSyntaxDistribution);
+    }
+    return admissibleAStarBound;
+  }
+
+  private static boolean weightsAtMostOne(DiscreteFactor factor) {
+    return weightsAtMostOne(factor.getWeights());
+  }
+
+  private static boolean weightsAtMostOne(Tensor weights) {
+    if (weights instanceof FactoredTensor) {
+      // Conservatively require every tensor in the product to be at
+      // most 1.
+      for (Tensor tensor : ((FactoredTensor) weights).getTensors()) {
+        if (!weightsAtMostOne(tensor)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    long[] largestKeyNums = weights.getLargestValues(1);
+    return largestKeyNums.length == 0 || weights.get(largestKeyNums[0]) <= 1.0;
+  }
+
+  /**
+   * Runs A* search on {@code chart} until a complete parse is found or
+   * the agenda is empty. Returns {@code false} if the search exceeded
+   * the time or chart size limits.
+   * 
+   * @param chart
+   * @param maxParseTimeMillis
+   * @return
+   */
+  private boolean calculateInsideAStar(CcgAStarChart chart, long maxParseTimeMillis) {
+    long endTime = System.currentTimeMillis() + maxParseTimeMillis;
+    int numTerminals = chart.size();
+    int[] posTags = chart.getPosTagsInt();
+    InsideScratch scratch = INSIDE_SCRATCH.get();
+    scratch.clearDependencyCache();
+
+    AgendaEntry agendaEntry = null;
+    while ((agendaEntry = chart.pollAgenda()) != null) {
+      if (maxParseTimeMillis >= 0 && System.currentTimeMillis() > endTime) {
+        return false;
+      }
+      if (chart.isParseCancelled()) {
+        return false;
+      }
+      if (chart.getTotalNumChartEntries() > chart.getMaxChartEntries()) {
+        return false;
+      }
+
+      ChartEntry entry = agendaEntry.getEntry();
+      int spanStart = agendaEntry.getSpanStart();
+      int spanEnd = agendaEntry.getSpanEnd();
+      if (spanStart == 0 && spanEnd == numTerminals - 1) {
+        if (agendaEntry.isCompleteParse()) {
+          // This is the best parse.
+          chart.finalizeEntry(agendaEntry);
+          return true;
+        }
+
+        // Apply unary rules (as in reweightRootEntries) and the root
+        // factors, then return the resulting parses to the agenda.
+        double prob = agendaEntry.getProbability();
+        if (entry.getRootUnaryRule() == null) {
+          applyUnaryRules(chart, entry, prob, spanStart, spanEnd);
+        }
+        chart.addCompleteParse(entry, weightRootEntry(entry, prob, posTags));
+        continue;
+      }
+
+      int entryIndex = chart.finalizeEntry(agendaEntry);
+      if (entryIndex == -1) {
+        continue;
+      }
+
+      // Combine the new entry with all adjacent entries in the chart.
+      ChartEntry[] entries = chart.getChartEntriesForSpan(spanStart, spanEnd);
+      double[] probs = chart.getChartEntryProbsForSpan(spanStart, spanEnd);
+      IntMultimap entryTypes = IntMultimap.createFromUnsortedArrays(
+          new int[] {entry.getHeadedSyntax()}, new int[] {entryIndex}, 0);
+      for (int otherSpanEnd = spanEnd + 1; otherSpanEnd < numTerminals; otherSpanEnd++) {
+        IntMultimap otherTypes = chart.getChartEntriesBySyntacticCategoryForSpan(spanEnd + 1, otherSpanEnd);
+        if (otherTypes != null) {
+          combineChartEntries(spanStart, spanEnd, entries, null, probs, entryTypes, spanEnd + 1, otherSpanEnd,
+              chart.getChartEntriesForSpan(spanEnd + 1, otherSpanEnd), null,
+              chart.getChartEntryProbsForSpan(spanEnd + 1, otherSpanEnd), otherTypes, chart, scratch);
+        }
+      }
+      for (int otherSpanStart = 0; otherSpanStart < spanStart; otherSpanStart++) {
+        IntMultimap otherTypes = chart.getChartEntriesBySyntacticCategoryForSpan(otherSpanStart, spanStart - 1);
+        if (otherTypes != null) {
+          combineChartEntries(otherSpanStart, spanStart - 1,
+              chart.getChartEntriesForSpan(otherSpanStart, spanStart - 1), null,
+              chart.getChartEntryProbsForSpan(otherSpanStart, spanStart - 1), otherTypes,
+              spanStart, spanEnd, entries, null, probs, entryTypes, chart, scratch);
+        }
+      }
+    }
+    // The agenda is empty, so the sentence has no parse.
+    return true;
+  }
+
   public static final CcgParse addSentenceToParse(CcgParse parse, CcgChart chart) {
     if (parse == null) {
       return null;
@@ -1194,10 +1783,34 @@ public class CcgParser implements Serializable {
 
   public void parseCommon(CcgChart chart, SupertaggedSentence input, ChartCost beamFilter,
       LogFunction log, long maxParseTimeMillis, int numThreads) {
+    parseCommon(chart, input, beamFilter, log, maxParseTimeMillis, numThreads, null);
+  }
+
+  /**
+   * Parses {@code input}, storing the results in {@code chart}. Parsing
+   * stops early if it takes longer than {@code maxParseTimeMillis}
+   * or if {@code cancellation} is cancelled, in which case
+   * {@link CcgChart#isFinishedParsing()} is {@code false}. The
+   * entries found before parsing stopped remain in the chart, and may
+   * be retrieved using {@link #decodeBestPartialParse}.
+   * 
+   * @param chart
+   * @param input
+   * @param beamFilter
+   * @param log
+   * @param maxParseTimeMillis
+   * @param numThreads
+   * @param cancellation May be {@code null}.
+   */
+  public void parseCommon(CcgChart chart, SupertaggedSentence input, ChartCost beamFilter,
+      LogFunction log, long maxParseTimeMillis, int numThreads, ParseCancellation cancellation) {
     if (log == null) {
       log = new NullLogFunction();
     }
-    
+    long deadlineMillis = maxParseTimeMillis >= 0 ? System.currentTimeMillis() + maxParseTimeMillis
+        : Long.MAX_VALUE;
+    chart.setParseDeadline(deadlineMillis, cancellation);
+
     log.startTimer("initialize_chart");
     initializeChart(chart, input, beamFilter);
     lexicon.initializeChartTerminals(input, chart, this);
@@ -1242,12 +1855,6 @@ public class CcgParser implements Serializable {
     chart.setVerbDistances(verbDistances);
     chart.setChartCost(chartFilter);
 
-    chart.setAssignmentVarIndexAccumulator(new int[MAX_CHART_VAR_INDEX]);
-    chart.setAssignmentAccumulator(new long[MAX_CHART_ASSIGNMENTS]);
-    chart.setFilledDepAccumulator(new long[MAX_CHART_DEPS]);
-    chart.setUnfilledDepVarIndexAccumulator(new int[MAX_CHART_VAR_INDEX]);
-    chart.setUnfilledDepAccumulator(new long[MAX_CHART_DEPS]);
-
     initializeChartDistributions(chart);
   }
 
@@ -1263,6 +1870,23 @@ public class CcgParser implements Serializable {
     // Sparsifying the dependencies actually slows the code down.
     // (Possibly a cache issue?)
     // sparsifyDependencyDistribution(chart);
+
+    chart.setDependencyScoreCache(newDependencyScoreCache(chart));
+  }
+
+  /**
+   * Creates an empty cache for the weights of the dependencies in
+   * {@code chart}'s sentence, sized according to the length of the
+   * sentence.
+   * 
+   * @param chart
+   * @return
+   */
+  private static DependencyScoreCache newDependencyScoreCache(CcgChart chart) {
+    long numWordPairs = ((long) chart.size()) * chart.size();
+    int expectedSize = (int) Math.min(Math.max(numWordPairs * DEPENDENCY_CACHE_SIZE_PER_WORD_PAIR,
+        MIN_DEPENDENCY_CACHE_SIZE), MAX_DEPENDENCY_CACHE_SIZE);
+    return new DependencyScoreCache(expectedSize);
   }
 
   public ChartEntry ccgCategoryToChartEntry(List<String> terminalWords, CcgCategory result,
@@ -1373,37 +1997,48 @@ public class CcgParser implements Serializable {
         numChartEntries);
     chart.clearChartEntriesForSpan(spanStart, spanEnd);
 
-    Tensor rootSyntaxTensor = rootSyntaxDistribution.getWeights();
-    Tensor headedRootTensor = headedRootSyntaxDistribution.getWeights();
     int[] currentPosTags = chart.getPosTagsInt();
     for (int i = 0; i < entries.length; i++) {
-      ChartEntry entry = entries[i];
-      double rootProb = rootSyntaxTensor.get(entry.getHeadedSyntax());
-      
-      double headedRootProb = 1.0;
-      int headSyntax = entry.getHeadedSyntax();
-      int headVar = entry.getHeadVariable();
-      long[] assignments = entry.getAssignments();
-      for (int j = 0; j < assignments.length; j++) {
-        long assignment = assignments[j];
-        int varNum = (int) ((assignment >> ASSIGNMENT_VAR_NUM_OFFSET) & VAR_NUM_MASK); 
-        if (varNum == headVar) {
-          long predicate = (assignment >> ASSIGNMENT_PREDICATE_OFFSET) & PREDICATE_MASK;
-          int wordIndex = (int) ((assignment >> ASSIGNMENT_WORD_IND_OFFSET) & WORD_IND_MASK);
-          int posTag = currentPosTags[wordIndex];
-
-          long headedRootKeyNum = (headSyntax * headedRootSyntaxOffset)
-              + (predicate * headedRootPredicateOffset)
-              + (posTag * headedRootPosOffset);
-          headedRootProb *= headedRootTensor.get(headedRootKeyNum);
-        }
-      }
-      chart.addChartEntryForSpan(entry, probs[i] * rootProb * headedRootProb, spanStart, spanEnd,
-          syntaxVarType);
+      chart.addChartEntryForSpan(entries[i], weightRootEntry(entries[i], probs[i], currentPosTags),
+          spanStart, spanEnd, syntaxVarType);
     }
     chart.doneAddingChartEntriesForSpan(spanStart, spanEnd);
   }
 
+  /**
+   * Gets {@code prob}, the weight of {@code entry}, times the weights
+   * of the root factors for using {@code entry} as the root of a parse.
+   * 
+   * @param entry
+   * @param prob
+   * @param posTags
+   * @return
+   */
+  private double weightRootEntry(ChartEntry entry, double prob, int[] posTags) {
+    double rootProb = rootSyntaxDistribution.getWeights().get(entry.getHeadedSyntax());
+
+    Tensor headedRootTensor = headedRootSyntaxDistribution.getWeights();
+    double headedRootProb = 1.0;
+    int headSyntax = entry.getHeadedSyntax();
+    int headVar = entry.getHeadVariable();
+    long[] assignments = entry.getAssignments();
+    for (int j = 0; j < assignments.length; j++) {
+      long assignment = assignments[j];
+      int varNum = (int) ((assignment >> ASSIGNMENT_VAR_NUM_OFFSET) & VAR_NUM_MASK); 
+      if (varNum == headVar) {
+        long predicate = (assignment >> ASSIGNMENT_PREDICATE_OFFSET) & PREDICATE_MASK;
+        int wordIndex = (int) ((assignment >> ASSIGNMENT_WORD_IND_OFFSET) & WORD_IND_MASK);
+        int posTag = posTags[wordIndex];
+
+        long headedRootKeyNum = (headSyntax * headedRootSyntaxOffset)
+            + (predicate * headedRootPredicateOffset)
+            + (posTag * headedRootPosOffset);
+        headedRootProb *= headedRootTensor.get(headedRootKeyNum);
+      }
+    }
+    return prob * rootProb * headedRootProb;
+  }
+
   /**
    * Performs a beam search over possible CCG parses given a
    * {@code chart} initialized with entries for all terminals.
@@ -1419,7 +2054,10 @@ public class CcgParser implements Serializable {
       for (int spanStart = 0; spanStart + spanSize < chartSize; spanStart++) {
         int spanEnd = spanStart + spanSize;
         calculateInsideBeam(spanStart, spanEnd, chart, log);
-        
+
+        if (chart.isParseCancelled()) {
+          return false;
+        }
         if (maxParseTimeMillis >= 0) {
           currentTime = System.currentTimeMillis();
           if (currentTime > endTime) {
@@ -1437,45 +2075,28 @@ public class CcgParser implements Serializable {
     return true;
   }
 
+  /**
+   * Performs a beam search over possible CCG parses given a
+   * {@code chart} initialized with entries for all terminals, using
+   * {@code numThreads} threads. Each span is processed as soon as its
+   * subspans are complete, so threads do not wait for every span of a
+   * given length to finish before starting longer spans. The threads
+   * are drawn from a pool which is shared by all calls with the same
+   * {@code numThreads}.
+   * 
+   * @param chart
+   * @param log
+   * @param maxParseTimeMillis
+   * @param numThreads
+   * @return
+   */
   public boolean calculateInsideBeamParallel(CcgChart chart, LogFunction log, long maxParseTimeMillis,
       int numThreads) {
-    int chartSize = chart.size();
-    long currentTime = 0;
-    long endTime = System.currentTimeMillis() + maxParseTimeMillis;
-    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
-    try {
-      List<Future<Void>> results = Lists.newArrayListWithCapacity(chartSize);
-      for (int spanSize = 1; spanSize < chartSize; spanSize++) {
-        results.clear();
-        for (int spanStart = 0; spanStart + spanSize < chartSize; spanStart++) {
-          int spanEnd = spanStart + spanSize;
-          results.add(executor.submit(new CalculateInsideBeamCallable(this, chart, spanStart, spanEnd, log)));
-        }
-
-        // Wait for the current set of spans to finish.
-        for (Future<Void> result : results) {
-          result.get();
-        }
-
-        if (maxParseTimeMillis >= 0) {
-          currentTime = System.currentTimeMillis();
-          if (currentTime > endTime) {
-            return false;
-          }
-        }
-      }
-    } catch (InterruptedException e) {
-      e.printStackTrace();
-      e.getCause().printStackTrace();
-      throw new RuntimeException(e);
-    } catch (ExecutionException e) {
-      e.printStackTrace();
-      e.getCause().printStackTrace();
-      throw new RuntimeException(e);
-    } finally {
-      executor.shutdown();
-    }
-    return true;
+    long endTime = maxParseTimeMillis >= 0 ? System.currentTimeMillis() + maxParseTimeMillis
+        : Long.MAX_VALUE;
+    InsideBeamSchedule schedule = new InsideBeamSchedule(this, chart, log, endTime);
+    ForkJoinPools.getPool(numThreads).invoke(schedule);
+    return !schedule.isTimedOut();
   }
 
   public void sparsifyDependencyDistribution(CcgChart chart) {
@@ -1519,29 +2140,74 @@ public class CcgParser implements Serializable {
     Tensor smallPuncDistanceTensor = puncDistanceTensor.retainKeys(keyIndicator);
     Tensor smallVerbDistanceTensor = verbDistanceTensor.retainKeys(keyIndicator);
 
-    chart.setDependencyTensor(smallDependencyTensor);
-    chart.setWordDistanceTensor(smallWordDistanceTensor);
-    chart.setPuncDistanceTensor(smallPuncDistanceTensor);
-    chart.setVerbDistanceTensor(smallVerbDistanceTensor);
+    chart.setDependencyTensor(indexTensor(smallDependencyTensor));
+    chart.setWordDistanceTensor(indexTensor(smallWordDistanceTensor));
+    chart.setPuncDistanceTensor(indexTensor(smallPuncDistanceTensor));
+    chart.setVerbDistanceTensor(indexTensor(smallVerbDistanceTensor));
+    chart.setDependencyScoreCache(newDependencyScoreCache(chart));
   }
 
   private void calculateInsideBeam(int spanStart, int spanEnd, CcgChart chart, LogFunction log) {
-    /*
-    int[] assignmentVarIndexAccumulator = chart.getAssignmentVarIndexAccumulator();
-    long[] assignmentAccumulator = chart.getAssignmentAccumulator();
-    long[] filledDepAccumulator = chart.getFilledDepAccumulator();
-    int[] unfilledDepVarIndexAccumulator = chart.getUnfilledDepVarIndexAccumulator();
-    long[] unfilledDepAccumulator = chart.getUnfilledDepAccumulator();
-    */
-    
-    int[] assignmentVarIndexAccumulator = new int[MAX_CHART_VAR_INDEX];
-    long[] assignmentAccumulator = new long[MAX_CHART_ASSIGNMENTS];
-    long[] filledDepAccumulator = new long[MAX_CHART_DEPS];
-    int[] unfilledDepVarIndexAccumulator = new int[MAX_CHART_VAR_INDEX];
-    long[] unfilledDepAccumulator = new long[MAX_CHART_DEPS];
+    // Scratch space is owned by the current thread rather than the
+    // chart, so spans of the same chart may be processed concurrently.
+    InsideScratch scratch = INSIDE_SCRATCH.get();
+    scratch.clearDependencyCache();
 
-    SparseTensor syntaxDistributionTensor = (SparseTensor) chart.getSyntaxDistribution().getWeights();
-    Tensor binaryRuleTensor = binaryRuleDistribution.getWeights();
+    splitloop: for (int i = 0; i < spanEnd - spanStart; i++) {
+      // Index j only gets used if we allow the skipping of terminals.
+      int maxInd = allowWordSkipping ? 1 + spanEnd - spanStart : i + 2;
+      for (int j = i + 1; j < maxInd; j++) {
+        // Packed spans are read directly, without creating ChartEntrys.
+        PackedChartEntries leftPacked = chart.getPackedChartEntriesForSpan(spanStart, spanStart + i);
+        ChartEntry[] leftTrees = leftPacked == null ? chart.getChartEntriesForSpan(spanStart, spanStart + i) : null;
+        double[] leftProbs = chart.getChartEntryProbsForSpan(spanStart, spanStart + i);
+        IntMultimap leftTypes = chart.getChartEntriesBySyntacticCategoryForSpan(spanStart, spanStart + i);
+
+        PackedChartEntries rightPacked = chart.getPackedChartEntriesForSpan(spanStart + j, spanEnd);
+        ChartEntry[] rightTrees = rightPacked == null ? chart.getChartEntriesForSpan(spanStart + j, spanEnd) : null;
+        double[] rightProbs = chart.getChartEntryProbsForSpan(spanStart + j, spanEnd);
+        IntMultimap rightTypes = chart.getChartEntriesBySyntacticCategoryForSpan(spanStart + j, spanEnd);
+        
+        if (leftTypes == null || rightTypes == null) {
+          // At least one of the partial spans has no possible parses. This may
+          // happen if some single-word spans have no lexicon entries.
+          continue;
+        }
+
+        if (chart.isParseCancelled()) {
+          // The entries found so far are retained, as they may be
+          // part of a partial analysis of the sentence.
+          break splitloop;
+        }
+
+        combineChartEntries(spanStart, spanStart + i, leftTrees, leftPacked, leftProbs, leftTypes,
+            spanStart + j, spanEnd, rightTrees, rightPacked, rightProbs, rightTypes, chart, scratch);
+      }
+    }
+
+    chart.doneAddingChartEntriesForSpan(spanStart, spanEnd);
+  }
+
+  /**
+   * Combines the chart entries spanning {@code leftSpanStart}-
+   * {@code leftSpanEnd} with those spanning {@code rightSpanStart}-
+   * {@code rightSpanEnd} using every applicable binary rule, and adds
+   * the results to {@code chart} as entries spanning
+   * {@code leftSpanStart}-{@code rightSpanEnd}. Only the entries
+   * indexed by {@code leftTypes} and {@code rightTypes} are
+   * combined. The entries of each span are read from
+   * {@code leftPacked} ({@code rightPacked}) if it is non-null, and
+   * from {@code leftTrees} ({@code rightTrees}) otherwise.
+   */
+  private void combineChartEntries(int leftSpanStart, int leftSpanEnd, ChartEntry[] leftTrees,
+      PackedChartEntries leftPacked, double[] leftProbs, IntMultimap leftTypes, int rightSpanStart,
+      int rightSpanEnd, ChartEntry[] rightTrees, PackedChartEntries rightPacked, double[] rightProbs,
+      IntMultimap rightTypes, CcgChart chart, InsideScratch scratch) {
+    int[] assignmentVarIndexAccumulator = scratch.assignmentVarIndexAccumulator;
+    long[] assignmentAccumulator = scratch.assignmentAccumulator;
+    long[] filledDepAccumulator = scratch.filledDepAccumulator;
+    int[] unfilledDepVarIndexAccumulator = scratch.unfilledDepVarIndexAccumulator;
+    long[] unfilledDepAccumulator = scratch.unfilledDepAccumulator;
 
     Tensor currentDependencyTensor = chart.getDependencyTensor();
     Tensor currentWordTensor = chart.getWordDistanceTensor();
@@ -1554,359 +2220,407 @@ public class CcgParser implements Serializable {
     int[] verbDistances = chart.getVerbDistances();
     int numTerminals = chart.size();
 
-    long[] syntaxKeyNums = syntaxDistributionTensor.getKeyNums();
-    long[] dimensionOffsets = syntaxDistributionTensor.getDimensionOffsets();
-    int tensorSize = syntaxDistributionTensor.size();
+    CcgSearchMoveTable moveTable = searchMoveTable;
 
-    long depCache = -1;
-    double depProbCache = 0.0;
+    DependencyScoreCache depScoreCache = chart.getDependencyScoreCache();
+    long depCache = scratch.depCache;
+    double depProbCache = scratch.depProbCache;
 
-    for (int i = 0; i < spanEnd - spanStart; i++) {
-      // Index j only gets used if we allow the skipping of terminals.
-      int maxInd = allowWordSkipping ? 1 + spanEnd - spanStart : i + 2;
-      for (int j = i + 1; j < maxInd; j++) {
-        ChartEntry[] leftTrees = chart.getChartEntriesForSpan(spanStart, spanStart + i);
-        double[] leftProbs = chart.getChartEntryProbsForSpan(spanStart, spanStart + i);
-        IntMultimap leftTypes = chart.getChartEntriesBySyntacticCategoryForSpan(spanStart, spanStart + i);
+    // A single span may require many combinations, so parsing may
+    // be cancelled while they are being processed.
+    int cancellationCheckCountdown = CANCELLATION_CHECK_INTERVAL;
 
-        ChartEntry[] rightTrees = chart.getChartEntriesForSpan(spanStart + j, spanEnd);
-        double[] rightProbs = chart.getChartEntryProbsForSpan(spanStart + j, spanEnd);
-        IntMultimap rightTypes = chart.getChartEntriesBySyntacticCategoryForSpan(spanStart + j, spanEnd);
-        
-        if (leftTypes == null || rightTypes == null) {
-          // At least one of the partial spans has no possible parses. This may
-          // happen if some single-word spans have no lexicon entries.
+    // log.startTimer("ccg_parse/beam_loop");
+    typeloop: for (int leftType : leftTypes.keySetArray()) {
+      if (!moveTable.hasMovesForLeftSyntax(leftType)) {
+        continue;
+      }
+      int[] leftIndexes = leftTypes.getArray(leftType);
+
+      for (int rightType : rightTypes.keySetArray()) {
+        int pairIndex = moveTable.getPairIndex(leftType, rightType);
+        if (pairIndex == -1) {
           continue;
         }
+        int[] rightIndexes = rightTypes.getArray(rightType);
+
+        int moveEnd = moveTable.getMoveEnd(pairIndex);
+        for (int moveIndex = moveTable.getMoveStart(pairIndex); moveIndex < moveEnd; moveIndex++) {
+          // Get the operation we're supposed to apply at this chart entry.
+          CcgSearchMove searchMove = moveTable.getMove(moveIndex);
+          Combinator resultCombinator = searchMove.getBinaryCombinator();
+
+          // Apply the binary rule.
+          double ruleProb = moveTable.getBinaryRuleWeight(moveIndex);
+          double leftUnaryProb = moveTable.getLeftUnaryRuleWeight(moveIndex);
+          double rightUnaryProb = moveTable.getRightUnaryRuleWeight(moveIndex);
+          int resultSyntax = resultCombinator.getSyntax();
+          int[] resultSyntaxUniqueVars = resultCombinator.getSyntaxUniqueVars();
+          int resultSyntaxHead = resultCombinator.getSyntaxHeadVar();
+
+          for (int leftIndex : leftIndexes) {
+            // The arrays of packed entries are stored at an offset
+            // within arrays shared by the entire span.
+            int[] leftAssignmentVarIndex, leftUnfilledDepsVarIndex;
+            long[] leftAssignment, leftUnfilledDeps;
+            int leftAssignmentVarIndexStart, leftAssignmentStart;
+            int leftUnfilledDepsVarIndexStart, leftUnfilledDepsStart;
+            Combinator.Type leftCombinator;
+            boolean leftIsProducedByConjunction;
+            if (leftPacked != null) {
+              leftAssignmentVarIndex = leftPacked.getInts();
+              leftUnfilledDepsVarIndex = leftAssignmentVarIndex;
+              leftAssignment = leftPacked.getLongs();
+              leftUnfilledDeps = leftAssignment;
+              leftAssignmentVarIndexStart = leftPacked.getAssignmentVarIndexStart(leftIndex);
+              leftAssignmentStart = leftPacked.getAssignmentStart(leftIndex);
+              leftUnfilledDepsVarIndexStart = leftPacked.getUnfilledDependencyVarIndexStart(leftIndex);
+              leftUnfilledDepsStart = leftPacked.getUnfilledDependencyStart(leftIndex);
+              leftCombinator = leftPacked.getDerivingCombinatorType(leftIndex);
+              leftIsProducedByConjunction = leftPacked.isProducedByConjunction(leftIndex);
+            } else {
+              ChartEntry leftRoot = leftTrees[leftIndex];
+              leftAssignmentVarIndex = leftRoot.getAssignmentVarIndex();
+              leftUnfilledDepsVarIndex = leftRoot.getUnfilledDependencyVarIndex();
+              leftAssignment = leftRoot.getAssignments();
+              leftUnfilledDeps = leftRoot.getUnfilledDependencies();
+              leftAssignmentVarIndexStart = 0;
+              leftAssignmentStart = 0;
+              leftUnfilledDepsVarIndexStart = 0;
+              leftUnfilledDepsStart = 0;
+              leftCombinator = leftRoot.getDerivingCombinatorType();
+              leftIsProducedByConjunction = leftRoot.isProducedByConjunction();
+            }
+            double leftProb = leftProbs[leftIndex] * leftUnaryProb;
 
-        // log.startTimer("ccg_parse/beam_loop");
-        for (int leftType : leftTypes.keySetArray()) {
-          long keyNumPrefix = leftType * dimensionOffsets[0]; // syntaxDistributionTensor.dimKeyPrefixToKeyNum(key);
-          int index = syntaxDistributionTensor.getNearestIndex(keyNumPrefix);
-          if (index == -1 || index >= tensorSize) {
-            continue;
-          }
-          long maxKeyNum = keyNumPrefix + dimensionOffsets[0];
-          long curKeyNum = syntaxKeyNums[index];
-
-          while (curKeyNum < maxKeyNum && index < tensorSize) {
-            int rightType = (int) (((curKeyNum - keyNumPrefix) / dimensionOffsets[1]) % dimensionOffsets[0]);
-            if (rightTypes.containsKey(rightType)) {
-              // Get the operation we're supposed to apply at this chart entry.
-              CcgSearchMove searchMove = (CcgSearchMove) searchMoveType.getValue(
-                  (int) ((curKeyNum - keyNumPrefix) % dimensionOffsets[1]));
-              Combinator resultCombinator = searchMove.getBinaryCombinator();
-
-              // Apply the binary rule.
-              double ruleProb = binaryRuleTensor.get(searchMove.getBinaryCombinatorKeyNum());
-              int resultSyntax = resultCombinator.getSyntax();
-              int[] resultSyntaxUniqueVars = resultCombinator.getSyntaxUniqueVars();
-              int resultSyntaxHead = resultCombinator.getSyntaxHeadVar();
-
-              for (int leftIndex : leftTypes.getArray(leftType)) {
-                ChartEntry leftRoot = leftTrees[leftIndex];
-                double leftProb = leftProbs[leftIndex];
-
-                long leftUnaryKeyNum = searchMove.getLeftUnaryKeyNum();
-                if (leftUnaryKeyNum != -1) {
-                  leftProb *= unaryRuleTensor.get(leftUnaryKeyNum);
+            deploop: for (int rightIndex : rightIndexes) {
+              if (--cancellationCheckCountdown == 0) {
+                cancellationCheckCountdown = CANCELLATION_CHECK_INTERVAL;
+                if (chart.isParseCancelled()) {
+                  break typeloop;
                 }
+              }
 
-                deploop: for (int rightIndex : rightTypes.getArray(rightType)) {
-                  ChartEntry rightRoot = rightTrees[rightIndex];
-                  double rightProb = rightProbs[rightIndex];
-
-                  // Determine if these chart entries can be combined under the
-                  // normal form constraints. Normal form constraints state that 
-                  // the result of a forward (backward) composition cannot be the
-                  // left (right) element of a forward (backward) combinator.
-                  boolean isProducedByConjunction = false;
-                  if (normalFormOnly) {
-                    Combinator.Type leftCombinator = leftRoot.getDerivingCombinatorType();
-                    Combinator.Type resultCombinatorType = resultCombinator.getType();
-                    if (leftCombinator == Combinator.Type.FORWARD_COMPOSITION
-                        && searchMove.getLeftUnaryKeyNum() == -1
-                        && (resultCombinatorType == Combinator.Type.FORWARD_APPLICATION
-                        || resultCombinatorType == Combinator.Type.FORWARD_COMPOSITION)) {
-                      continue;
-                    }
-
-                    Combinator.Type rightCombinator = rightRoot.getDerivingCombinatorType();
-                    if (rightCombinator == Combinator.Type.BACKWARD_COMPOSITION
-                        && searchMove.getRightUnaryKeyNum() == -1
-                        && (resultCombinator.getType() == Combinator.Type.BACKWARD_APPLICATION
-                        || resultCombinator.getType() == Combinator.Type.BACKWARD_COMPOSITION)) {
-                      continue;
-                    }
-
-                    // Restrict the syntactic parses of conjunctions to permit only
-                    // right branching analyses.
-                    if (rightCombinator == Combinator.Type.CONJUNCTION
-                        && resultCombinatorType == Combinator.Type.BACKWARD_APPLICATION) {
-                      if (leftRoot.isProducedByConjunction()) {
-                        continue;
-                      } else {
-                        isProducedByConjunction = true;
-                      }
-                    }
-                  }
+              int[] rightAssignmentVarIndex, rightUnfilledDepsVarIndex;
+              long[] rightAssignment, rightUnfilledDeps;
+              int rightAssignmentVarIndexStart, rightAssignmentStart;
+              int rightUnfilledDepsVarIndexStart, rightUnfilledDepsStart;
+              Combinator.Type rightCombinator;
+              if (rightPacked != null) {
+                rightAssignmentVarIndex = rightPacked.getInts();
+                rightUnfilledDepsVarIndex = rightAssignmentVarIndex;
+                rightAssignment = rightPacked.getLongs();
+                rightUnfilledDeps = rightAssignment;
+                rightAssignmentVarIndexStart = rightPacked.getAssignmentVarIndexStart(rightIndex);
+                rightAssignmentStart = rightPacked.getAssignmentStart(rightIndex);
+                rightUnfilledDepsVarIndexStart = rightPacked.getUnfilledDependencyVarIndexStart(rightIndex);
+                rightUnfilledDepsStart = rightPacked.getUnfilledDependencyStart(rightIndex);
+                rightCombinator = rightPacked.getDerivingCombinatorType(rightIndex);
+              } else {
+                ChartEntry rightRoot = rightTrees[rightIndex];
+                rightAssignmentVarIndex = rightRoot.getAssignmentVarIndex();
+                rightUnfilledDepsVarIndex = rightRoot.getUnfilledDependencyVarIndex();
+                rightAssignment = rightRoot.getAssignments();
+                rightUnfilledDeps = rightRoot.getUnfilledDependencies();
+                rightAssignmentVarIndexStart = 0;
+                rightAssignmentStart = 0;
+                rightUnfilledDepsVarIndexStart = 0;
+                rightUnfilledDepsStart = 0;
+                rightCombinator = rightRoot.getDerivingCombinatorType();
+              }
+              double rightProb = rightProbs[rightIndex] * rightUnaryProb;
+
+              // Determine if these chart entries can be combined under the
+              // normal form constraints. Normal form constraints state that 
+              // the result of a forward (backward) composition cannot be the
+              // left (right) element of a forward (backward) combinator.
+              boolean isProducedByConjunction = false;
+              if (normalFormOnly) {
+                Combinator.Type resultCombinatorType = resultCombinator.getType();
+                if (leftCombinator == Combinator.Type.FORWARD_COMPOSITION
+                    && searchMove.getLeftUnaryKeyNum() == -1
+                    && (resultCombinatorType == Combinator.Type.FORWARD_APPLICATION
+                    || resultCombinatorType == Combinator.Type.FORWARD_COMPOSITION)) {
+                  continue;
+                }
 
-                  long rightUnaryKeyNum = searchMove.getRightUnaryKeyNum();
-                  if (rightUnaryKeyNum != -1) {
-                    rightProb *= unaryRuleTensor.get(searchMove.getRightUnaryKeyNum());
-                  }
+                if (rightCombinator == Combinator.Type.BACKWARD_COMPOSITION
+                    && searchMove.getRightUnaryKeyNum() == -1
+                    && (resultCombinator.getType() == Combinator.Type.BACKWARD_APPLICATION
+                    || resultCombinator.getType() == Combinator.Type.BACKWARD_COMPOSITION)) {
+                  continue;
+                }
 
-                  // log.startTimer("ccg_parse/beam_loop/fill_dependencies");
-                  // Fill dependencies based on the current assignment.
-                  // (Filling dependencies takes a trivial amount of time.) 
-                  int numFilledDeps = 0;
-                  numFilledDeps = fillDependencies(leftRoot.getAssignmentVarIndex(), leftRoot.getAssignments(),
-                      rightRoot.getUnfilledDependencyVarIndex(), rightRoot.getUnfilledDependencies(), 
-                      searchMove.getRightDepRelabeling(), filledDepAccumulator, numFilledDeps);
-                  numFilledDeps = fillDependencies(rightRoot.getAssignmentVarIndex(), rightRoot.getAssignments(),
-                      leftRoot.getUnfilledDependencyVarIndex(), leftRoot.getUnfilledDependencies(), 
-                      searchMove.getLeftDepRelabeling(), filledDepAccumulator, numFilledDeps);
-
-                  // Fill dependencies created by the binary rule.
-                  long[] combinatorUnfilledDeps = null;
-                  int[] combinatorUnfilledDepsVarIndex = null;
-                  if (resultCombinator.hasUnfilledDependencies()) {
-                    List<UnfilledDependency> unfilledDeps = resultCombinator.getUnfilledDependencies(spanEnd);
-                    long[] unfilledDepsOrig = unfilledDependencyArrayToLongArray(unfilledDeps);
-
-                    int maxVarNum = Ints.max(Ints.max(resultCombinator.getLeftVariableRelabeling()),
-                        Ints.max(resultCombinator.getRightVariableRelabeling()));
-                    combinatorUnfilledDeps = new long[unfilledDepsOrig.length];
-                    combinatorUnfilledDepsVarIndex = new int[maxVarNum + 2];
-                    orderUnfilledDependencies(unfilledDepsOrig, combinatorUnfilledDeps, combinatorUnfilledDepsVarIndex);
-
-                    numFilledDeps = fillDependencies(leftRoot.getAssignmentVarIndex(), leftRoot.getAssignments(),
-                        combinatorUnfilledDepsVarIndex, combinatorUnfilledDeps, searchMove.getLeftInverseRelabeling(),
-                        filledDepAccumulator, numFilledDeps);
-                    numFilledDeps = fillDependencies(rightRoot.getAssignmentVarIndex(), rightRoot.getAssignments(),
-                        combinatorUnfilledDepsVarIndex, combinatorUnfilledDeps, searchMove.getRightInverseRelabeling(),
-                        filledDepAccumulator, numFilledDeps);
+                // Restrict the syntactic parses of conjunctions to permit only
+                // right branching analyses.
+                if (rightCombinator == Combinator.Type.CONJUNCTION
+                    && resultCombinatorType == Combinator.Type.BACKWARD_APPLICATION) {
+                  if (leftIsProducedByConjunction) {
+                    continue;
+                  } else {
+                    isProducedByConjunction = true;
                   }
-                  // log.stopTimer("ccg_parse/beam_loop/fill_dependencies");
+                }
+              }
 
-                  if (numFilledDeps == -1) { 
-                    continue deploop; 
-                  }
+              // log.startTimer("ccg_parse/beam_loop/fill_dependencies");
+              // Fill dependencies based on the current assignment.
+              // (Filling dependencies takes a trivial amount of time.) 
+              int numFilledDeps = 0;
+              numFilledDeps = fillDependencies(leftAssignmentVarIndex, leftAssignmentVarIndexStart,
+                  leftAssignment, leftAssignmentStart, rightUnfilledDepsVarIndex,
+                  rightUnfilledDepsVarIndexStart, rightUnfilledDeps, rightUnfilledDepsStart,
+                  searchMove.getRightDepRelabeling(), filledDepAccumulator, numFilledDeps);
+              numFilledDeps = fillDependencies(rightAssignmentVarIndex, rightAssignmentVarIndexStart,
+                  rightAssignment, rightAssignmentStart, leftUnfilledDepsVarIndex,
+                  leftUnfilledDepsVarIndexStart, leftUnfilledDeps, leftUnfilledDepsStart,
+                  searchMove.getLeftDepRelabeling(), filledDepAccumulator, numFilledDeps);
+
+              // Fill dependencies created by the binary rule.
+              long[] combinatorUnfilledDeps = null;
+              int[] combinatorUnfilledDepsVarIndex = null;
+              if (resultCombinator.hasUnfilledDependencies()) {
+                List<UnfilledDependency> unfilledDeps = resultCombinator.getUnfilledDependencies(rightSpanEnd);
+                long[] unfilledDepsOrig = unfilledDependencyArrayToLongArray(unfilledDeps);
+
+                int maxVarNum = Ints.max(Ints.max(resultCombinator.getLeftVariableRelabeling()),
+                    Ints.max(resultCombinator.getRightVariableRelabeling()));
+                combinatorUnfilledDeps = new long[unfilledDepsOrig.length];
+                combinatorUnfilledDepsVarIndex = new int[maxVarNum + 2];
+                orderUnfilledDependencies(unfilledDepsOrig, combinatorUnfilledDeps, combinatorUnfilledDepsVarIndex);
+
+                numFilledDeps = fillDependencies(leftAssignmentVarIndex, leftAssignmentVarIndexStart,
+                    leftAssignment, leftAssignmentStart, combinatorUnfilledDepsVarIndex, 0,
+                    combinatorUnfilledDeps, 0, searchMove.getLeftInverseRelabeling(),
+                    filledDepAccumulator, numFilledDeps);
+                numFilledDeps = fillDependencies(rightAssignmentVarIndex, rightAssignmentVarIndexStart,
+                    rightAssignment, rightAssignmentStart, combinatorUnfilledDepsVarIndex, 0,
+                    combinatorUnfilledDeps, 0, searchMove.getRightInverseRelabeling(),
+                    filledDepAccumulator, numFilledDeps);
+              }
+              // log.stopTimer("ccg_parse/beam_loop/fill_dependencies");
 
-                  // log.startTimer("ccg_parse/beam_loop/relabel_assignment");
-                  // Determine the variable assignments for the result syntactic
-                  // category.
-                  int[] leftInverseRelabeling = searchMove.getLeftToReturnInverseRelabeling();
-                  int[] rightInverseRelabeling = searchMove.getRightToReturnInverseRelabeling();
-                  int numResultVars = leftInverseRelabeling.length;
-
-                  int[] leftAssignmentVarIndex = leftRoot.getAssignmentVarIndex();
-                  long[] leftAssignment = leftRoot.getAssignments();
-                  int[] rightAssignmentVarIndex = rightRoot.getAssignmentVarIndex();
-                  long[] rightAssignment = rightRoot.getAssignments();
-
-                  int numAssignments = 0;
-                  for (int k = 0; k < numResultVars; k++) {
-                    assignmentVarIndexAccumulator[k] = numAssignments;
-                    int leftVarNum = leftInverseRelabeling[k];
-                    if (leftVarNum != -1) {
-                      int startIndex = leftAssignmentVarIndex[leftVarNum];
-                      int endIndex = leftAssignmentVarIndex[leftVarNum + 1];
-                      for (int l = startIndex; l < endIndex; l++) {
-                        if (numAssignments >= assignmentAccumulator.length) {
-                          continue deploop;
-                        }
-                        assignmentAccumulator[numAssignments] = replaceAssignmentVarNum(leftAssignment[l],
-                            leftVarNum, k);
-                        numAssignments++;
-                      }
-                    }
+              if (numFilledDeps == -1) { 
+                continue deploop; 
+              }
 
-                    int rightVarNum = rightInverseRelabeling[k];
-                    if (rightVarNum != -1) {
-                      int startIndex = rightAssignmentVarIndex[rightVarNum];
-                      int endIndex = rightAssignmentVarIndex[rightVarNum + 1];
-                      for (int l = startIndex; l < endIndex; l++) {
-                        if (numAssignments >= assignmentAccumulator.length) {
-                          continue deploop;
-                        }
-                        assignmentAccumulator[numAssignments] = replaceAssignmentVarNum(rightAssignment[l],
-                            rightVarNum, k);
-                        numAssignments++;
-                      }
-                    }
-                  }
-                  assignmentVarIndexAccumulator[leftInverseRelabeling.length] = numAssignments;
-                  // log.startTimer("ccg_parse/beam_loop/relabel_assignment");
-
-                  // Determine which unfilled dependencies should be propagated to
-                  // the result.
-                  // log.startTimer("ccg_parse/beam_loop/propagate_dependencies");
-                  int[] leftUnfilledDepsVarIndex = leftRoot.getUnfilledDependencyVarIndex();
-                  long[] leftUnfilledDeps = leftRoot.getUnfilledDependencies();
-                  int[] rightUnfilledDepsVarIndex = rightRoot.getUnfilledDependencyVarIndex();
-                  long[] rightUnfilledDeps = rightRoot.getUnfilledDependencies();
-                  int[] leftToReturnInverseRelabeling = searchMove.getLeftToReturnInverseRelabeling();
-                  int[] rightToReturnInverseRelabeling = searchMove.getRightToReturnInverseRelabeling();
-                  int[] combinatorToReturnInverseRelabeling = null;
-                  if (combinatorUnfilledDeps != null) {
-                    combinatorToReturnInverseRelabeling = searchMove.getBinaryCombinator().getResultInverseRelabeling();
-                  }
-                  int numVars = searchMove.getLeftToReturnInverseRelabeling().length;
-                  int numUnfilledDeps = 0;
-                  for (int k = 0; k < numVars; k++) {
-                    unfilledDepVarIndexAccumulator[k] = numUnfilledDeps;
-                    if (assignmentVarIndexAccumulator[k] != assignmentVarIndexAccumulator[k + 1]) {
-                      // This variable has an assignment in the result, meaning any
-                      // dependencies on this variable have already been filled.
-                      continue;
-                    }
-                    
-                    // Unfilled dependencies are copied (with possible variable 
-                    // relabeling) from the left and right chart entries, and
-                    // also the combinator (if it creates new dependencies). 
-                    numUnfilledDeps = propagateUnfilledDependencies(leftUnfilledDeps, leftUnfilledDepsVarIndex, 
-                        leftToReturnInverseRelabeling, k, unfilledDepAccumulator, numUnfilledDeps);
-                    if (numUnfilledDeps >= unfilledDepAccumulator.length) {
-                      continue deploop;
-                    }
-                    numUnfilledDeps = propagateUnfilledDependencies(rightUnfilledDeps, rightUnfilledDepsVarIndex, 
-                        rightToReturnInverseRelabeling, k, unfilledDepAccumulator, numUnfilledDeps);
-                    if (numUnfilledDeps >= unfilledDepAccumulator.length) {
+              // log.startTimer("ccg_parse/beam_loop/relabel_assignment");
+              // Determine the variable assignments for the result syntactic
+              // category.
+              int[] leftInverseRelabeling = searchMove.getLeftToReturnInverseRelabeling();
+              int[] rightInverseRelabeling = searchMove.getRightToReturnInverseRelabeling();
+              int numResultVars = leftInverseRelabeling.length;
+
+              int numAssignments = 0;
+              for (int k = 0; k < numResultVars; k++) {
+                assignmentVarIndexAccumulator[k] = numAssignments;
+                int leftVarNum = leftInverseRelabeling[k];
+                if (leftVarNum != -1) {
+                  int startIndex = leftAssignmentStart
+                      + leftAssignmentVarIndex[leftAssignmentVarIndexStart + leftVarNum];
+                  int endIndex = leftAssignmentStart
+                      + leftAssignmentVarIndex[leftAssignmentVarIndexStart + leftVarNum + 1];
+                  for (int l = startIndex; l < endIndex; l++) {
+                    if (numAssignments >= assignmentAccumulator.length) {
                       continue deploop;
                     }
+                    assignmentAccumulator[numAssignments] = replaceAssignmentVarNum(leftAssignment[l],
+                        leftVarNum, k);
+                    numAssignments++;
+                  }
+                }
 
-                    if (combinatorUnfilledDeps != null) {
-                      numUnfilledDeps = propagateUnfilledDependencies(combinatorUnfilledDeps, combinatorUnfilledDepsVarIndex, 
-                          combinatorToReturnInverseRelabeling, k, unfilledDepAccumulator, numUnfilledDeps);
-                      if (numUnfilledDeps >= unfilledDepAccumulator.length) {
-                        continue deploop;
-                      }
+                int rightVarNum = rightInverseRelabeling[k];
+                if (rightVarNum != -1) {
+                  int startIndex = rightAssignmentStart
+                      + rightAssignmentVarIndex[rightAssignmentVarIndexStart + rightVarNum];
+                  int endIndex = rightAssignmentStart
+                      + rightAssignmentVarIndex[rightAssignmentVarIndexStart + rightVarNum + 1];
+                  for (int l = startIndex; l < endIndex; l++) {
+                    if (numAssignments >= assignmentAccumulator.length) {
+                      continue deploop;
                     }
+                    assignmentAccumulator[numAssignments] = replaceAssignmentVarNum(rightAssignment[l],
+                        rightVarNum, k);
+                    numAssignments++;
                   }
-                  unfilledDepVarIndexAccumulator[numVars] = numUnfilledDeps;
-                  // log.stopTimer("ccg_parse/beam_loop/propagate_dependencies");
-
-                  // log.startTimer("ccg_parse/beam_loop/copy_stuff");
-                  long[] filledDepArray = Arrays.copyOf(filledDepAccumulator, numFilledDeps);
-                  int[] unfilledDepVarIndex = Arrays.copyOf(unfilledDepVarIndexAccumulator, numVars + 1);
-                  long[] unfilledDepArray = Arrays.copyOf(unfilledDepAccumulator, numUnfilledDeps);
-
-                  int[] newAssignmentVarIndex = Arrays.copyOfRange(assignmentVarIndexAccumulator, 0,
-                      searchMove.getLeftToReturnInverseRelabeling().length + 1);
-                  long[] newAssignments = Arrays.copyOfRange(assignmentAccumulator, 0, numAssignments);
-
-                  ChartEntry result = new ChartEntry(resultSyntax, resultSyntaxUniqueVars, resultSyntaxHead,
-                      null, searchMove.getLeftUnary(), searchMove.getRightUnary(), newAssignmentVarIndex, newAssignments,
-                      unfilledDepVarIndex, unfilledDepArray, filledDepArray, spanStart, spanStart + i,
-                      leftIndex, spanStart + j, spanEnd, rightIndex, resultCombinator, isProducedByConjunction);
-                  // log.stopTimer("ccg_parse/beam_loop/copy_stuff");
-
-                  // Get the weights of applying this syntactic combination rule 
-                  // given the word and POS tag of the result's head.
-                  // log.startTimer("ccg_parse/beam_loop/headed_rule_weights");
-                  double headedRuleProb = 1.0;
-                  long binaryCombinatorKeyNumWithOffset = searchMove.getBinaryCombinatorKeyNum()
-                      * headedBinaryRuleCombinatorOffset;
-                  int syntaxStartIndex = newAssignmentVarIndex[resultSyntaxHead];
-                  int syntaxEndIndex = newAssignmentVarIndex[resultSyntaxHead + 1];
-                  for (int assignmentIndex = syntaxStartIndex; assignmentIndex < syntaxEndIndex; assignmentIndex++) {
-                    long assignment = newAssignments[assignmentIndex];
-                    long predicate = (assignment >> ASSIGNMENT_PREDICATE_OFFSET) & PREDICATE_MASK;
-                    int wordIndex = (int) ((assignment >> ASSIGNMENT_WORD_IND_OFFSET) & WORD_IND_MASK);
-                    int posTag = currentPosTags[wordIndex];
-
-                    long combinatorWordPosKeyNum = binaryCombinatorKeyNumWithOffset 
-                        + (predicate * headedBinaryRulePredicateOffset)
-                        + (posTag * headedBinaryRulePosOffset);
-                    headedRuleProb *= headedBinaryRuleTensor.get(combinatorWordPosKeyNum);
-                  }
-                  // log.stopTimer("ccg_parse/beam_loop/headed_rule_weights");
-
-                  // log.startTimer("ccg_parse/beam_loop/dependencies");
-                  // Get the weights of the generated dependencies.
-                  double depProb = 1.0;
-                  double curDepProb = 1.0;
-                  int filledDepArrayLength = filledDepArray.length;
-                  for (int depIndex = 0; depIndex < filledDepArrayLength; depIndex++) {
-                    // The contents of this loop takes ~1/3 of all parsing time.
-                    long depLong = filledDepArray[depIndex];
-                    if (depLong == depCache) {
-                      depProb *= depProbCache;
-                      continue;
-                    }
+                }
+              }
+              assignmentVarIndexAccumulator[leftInverseRelabeling.length] = numAssignments;
+              // log.startTimer("ccg_parse/beam_loop/relabel_assignment");
+
+              // Determine which unfilled dependencies should be propagated to
+              // the result.
+              // log.startTimer("ccg_parse/beam_loop/propagate_dependencies");
+              int[] leftToReturnInverseRelabeling = searchMove.getLeftToReturnInverseRelabeling();
+              int[] rightToReturnInverseRelabeling = searchMove.getRightToReturnInverseRelabeling();
+              int[] combinatorToReturnInverseRelabeling = null;
+              if (combinatorUnfilledDeps != null) {
+                combinatorToReturnInverseRelabeling = searchMove.getBinaryCombinator().getResultInverseRelabeling();
+              }
+              int numVars = searchMove.getLeftToReturnInverseRelabeling().length;
+              int numUnfilledDeps = 0;
+              for (int k = 0; k < numVars; k++) {
+                unfilledDepVarIndexAccumulator[k] = numUnfilledDeps;
+                if (assignmentVarIndexAccumulator[k] != assignmentVarIndexAccumulator[k + 1]) {
+                  // This variable has an assignment in the result, meaning any
+                  // dependencies on this variable have already been filled.
+                  continue;
+                }
+                
+                // Unfilled dependencies are copied (with possible variable 
+                // relabeling) from the left and right chart entries, and
+                // also the combinator (if it creates new dependencies). 
+                numUnfilledDeps = propagateUnfilledDependencies(leftUnfilledDeps, leftUnfilledDepsStart,
+                    leftUnfilledDepsVarIndex, leftUnfilledDepsVarIndexStart, leftToReturnInverseRelabeling,
+                    k, unfilledDepAccumulator, numUnfilledDeps);
+                if (numUnfilledDeps >= unfilledDepAccumulator.length) {
+                  continue deploop;
+                }
+                numUnfilledDeps = propagateUnfilledDependencies(rightUnfilledDeps, rightUnfilledDepsStart,
+                    rightUnfilledDepsVarIndex, rightUnfilledDepsVarIndexStart, rightToReturnInverseRelabeling,
+                    k, unfilledDepAccumulator, numUnfilledDeps);
+                if (numUnfilledDeps >= unfilledDepAccumulator.length) {
+                  continue deploop;
+                }
 
-                    // Compute the keyNum containing the weight for
-                    // depLong in dependencyTensor.
-                    int headNum = (int) ((depLong >> SUBJECT_OFFSET) & PREDICATE_MASK) - MAX_ARG_NUM;
-                    int headSyntaxNum = (int) ((depLong >> SYNTACTIC_CATEGORY_OFFSET) & SYNTACTIC_CATEGORY_MASK);
-                    int objectNum = (int) ((depLong >> OBJECT_OFFSET) & PREDICATE_MASK) - MAX_ARG_NUM;
-                    int argNumNum = (int) ((depLong >> ARG_NUM_OFFSET) & ARG_NUM_MASK);
-                    int subjectWordIndex = (int) ((depLong >> SUBJECT_WORD_IND_OFFSET) & WORD_IND_MASK);
-                    int objectWordIndex = (int) ((depLong >> OBJECT_WORD_IND_OFFSET) & WORD_IND_MASK);
-
-                    int headPosNum = currentPosTags[subjectWordIndex];
-                    int objectPosNum = currentPosTags[objectWordIndex];
-
-                    long depNum = (headNum * dependencyHeadOffset) + (headSyntaxNum * dependencySyntaxOffset) 
-                        + (argNumNum * dependencyArgNumOffset) + (objectNum * dependencyObjectOffset)
-                        + (headPosNum * dependencyHeadPosOffset) + (objectPosNum * dependencyObjectPosOffset);
-
-                    // Get the probability of this
-                    // predicate-argument combination.
-                    // log.startTimer("chart_entry/dependency_prob");
-                    curDepProb = currentDependencyTensor.get(depNum);
-                    // log.stopTimer("chart_entry/dependency_prob");
-
-                    // Compute distance features.
-                    // log.startTimer("chart_entry/compute_distance");
-                    int distanceIndex = (subjectWordIndex * numTerminals) + objectWordIndex;
-                    int wordDistance = wordDistances[distanceIndex];
-                    int puncDistance = puncDistances[distanceIndex];
-                    int verbDistance = verbDistances[distanceIndex];
-                    // log.stopTimer("chart_entry/compute_distance");
-
-                    // log.startTimer("chart_entry/lookup_distance");
-                    long distanceKeyNumBase = (headNum * distanceHeadOffset) 
-                        + (headSyntaxNum * distanceSyntaxOffset) + (argNumNum * distanceArgNumOffset)
-                        + (headPosNum * distanceHeadPosOffset);
-                    long wordDistanceKeyNum = distanceKeyNumBase + (wordDistance * distanceDistanceOffset);
-                    curDepProb *= currentWordTensor.get(wordDistanceKeyNum);
-                    long puncDistanceKeyNum = distanceKeyNumBase + (puncDistance * distanceDistanceOffset);
-                    curDepProb *= currentPuncTensor.get(puncDistanceKeyNum);
-                    long verbDistanceKeyNum = distanceKeyNumBase + (verbDistance * distanceDistanceOffset);
-                    curDepProb *= currentVerbTensor.get(verbDistanceKeyNum);
-                    // log.stopTimer("chart_entry/lookup_distance");
-                    // System.out.println(longToUnfilledDependency(depLong)
-                    // + " " + depProb);
-
-                    depProb *= curDepProb;
-
-                    depCache = depLong;
-                    depProbCache = curDepProb;
+                if (combinatorUnfilledDeps != null) {
+                  numUnfilledDeps = propagateUnfilledDependencies(combinatorUnfilledDeps, 0,
+                      combinatorUnfilledDepsVarIndex, 0, combinatorToReturnInverseRelabeling, k,
+                      unfilledDepAccumulator, numUnfilledDeps);
+                  if (numUnfilledDeps >= unfilledDepAccumulator.length) {
+                    continue deploop;
                   }
-                  // log.stopTimer("ccg_parse/beam_loop/dependencies");
+                }
+              }
+              unfilledDepVarIndexAccumulator[numVars] = numUnfilledDeps;
+              // log.stopTimer("ccg_parse/beam_loop/propagate_dependencies");
+
+              // log.startTimer("ccg_parse/beam_loop/copy_stuff");
+              long[] filledDepArray = Arrays.copyOf(filledDepAccumulator, numFilledDeps);
+              int[] unfilledDepVarIndex = Arrays.copyOf(unfilledDepVarIndexAccumulator, numVars + 1);
+              long[] unfilledDepArray = Arrays.copyOf(unfilledDepAccumulator, numUnfilledDeps);
+
+              int[] newAssignmentVarIndex = Arrays.copyOfRange(assignmentVarIndexAccumulator, 0,
+                  searchMove.getLeftToReturnInverseRelabeling().length + 1);
+              long[] newAssignments = Arrays.copyOfRange(assignmentAccumulator, 0, numAssignments);
+
+              ChartEntry result = new ChartEntry(resultSyntax, resultSyntaxUniqueVars, resultSyntaxHead,
+                  null, searchMove.getLeftUnary(), searchMove.getRightUnary(), newAssignmentVarIndex, newAssignments,
+                  unfilledDepVarIndex, unfilledDepArray, filledDepArray, leftSpanStart, leftSpanEnd,
+                  leftIndex, rightSpanStart, rightSpanEnd, rightIndex, resultCombinator, isProducedByConjunction);
+              // log.stopTimer("ccg_parse/beam_loop/copy_stuff");
+
+              // Get the weights of applying this syntactic combination rule 
+              // given the word and POS tag of the result's head.
+              // log.startTimer("ccg_parse/beam_loop/headed_rule_weights");
+              double headedRuleProb = 1.0;
+              long binaryCombinatorKeyNumWithOffset = searchMove.getBinaryCombinatorKeyNum()
+                  * headedBinaryRuleCombinatorOffset;
+              int syntaxStartIndex = newAssignmentVarIndex[resultSyntaxHead];
+              int syntaxEndIndex = newAssignmentVarIndex[resultSyntaxHead + 1];
+              for (int assignmentIndex = syntaxStartIndex; assignmentIndex < syntaxEndIndex; assignmentIndex++) {
+                long assignment = newAssignments[assignmentIndex];
+                long predicate = (assignment >> ASSIGNMENT_PREDICATE_OFFSET) & PREDICATE_MASK;
+                int wordIndex = (int) ((assignment >> ASSIGNMENT_WORD_IND_OFFSET) & WORD_IND_MASK);
+                int posTag = currentPosTags[wordIndex];
+
+                long combinatorWordPosKeyNum = binaryCombinatorKeyNumWithOffset 
+                    + (predicate * headedBinaryRulePredicateOffset)
+                    + (posTag * headedBinaryRulePosOffset);
+                headedRuleProb *= headedBinaryRuleTensor.get(combinatorWordPosKeyNum);
+              }
+              // log.stopTimer("ccg_parse/beam_loop/headed_rule_weights");
+
+              // log.startTimer("ccg_parse/beam_loop/dependencies");
+              // Get the weights of the generated dependencies.
+              double depProb = 1.0;
+              double curDepProb = 1.0;
+              int filledDepArrayLength = filledDepArray.length;
+              for (int depIndex = 0; depIndex < filledDepArrayLength; depIndex++) {
+                // The contents of this loop takes ~1/3 of all parsing time.
+                long depLong = filledDepArray[depIndex];
+                if (depLong == depCache) {
+                  depProb *= depProbCache;
+                  continue;
+                }
 
-                  // log.startTimer("chart_entry/add_chart_entry");
-                  double totalProb = ruleProb * headedRuleProb * leftProb * rightProb * depProb;
-                  chart.addChartEntryForSpan(result, totalProb, spanStart, spanEnd, syntaxVarType);
-                  // log.stopTimer("chart_entry/add_chart_entry");
+                // Dependencies are usually scored many times per
+                // sentence, so first check the chart's cache.
+                int depScoreCacheSlot = depScoreCache.find(depLong);
+                if (depScoreCacheSlot != -1) {
+                  curDepProb = depScoreCache.getValue(depScoreCacheSlot);
+                  depProb *= curDepProb;
+                  depCache = depLong;
+                  depProbCache = curDepProb;
+                  continue;
                 }
+
+                // Compute the keyNum containing the weight for
+                // depLong in dependencyTensor.
+                int headNum = (int) ((depLong >> SUBJECT_OFFSET) & PREDICATE_MASK) - MAX_ARG_NUM;
+                int headSyntaxNum = (int) ((depLong >> SYNTACTIC_CATEGORY_OFFSET) & SYNTACTIC_CATEGORY_MASK);
+                int objectNum = (int) ((depLong >> OBJECT_OFFSET) & PREDICATE_MASK) - MAX_ARG_NUM;
+                int argNumNum = (int) ((depLong >> ARG_NUM_OFFSET) & ARG_NUM_MASK);
+                int subjectWordIndex = (int) ((depLong >> SUBJECT_WORD_IND_OFFSET) & WORD_IND_MASK);
+                int objectWordIndex = (int) ((depLong >> OBJECT_WORD_IND_OFFSET) & WORD_IND_MASK);
+
+                int headPosNum = currentPosTags[subjectWordIndex];
+                int objectPosNum = currentPosTags[objectWordIndex];
+
+                long depNum = (headNum * dependencyHeadOffset) + (headSyntaxNum * dependencySyntaxOffset) 
+                    + (argNumNum * dependencyArgNumOffset) + (objectNum * dependencyObjectOffset)
+                    + (headPosNum * dependencyHeadPosOffset) + (objectPosNum * dependencyObjectPosOffset);
+
+                // Get the probability of this
+                // predicate-argument combination.
+                // log.startTimer("chart_entry/dependency_prob");
+                curDepProb = currentDependencyTensor.get(depNum);
+                // log.stopTimer("chart_entry/dependency_prob");
+
+                // Compute distance features.
+                // log.startTimer("chart_entry/compute_distance");
+                int distanceIndex = (subjectWordIndex * numTerminals) + objectWordIndex;
+                int wordDistance = wordDistances[distanceIndex];
+                int puncDistance = puncDistances[distanceIndex];
+                int verbDistance = verbDistances[distanceIndex];
+                // log.stopTimer("chart_entry/compute_distance");
+
+                // log.startTimer("chart_entry/lookup_distance");
+                long distanceKeyNumBase = (headNum * distanceHeadOffset) 
+                    + (headSyntaxNum * distanceSyntaxOffset) + (argNumNum * distanceArgNumOffset)
+                    + (headPosNum * distanceHeadPosOffset);
+                long wordDistanceKeyNum = distanceKeyNumBase + (wordDistance * distanceDistanceOffset);
+                curDepProb *= currentWordTensor.get(wordDistanceKeyNum);
+                long puncDistanceKeyNum = distanceKeyNumBase + (puncDistance * distanceDistanceOffset);
+                curDepProb *= currentPuncTensor.get(puncDistanceKeyNum);
+                long verbDistanceKeyNum = distanceKeyNumBase + (verbDistance * distanceDistanceOffset);
+                curDepProb *= currentVerbTensor.get(verbDistanceKeyNum);
+                // log.stopTimer("chart_entry/lookup_distance");
+                // System.out.println(longToUnfilledDependency(depLong)
+                // + " " + depProb);
+
+                depProb *= curDepProb;
+
+                depScoreCache.put(depLong, curDepProb);
+                depCache = depLong;
+                depProbCache = curDepProb;
               }
-            }
+              // log.stopTimer("ccg_parse/beam_loop/dependencies");
 
-            // Advance the iterator over rules.
-            index++;
-            if (index < tensorSize) {
-              curKeyNum = syntaxKeyNums[index];
+              // log.startTimer("chart_entry/add_chart_entry");
+              double totalProb = ruleProb * headedRuleProb * leftProb * rightProb * depProb;
+              chart.addChartEntryForSpan(result, totalProb, leftSpanStart, rightSpanEnd, syntaxVarType);
+              // log.stopTimer("chart_entry/add_chart_entry");
             }
           }
         }
-        // log.stopTimer("ccg_parse/beam_loop");
       }
     }
+    // log.stopTimer("ccg_parse/beam_loop");
 
-    chart.doneAddingChartEntriesForSpan(spanStart, spanEnd);
+    scratch.depCache = depCache;
+    scratch.depProbCache = depProbCache;
   }
 
   /**
@@ -1970,8 +2684,18 @@ public class CcgParser implements Serializable {
     }
   }
 
-  private static final int fillDependencies(int[] assignmentVarIndex, long[] assignment, int[] unfilledDepVarIndex,
-      long[] unfilledDeps, int[] depToAssignmentRelabeling, long[] filledDepAccumulator, int numFilledDeps) {
+  /**
+   * Fills the unfilled dependencies of one chart entry using the
+   * assignment of another, and appends the results to
+   * {@code filledDepAccumulator}. Each array argument is read
+   * beginning at the corresponding start offset, and the values in the
+   * var index arrays are relative to these offsets (see
+   * {@link PackedChartEntries}).
+   */
+  private static final int fillDependencies(int[] assignmentVarIndex, int assignmentVarIndexStart,
+      long[] assignment, int assignmentStart, int[] unfilledDepVarIndex, int unfilledDepVarIndexStart,
+      long[] unfilledDeps, int unfilledDepStart, int[] depToAssignmentRelabeling,
+      long[] filledDepAccumulator, int numFilledDeps) {
     if (numFilledDeps == -1) {
       return -1;
     }
@@ -1983,10 +2707,10 @@ public class CcgParser implements Serializable {
         continue;
       }
 
-      int startIndex = unfilledDepVarIndex[i];
-      int endIndex = unfilledDepVarIndex[i + 1];
-      int assignmentStartIndex = assignmentVarIndex[assignmentVar];
-      int assignmentEndIndex = assignmentVarIndex[assignmentVar + 1];
+      int startIndex = unfilledDepStart + unfilledDepVarIndex[unfilledDepVarIndexStart + i];
+      int endIndex = unfilledDepStart + unfilledDepVarIndex[unfilledDepVarIndexStart + i + 1];
+      int assignmentStartIndex = assignmentStart + assignmentVarIndex[assignmentVarIndexStart + assignmentVar];
+      int assignmentEndIndex = assignmentStart + assignmentVarIndex[assignmentVarIndexStart + assignmentVar + 1];
       if (endIndex == startIndex || assignmentStartIndex == assignmentEndIndex) {
         continue;
       }
@@ -2011,13 +2735,16 @@ public class CcgParser implements Serializable {
     return numFilledDeps;
   }
   
-  private static final int propagateUnfilledDependencies(long[] originalUnfilledDeps, int[] originalUnfilledDepsVarIndex,
-      int[] inverseRelabeling, int k, long[] unfilledDepAccumulator, int numUnfilledDeps) {
+  private static final int propagateUnfilledDependencies(long[] originalUnfilledDeps, int originalUnfilledDepsStart,
+      int[] originalUnfilledDepsVarIndex, int originalUnfilledDepsVarIndexStart, int[] inverseRelabeling,
+      int k, long[] unfilledDepAccumulator, int numUnfilledDeps) {
     int originalVarNum = inverseRelabeling[k];
     long unfilledDependency;
     if (originalVarNum != -1) {
-      int startIndex = originalUnfilledDepsVarIndex[originalVarNum];
-      int endIndex = originalUnfilledDepsVarIndex[originalVarNum + 1];
+      int startIndex = originalUnfilledDepsStart
+          + originalUnfilledDepsVarIndex[originalUnfilledDepsVarIndexStart + originalVarNum];
+      int endIndex = originalUnfilledDepsStart
+          + originalUnfilledDepsVarIndex[originalUnfilledDepsVarIndexStart + originalVarNum + 1];
 
       if (startIndex != endIndex) {
         for (int m = startIndex; m < endIndex; m++) {
@@ -2309,28 +3036,154 @@ public class CcgParser implements Serializable {
     return assignment ^ (((long) oldVarNum ^ newVarNum) << ASSIGNMENT_VAR_NUM_OFFSET);
   }
   
-  private static class CalculateInsideBeamCallable implements Callable<Void> {
+  /**
+   * Dependency-driven schedule for filling a chart in parallel. The
+   * chart entries for a span can be computed once the entries for
+   * all of its subspans are complete, which is the case once its two
+   * immediate subspans ({@code [spanStart, spanEnd - 1]} and
+   * {@code [spanStart + 1, spanEnd]}) are complete. Each span counts
+   * how many of these subspans are incomplete, and is submitted for
+   * processing when the count reaches 0. This task completes after
+   * every span has been processed.
+   * 
+   * @author jayantk
+   */
+  private static class InsideBeamSchedule extends CountedCompleter<Void> {
+    private static final long serialVersionUID = 1L;
+
     private final CcgParser parser;
     private final CcgChart chart;
-
-    private final int spanStart;
-    private final int spanEnd;
-
     private final LogFunction log;
+    private final long endTime;
+
+    private final int numTerminals;
+    // Number of incomplete immediate subspans of each span, indexed
+    // by spanStart * numTerminals + spanEnd.
+    private final AtomicIntegerArray numIncompleteSubspans;
+    private volatile boolean timedOut;
 
-    public CalculateInsideBeamCallable(CcgParser parser, CcgChart chart, int spanStart, int spanEnd,
-        LogFunction log) {
+    public InsideBeamSchedule(CcgParser parser, CcgChart chart, LogFunction log, long endTime) {
       this.parser = Preconditions.checkNotNull(parser);
       this.chart = Preconditions.checkNotNull(chart);
+      this.log = log;
+      this.endTime = endTime;
+
+      this.numTerminals = chart.size();
+      this.numIncompleteSubspans = new AtomicIntegerArray(numTerminals * numTerminals);
+      for (int spanStart = 0; spanStart < numTerminals; spanStart++) {
+        for (int spanEnd = spanStart + 2; spanEnd < numTerminals; spanEnd++) {
+          numIncompleteSubspans.set(spanStart * numTerminals + spanEnd, 2);
+        }
+      }
+      this.timedOut = false;
+    }
+
+    @Override
+    public void compute() {
+      // Terminal spans are already complete, so all spans of
+      // length 2 can be processed immediately.
+      for (int spanStart = 0; spanStart + 1 < numTerminals; spanStart++) {
+        submit(spanStart, spanStart + 1);
+      }
+      tryComplete();
+    }
+
+    public boolean isTimedOut() {
+      return timedOut;
+    }
+
+    private void submit(int spanStart, int spanEnd) {
+      addToPendingCount(1);
+      new InsideBeamSpanTask(this, spanStart, spanEnd).fork();
+    }
+
+    /**
+     * Records that one immediate subspan of {@code spanStart}-
+     * {@code spanEnd} is complete. Returns {@code true} if this span
+     * is ready to be processed.
+     */
+    private boolean completeSubspan(int spanStart, int spanEnd) {
+      return numIncompleteSubspans.decrementAndGet(spanStart * numTerminals + spanEnd) == 0;
+    }
+  }
+
+  /**
+   * Computes the chart entries for a span, then continues with any
+   * larger spans that become ready as a result.
+   * 
+   * @author jayantk
+   */
+  private static class InsideBeamSpanTask extends CountedCompleter<Void> {
+    private static final long serialVersionUID = 1L;
+
+    private final InsideBeamSchedule schedule;
+    private final int spanStart;
+    private final int spanEnd;
+
+    public InsideBeamSpanTask(InsideBeamSchedule schedule, int spanStart, int spanEnd) {
+      super(schedule);
+      this.schedule = schedule;
       this.spanStart = spanStart;
       this.spanEnd = spanEnd;
-      this.log = log;
     }
 
     @Override
-    public Void call() {
-      parser.calculateInsideBeam(spanStart, spanEnd, chart, log);
-      return null;
+    public void compute() {
+      int numTerminals = schedule.numTerminals;
+      int curStart = spanStart;
+      int curEnd = spanEnd;
+      while (!schedule.timedOut) {
+        schedule.parser.calculateInsideBeam(curStart, curEnd, schedule.chart, schedule.log);
+        if (System.currentTimeMillis() > schedule.endTime || schedule.chart.isParseCancelled()) {
+          schedule.timedOut = true;
+          break;
+        }
+
+        boolean leftReady = curStart > 0 && schedule.completeSubspan(curStart - 1, curEnd);
+        boolean rightReady = curEnd + 1 < numTerminals && schedule.completeSubspan(curStart, curEnd + 1);
+        // Continue in this thread with one of the ready spans (which
+        // reuses the subspans that were just computed), and let another
+        // thread steal the other.
+        if (leftReady && rightReady) {
+          schedule.submit(curStart - 1, curEnd);
+          curEnd++;
+        } else if (leftReady) {
+          curStart--;
+        } else if (rightReady) {
+          curEnd++;
+        } else {
+          break;
+        }
+      }
+      tryComplete();
+    }
+  }
+
+  /**
+   * Reusable accumulators for building the chart entries of a single
+   * span. Each thread owns one instance (see {@code INSIDE_SCRATCH});
+   * the contents of these arrays are only meaningful while a chart
+   * entry is being constructed, and are copied out before the entry is
+   * added to the chart.
+   *
+   * @author jayantk
+   */
+  private static class InsideScratch {
+    public final int[] assignmentVarIndexAccumulator = new int[MAX_CHART_VAR_INDEX];
+    public final long[] assignmentAccumulator = new long[MAX_CHART_ASSIGNMENTS];
+    public final long[] filledDepAccumulator = new long[MAX_CHART_DEPS];
+    public final int[] unfilledDepVarIndexAccumulator = new int[MAX_CHART_VAR_INDEX];
+    public final long[] unfilledDepAccumulator = new long[MAX_CHART_DEPS];
+
+    // The most recently scored dependency and its weight. Dependency
+    // weights depend on the chart, so this cache must be cleared
+    // before processing a new span.
+    public long depCache;
+    public double depProbCache;
+
+    public void clearDependencyCache() {
+      depCache = -1;
+      depProbCache = 0.0;
     }
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,96 @@
+package com.jayantkrish.jklol.ccg;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * The result of a CCG parse which may have been stopped before
+ * completion. If parsing completed, this contains the best parse of
+ * the sentence. Otherwise, it contains the best available partial
+ * analysis: a sequence of parses of consecutive, non-overlapping
+ * spans (fragments) which together cover the sentence.
+ *
+ * @author jayantk
+ */
+public class CcgPartialParse {
+
+  private final boolean complete;
+  private final List<CcgParse> fragments;
+
+  private CcgPartialParse(boolean complete, List<CcgParse> fragments) {
+    this.complete = complete;
+    this.fragments = ImmutableList.copyOf(fragments);
+  }
+
+  public static CcgPartialParse fromCompleteParse(CcgParse parse) {
+    return new CcgPartialParse(true, Arrays.asList(Preconditions.checkNotNull(parse)));
+  }
+
+  /**
+   * Creates a partial parse from {@code fragments}, which must be
+   * ordered from left to right. {@code fragments} may be empty if no
+   * analysis of the sentence was found.
+   *
+   * @param fragments
+   * @return
+   */
+  public static CcgPartialParse fromFragments(List<CcgParse> fragments) {
+    return new CcgPartialParse(false, fragments);
+  }
+
+  /**
+   * Returns {@code true} if parsing completed, in which case
+   * {@link #getParse} returns the best parse of the sentence.
+   *
+   * @return
+   */
+  public boolean isComplete() {
+    return complete;
+  }
+
+  /**
+   * Gets the best parse of the sentence, or {@code null} if parsing
+   * did not complete.
+   *
+   * @return
+   */
+  public CcgParse getParse() {
+    return complete ? fragments.get(0) : null;
+  }
+
+  /**
+   * Gets parses of consecutive spans of the sentence, ordered from
+   * left to right. If parsing completed, this list contains only the
+   * best parse.
+   *
+   * @return
+   */
+  public List<CcgParse> getFragments() {
+    return fragments;
+  }
+
+  /**
+   * Gets the product of the probabilities of the fragments of this
+   * parse, or {@code 0.0} if there are no fragments.
+   *
+   * @return
+   */
+  public double getSubtreeProbability() {
+    if (fragments.size() == 0) {
+      return 0.0;
+    }
+    double prob = 1.0;
+    for (CcgParse fragment : fragments) {
+      prob *= fragment.getSubtreeProbability();
+    }
+    return prob;
+  }
+
+  @Override
+  public String toString() {
+    return (complete ? "complete: " : "fragments: ") + fragments;
+  }
+}
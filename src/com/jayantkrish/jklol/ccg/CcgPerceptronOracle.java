@@ -15,6 +15,10 @@ public class CcgPerceptronOracle implements GradientOracle<CcgParser, CcgExample
 
   private final double marginCost;
 
+  // The most recently instantiated parser. Its structure is reused
+  // when instantiating parsers with new parameters.
+  private CcgParser previousModel;
+
   public CcgPerceptronOracle(ParametricCcgParser family, CcgInference inferenceAlgorithm,
       double marginCost) {
     this.family = Preconditions.checkNotNull(family);
@@ -30,7 +34,9 @@ public class CcgPerceptronOracle implements GradientOracle<CcgParser, CcgExample
 
   @Override
   public CcgParser instantiateModel(SufficientStatistics parameters) {
-    return family.getModelFromParameters(parameters);
+    CcgParser model = family.getModelFromParameters(parameters, previousModel);
+    previousModel = model;
+    return model;
   }
 
   @Override
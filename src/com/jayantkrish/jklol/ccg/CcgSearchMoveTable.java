@@ -0,0 +1,262 @@
+package com.jayantkrish.jklol.ccg;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+import com.jayantkrish.jklol.models.DiscreteFactor;
+import com.jayantkrish.jklol.models.DiscreteVariable;
+import com.jayantkrish.jklol.tensor.Tensor;
+
+/**
+ * The {@link CcgSearchMove}s which can combine each pair of
+ * syntactic categories, along with the weights of their binary and
+ * unary rules. This table is compiled once per parser from the
+ * parser's indicator distribution over (left syntax, right syntax,
+ * search move), replacing searches over that distribution's keys
+ * during parsing.
+ * <p>
+ * The table is stored in compressed sparse row format. The right
+ * syntactic categories which combine with left category {@code l}
+ * are {@code rightSyntaxes[leftOffsets[l]]} to
+ * {@code rightSyntaxes[leftOffsets[l + 1] - 1]}, in increasing
+ * order. The search moves for the pair at index {@code i} of
+ * {@code rightSyntaxes} are {@code moves[moveOffsets[i]]} to
+ * {@code moves[moveOffsets[i + 1] - 1]}.
+ * <p>
+ * Rows are indexed directly by left category, but the right category
+ * is found within a row by binary search. Indexing both directly
+ * requires a table whose size is quadratic in the number of
+ * syntactic categories.
+ *
+ * @author jayantk
+ */
+public class CcgSearchMoveTable implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private final int[] leftOffsets;
+  private final int[] rightSyntaxes;
+  private final int[] moveOffsets;
+
+  private final CcgSearchMove[] moves;
+  private final double[] binaryRuleWeights;
+  private final double[] leftUnaryRuleWeights;
+  private final double[] rightUnaryRuleWeights;
+
+  private CcgSearchMoveTable(int[] leftOffsets, int[] rightSyntaxes, int[] moveOffsets,
+      CcgSearchMove[] moves, double[] binaryRuleWeights, double[] leftUnaryRuleWeights,
+      double[] rightUnaryRuleWeights) {
+    this.leftOffsets = leftOffsets;
+    this.rightSyntaxes = rightSyntaxes;
+    this.moveOffsets = moveOffsets;
+    this.moves = moves;
+    this.binaryRuleWeights = binaryRuleWeights;
+    this.leftUnaryRuleWeights = leftUnaryRuleWeights;
+    this.rightUnaryRuleWeights = rightUnaryRuleWeights;
+  }
+
+  /**
+   * Compiles the nonzero entries of {@code compiledSyntaxDistribution},
+   * a distribution over (left syntax, right syntax, search move) such
+   * as the one produced by
+   * {@link CcgParser#compileUnaryAndBinaryRules}. The weight of each
+   * search move is looked up in {@code binaryRuleWeights} and
+   * {@code unaryRuleWeights}.
+   *
+   * @param compiledSyntaxDistribution
+   * @param binaryRuleWeights
+   * @param unaryRuleWeights
+   * @return
+   */
+  public static CcgSearchMoveTable fromSyntaxDistribution(DiscreteFactor compiledSyntaxDistribution,
+      Tensor binaryRuleWeights, Tensor unaryRuleWeights) {
+    Tensor syntaxTensor = compiledSyntaxDistribution.getWeights();
+    Preconditions.checkArgument(syntaxTensor.getDimensionNumbers().length == 3);
+    DiscreteVariable searchMoveType = (DiscreteVariable) compiledSyntaxDistribution.getVars()
+        .getVariable(2);
+    int numLeftSyntaxes = syntaxTensor.getDimensionSizes()[0];
+    long[] dimensionOffsets = syntaxTensor.getDimensionOffsets();
+
+    int numKeys = 0;
+    int numPairs = 0;
+    long prevPairKeyNum = -1;
+    for (int i = 0; i < syntaxTensor.size(); i++) {
+      if (syntaxTensor.getByIndex(i) != 0.0) {
+        long pairKeyNum = syntaxTensor.indexToKeyNum(i) / dimensionOffsets[1];
+        if (pairKeyNum != prevPairKeyNum) {
+          numPairs++;
+          prevPairKeyNum = pairKeyNum;
+        }
+        numKeys++;
+      }
+    }
+
+    int[] leftOffsets = new int[numLeftSyntaxes + 1];
+    int[] rightSyntaxes = new int[numPairs];
+    int[] moveOffsets = new int[numPairs + 1];
+    CcgSearchMove[] moves = new CcgSearchMove[numKeys];
+    double[] binaryWeights = new double[numKeys];
+    double[] leftUnaryWeights = new double[numKeys];
+    double[] rightUnaryWeights = new double[numKeys];
+
+    // Keys are sorted by left syntax, then right syntax, then search
+    // move, which is the order of the table.
+    int pairIndex = -1;
+    int moveIndex = 0;
+    int curLeftSyntax = -1;
+    prevPairKeyNum = -1;
+    for (int i = 0; i < syntaxTensor.size(); i++) {
+      if (syntaxTensor.getByIndex(i) == 0.0) {
+        continue;
+      }
+
+      long keyNum = syntaxTensor.indexToKeyNum(i);
+      int leftSyntax = (int) (keyNum / dimensionOffsets[0]);
+      int rightSyntax = (int) ((keyNum % dimensionOffsets[0]) / dimensionOffsets[1]);
+      int move = (int) (keyNum % dimensionOffsets[1]);
+
+      long pairKeyNum = keyNum / dimensionOffsets[1];
+      if (pairKeyNum != prevPairKeyNum) {
+        pairIndex++;
+        rightSyntaxes[pairIndex] = rightSyntax;
+        moveOffsets[pairIndex] = moveIndex;
+        prevPairKeyNum = pairKeyNum;
+      }
+      while (curLeftSyntax < leftSyntax) {
+        curLeftSyntax++;
+        leftOffsets[curLeftSyntax] = pairIndex;
+      }
+
+      CcgSearchMove searchMove = (CcgSearchMove) searchMoveType.getValue(move);
+      moves[moveIndex] = searchMove;
+      setRuleWeights(searchMove, moveIndex, binaryRuleWeights, unaryRuleWeights, binaryWeights,
+          leftUnaryWeights, rightUnaryWeights);
+      moveIndex++;
+    }
+    while (curLeftSyntax < numLeftSyntaxes) {
+      curLeftSyntax++;
+      leftOffsets[curLeftSyntax] = numPairs;
+    }
+    moveOffsets[numPairs] = numKeys;
+
+    return new CcgSearchMoveTable(leftOffsets, rightSyntaxes, moveOffsets, moves, binaryWeights,
+        leftUnaryWeights, rightUnaryWeights);
+  }
+
+  /**
+   * Gets a table containing the same search moves as this table, with
+   * weights looked up in {@code binaryRuleWeights} and
+   * {@code unaryRuleWeights}. The returned table shares its
+   * structure with this table, so this method is faster than
+   * recompiling the syntax distribution.
+   *
+   * @param binaryRuleWeights
+   * @param unaryRuleWeights
+   * @return
+   */
+  public CcgSearchMoveTable replaceRuleWeights(Tensor binaryRuleWeights, Tensor unaryRuleWeights) {
+    double[] binaryWeights = new double[moves.length];
+    double[] leftUnaryWeights = new double[moves.length];
+    double[] rightUnaryWeights = new double[moves.length];
+    for (int i = 0; i < moves.length; i++) {
+      setRuleWeights(moves[i], i, binaryRuleWeights, unaryRuleWeights, binaryWeights,
+          leftUnaryWeights, rightUnaryWeights);
+    }
+
+    return new CcgSearchMoveTable(leftOffsets, rightSyntaxes, moveOffsets, moves, binaryWeights,
+        leftUnaryWeights, rightUnaryWeights);
+  }
+
+  private static void setRuleWeights(CcgSearchMove searchMove, int moveIndex,
+      Tensor binaryRuleWeights, Tensor unaryRuleWeights, double[] binaryWeights,
+      double[] leftUnaryWeights, double[] rightUnaryWeights) {
+    binaryWeights[moveIndex] = binaryRuleWeights.get(searchMove.getBinaryCombinatorKeyNum());
+    leftUnaryWeights[moveIndex] = searchMove.getLeftUnaryKeyNum() != -1 ?
+        unaryRuleWeights.get(searchMove.getLeftUnaryKeyNum()) : 1.0;
+    rightUnaryWeights[moveIndex] = searchMove.getRightUnaryKeyNum() != -1 ?
+        unaryRuleWeights.get(searchMove.getRightUnaryKeyNum()) : 1.0;
+  }
+
+  /**
+   * Gets the index of the pair ({@code leftSyntax},
+   * {@code rightSyntax}) in this table, or {@code -1} if no search
+   * move combines these categories. The index can be used with
+   * {@link #getMoveStart} and {@link #getMoveEnd}.
+   *
+   * @param leftSyntax
+   * @param rightSyntax
+   * @return
+   */
+  public final int getPairIndex(int leftSyntax, int rightSyntax) {
+    int index = Arrays.binarySearch(rightSyntaxes, leftOffsets[leftSyntax],
+        leftOffsets[leftSyntax + 1], rightSyntax);
+    return index >= 0 ? index : -1;
+  }
+
+  /**
+   * Returns {@code true} if any search move has {@code leftSyntax} as
+   * its left category.
+   *
+   * @param leftSyntax
+   * @return
+   */
+  public final boolean hasMovesForLeftSyntax(int leftSyntax) {
+    return leftOffsets[leftSyntax] != leftOffsets[leftSyntax + 1];
+  }
+
+  public final int getMoveStart(int pairIndex) {
+    return moveOffsets[pairIndex];
+  }
+
+  public final int getMoveEnd(int pairIndex) {
+    return moveOffsets[pairIndex + 1];
+  }
+
+  public final CcgSearchMove getMove(int moveIndex) {
+    return moves[moveIndex];
+  }
+
+  /**
+   * Gets the weight of the binary rule of the {@code moveIndex}th
+   * search move.
+   *
+   * @param moveIndex
+   * @return
+   */
+  public final double getBinaryRuleWeight(int moveIndex) {
+    return binaryRuleWeights[moveIndex];
+  }
+
+  /**
+   * Gets the weight of the unary rule applied to the left category by
+   * the {@code moveIndex}th search move, or 1.0 if the move applies
+   * no unary rule.
+   *
+   * @param moveIndex
+   * @return
+   */
+  public final double getLeftUnaryRuleWeight(int moveIndex) {
+    return leftUnaryRuleWeights[moveIndex];
+  }
+
+  /**
+   * Gets the weight of the unary rule applied to the right category by
+   * the {@code moveIndex}th search move, or 1.0 if the move applies
+   * no unary rule.
+   *
+   * @param moveIndex
+   * @return
+   */
+  public final double getRightUnaryRuleWeight(int moveIndex) {
+    return rightUnaryRuleWeights[moveIndex];
+  }
+
+  /**
+   * Gets the total number of search moves in this table.
+   *
+   * @return
+   */
+  public int size() {
+    return moves.length;
+  }
+}
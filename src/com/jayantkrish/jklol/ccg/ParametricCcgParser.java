@@ -13,6 +13,8 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.primitives.Ints;
+import com.jayantkrish.jklol.ccg.chart.AbstractCcgChart;
+import com.jayantkrish.jklol.ccg.chart.ChartEntry;
 import com.jayantkrish.jklol.ccg.lexicon.CcgLexicon;
 import com.jayantkrish.jklol.ccg.lexicon.ParametricCcgLexicon;
 import com.jayantkrish.jklol.models.DiscreteFactor;
@@ -479,6 +481,23 @@ public class ParametricCcgParser implements ParametricFamily<CcgParser> {
    */
   @Override
   public CcgParser getModelFromParameters(SufficientStatistics parameters) {
+    return getModelFromParameters(parameters, null);
+  }
+
+  /**
+   * Identical to {@link #getModelFromParameters(SufficientStatistics)},
+   * except that the structure of {@code previousModel} is reused
+   * (see {@link CcgParser#rebindWeights}). This method is useful for
+   * repeatedly instantiating parsers during training, where only the
+   * parameters change between instantiations. {@code previousModel}
+   * must have been created by this family, and may be {@code null}.
+   * 
+   * @param parameters
+   * @param previousModel
+   * @return
+   */
+  public CcgParser getModelFromParameters(SufficientStatistics parameters,
+      CcgParser previousModel) {
     ListSufficientStatistics parameterList = parameters.coerceToList();
     CcgLexicon lexiconDistribution = lexiconFamily.getModelFromParameters(
         parameterList.getStatisticByName(LEXICON_PARAMETERS));
@@ -505,6 +524,13 @@ public class ParametricCcgParser implements ParametricFamily<CcgParser> {
     DiscreteFactor headedRootSyntaxDistribution = headedRootSyntaxFamily.getModelFromParameters(
         parameterList.getStatisticByName(HEADED_ROOT_SYNTAX_PARAMETERS)).coerceToDiscrete();
 
+    if (previousModel != null) {
+      return previousModel.rebindWeights(lexiconDistribution, dependencyDistribution,
+          wordDistanceDistribution, puncDistanceDistribution, verbDistanceDistribution,
+          syntaxDistribution, unaryRuleDistribution, headedSyntaxDistribution,
+          rootSyntaxDistribution, headedRootSyntaxDistribution);
+    }
+
     return new CcgParser(lexiconDistribution,
         dependencyHeadVar, dependencySyntaxVar, dependencyArgNumVar, dependencyArgVar,
         dependencyHeadPosVar, dependencyArgPosVar, dependencyDistribution,
@@ -585,32 +611,13 @@ public class ParametricCcgParser implements ParametricFamily<CcgParser> {
 
   public void incrementSyntaxSufficientStatistics(SufficientStatistics gradient,
       SufficientStatistics parameters, CcgParse parse, List<String> posTags, double count) {
-    SufficientStatistics syntaxGradient = gradient.coerceToList().getStatisticByName(SYNTAX_PARAMETERS);
-    SufficientStatistics headedSyntaxGradient = gradient.coerceToList().getStatisticByName(HEADED_SYNTAX_PARAMETERS);
-    
-    SufficientStatistics syntaxParameters = parameters.coerceToList().getStatisticByName(SYNTAX_PARAMETERS);
-    SufficientStatistics headedSyntaxParameters = parameters.coerceToList().getStatisticByName(HEADED_SYNTAX_PARAMETERS);
     if (!parse.isTerminal()) {
       CcgParse left = parse.getLeft();
       CcgParse right = parse.getRight();
-      Combinator combinator = parse.getCombinator();
       // Increment the gradient for the rule applied at this node.
-      Assignment assignment = Assignment.unionAll(
-          leftSyntaxVar.outcomeArrayToAssignment(left.getHeadedSyntacticCategory()),
-          rightSyntaxVar.outcomeArrayToAssignment(right.getHeadedSyntacticCategory()),
-          parentSyntaxVar.outcomeArrayToAssignment(combinator));
-      syntaxFamily.incrementSufficientStatisticsFromAssignment(syntaxGradient, syntaxParameters,
-          assignment, count);
-
-      // Increment the headed syntax gradient.
-      for (IndexedPredicate semanticHead : parse.getSemanticHeads()) {
-        String posTag = posTags.get(semanticHead.getHeadIndex());
-        Assignment headedSyntaxAssignment = Assignment.unionAll(assignment,
-            headedBinaryRulePredicateVar.outcomeArrayToAssignment(semanticHead.getHead()),
-            headedBinaryRulePosVar.outcomeArrayToAssignment(posTag));
-        headedBinaryRuleFamily.incrementSufficientStatisticsFromAssignment(headedSyntaxGradient,
-            headedSyntaxParameters, headedSyntaxAssignment, count);
-      }
+      incrementBinaryRuleSufficientStatistics(gradient, parameters,
+          left.getHeadedSyntacticCategory(), right.getHeadedSyntacticCategory(),
+          parse.getCombinator(), parse.getSemanticHeads(), posTags, count);
 
       // Recursively increment gradient for rules in subtrees.
       incrementSyntaxSufficientStatistics(gradient, parameters, left, posTags, count);
@@ -619,16 +626,63 @@ public class ParametricCcgParser implements ParametricFamily<CcgParser> {
 
     // Increment unary rule parameters.
     if (parse.getUnaryRule() != null) {
-      UnaryCombinator rule = parse.getUnaryRule();
-      SufficientStatistics unaryRuleGradient = gradient.coerceToList().getStatisticByName(UNARY_RULE_PARAMETERS);
-      SufficientStatistics unaryRuleParameters = parameters.coerceToList().getStatisticByName(UNARY_RULE_PARAMETERS);
-      Assignment unaryRuleAssignment = unaryRuleInputVar.outcomeArrayToAssignment(
-          rule.getInputType()).union(unaryRuleVar.outcomeArrayToAssignment(rule));
-      unaryRuleFamily.incrementSufficientStatisticsFromAssignment(unaryRuleGradient,
-          unaryRuleParameters, unaryRuleAssignment, count);
+      incrementUnaryRuleSufficientStatistics(gradient, parameters, parse.getUnaryRule(), count);
+    }
+  }
+
+  /**
+   * Increments {@code gradient} by {@code count} times the features
+   * of combining {@code leftSyntax} and {@code rightSyntax} using
+   * {@code combinator}, producing a result whose semantic heads are
+   * {@code heads}.
+   * 
+   * @param gradient
+   * @param parameters
+   * @param leftSyntax
+   * @param rightSyntax
+   * @param combinator
+   * @param heads
+   * @param posTags
+   * @param count
+   */
+  private void incrementBinaryRuleSufficientStatistics(SufficientStatistics gradient,
+      SufficientStatistics parameters, HeadedSyntacticCategory leftSyntax,
+      HeadedSyntacticCategory rightSyntax, Combinator combinator,
+      Collection<IndexedPredicate> heads, List<String> posTags, double count) {
+    SufficientStatistics syntaxGradient = gradient.coerceToList().getStatisticByName(SYNTAX_PARAMETERS);
+    SufficientStatistics headedSyntaxGradient = gradient.coerceToList().getStatisticByName(HEADED_SYNTAX_PARAMETERS);
+    
+    SufficientStatistics syntaxParameters = parameters.coerceToList().getStatisticByName(SYNTAX_PARAMETERS);
+    SufficientStatistics headedSyntaxParameters = parameters.coerceToList().getStatisticByName(HEADED_SYNTAX_PARAMETERS);
+
+    Assignment assignment = Assignment.unionAll(
+        leftSyntaxVar.outcomeArrayToAssignment(leftSyntax),
+        rightSyntaxVar.outcomeArrayToAssignment(rightSyntax),
+        parentSyntaxVar.outcomeArrayToAssignment(combinator));
+    syntaxFamily.incrementSufficientStatisticsFromAssignment(syntaxGradient, syntaxParameters,
+        assignment, count);
+
+    // Increment the headed syntax gradient.
+    for (IndexedPredicate semanticHead : heads) {
+      String posTag = posTags.get(semanticHead.getHeadIndex());
+      Assignment headedSyntaxAssignment = Assignment.unionAll(assignment,
+          headedBinaryRulePredicateVar.outcomeArrayToAssignment(semanticHead.getHead()),
+          headedBinaryRulePosVar.outcomeArrayToAssignment(posTag));
+      headedBinaryRuleFamily.incrementSufficientStatisticsFromAssignment(headedSyntaxGradient,
+          headedSyntaxParameters, headedSyntaxAssignment, count);
     }
   }
 
+  private void incrementUnaryRuleSufficientStatistics(SufficientStatistics gradient,
+      SufficientStatistics parameters, UnaryCombinator rule, double count) {
+    SufficientStatistics unaryRuleGradient = gradient.coerceToList().getStatisticByName(UNARY_RULE_PARAMETERS);
+    SufficientStatistics unaryRuleParameters = parameters.coerceToList().getStatisticByName(UNARY_RULE_PARAMETERS);
+    Assignment unaryRuleAssignment = unaryRuleInputVar.outcomeArrayToAssignment(
+        rule.getInputType()).union(unaryRuleVar.outcomeArrayToAssignment(rule));
+    unaryRuleFamily.incrementSufficientStatisticsFromAssignment(unaryRuleGradient,
+        unaryRuleParameters, unaryRuleAssignment, count);
+  }
+
   public void incrementRootSyntaxSufficientStatistics(SufficientStatistics gradient,
       SufficientStatistics parameters, HeadedSyntacticCategory category,
       Collection<IndexedPredicate> heads, List<String> posTags, double count) {
@@ -692,6 +746,128 @@ public class ParametricCcgParser implements ParametricFamily<CcgParser> {
         parse, count);
   }
 
+  /**
+   * Increments {@code gradient} by {@code count} times the expected
+   * features of the parses spanning the entire sentence in
+   * {@code chart}, where each parse is weighted by its probability.
+   * This method is equivalent to calling
+   * {@link #incrementSufficientStatistics(SufficientStatistics, SufficientStatistics, CcgParse, double)}
+   * on each such parse with count
+   * {@code count * parse.getSubtreeProbability() / chart.getPartitionFunction()}.
+   * However, no parse trees are constructed: the expectations are
+   * computed from the marginal probabilities of the chart entries
+   * (see {@link AbstractCcgChart#getEntryMarginals}), so the
+   * features of each chart entry are computed once, regardless of
+   * how many parses contain it.
+   * 
+   * @param gradient
+   * @param currentParameters
+   * @param chart a chart produced by {@code parser}.
+   * @param parser
+   * @param count
+   */
+  public void incrementExpectedSufficientStatistics(SufficientStatistics gradient,
+      SufficientStatistics currentParameters, AbstractCcgChart chart, CcgParser parser,
+      double count) {
+    List<String> words = chart.getWords();
+    List<String> posTags = chart.getPosTags();
+    DiscreteVariable syntaxVarType = parser.getSyntaxVarType();
+    SufficientStatistics lexiconGradient = gradient.coerceToList()
+        .getStatisticByName(LEXICON_PARAMETERS);
+    SufficientStatistics lexiconParameters = currentParameters.coerceToList()
+        .getStatisticByName(LEXICON_PARAMETERS);
+
+    int numTerminals = chart.size();
+    double[][] marginals = chart.getEntryMarginals();
+    // A unary rule applied to a child by its parent replaces the
+    // child's own unary rule in the parse tree (see
+    // CcgParse.addUnaryRule). This array stores the marginal
+    // probability of each entry appearing as such a child.
+    double[][] replacedUnaryRuleMarginals = new double[marginals.length][];
+    for (int i = 0; i < marginals.length; i++) {
+      if (marginals[i] != null) {
+        replacedUnaryRuleMarginals[i] = new double[marginals[i].length];
+      }
+    }
+
+    for (int spanSize = numTerminals - 1; spanSize >= 0; spanSize--) {
+      for (int spanStart = 0; spanStart + spanSize < numTerminals; spanStart++) {
+        int spanEnd = spanStart + spanSize;
+        int spanIndex = (spanStart * numTerminals) + spanEnd;
+        double[] spanMarginals = marginals[spanIndex];
+        for (int i = 0; i < spanMarginals.length; i++) {
+          if (spanMarginals[i] == 0.0) {
+            continue;
+          }
+          double entryCount = count * spanMarginals[i];
+
+          ChartEntry entry = chart.getChartEntry(spanStart, spanEnd, i);
+          HeadedSyntacticCategory syntax = (HeadedSyntacticCategory) syntaxVarType.getValue(
+              entry.getHeadedSyntax());
+          Set<IndexedPredicate> heads = Sets.newHashSet(parser.variableToIndexedPredicateArray(
+              syntax.getHeadVariable(), entry.getAssignments()));
+
+          incrementDependencySufficientStatistics(gradient, currentParameters, posTags,
+              Arrays.asList(parser.longArrayToFilledDependencyArray(entry.getDependencies())),
+              entryCount);
+
+          if (spanSize == numTerminals - 1) {
+            incrementRootSyntaxSufficientStatistics(gradient, currentParameters, syntax, heads,
+                posTags, entryCount);
+          }
+
+          if (entry.isTerminal()) {
+            LexiconEntry lexiconEntry = new LexiconEntry(entry.getLexiconTriggerWords(),
+                entry.getLexiconEntry());
+            lexiconFamily.incrementLexiconSufficientStatistics(lexiconGradient, lexiconParameters,
+                lexiconEntry, spanEnd, words, posTags, entryCount);
+          } else {
+            int leftSpanIndex = (entry.getLeftSpanStart() * numTerminals) + entry.getLeftSpanEnd();
+            int rightSpanIndex = (entry.getRightSpanStart() * numTerminals) + entry.getRightSpanEnd();
+            HeadedSyntacticCategory leftSyntax = null;
+            HeadedSyntacticCategory rightSyntax = null;
+
+            UnaryCombinator leftUnaryRule = entry.getLeftUnaryRule();
+            if (leftUnaryRule != null) {
+              leftSyntax = (HeadedSyntacticCategory) syntaxVarType.getValue(leftUnaryRule.getSyntax());
+              incrementUnaryRuleSufficientStatistics(gradient, currentParameters, leftUnaryRule,
+                  entryCount);
+              replacedUnaryRuleMarginals[leftSpanIndex][entry.getLeftChartIndex()] += spanMarginals[i];
+            } else {
+              leftSyntax = (HeadedSyntacticCategory) syntaxVarType.getValue(chart.getChartEntry(
+                  entry.getLeftSpanStart(), entry.getLeftSpanEnd(), entry.getLeftChartIndex())
+                  .getHeadedSyntax());
+            }
+
+            UnaryCombinator rightUnaryRule = entry.getRightUnaryRule();
+            if (rightUnaryRule != null) {
+              rightSyntax = (HeadedSyntacticCategory) syntaxVarType.getValue(rightUnaryRule.getSyntax());
+              incrementUnaryRuleSufficientStatistics(gradient, currentParameters, rightUnaryRule,
+                  entryCount);
+              replacedUnaryRuleMarginals[rightSpanIndex][entry.getRightChartIndex()] += spanMarginals[i];
+            } else {
+              rightSyntax = (HeadedSyntacticCategory) syntaxVarType.getValue(chart.getChartEntry(
+                  entry.getRightSpanStart(), entry.getRightSpanEnd(), entry.getRightChartIndex())
+                  .getHeadedSyntax());
+            }
+
+            incrementBinaryRuleSufficientStatistics(gradient, currentParameters, leftSyntax,
+                rightSyntax, entry.getCombinator(), heads, posTags, entryCount);
+          }
+
+          // Parents are processed before their children, so
+          // replacedUnaryRuleMarginals is complete for this entry.
+          UnaryCombinator rootUnaryRule = entry.getRootUnaryRule();
+          double unaryRuleMarginal = spanMarginals[i] - replacedUnaryRuleMarginals[spanIndex][i];
+          if (rootUnaryRule != null && unaryRuleMarginal != 0.0) {
+            incrementUnaryRuleSufficientStatistics(gradient, currentParameters, rootUnaryRule,
+                count * unaryRuleMarginal);
+          }
+        }
+      }
+    }
+  }
+
   public String getParameterDescription(SufficientStatistics parameters) {
     return getParameterDescription(parameters, -1);
   }
@@ -0,0 +1,32 @@
+package com.jayantkrish.jklol.ccg;
+
+/**
+ * A handle for cancelling CCG parsing from another thread. The
+ * parser periodically checks whether the handle has been cancelled,
+ * including between combinations of chart entries within a single
+ * span, and stops parsing shortly after {@link #cancel} is called. A
+ * single handle may be shared by several parses, e.g., all of the
+ * parses performed for one request.
+ *
+ * @author jayantk
+ */
+public class ParseCancellation {
+
+  private volatile boolean cancelled;
+
+  public ParseCancellation() {
+    this.cancelled = false;
+  }
+
+  /**
+   * Requests that every parse using this handle stops as soon as
+   * possible. Parses which have not started yet stop immediately.
+   */
+  public void cancel() {
+    cancelled = true;
+  }
+
+  public boolean isCancelled() {
+    return cancelled;
+  }
+}
@@ -1,13 +1,18 @@
 package com.jayantkrish.jklol.ccg.chart;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
 import com.jayantkrish.jklol.ccg.CcgParse;
 import com.jayantkrish.jklol.ccg.CcgParser;
 import com.jayantkrish.jklol.ccg.HeadedSyntacticCategory;
+import com.jayantkrish.jklol.ccg.ParseCancellation;
 import com.jayantkrish.jklol.ccg.supertag.SupertaggedSentence;
 import com.jayantkrish.jklol.models.DiscreteFactor;
 import com.jayantkrish.jklol.models.DiscreteVariable;
@@ -44,19 +49,22 @@ public abstract class AbstractCcgChart implements CcgChart {
   private Tensor wordDistanceTensor;
   private Tensor puncDistanceTensor;
   private Tensor verbDistanceTensor;
+  // Combined weights of dependencies scored using the above tensors.
+  private DependencyScoreCache dependencyScoreCache;
 
   // The syntactic category combinations that will be considered
   // while parsing this sentence.
   private DiscreteFactor syntaxDistribution;
 
-  private int[] assignmentVarIndexAccumulator;
-  private long[] assignmentAccumulator;
-  private long[] filledDepAccumulator;
-  private int[] unfilledDepVarIndexAccumulator;
-  private long[] unfilledDepAccumulator;
-
   private boolean finishedParsing;
 
+  // Conditions for stopping parsing early. parseCancelled is set
+  // once either condition is detected, and may be read by multiple
+  // parsing threads.
+  private long parseDeadlineMillis;
+  private ParseCancellation parseCancellation;
+  private volatile boolean parseCancelled;
+
   public AbstractCcgChart(SupertaggedSentence input, int maxChartSize) {
     this.input = input;
     this.terminals = ImmutableList.copyOf(input.getWords());
@@ -67,6 +75,10 @@ public abstract class AbstractCcgChart implements CcgChart {
     // left null, and must be manually set.
 
     this.finishedParsing = false;
+
+    this.parseDeadlineMillis = Long.MAX_VALUE;
+    this.parseCancellation = null;
+    this.parseCancelled = false;
   }
 
   @Override
@@ -169,28 +181,8 @@ public abstract class AbstractCcgChart implements CcgChart {
   }
 
   @Override
-  public void setAssignmentVarIndexAccumulator(int[] assignmentVarIndexAccumulator) {
-    this.assignmentVarIndexAccumulator = assignmentVarIndexAccumulator;
-  }
-
-  @Override
-  public void setAssignmentAccumulator(long[] assignmentAccumulator) {
-    this.assignmentAccumulator = assignmentAccumulator;
-  }
-
-  @Override
-  public void setFilledDepAccumulator(long[] filledDepAccumulator) {
-    this.filledDepAccumulator = filledDepAccumulator;
-  }
-
-  @Override
-  public void setUnfilledDepVarIndexAccumulator(int[] unfilledDepVarIndexAccumulator) {
-    this.unfilledDepVarIndexAccumulator = unfilledDepVarIndexAccumulator;
-  }
-
-  @Override
-  public void setUnfilledDepAccumulator(long[] unfilledDepAccumulator) {
-    this.unfilledDepAccumulator = unfilledDepAccumulator;
+  public void setDependencyScoreCache(DependencyScoreCache cache) {
+    this.dependencyScoreCache = cache;
   }
 
   @Override
@@ -219,28 +211,19 @@ public abstract class AbstractCcgChart implements CcgChart {
   }
 
   @Override
-  public int[] getAssignmentVarIndexAccumulator() {
-    return assignmentVarIndexAccumulator;
-  }
-  
-  @Override
-  public long[] getAssignmentAccumulator() {
-    return assignmentAccumulator;
-  }
-  
-  @Override
-  public long[] getFilledDepAccumulator() {
-    return filledDepAccumulator;
+  public DependencyScoreCache getDependencyScoreCache() {
+    return dependencyScoreCache;
   }
-  
+
   @Override
-  public int[] getUnfilledDepVarIndexAccumulator() {
-    return unfilledDepVarIndexAccumulator;
+  public ChartEntry getChartEntry(int spanStart, int spanEnd, int entryIndex) {
+    return getChartEntriesForSpan(spanStart, spanEnd)[entryIndex];
   }
-  
+
   @Override
-  public long[] getUnfilledDepAccumulator() {
-    return unfilledDepAccumulator;
+  public PackedChartEntries getPackedChartEntriesForSpan(int spanStart, int spanEnd) {
+    // By default, entries are not packed.
+    return null;
   }
 
   @Override
@@ -253,6 +236,197 @@ public abstract class AbstractCcgChart implements CcgChart {
     this.finishedParsing = finished;
   }
 
+  @Override
+  public void setParseDeadline(long deadlineMillis, ParseCancellation cancellation) {
+    this.parseDeadlineMillis = deadlineMillis;
+    this.parseCancellation = cancellation;
+  }
+
+  @Override
+  public boolean isParseCancelled() {
+    if (!parseCancelled) {
+      if ((parseCancellation != null && parseCancellation.isCancelled())
+          || (parseDeadlineMillis != Long.MAX_VALUE
+              && System.currentTimeMillis() > parseDeadlineMillis)) {
+        parseCancelled = true;
+      }
+    }
+    return parseCancelled;
+  }
+
+  /**
+   * Gets the sequence of parses of consecutive spans which covers the
+   * entire sentence with the fewest fragments, using the entries
+   * currently in this chart. Ties are broken by probability. This
+   * method is useful for retrieving a partial analysis of a sentence
+   * when parsing did not complete. Covers are not ranked by
+   * probability alone, because a one-word fragment is usually more
+   * probable than any parse of a longer span. Returns an empty list if some word is not covered by any chart
+   * entry.
+   * 
+   * @param parser
+   * @return
+   */
+  public List<CcgParse> decodeBestFragmentCover(CcgParser parser) {
+    int numTerminals = size();
+    // bestCoverSizes[i] is the number of fragments in the best cover
+    // of words 0..i-1, or Integer.MAX_VALUE if these words cannot be
+    // covered. The best cover has probability bestCoverProbs[i], and
+    // its last fragment starts at bestCoverStarts[i] and is the
+    // bestCoverEntries[i]'th entry of its span.
+    int[] bestCoverSizes = new int[numTerminals + 1];
+    double[] bestCoverProbs = new double[numTerminals + 1];
+    int[] bestCoverStarts = new int[numTerminals + 1];
+    int[] bestCoverEntries = new int[numTerminals + 1];
+    bestCoverSizes[0] = 0;
+    bestCoverProbs[0] = 1.0;
+    for (int spanEnd = 0; spanEnd < numTerminals; spanEnd++) {
+      bestCoverSizes[spanEnd + 1] = Integer.MAX_VALUE;
+      bestCoverStarts[spanEnd + 1] = -1;
+      for (int spanStart = 0; spanStart <= spanEnd; spanStart++) {
+        if (bestCoverSizes[spanStart] == Integer.MAX_VALUE) {
+          continue;
+        }
+        int coverSize = bestCoverSizes[spanStart] + 1;
+        int numEntries = getNumChartEntriesForSpan(spanStart, spanEnd);
+        double[] probs = getChartEntryProbsForSpan(spanStart, spanEnd);
+        for (int i = 0; i < numEntries; i++) {
+          double coverProb = bestCoverProbs[spanStart] * probs[i];
+          if (coverSize < bestCoverSizes[spanEnd + 1] || (coverSize == bestCoverSizes[spanEnd + 1]
+              && coverProb > bestCoverProbs[spanEnd + 1])) {
+            bestCoverSizes[spanEnd + 1] = coverSize;
+            bestCoverProbs[spanEnd + 1] = coverProb;
+            bestCoverStarts[spanEnd + 1] = spanStart;
+            bestCoverEntries[spanEnd + 1] = i;
+          }
+        }
+      }
+    }
+
+    List<CcgParse> fragments = Lists.newArrayList();
+    if (bestCoverStarts[numTerminals] == -1) {
+      return fragments;
+    }
+    int spanEnd = numTerminals - 1;
+    while (spanEnd >= 0) {
+      int spanStart = bestCoverStarts[spanEnd + 1];
+      fragments.add(decodeParseFromSpan(spanStart, spanEnd, bestCoverEntries[spanEnd + 1], parser));
+      spanEnd = spanStart - 1;
+    }
+    Collections.reverse(fragments);
+    return fragments;
+  }
+
+  /**
+   * Gets the {@code numParses} best CCG parses spanning
+   * {@code spanStart} to {@code spanEnd}, in decreasing order of
+   * probability. Only the returned parses are decoded.
+   * 
+   * @param spanStart
+   * @param spanEnd
+   * @param numParses
+   * @param parser
+   * @return
+   */
+  public List<CcgParse> decodeBestParsesForSpan(int spanStart, int spanEnd, int numParses,
+      CcgParser parser) {
+    return Lists.newArrayList(Iterators.limit(
+        new CcgKBestParseIterator(this, spanStart, spanEnd, false, parser), numParses));
+  }
+
+  /**
+   * Gets the highest-scoring {@code numParses} parses spanning any
+   * subspan of {@code spanStart} to {@code spanEnd}, in decreasing
+   * order of probability. Only the returned parses are decoded.
+   * 
+   * @param spanStart
+   * @param spanEnd
+   * @param numParses
+   * @param parser
+   * @return
+   */
+  public List<CcgParse> decodeBestParsesForSubspan(int spanStart, int spanEnd, int numParses,
+      CcgParser parser) {
+    return Lists.newArrayList(Iterators.limit(
+        new CcgKBestParseIterator(this, spanStart, spanEnd, true, parser), numParses));
+  }
+
+  /**
+   * Gets the sum of the probabilities of the chart entries spanning
+   * the entire sentence.
+   *
+   * @return
+   */
+  public double getPartitionFunction() {
+    int numEntries = getNumChartEntriesForSpan(0, size() - 1);
+    double[] probs = getChartEntryProbsForSpan(0, size() - 1);
+    double partitionFunction = 0.0;
+    for (int i = 0; i < numEntries; i++) {
+      partitionFunction += probs[i];
+    }
+    return partitionFunction;
+  }
+
+  /**
+   * Computes the marginal probability of every chart entry under the
+   * distribution over parses of the entire sentence, i.e., the
+   * probability that a parse drawn in proportion to its probability
+   * from the root span contains the entry. Each chart entry has a
+   * single backpointer, so these marginals are computed by a single
+   * outside pass, which propagates the marginal of each entry to its
+   * children.
+   * <p>
+   * The returned array is indexed by {@code (spanStart * size()) + spanEnd},
+   * then by the index of the entry within its span. All marginals are
+   * zero if the root span has no entries.
+   *
+   * @return
+   */
+  public double[][] getEntryMarginals() {
+    int numTerminals = size();
+    double[][] marginals = new double[numTerminals * numTerminals][];
+    for (int i = 0; i < numTerminals; i++) {
+      for (int j = i; j < numTerminals; j++) {
+        marginals[(i * numTerminals) + j] = new double[getNumChartEntriesForSpan(i, j)];
+      }
+    }
+
+    double partitionFunction = getPartitionFunction();
+    if (partitionFunction == 0.0) {
+      return marginals;
+    }
+
+    double[] rootMarginals = marginals[numTerminals - 1];
+    double[] rootProbs = getChartEntryProbsForSpan(0, numTerminals - 1);
+    for (int i = 0; i < rootMarginals.length; i++) {
+      rootMarginals[i] = rootProbs[i] / partitionFunction;
+    }
+
+    // The children of each entry are in strictly smaller spans, so
+    // processing spans from largest to smallest visits every entry
+    // after all of its parents.
+    for (int spanSize = numTerminals - 1; spanSize > 0; spanSize--) {
+      for (int spanStart = 0; spanStart + spanSize < numTerminals; spanStart++) {
+        int spanEnd = spanStart + spanSize;
+        double[] spanMarginals = marginals[(spanStart * numTerminals) + spanEnd];
+        for (int i = 0; i < spanMarginals.length; i++) {
+          if (spanMarginals[i] == 0.0) {
+            continue;
+          }
+
+          ChartEntry entry = getChartEntry(spanStart, spanEnd, i);
+          if (!entry.isTerminal()) {
+            marginals[(entry.getLeftSpanStart() * numTerminals) + entry.getLeftSpanEnd()]
+                [entry.getLeftChartIndex()] += spanMarginals[i];
+            marginals[(entry.getRightSpanStart() * numTerminals) + entry.getRightSpanEnd()]
+                [entry.getRightChartIndex()] += spanMarginals[i];
+          }
+        }
+      }
+    }
+    return marginals;
+  }
+
   /**
    * Decodes the CCG parse which is the {@code beamIndex}'th parse in
    * the beam for the given span.
@@ -263,24 +437,85 @@ public abstract class AbstractCcgChart implements CcgChart {
    * @return
    */
   protected CcgParse decodeParseFromSpan(int spanStart, int spanEnd, int beamIndex, CcgParser parser) {
+    return decodeParseFromSpan(spanStart, spanEnd, beamIndex, parser, null);
+  }
+
+  /**
+   * Gets a key identifying the {@code entryIndex}th chart entry of
+   * the span from {@code spanStart} to {@code spanEnd}.
+   * 
+   * @param spanStart
+   * @param spanEnd
+   * @param entryIndex
+   * @return
+   */
+  protected long getEntryKey(int spanStart, int spanEnd, int entryIndex) {
+    long spanIndex = spanEnd + (((long) size()) * spanStart);
+    return (spanIndex << 32) + entryIndex;
+  }
+
+  /**
+   * Decodes the CCG parse of the chart entry identified by
+   * {@code entryKey} (see {@link #getEntryKey}).
+   * 
+   * @param entryKey
+   * @param parser
+   * @param decodedParses cache of previously decoded parses, indexed
+   * by entry key. May be {@code null}.
+   * @return
+   */
+  protected CcgParse decodeParseFromEntryKey(long entryKey, CcgParser parser,
+      Map<Long, CcgParse> decodedParses) {
+    int spanIndex = (int) (entryKey >> 32);
+    int entryIndex = (int) (entryKey & 0xffffffffL);
+    return decodeParseFromSpan(spanIndex / size(), spanIndex % size(), entryIndex, parser,
+        decodedParses);
+  }
+
+  /**
+   * Decodes the CCG parse which is the {@code beamIndex}'th parse in
+   * the beam for the given span. If {@code decodedParses} is not
+   * {@code null}, the parses of subtrees are looked up in and
+   * added to it, so that subtrees shared between multiple decoded
+   * parses are decoded only once.
+   * 
+   * @param spanStart
+   * @param spanEnd
+   * @param beamIndex
+   * @param parser
+   * @param decodedParses
+   * @return
+   */
+  private CcgParse decodeParseFromSpan(int spanStart, int spanEnd, int beamIndex, CcgParser parser,
+      Map<Long, CcgParse> decodedParses) {
+    long entryKey = -1;
+    if (decodedParses != null) {
+      entryKey = getEntryKey(spanStart, spanEnd, beamIndex);
+      CcgParse parse = decodedParses.get(entryKey);
+      if (parse != null) {
+        return parse;
+      }
+    }
+
     DiscreteVariable syntaxVarType = parser.getSyntaxVarType();
-    ChartEntry entry = getChartEntriesForSpan(spanStart, spanEnd)[beamIndex];
+    ChartEntry entry = getChartEntry(spanStart, spanEnd, beamIndex);
     HeadedSyntacticCategory syntax = (HeadedSyntacticCategory) syntaxVarType.getValue(
         entry.getHeadedSyntax());
 
+    CcgParse result;
     if (entry.isTerminal()) {
       List<String> terminals = getWords();
       List<String> posTags = getPosTags();
-      return CcgParse.forTerminal(syntax, entry.getLexiconEntry(), entry.getLexiconTriggerWords(), posTags.subList(spanStart, spanEnd + 1),
+      result = CcgParse.forTerminal(syntax, entry.getLexiconEntry(), entry.getLexiconTriggerWords(), posTags.subList(spanStart, spanEnd + 1),
           parser.variableToIndexedPredicateArray(syntax.getHeadVariable(), entry.getAssignments()),
           Arrays.asList(parser.longArrayToFilledDependencyArray(entry.getDependencies())),
           terminals.subList(spanStart, spanEnd + 1), getChartEntryProbsForSpan(spanStart, spanEnd)[beamIndex],
           entry.getRootUnaryRule(), spanStart, spanEnd);
     } else {
       CcgParse left = decodeParseFromSpan(entry.getLeftSpanStart(), entry.getLeftSpanEnd(),
-          entry.getLeftChartIndex(), parser);
+          entry.getLeftChartIndex(), parser, decodedParses);
       CcgParse right = decodeParseFromSpan(entry.getRightSpanStart(), entry.getRightSpanEnd(),
-          entry.getRightChartIndex(), parser);
+          entry.getRightChartIndex(), parser, decodedParses);
 
       if (entry.getLeftUnaryRule() != null) {
         left = left.addUnaryRule(entry.getLeftUnaryRule(), (HeadedSyntacticCategory)
@@ -294,11 +529,16 @@ public abstract class AbstractCcgChart implements CcgChart {
       double nodeProb = getChartEntryProbsForSpan(spanStart, spanEnd)[beamIndex] /
           (left.getSubtreeProbability() * right.getSubtreeProbability());
 
-      return CcgParse.forNonterminal(syntax,
+      result = CcgParse.forNonterminal(syntax,
           parser.variableToIndexedPredicateArray(syntax.getHeadVariable(), entry.getAssignments()),
           Arrays.asList(parser.longArrayToFilledDependencyArray(entry.getDependencies())), nodeProb,
           left, right, entry.getCombinator(), entry.getRootUnaryRule(), spanStart, spanEnd);
     }
+
+    if (decodedParses != null) {
+      decodedParses.put(entryKey, result);
+    }
+    return result;
   }
 
   protected  IntMultimap aggregateBySyntacticType(ChartEntry[] entries, int numEntries) {
@@ -0,0 +1,162 @@
+package com.jayantkrish.jklol.ccg.chart;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Determines which entries are retained in each span of a
+ * {@link CcgBeamSearchChart}. Every span retains at most
+ * {@code beamSize} entries. The following optional strategies prune
+ * the chart further, trading some accuracy for faster parsing:
+ * <ul>
+ * <li>A <i>pruning threshold</i> {@code t} discards every entry of a
+ * span whose probability is less than {@code t} times the probability
+ * of the span's best entry.
+ * <li>A <i>beam size schedule</i> gives the maximum number of entries
+ * for spans of each length. The {@code i}th element of the schedule
+ * is the beam size for spans of {@code i + 1} words; longer spans use
+ * the last element of the schedule.
+ * <li>A <i>chart budget</i> limits the total number of entries in the
+ * chart. Each span's share of the budget depends only on its length
+ * and the length of the sentence, so the same entries are pruned
+ * regardless of the order in which spans are completed. Every span
+ * may retain at least one entry, so the budget may be exceeded if it
+ * is smaller than the number of spans.
+ * </ul>
+ * Half of the chart budget is divided evenly among the one-word
+ * (lexical) spans, and the other half among the longer spans. Every
+ * parse is built from lexical entries, so pruning a lexical span costs
+ * more accuracy than pruning a longer span.
+ *
+ * @author jayantk
+ */
+public class BeamPruningStrategy implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private final int beamSize;
+  private final double pruningThreshold;
+  // May be null, in which case every span uses beamSize.
+  private final int[] beamSizeSchedule;
+  private final int chartBudget;
+
+  // Fraction of the chart budget reserved for one-word spans.
+  private static final double LEXICAL_BUDGET_FRACTION = 0.5;
+
+  /**
+   *
+   * @param beamSize maximum number of entries in any span.
+   * @param pruningThreshold minimum probability of a retained entry
+   * relative to the best entry in its span. {@code 0.0} disables
+   * threshold pruning.
+   * @param beamSizeSchedule beam size for spans of each length. May be
+   * {@code null}, in which case every span uses {@code beamSize}.
+   * @param chartBudget maximum number of entries in the chart.
+   * {@code Integer.MAX_VALUE} disables the budget.
+   */
+  public BeamPruningStrategy(int beamSize, double pruningThreshold, int[] beamSizeSchedule,
+      int chartBudget) {
+    Preconditions.checkArgument(beamSize > 0);
+    Preconditions.checkArgument(pruningThreshold >= 0.0 && pruningThreshold <= 1.0);
+    Preconditions.checkArgument(beamSizeSchedule == null || beamSizeSchedule.length > 0);
+    Preconditions.checkArgument(chartBudget > 0);
+    if (beamSizeSchedule != null) {
+      for (int i = 0; i < beamSizeSchedule.length; i++) {
+        Preconditions.checkArgument(beamSizeSchedule[i] > 0);
+      }
+    }
+
+    this.beamSize = beamSize;
+    this.pruningThreshold = pruningThreshold;
+    this.beamSizeSchedule = beamSizeSchedule == null ? null
+        : Arrays.copyOf(beamSizeSchedule, beamSizeSchedule.length);
+    this.chartBudget = chartBudget;
+  }
+
+  /**
+   * Gets a strategy which retains the {@code beamSize} best entries
+   * of every span, without any further pruning.
+   *
+   * @param beamSize
+   * @return
+   */
+  public static BeamPruningStrategy fixedBeam(int beamSize) {
+    return new BeamPruningStrategy(beamSize, 0.0, null, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Gets the maximum number of entries in any span.
+   *
+   * @return
+   */
+  public int getBeamSize() {
+    return beamSize;
+  }
+
+  /**
+   * Gets the maximum number of entries in a span containing
+   * {@code spanLength} words.
+   *
+   * @param spanLength
+   * @return
+   */
+  public int getBeamSizeForSpanLength(int spanLength) {
+    Preconditions.checkArgument(spanLength > 0);
+    if (beamSizeSchedule == null) {
+      return beamSize;
+    }
+    int index = Math.min(spanLength, beamSizeSchedule.length) - 1;
+    return Math.min(beamSize, beamSizeSchedule[index]);
+  }
+
+  public double getPruningThreshold() {
+    return pruningThreshold;
+  }
+
+  public int getChartBudget() {
+    return chartBudget;
+  }
+
+  /**
+   * Gets the number of entries that a span of {@code spanLength} words
+   * may retain under the chart budget, in a sentence with
+   * {@code numWords} words.
+   *
+   * @param spanLength
+   * @param numWords
+   * @return
+   */
+  public int getSpanBudget(int spanLength, int numWords) {
+    Preconditions.checkArgument(spanLength > 0 && spanLength <= numWords);
+    if (chartBudget == Integer.MAX_VALUE) {
+      return Integer.MAX_VALUE;
+    }
+
+    long numLongerSpans = (((long) numWords) * (numWords - 1)) / 2;
+    double lexicalFraction = numLongerSpans == 0 ? 1.0 : LEXICAL_BUDGET_FRACTION;
+    double share;
+    if (spanLength == 1) {
+      share = (chartBudget * lexicalFraction) / numWords;
+    } else {
+      share = (chartBudget * (1.0 - lexicalFraction)) / numLongerSpans;
+    }
+    return (int) Math.max(1.0, share);
+  }
+
+  /**
+   * Returns {@code true} if this strategy may prune entries from a
+   * span after all of its entries have been added.
+   *
+   * @return
+   */
+  public boolean prunesCompletedSpans() {
+    return pruningThreshold > 0.0 || chartBudget != Integer.MAX_VALUE;
+  }
+
+  @Override
+  public String toString() {
+    return "BeamPruningStrategy(beamSize=" + beamSize + ", threshold=" + pruningThreshold
+        + ", schedule=" + Arrays.toString(beamSizeSchedule) + ", budget=" + chartBudget + ")";
+  }
+}
@@ -0,0 +1,335 @@
+package com.jayantkrish.jklol.ccg.chart;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.jayantkrish.jklol.ccg.CcgParse;
+import com.jayantkrish.jklol.ccg.CcgParser;
+import com.jayantkrish.jklol.ccg.supertag.SupertaggedSentence;
+import com.jayantkrish.jklol.models.DiscreteVariable;
+import com.jayantkrish.jklol.util.IntMultimap;
+
+/**
+ * CCG chart for agenda-based A* parsing. Chart entries added to this
+ * chart are not immediately stored in the chart; instead, they are
+ * placed on an agenda ordered by their inside probability times an
+ * upper bound on their outside probability. The parser repeatedly
+ * removes the best entry from the agenda and adds it to the chart
+ * with {@link #finalizeEntry}.
+ * <p>
+ * The outside bound for a span is the product, over the words
+ * outside of the span, of the maximum weight of any lexicon entry
+ * for that word. (Lexicon entries spanning multiple words contribute
+ * their weight evenly to each word.) These weights are computed from
+ * the terminal entries added to the chart before {@link #startSearch}
+ * is called, and therefore respect any supertags or other
+ * {@code ChartCost} restrictions on the lexicon entries. The bound
+ * is only admissible if all other weights are at most 1 (see
+ * {@link CcgParser#hasAdmissibleAStarBound}).
+ *
+ * @author jayantk
+ */
+public class CcgAStarChart extends AbstractCcgChart {
+
+  // Entries which have been removed from the agenda.
+  private final ChartEntry[][][] chart;
+  private final double[][][] probabilities;
+  private final int[][] chartSizes;
+  private final IntMultimap[][] chartEntriesBySyntacticCategory;
+  // Hash codes of the entries in each span, used to discard entries
+  // which are equivalent to a previously finalized entry.
+  private final Set<Long>[][] entryHashCodes;
+  private int totalChartSize;
+
+  // Terminal entries added before the search starts. These entries
+  // determine the outside bounds.
+  private List<AgendaEntry> initialEntries;
+  private PriorityQueue<AgendaEntry> agenda;
+
+  // outsideBoundPrefix[i] is an upper bound on the probability of
+  // words 0..i-1, and outsideBoundSuffix[i] is a bound on the
+  // probability of words i..size()-1.
+  private double[] outsideBoundPrefix;
+  private double[] outsideBoundSuffix;
+
+  private static final int NUM_INITIAL_SPAN_ENTRIES = 10;
+
+  public CcgAStarChart(SupertaggedSentence input, int maxChartSize) {
+    super(input, maxChartSize);
+    int numTerminals = input.size();
+    this.chart = new ChartEntry[numTerminals][numTerminals][];
+    this.probabilities = new double[numTerminals][numTerminals][];
+    this.chartSizes = new int[numTerminals][numTerminals];
+    this.chartEntriesBySyntacticCategory = new IntMultimap[numTerminals][numTerminals];
+    @SuppressWarnings("unchecked")
+    Set<Long>[][] entryHashCodes = (Set<Long>[][]) new Set<?>[numTerminals][numTerminals];
+    this.entryHashCodes = entryHashCodes;
+    this.totalChartSize = 0;
+
+    this.initialEntries = Lists.newArrayList();
+    this.agenda = null;
+  }
+
+  /**
+   * Computes the outside bounds from the terminal entries added to
+   * this chart, and places those entries on the agenda. Entries added
+   * after calling this method are placed directly on the agenda.
+   */
+  public void startSearch() {
+    Preconditions.checkState(agenda == null, "Search has already started.");
+    int numTerminals = size();
+    double[] wordBounds = new double[numTerminals];
+    for (AgendaEntry initialEntry : initialEntries) {
+      int spanStart = initialEntry.getSpanStart();
+      int spanEnd = initialEntry.getSpanEnd();
+      double wordBound = Math.pow(initialEntry.getProbability(), 1.0 / (spanEnd - spanStart + 1));
+      for (int i = spanStart; i <= spanEnd; i++) {
+        wordBounds[i] = Math.max(wordBounds[i], wordBound);
+      }
+    }
+
+    outsideBoundPrefix = new double[numTerminals + 1];
+    outsideBoundSuffix = new double[numTerminals + 1];
+    outsideBoundPrefix[0] = 1.0;
+    outsideBoundSuffix[numTerminals] = 1.0;
+    for (int i = 0; i < numTerminals; i++) {
+      outsideBoundPrefix[i + 1] = outsideBoundPrefix[i] * wordBounds[i];
+      outsideBoundSuffix[numTerminals - i - 1] = outsideBoundSuffix[numTerminals - i]
+          * wordBounds[numTerminals - i - 1];
+    }
+
+    agenda = new PriorityQueue<AgendaEntry>(Math.max(initialEntries.size(), 1),
+        new AgendaEntryComparator());
+    for (AgendaEntry initialEntry : initialEntries) {
+      agenda.offer(new AgendaEntry(initialEntry.getEntry(), initialEntry.getProbability(),
+          getOutsideBound(initialEntry.getSpanStart(), initialEntry.getSpanEnd()),
+          initialEntry.getSpanStart(), initialEntry.getSpanEnd(), false));
+    }
+    initialEntries = null;
+  }
+
+  /**
+   * Gets an upper bound on the outside probability of any entry
+   * spanning {@code spanStart}-{@code spanEnd}.
+   *
+   * @param spanStart
+   * @param spanEnd
+   * @return
+   */
+  public double getOutsideBound(int spanStart, int spanEnd) {
+    return outsideBoundPrefix[spanStart] * outsideBoundSuffix[spanEnd + 1];
+  }
+
+  /**
+   * Places a parse of the entire sentence on the agenda. Unlike
+   * {@link #addChartEntryForSpan}, {@code probability} must include
+   * the weights of all root factors.
+   *
+   * @param entry
+   * @param probability
+   */
+  public void addCompleteParse(ChartEntry entry, double probability) {
+    Preconditions.checkState(agenda != null);
+    if (probability != 0.0) {
+      agenda.offer(new AgendaEntry(entry, probability, 1.0, 0, size() - 1, true));
+    }
+  }
+
+  /**
+   * Removes and returns the entry with the highest priority from the
+   * agenda. Returns {@code null} if the agenda is empty.
+   *
+   * @return
+   */
+  public AgendaEntry pollAgenda() {
+    return agenda.poll();
+  }
+
+  /**
+   * Adds {@code agendaEntry} to the chart, unless an equivalent entry
+   * with the same span has already been added. Returns the index of
+   * the entry in its span, or {@code -1} if it was not added.
+   *
+   * @param agendaEntry
+   * @return
+   */
+  public int finalizeEntry(AgendaEntry agendaEntry) {
+    int spanStart = agendaEntry.getSpanStart();
+    int spanEnd = agendaEntry.getSpanEnd();
+    ChartEntry entry = agendaEntry.getEntry();
+
+    if (entryHashCodes[spanStart][spanEnd] == null) {
+      entryHashCodes[spanStart][spanEnd] = Sets.newHashSet();
+      chart[spanStart][spanEnd] = new ChartEntry[NUM_INITIAL_SPAN_ENTRIES];
+      probabilities[spanStart][spanEnd] = new double[NUM_INITIAL_SPAN_ENTRIES];
+    }
+    if (!entryHashCodes[spanStart][spanEnd].add(entry.getSyntaxHeadHashCode())) {
+      // Entries are removed from the agenda in order of decreasing
+      // probability, so the existing entry is at least as good.
+      return -1;
+    }
+
+    int spanSize = chartSizes[spanStart][spanEnd];
+    if (spanSize == chart[spanStart][spanEnd].length) {
+      chart[spanStart][spanEnd] = Arrays.copyOf(chart[spanStart][spanEnd], spanSize * 2);
+      probabilities[spanStart][spanEnd] = Arrays.copyOf(probabilities[spanStart][spanEnd], spanSize * 2);
+    }
+    chart[spanStart][spanEnd][spanSize] = entry;
+    probabilities[spanStart][spanEnd][spanSize] = agendaEntry.getProbability();
+    chartSizes[spanStart][spanEnd]++;
+    chartEntriesBySyntacticCategory[spanStart][spanEnd] = null;
+    totalChartSize++;
+    return spanSize;
+  }
+
+  @Override
+  public CcgParse decodeBestParse(CcgParser parser) {
+    int spanEnd = size() - 1;
+    if (chartSizes[0][spanEnd] == 0) {
+      return null;
+    }
+    // The only entry for the root span is the first complete parse
+    // removed from the agenda.
+    return decodeParseFromSpan(0, spanEnd, 0, parser);
+  }
+
+  @Override
+  public ChartEntry[] getChartEntriesForSpan(int spanStart, int spanEnd) {
+    return chart[spanStart][spanEnd];
+  }
+
+  @Override
+  public double[] getChartEntryProbsForSpan(int spanStart, int spanEnd) {
+    return probabilities[spanStart][spanEnd];
+  }
+
+  @Override
+  public int getNumChartEntriesForSpan(int spanStart, int spanEnd) {
+    return chartSizes[spanStart][spanEnd];
+  }
+
+  @Override
+  public IntMultimap getChartEntriesBySyntacticCategoryForSpan(int spanStart, int spanEnd) {
+    if (chartSizes[spanStart][spanEnd] == 0) {
+      return null;
+    }
+    // The index is rebuilt lazily, as entries are frequently added to
+    // a span between reads.
+    if (chartEntriesBySyntacticCategory[spanStart][spanEnd] == null) {
+      chartEntriesBySyntacticCategory[spanStart][spanEnd] = aggregateBySyntacticType(
+          chart[spanStart][spanEnd], chartSizes[spanStart][spanEnd]);
+    }
+    return chartEntriesBySyntacticCategory[spanStart][spanEnd];
+  }
+
+  @Override
+  public int getTotalNumChartEntries() {
+    return totalChartSize;
+  }
+
+  @Override
+  public void addChartEntryForSpan(ChartEntry entry, double probability, int spanStart,
+      int spanEnd, DiscreteVariable syntaxVarType) {
+    if (entryFilter != null) {
+      probability *= Math.exp(entryFilter.apply(entry, spanStart, spanEnd, syntaxVarType));
+    }
+
+    if (probability != 0.0) {
+      if (agenda == null) {
+        initialEntries.add(new AgendaEntry(entry, probability, 1.0, spanStart, spanEnd, false));
+      } else {
+        agenda.offer(new AgendaEntry(entry, probability, getOutsideBound(spanStart, spanEnd),
+            spanStart, spanEnd, false));
+      }
+    }
+  }
+
+  @Override
+  public void doneAddingChartEntriesForSpan(int spanStart, int spanEnd) {
+    // No work needs to be done.
+  }
+
+  @Override
+  public void clearChartEntriesForSpan(int spanStart, int spanEnd) {
+    totalChartSize -= chartSizes[spanStart][spanEnd];
+    chartSizes[spanStart][spanEnd] = 0;
+    chartEntriesBySyntacticCategory[spanStart][spanEnd] = null;
+    if (entryHashCodes[spanStart][spanEnd] != null) {
+      entryHashCodes[spanStart][spanEnd].clear();
+      Arrays.fill(chart[spanStart][spanEnd], null);
+    }
+  }
+
+  /**
+   * A chart entry on the agenda, along with its span and
+   * probability.
+   *
+   * @author jayantk
+   */
+  public static class AgendaEntry {
+    private final ChartEntry entry;
+    private final double probability;
+    // Upper bound on the probability of any parse containing entry.
+    private final double priority;
+
+    private final int spanStart;
+    private final int spanEnd;
+
+    // True if entry is a parse of the entire sentence whose
+    // probability includes the root factors.
+    private final boolean isCompleteParse;
+
+    public AgendaEntry(ChartEntry entry, double probability, double outsideBound,
+        int spanStart, int spanEnd, boolean isCompleteParse) {
+      this.entry = Preconditions.checkNotNull(entry);
+      this.probability = probability;
+      this.priority = probability * outsideBound;
+      this.spanStart = spanStart;
+      this.spanEnd = spanEnd;
+      this.isCompleteParse = isCompleteParse;
+    }
+
+    public ChartEntry getEntry() {
+      return entry;
+    }
+
+    public double getProbability() {
+      return probability;
+    }
+
+    public double getPriority() {
+      return priority;
+    }
+
+    public int getSpanStart() {
+      return spanStart;
+    }
+
+    public int getSpanEnd() {
+      return spanEnd;
+    }
+
+    public boolean isCompleteParse() {
+      return isCompleteParse;
+    }
+  }
+
+  private static class AgendaEntryComparator implements Comparator<AgendaEntry> {
+    @Override
+    public int compare(AgendaEntry first, AgendaEntry second) {
+      int comparison = Double.compare(second.getPriority(), first.getPriority());
+      if (comparison == 0) {
+        // Prefer complete parses when priorities are tied, which ends
+        // the search as early as possible.
+        return Boolean.compare(second.isCompleteParse(), first.isCompleteParse());
+      }
+      return comparison;
+    }
+  }
+}
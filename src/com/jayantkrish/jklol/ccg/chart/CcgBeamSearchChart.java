@@ -1,28 +1,32 @@
 package com.jayantkrish.jklol.ccg.chart;
 
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
 import com.jayantkrish.jklol.ccg.CcgParse;
 import com.jayantkrish.jklol.ccg.CcgParser;
 import com.jayantkrish.jklol.ccg.supertag.SupertaggedSentence;
 import com.jayantkrish.jklol.models.DiscreteVariable;
-import com.jayantkrish.jklol.util.ArrayUtils;
 import com.jayantkrish.jklol.util.HeapUtils;
 import com.jayantkrish.jklol.util.IntMultimap;
 
 /**
  * Data structure for performing beam search inference with a CCG.
+ * The entries retained in each span are determined by a
+ * {@link BeamPruningStrategy}.
  * 
  * @author jayant
  */
 public class CcgBeamSearchChart extends AbstractCcgChart {
 
+  private final BeamPruningStrategy pruningStrategy;
   private final int beamSize;
   private final int numTerminals;
+  // The beam size for spans of each length, indexed by the
+  // length minus 1.
+  private final int[] spanBeamSizes;
 
   private final ChartEntry[][][] chart;
   private final double[][][] probabilities;
@@ -32,6 +36,12 @@ public class CcgBeamSearchChart extends AbstractCcgChart {
 
   private int totalChartSize;
 
+  // The number of entries that a completed span of each length may
+  // retain under the chart budget of pruningStrategy.
+  private final int[] spanBudgets;
+
+  private static final ChartEntry[] EMPTY_SPAN = new ChartEntry[0];
+
   /**
    * Creates a CCG chart for storing the current state of a beam
    * search trying to parse {@code terminals}.
@@ -41,11 +51,34 @@ public class CcgBeamSearchChart extends AbstractCcgChart {
    * @param beamSize
    */
   public CcgBeamSearchChart(SupertaggedSentence sentence, int maxChartSize, int beamSize) {
+    this(sentence, maxChartSize, BeamPruningStrategy.fixedBeam(beamSize));
+  }
+
+  /**
+   * Creates a CCG chart for storing the current state of a beam
+   * search trying to parse {@code sentence}, which prunes each span
+   * according to {@code pruningStrategy}.
+   * 
+   * @param sentence
+   * @param maxChartSize
+   * @param pruningStrategy
+   */
+  public CcgBeamSearchChart(SupertaggedSentence sentence, int maxChartSize,
+      BeamPruningStrategy pruningStrategy) {
     super(sentence, maxChartSize);
-    this.beamSize = beamSize;
+    this.pruningStrategy = Preconditions.checkNotNull(pruningStrategy);
+    this.beamSize = pruningStrategy.getBeamSize();
 
     numTerminals = sentence.size();
-    this.chart = new ChartEntry[numTerminals][numTerminals][beamSize + 1];
+    this.spanBeamSizes = new int[numTerminals];
+    this.spanBudgets = new int[numTerminals];
+    for (int i = 0; i < numTerminals; i++) {
+      spanBeamSizes[i] = pruningStrategy.getBeamSizeForSpanLength(i + 1);
+      spanBudgets[i] = pruningStrategy.getSpanBudget(i + 1, numTerminals);
+    }
+    // The beam for each span is allocated when the first entry is
+    // added to it.
+    this.chart = new ChartEntry[numTerminals][numTerminals][];
     this.probabilities = new double[numTerminals][numTerminals][beamSize + 1];
     this.chartSizes = new int[numTerminals * numTerminals];
     Arrays.fill(chartSizes, 0);
@@ -65,86 +98,10 @@ public class CcgBeamSearchChart extends AbstractCcgChart {
     return beamSize;
   }
 
-  /**
-   * Gets the {@code numParses} best CCG parses spanning
-   * {@code spanStart} to {@code spanEnd}.
-   * 
-   * @param spanStart
-   * @param spanEnd
-   * @param numParses
-   * @param parser
-   * @return
-   */
-  public List<CcgParse> decodeBestParsesForSpan(int spanStart, int spanEnd, int numParses,
-      CcgParser parser) {
-    // Perform a heap sort on the array indexes paired with the
-    // probabilities.
-    double[] probsCopy = ArrayUtils.copyOf(probabilities[spanStart][spanEnd], probabilities[spanStart][spanEnd].length);
-    Integer[] chartEntryIndexes = new Integer[probabilities[spanStart][spanEnd].length];
-    for (int i = 0; i < chartEntryIndexes.length; i++) {
-      chartEntryIndexes[i] = i;
-    }
-
-    // Heaps are min-heaps, so we throw away the initial entries.
-    // Then the remaining entries are the best parses.
-    List<CcgParse> bestParses = Lists.newArrayList();
-    int numChartEntries = getNumChartEntriesForSpan(spanStart, spanEnd);
-    while (numChartEntries > 0) {
-      if (numChartEntries <= numParses) {
-        bestParses.add(decodeParseFromSpan(spanStart, spanEnd, chartEntryIndexes[0], parser));
-      }
-
-      HeapUtils.removeMin(chartEntryIndexes, probsCopy, numChartEntries);
-      numChartEntries--;
-    }
-
-    Collections.reverse(bestParses);
-    return bestParses;
+  public BeamPruningStrategy getPruningStrategy() {
+    return pruningStrategy;
   }
-  
-  /**
-   * Gets the highest-scoring {@code numParses} parses spanning
-   * any subspan of {@code spanStart} to {@code spanEnd}.
-   * 
-   * @param spanStart
-   * @param spanEnd
-   * @param numParses
-   * @param parser
-   * @return
-   */
-  public List<CcgParse> decodeBestParsesForSubspan(int spanStart, int spanEnd, int numParses,
-      CcgParser parser) {
-    double[] probs = new double[numParses + 1];
-    CcgParse[] parses = new CcgParse[numParses + 1];
-    int heapSize = 0;
-    
-    for (int i = spanStart; i <= spanEnd; i++) {
-      for (int j = i; j <= spanEnd; j++) {
-        List<CcgParse> spanParses = decodeBestParsesForSpan(i, j, numParses, parser);
-        
-        for (CcgParse parse : spanParses) {
-          HeapUtils.offer(parses, probs, heapSize, parse, parse.getSubtreeProbability());
-          heapSize++;
-          
-          if (heapSize > numParses) {
-            HeapUtils.removeMin(parses, probs, heapSize);
-            heapSize--;
-          }
-        }
-      }
-    }
-
-    List<CcgParse> bestParses = Lists.newArrayList();
-    while (heapSize > 0) {
-      bestParses.add(parses[0]);
-      HeapUtils.removeMin(parses, probs, heapSize);
-      heapSize--;
-    }
 
-    Collections.reverse(bestParses);
-    return bestParses;
-  }
-  
   @Override
   public CcgParse decodeBestParse(CcgParser parser) {
     List<CcgParse> bestParses = decodeBestParsesForSpan(0, size() - 1, 1, parser);
@@ -153,7 +110,8 @@ public class CcgBeamSearchChart extends AbstractCcgChart {
 
   @Override
   public ChartEntry[] getChartEntriesForSpan(int spanStart, int spanEnd) {
-    return chart[spanStart][spanEnd];
+    ChartEntry[] entries = chart[spanStart][spanEnd];
+    return entries != null ? entries : EMPTY_SPAN;
   }
 
   @Override
@@ -195,11 +153,16 @@ public class CcgBeamSearchChart extends AbstractCcgChart {
     chartEntriesBySyntacticCategory[spanStart][spanEnd] = null;
 
     // This part is unnecessary, but makes debugging easier.
-    Arrays.fill(chart[spanStart][spanEnd], null);
+    if (chart[spanStart][spanEnd] != null) {
+      Arrays.fill(chart[spanStart][spanEnd], null);
+    }
   }
 
   @Override
   public void doneAddingChartEntriesForSpan(int spanStart, int spanEnd) {
+    if (pruningStrategy.prunesCompletedSpans()) {
+      pruneCompletedSpan(spanStart, spanEnd);
+    }
     chartEntriesBySyntacticCategory[spanStart][spanEnd] = aggregateBySyntacticType(chart[spanStart][spanEnd],
         getNumChartEntriesForSpan(spanStart, spanEnd));
   }
@@ -211,12 +174,16 @@ public class CcgBeamSearchChart extends AbstractCcgChart {
    * beam size.
    */
   private final void offerEntry(ChartEntry entry, double probability, int spanStart, int spanEnd) {
+    int spanBeamSize = spanBeamSizes[spanEnd - spanStart];
+    if (chart[spanStart][spanEnd] == null) {
+      chart[spanStart][spanEnd] = new ChartEntry[spanBeamSize + 1];
+    }
     HeapUtils.offer(chart[spanStart][spanEnd], probabilities[spanStart][spanEnd],
         chartSizes[spanEnd + (numTerminals * spanStart)], entry, probability);
     chartSizes[spanEnd + (numTerminals * spanStart)]++;
     totalChartSize++;
 
-    if (chartSizes[spanEnd + (numTerminals * spanStart)] > beamSize) {
+    if (chartSizes[spanEnd + (numTerminals * spanStart)] > spanBeamSize) {
       HeapUtils.removeMin(chart[spanStart][spanEnd], probabilities[spanStart][spanEnd],
           chartSizes[spanEnd + (numTerminals * spanStart)]);
       chartSizes[spanEnd + (numTerminals * spanStart)]--;
@@ -224,6 +191,68 @@ public class CcgBeamSearchChart extends AbstractCcgChart {
     }
   }
 
+  /**
+   * Removes entries from the completed span {@code spanStart} to
+   * {@code spanEnd} according to the pruning threshold and chart
+   * budget of {@code pruningStrategy}. Entries are removed in
+   * increasing order of probability, so the remaining entries are
+   * still a heap.
+   */
+  private void pruneCompletedSpan(int spanStart, int spanEnd) {
+    int spanIndex = spanEnd + (numTerminals * spanStart);
+    ChartEntry[] entries = chart[spanStart][spanEnd];
+    double[] probs = probabilities[spanStart][spanEnd];
+    int numEntries = chartSizes[spanIndex];
+
+    double threshold = pruningStrategy.getPruningThreshold();
+    if (threshold > 0.0 && numEntries > 0) {
+      double maxProb = probs[0];
+      for (int i = 1; i < numEntries; i++) {
+        maxProb = Math.max(maxProb, probs[i]);
+      }
+      double minProb = maxProb * threshold;
+      while (numEntries > 0 && probs[0] < minProb) {
+        HeapUtils.removeMin(entries, probs, numEntries);
+        numEntries--;
+      }
+    }
+
+    int maxEntries = spanBudgets[spanEnd - spanStart];
+    while (numEntries > maxEntries) {
+      HeapUtils.removeMin(entries, probs, numEntries);
+      numEntries--;
+    }
+
+    totalChartSize -= chartSizes[spanIndex] - numEntries;
+    chartSizes[spanIndex] = numEntries;
+  }
+
+  /**
+   * Discards the {@code ChartEntry} objects for a span whose entries
+   * have been copied elsewhere, e.g., into a
+   * {@link PackedChartEntries}. The number and probabilities of the
+   * span's entries are unchanged.
+   * 
+   * @param spanStart
+   * @param spanEnd
+   */
+  protected void releaseChartEntriesForSpan(int spanStart, int spanEnd) {
+    chart[spanStart][spanEnd] = null;
+  }
+
+  /**
+   * Reverses {@link #releaseChartEntriesForSpan}, replacing the
+   * entries of the span with {@code entries}. {@code entries} must
+   * contain the released entries in their original order.
+   * 
+   * @param spanStart
+   * @param spanEnd
+   * @param entries
+   */
+  protected void restoreChartEntriesForSpan(int spanStart, int spanEnd, ChartEntry[] entries) {
+    chart[spanStart][spanEnd] = Arrays.copyOf(entries, spanBeamSizes[spanEnd - spanStart] + 1);
+  }
+
   public static ChartEntry[] copyChartEntryArray(ChartEntry[] entries, int numEntries) {
     ChartEntry[] returnValue = new ChartEntry[numEntries];
     for (int i = 0; i < numEntries; i++) {
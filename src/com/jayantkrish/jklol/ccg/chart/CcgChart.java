@@ -4,6 +4,7 @@ import java.util.List;
 
 import com.jayantkrish.jklol.ccg.CcgParse;
 import com.jayantkrish.jklol.ccg.CcgParser;
+import com.jayantkrish.jklol.ccg.ParseCancellation;
 import com.jayantkrish.jklol.ccg.supertag.SupertaggedSentence;
 import com.jayantkrish.jklol.models.DiscreteFactor;
 import com.jayantkrish.jklol.models.DiscreteVariable;
@@ -94,16 +95,15 @@ public interface CcgChart {
   public void setVerbDistanceTensor(Tensor tensor);
 
   public void setSyntaxDistribution(DiscreteFactor syntaxDistribution);
-  
-  public void setAssignmentVarIndexAccumulator(int[] assignmentVarIndexAccumulator);
-  
-  public void setAssignmentAccumulator(long[] assignmentAccumulator);
-  
-  public void setFilledDepAccumulator(long[] filledDepAccumulator);
-  
-  public void setUnfilledDepVarIndexAccumulator(int[] unfilledDepVarIndexAccumulator);
-  
-  public void setUnfilledDepAccumulator(long[] unfilledDepAccumulator);
+
+  /**
+   * Sets the cache of dependency weights for this sentence. The
+   * cache must be replaced whenever the dependency or distance
+   * tensors of this chart change.
+   * 
+   * @param cache
+   */
+  public void setDependencyScoreCache(DependencyScoreCache cache);
 
   /**
    * Gets the subset of all parser weights which may be used in this
@@ -120,16 +120,14 @@ public interface CcgChart {
   public Tensor getVerbDistanceTensor();
 
   public DiscreteFactor getSyntaxDistribution();
-  
-  public int[] getAssignmentVarIndexAccumulator();
-  
-  public long[] getAssignmentAccumulator();
-  
-  public long[] getFilledDepAccumulator();
-  
-  public int[] getUnfilledDepVarIndexAccumulator();
-  
-  public long[] getUnfilledDepAccumulator();
+
+  /**
+   * Gets a cache of the weights of dependencies scored while parsing
+   * this sentence.
+   * 
+   * @return
+   */
+  public DependencyScoreCache getDependencyScoreCache();
 
   /**
    * Gets the chart entries spanning the words {@code spanStart}-
@@ -144,6 +142,32 @@ public interface CcgChart {
    */
   public ChartEntry[] getChartEntriesForSpan(int spanStart, int spanEnd);
 
+  /**
+   * Gets the {@code entryIndex}th chart entry spanning
+   * {@code spanStart}-{@code spanEnd}, inclusive. This method is
+   * equivalent to indexing into the result of
+   * {@link #getChartEntriesForSpan}, but may be cheaper.
+   *
+   * @param spanStart
+   * @param spanEnd
+   * @param entryIndex
+   * @return
+   */
+  public ChartEntry getChartEntry(int spanStart, int spanEnd, int entryIndex);
+
+  /**
+   * Gets the chart entries spanning {@code spanStart}-{@code spanEnd}
+   * in packed form, or {@code null} if this chart does not store
+   * packed entries for the span. The indexes of the packed entries
+   * match the indexes of the array returned by
+   * {@link #getChartEntriesForSpan}.
+   *
+   * @param spanStart
+   * @param spanEnd
+   * @return
+   */
+  public PackedChartEntries getPackedChartEntriesForSpan(int spanStart, int spanEnd);
+
   /**
    * Gets the probabilities of each chart entry spanning
    * {@code spanStart}- {@code spanEnd}, inclusive. The indexes of the
@@ -221,6 +245,28 @@ public interface CcgChart {
   public CcgParse decodeBestParse(CcgParser parser);
   
   public boolean isFinishedParsing();
+
+  /**
+   * Sets the conditions under which parsing this chart should stop
+   * early: after the time {@code deadlineMillis} (as given by
+   * {@code System.currentTimeMillis()}), or after
+   * {@code cancellation} is cancelled. {@code cancellation} may be
+   * {@code null}.
+   * 
+   * @param deadlineMillis
+   * @param cancellation
+   */
+  public void setParseDeadline(long deadlineMillis, ParseCancellation cancellation);
+
+  /**
+   * Returns {@code true} if parsing this chart should stop because
+   * the deadline passed or the parse was cancelled (see
+   * {@link #setParseDeadline}). Once this method returns
+   * {@code true}, it always returns {@code true}.
+   * 
+   * @return
+   */
+  public boolean isParseCancelled();
   
   public void setFinishedParsing(boolean finished);
 }
\ No newline at end of file
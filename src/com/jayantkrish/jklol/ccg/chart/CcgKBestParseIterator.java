@@ -0,0 +1,135 @@
+package com.jayantkrish.jklol.ccg.chart;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import com.google.common.collect.Maps;
+import com.jayantkrish.jklol.ccg.CcgParse;
+import com.jayantkrish.jklol.ccg.CcgParser;
+import com.jayantkrish.jklol.util.HeapUtils;
+
+/**
+ * Iterates over the parses in a CCG chart in decreasing order of
+ * probability. Parses are decoded on demand, so retrieving the
+ * {@code k} best parses only constructs {@code k} {@code CcgParse}
+ * trees. Subtrees shared between the returned parses are decoded
+ * once and reused.
+ * <p>
+ * Every chart entry has a single backpointer, so each entry of a
+ * span corresponds to exactly one parse. The parses of a span are
+ * therefore ordered by sorting the span's entries by probability,
+ * which only manipulates primitive arrays. The sort removes entries
+ * from a min-heap, so parses with equal probabilities are returned
+ * in the reverse of their removal order, as in previous versions of
+ * {@link CcgBeamSearchChart}.
+ *
+ * @author jayantk
+ */
+public class CcgKBestParseIterator implements Iterator<CcgParse> {
+
+  private final AbstractCcgChart chart;
+  private final CcgParser parser;
+
+  // Keys (see AbstractCcgChart.getEntryKey) and probabilities of
+  // the entries to return, sorted in decreasing order of probability.
+  private final long[] sortedKeys;
+  private final double[] sortedProbs;
+  private int nextIndex;
+
+  // Parses of previously decoded chart entries, indexed by
+  // AbstractCcgChart.getEntryKey.
+  private final Map<Long, CcgParse> decodedParses;
+
+  /**
+   * Creates an iterator over the parses of the span from
+   * {@code spanStart} to {@code spanEnd} in {@code chart}. If
+   * {@code includeSubspans} is {@code true}, the parses of every
+   * subspan of this span are also included.
+   *
+   * @param chart
+   * @param spanStart
+   * @param spanEnd
+   * @param includeSubspans
+   * @param parser
+   */
+  public CcgKBestParseIterator(AbstractCcgChart chart, int spanStart, int spanEnd,
+      boolean includeSubspans, CcgParser parser) {
+    this.chart = chart;
+    this.parser = parser;
+
+    int numEntries = 0;
+    for (int i = spanStart; i <= spanEnd; i++) {
+      for (int j = i; j <= spanEnd; j++) {
+        if (includeSubspans || (i == spanStart && j == spanEnd)) {
+          numEntries += chart.getNumChartEntriesForSpan(i, j);
+        }
+      }
+    }
+
+    // Beam search charts store each span's entries as a min-heap, so
+    // offering these entries in order to an empty heap reproduces the
+    // span's heap without moving any entry.
+    long[] heapKeys = new long[numEntries];
+    double[] heapValues = new double[numEntries];
+    int heapSize = 0;
+    for (int i = spanStart; i <= spanEnd; i++) {
+      for (int j = i; j <= spanEnd; j++) {
+        if (includeSubspans || (i == spanStart && j == spanEnd)) {
+          int numSpanEntries = chart.getNumChartEntriesForSpan(i, j);
+          double[] probs = chart.getChartEntryProbsForSpan(i, j);
+          for (int k = 0; k < numSpanEntries; k++) {
+            HeapUtils.offer(heapKeys, heapValues, heapSize, chart.getEntryKey(i, j, k), probs[k]);
+            heapSize++;
+          }
+        }
+      }
+    }
+
+    this.sortedKeys = new long[numEntries];
+    this.sortedProbs = new double[numEntries];
+    while (heapSize > 0) {
+      sortedKeys[heapSize - 1] = heapKeys[0];
+      sortedProbs[heapSize - 1] = heapValues[0];
+      HeapUtils.removeMin(heapKeys, heapValues, heapSize);
+      heapSize--;
+    }
+    this.nextIndex = 0;
+
+    this.decodedParses = Maps.newHashMap();
+  }
+
+  /**
+   * Gets the probability of the parse that will be returned by the
+   * next call to {@link #next}, without decoding it.
+   *
+   * @return
+   */
+  public double peekProbability() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return sortedProbs[nextIndex];
+  }
+
+  @Override
+  public boolean hasNext() {
+    return nextIndex < sortedKeys.length;
+  }
+
+  @Override
+  public CcgParse next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+
+    long entryKey = sortedKeys[nextIndex];
+    nextIndex++;
+    return chart.decodeParseFromEntryKey(entryKey, parser, decodedParses);
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+}
@@ -0,0 +1,108 @@
+package com.jayantkrish.jklol.ccg.chart;
+
+import com.jayantkrish.jklol.ccg.supertag.SupertaggedSentence;
+import com.jayantkrish.jklol.models.DiscreteVariable;
+
+/**
+ * Beam search chart which stores the entries of each completed span
+ * in a {@link PackedChartEntries} instead of as {@code ChartEntry}
+ * objects. While a span is being filled, its beam contains ordinary
+ * chart entries; when {@link #doneAddingChartEntriesForSpan} is
+ * called, the surviving entries are packed and the objects are
+ * discarded. This chart retains fewer objects than
+ * {@link CcgBeamSearchChart}, and the parser reads the entries of
+ * packed spans directly from their primitive arrays.
+ * <p>
+ * {@link #getChartEntriesForSpan} and {@link #getChartEntry} create
+ * new {@code ChartEntry} views of packed entries on every call.
+ *
+ * @author jayantk
+ */
+public class CcgPackedBeamSearchChart extends CcgBeamSearchChart {
+
+  private final PackedChartEntries[][] packedEntries;
+
+  /**
+   * Creates a CCG chart for storing the current state of a beam
+   * search trying to parse {@code sentence}.
+   *
+   * @param sentence
+   * @param maxChartSize
+   * @param beamSize
+   */
+  public CcgPackedBeamSearchChart(SupertaggedSentence sentence, int maxChartSize, int beamSize) {
+    this(sentence, maxChartSize, BeamPruningStrategy.fixedBeam(beamSize));
+  }
+
+  /**
+   * Creates a CCG chart for storing the current state of a beam
+   * search trying to parse {@code sentence}, which prunes each span
+   * according to {@code pruningStrategy}.
+   *
+   * @param sentence
+   * @param maxChartSize
+   * @param pruningStrategy
+   */
+  public CcgPackedBeamSearchChart(SupertaggedSentence sentence, int maxChartSize,
+      BeamPruningStrategy pruningStrategy) {
+    super(sentence, maxChartSize, pruningStrategy);
+    this.packedEntries = new PackedChartEntries[sentence.size()][sentence.size()];
+  }
+
+  @Override
+  public ChartEntry[] getChartEntriesForSpan(int spanStart, int spanEnd) {
+    PackedChartEntries packed = packedEntries[spanStart][spanEnd];
+    if (packed == null) {
+      return super.getChartEntriesForSpan(spanStart, spanEnd);
+    }
+    return packed.getChartEntries();
+  }
+
+  @Override
+  public ChartEntry getChartEntry(int spanStart, int spanEnd, int entryIndex) {
+    PackedChartEntries packed = packedEntries[spanStart][spanEnd];
+    if (packed == null) {
+      return super.getChartEntry(spanStart, spanEnd, entryIndex);
+    }
+    return packed.getChartEntry(entryIndex);
+  }
+
+  @Override
+  public PackedChartEntries getPackedChartEntriesForSpan(int spanStart, int spanEnd) {
+    return packedEntries[spanStart][spanEnd];
+  }
+
+  @Override
+  public void addChartEntryForSpan(ChartEntry entry, double probability, int spanStart,
+      int spanEnd, DiscreteVariable syntaxVarType) {
+    PackedChartEntries packed = packedEntries[spanStart][spanEnd];
+    if (packed != null) {
+      // Entries may be added to a completed span, e.g., when lexicon
+      // entries span multiple words. Unpack the span before adding
+      // more entries.
+      restoreChartEntriesForSpan(spanStart, spanEnd, packed.getChartEntries());
+      packedEntries[spanStart][spanEnd] = null;
+    }
+    super.addChartEntryForSpan(entry, probability, spanStart, spanEnd, syntaxVarType);
+  }
+
+  @Override
+  public void clearChartEntriesForSpan(int spanStart, int spanEnd) {
+    super.clearChartEntriesForSpan(spanStart, spanEnd);
+    packedEntries[spanStart][spanEnd] = null;
+  }
+
+  @Override
+  public void doneAddingChartEntriesForSpan(int spanStart, int spanEnd) {
+    if (packedEntries[spanStart][spanEnd] != null) {
+      // No entries have been added since the span was packed.
+      return;
+    }
+
+    super.doneAddingChartEntriesForSpan(spanStart, spanEnd);
+    packedEntries[spanStart][spanEnd] = PackedChartEntries.fromChartEntries(
+        super.getChartEntriesForSpan(spanStart, spanEnd),
+        getNumChartEntriesForSpan(spanStart, spanEnd));
+    releaseChartEntriesForSpan(spanStart, spanEnd);
+  }
+}
@@ -205,7 +205,11 @@ public class ChartEntry {
     return syntaxUniqueVars;
   }
   */
-  
+
+  int[] getSyntaxUniqueVars() {
+    return syntaxUniqueVars;
+  }
+
   public int getHeadVariable() {
     return syntaxHeadVar;
   }
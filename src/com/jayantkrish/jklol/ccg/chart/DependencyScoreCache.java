@@ -0,0 +1,128 @@
+package com.jayantkrish.jklol.ccg.chart;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A fixed-capacity hash table from marshalled dependencies (longs) to
+ * their combined dependency and distance weight. Dependency weights
+ * depend on the words of a sentence, so each {@link CcgChart} has its
+ * own cache. The same dependency is typically scored many times while
+ * parsing a sentence (once for every pair of chart entries which
+ * produces it), and the cache replaces the repeated tensor lookups
+ * with a single probe of a primitive array.
+ * <p>
+ * This class is safe for use by multiple threads without locking.
+ * A value is written before its key is published, so any thread which
+ * finds a key also sees its value. Once the table is half full, new
+ * values are no longer cached.
+ *
+ * @author jayantk
+ */
+public class DependencyScoreCache {
+
+  // Keys of empty slots, and of slots whose value is being written.
+  private static final long EMPTY_KEY = -1L;
+  private static final long BUSY_KEY = -2L;
+
+  private final AtomicLongArray keys;
+  private final double[] values;
+  private final int mask;
+  private final int maxSize;
+  private final AtomicInteger size;
+
+  /**
+   * Creates an empty cache which can hold at least
+   * {@code expectedSize} values.
+   *
+   * @param expectedSize
+   */
+  public DependencyScoreCache(int expectedSize) {
+    Preconditions.checkArgument(expectedSize > 0);
+    int capacity = Integer.highestOneBit(expectedSize * 2 - 1) * 2;
+    this.keys = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      keys.set(i, EMPTY_KEY);
+    }
+    this.values = new double[capacity];
+    this.mask = capacity - 1;
+    this.maxSize = capacity / 2;
+    this.size = new AtomicInteger(0);
+  }
+
+  /**
+   * Gets the slot of the table containing {@code depLong}, or
+   * {@code -1} if {@code depLong} is not cached. The cached value can
+   * be retrieved using {@link #getValue}.
+   *
+   * @param depLong
+   * @return
+   */
+  public final int find(long depLong) {
+    int slot = hash(depLong) & mask;
+    long key;
+    while ((key = keys.get(slot)) != EMPTY_KEY) {
+      if (key == depLong) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  public final double getValue(int slot) {
+    return values[slot];
+  }
+
+  /**
+   * Caches {@code value} as the weight of {@code depLong}. This method
+   * has no effect if the cache is full, or if another thread is
+   * concurrently caching a value in the same slot.
+   *
+   * @param depLong
+   * @param value
+   */
+  public final void put(long depLong, double value) {
+    if (depLong == EMPTY_KEY || depLong == BUSY_KEY || size.get() >= maxSize) {
+      return;
+    }
+
+    int slot = hash(depLong) & mask;
+    long key;
+    while ((key = keys.get(slot)) != EMPTY_KEY) {
+      if (key == depLong || key == BUSY_KEY) {
+        return;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    // Reserving space before claiming a slot guarantees that the
+    // table always contains an empty slot, which terminates probing.
+    if (size.incrementAndGet() > maxSize) {
+      return;
+    }
+    if (keys.compareAndSet(slot, EMPTY_KEY, BUSY_KEY)) {
+      values[slot] = value;
+      // The volatile write makes the value visible to any thread
+      // which reads the key.
+      keys.set(slot, depLong);
+    }
+  }
+
+  /**
+   * Gets the number of values in this cache. If multiple threads
+   * have used this cache, this is an upper bound.
+   *
+   * @return
+   */
+  public int size() {
+    return Math.min(size.get(), maxSize);
+  }
+
+  private static final int hash(long depLong) {
+    long h = depLong * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+}
@@ -0,0 +1,279 @@
+package com.jayantkrish.jklol.ccg.chart;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.jayantkrish.jklol.ccg.CcgCategory;
+import com.jayantkrish.jklol.ccg.Combinator;
+import com.jayantkrish.jklol.ccg.UnaryCombinator;
+
+/**
+ * The chart entries for a single span of a CCG chart, stored as
+ * columns of primitive arrays instead of as {@link ChartEntry}
+ * objects. The variable-length arrays of every entry (assignments,
+ * unfilled dependencies, etc.) are concatenated into one
+ * {@code int[]} and one {@code long[]}, and the portion belonging to
+ * each entry is located by its start offset. Indexes stored in the
+ * var index arrays are relative to these offsets, exactly as in
+ * {@code ChartEntry}. For example, the assignments to variable
+ * {@code v} of entry {@code i} are
+ * {@code getLongs()[getAssignmentStart(i) + getInts()[getAssignmentVarIndexStart(i) + v]]},
+ * up to (but excluding) the same expression for {@code v + 1}.
+ * <p>
+ * Code which requires a {@code ChartEntry} can use
+ * {@link #getChartEntry}, which creates a view of a single entry.
+ * These views are created on demand and are not retained.
+ *
+ * @author jayantk
+ */
+public class PackedChartEntries {
+
+  private final int numEntries;
+
+  private final int[] syntax;
+  private final int[] syntaxHeadVars;
+  private final int[][] syntaxUniqueVars;
+  private final boolean[] isProducedByConjunction;
+
+  // Backpointers, stored as NUM_BACKPOINTERS consecutive values
+  // per entry (see getBackpointer).
+  private final int[] backpointers;
+  private final Combinator[] combinators;
+  // Root, left and right unary rules of each entry.
+  private final UnaryCombinator[] unaryRules;
+  // Only non-null for terminals.
+  private final CcgCategory[] lexiconEntries;
+  private final List<String>[] lexiconTriggerWords;
+
+  // The var index arrays of entry i are stored in ints. The assignment
+  // var index begins at intOffsets[2 * i] and the unfilled dependency
+  // var index begins at intOffsets[(2 * i) + 1].
+  private final int[] intOffsets;
+  private final int[] ints;
+
+  // The assignments, unfilled dependencies and filled dependencies of
+  // entry i are stored in longs, beginning at longOffsets[3 * i],
+  // longOffsets[(3 * i) + 1] and longOffsets[(3 * i) + 2].
+  private final int[] longOffsets;
+  private final long[] longs;
+
+  private static final int NUM_BACKPOINTERS = 6;
+
+  private PackedChartEntries(int numEntries, int[] syntax, int[] syntaxHeadVars,
+      int[][] syntaxUniqueVars, boolean[] isProducedByConjunction, int[] backpointers,
+      Combinator[] combinators, UnaryCombinator[] unaryRules, CcgCategory[] lexiconEntries,
+      List<String>[] lexiconTriggerWords, int[] intOffsets, int[] ints, int[] longOffsets,
+      long[] longs) {
+    this.numEntries = numEntries;
+    this.syntax = syntax;
+    this.syntaxHeadVars = syntaxHeadVars;
+    this.syntaxUniqueVars = syntaxUniqueVars;
+    this.isProducedByConjunction = isProducedByConjunction;
+    this.backpointers = backpointers;
+    this.combinators = combinators;
+    this.unaryRules = unaryRules;
+    this.lexiconEntries = lexiconEntries;
+    this.lexiconTriggerWords = lexiconTriggerWords;
+    this.intOffsets = intOffsets;
+    this.ints = ints;
+    this.longOffsets = longOffsets;
+    this.longs = longs;
+  }
+
+  /**
+   * Packs the first {@code numEntries} elements of {@code entries}.
+   * The index of each entry is preserved.
+   *
+   * @param entries
+   * @param numEntries
+   * @return
+   */
+  public static PackedChartEntries fromChartEntries(ChartEntry[] entries, int numEntries) {
+    Preconditions.checkArgument(numEntries == 0 || entries.length >= numEntries);
+    int numInts = 0;
+    int numLongs = 0;
+    for (int i = 0; i < numEntries; i++) {
+      ChartEntry entry = entries[i];
+      numInts += entry.getAssignmentVarIndex().length + entry.getUnfilledDependencyVarIndex().length;
+      numLongs += entry.getAssignments().length + entry.getUnfilledDependencies().length
+          + entry.getDependencies().length;
+    }
+
+    int[] syntax = new int[numEntries];
+    int[] syntaxHeadVars = new int[numEntries];
+    int[][] syntaxUniqueVars = new int[numEntries][];
+    boolean[] isProducedByConjunction = new boolean[numEntries];
+    int[] backpointers = new int[numEntries * NUM_BACKPOINTERS];
+    Combinator[] combinators = new Combinator[numEntries];
+    UnaryCombinator[] unaryRules = new UnaryCombinator[numEntries * 3];
+    CcgCategory[] lexiconEntries = new CcgCategory[numEntries];
+    @SuppressWarnings("unchecked")
+    List<String>[] lexiconTriggerWords = (List<String>[]) new List<?>[numEntries];
+
+    int[] intOffsets = new int[(numEntries * 2) + 1];
+    int[] ints = new int[numInts];
+    int[] longOffsets = new int[(numEntries * 3) + 1];
+    long[] longs = new long[numLongs];
+
+    int intIndex = 0;
+    int longIndex = 0;
+    for (int i = 0; i < numEntries; i++) {
+      ChartEntry entry = entries[i];
+      syntax[i] = entry.getHeadedSyntax();
+      syntaxHeadVars[i] = entry.getHeadVariable();
+      syntaxUniqueVars[i] = entry.getSyntaxUniqueVars();
+      isProducedByConjunction[i] = entry.isProducedByConjunction();
+
+      int backpointerIndex = i * NUM_BACKPOINTERS;
+      backpointers[backpointerIndex] = entry.getLeftSpanStart();
+      backpointers[backpointerIndex + 1] = entry.getLeftSpanEnd();
+      backpointers[backpointerIndex + 2] = entry.getLeftChartIndex();
+      backpointers[backpointerIndex + 3] = entry.getRightSpanStart();
+      backpointers[backpointerIndex + 4] = entry.getRightSpanEnd();
+      backpointers[backpointerIndex + 5] = entry.getRightChartIndex();
+      combinators[i] = entry.getCombinator();
+      unaryRules[i * 3] = entry.getRootUnaryRule();
+      unaryRules[(i * 3) + 1] = entry.getLeftUnaryRule();
+      unaryRules[(i * 3) + 2] = entry.getRightUnaryRule();
+      lexiconEntries[i] = entry.getLexiconEntry();
+      lexiconTriggerWords[i] = entry.getLexiconTriggerWords();
+
+      intOffsets[i * 2] = intIndex;
+      intIndex = copyInto(entry.getAssignmentVarIndex(), ints, intIndex);
+      intOffsets[(i * 2) + 1] = intIndex;
+      intIndex = copyInto(entry.getUnfilledDependencyVarIndex(), ints, intIndex);
+
+      longOffsets[i * 3] = longIndex;
+      longIndex = copyInto(entry.getAssignments(), longs, longIndex);
+      longOffsets[(i * 3) + 1] = longIndex;
+      longIndex = copyInto(entry.getUnfilledDependencies(), longs, longIndex);
+      longOffsets[(i * 3) + 2] = longIndex;
+      longIndex = copyInto(entry.getDependencies(), longs, longIndex);
+    }
+    intOffsets[numEntries * 2] = intIndex;
+    longOffsets[numEntries * 3] = longIndex;
+
+    return new PackedChartEntries(numEntries, syntax, syntaxHeadVars, syntaxUniqueVars,
+        isProducedByConjunction, backpointers, combinators, unaryRules, lexiconEntries,
+        lexiconTriggerWords, intOffsets, ints, longOffsets, longs);
+  }
+
+  public int size() {
+    return numEntries;
+  }
+
+  public int getHeadedSyntax(int entryIndex) {
+    return syntax[entryIndex];
+  }
+
+  public Combinator.Type getDerivingCombinatorType(int entryIndex) {
+    Combinator combinator = combinators[entryIndex];
+    return combinator == null ? Combinator.Type.OTHER : combinator.getType();
+  }
+
+  public boolean isProducedByConjunction(int entryIndex) {
+    return isProducedByConjunction[entryIndex];
+  }
+
+  /**
+   * Gets the array containing the assignment and unfilled dependency
+   * var indexes of every entry.
+   *
+   * @return
+   */
+  public int[] getInts() {
+    return ints;
+  }
+
+  /**
+   * Gets the array containing the assignments, unfilled dependencies
+   * and filled dependencies of every entry.
+   *
+   * @return
+   */
+  public long[] getLongs() {
+    return longs;
+  }
+
+  public int getAssignmentVarIndexStart(int entryIndex) {
+    return intOffsets[entryIndex * 2];
+  }
+
+  public int getUnfilledDependencyVarIndexStart(int entryIndex) {
+    return intOffsets[(entryIndex * 2) + 1];
+  }
+
+  public int getAssignmentStart(int entryIndex) {
+    return longOffsets[entryIndex * 3];
+  }
+
+  public int getUnfilledDependencyStart(int entryIndex) {
+    return longOffsets[(entryIndex * 3) + 1];
+  }
+
+  public int getDependencyStart(int entryIndex) {
+    return longOffsets[(entryIndex * 3) + 2];
+  }
+
+  /**
+   * Creates a {@code ChartEntry} containing the same information as
+   * the {@code entryIndex}th packed entry.
+   *
+   * @param entryIndex
+   * @return
+   */
+  public ChartEntry getChartEntry(int entryIndex) {
+    Preconditions.checkElementIndex(entryIndex, numEntries);
+    int[] assignmentVarIndex = Arrays.copyOfRange(ints, intOffsets[entryIndex * 2],
+        intOffsets[(entryIndex * 2) + 1]);
+    int[] unfilledDepVarIndex = Arrays.copyOfRange(ints, intOffsets[(entryIndex * 2) + 1],
+        intOffsets[(entryIndex * 2) + 2]);
+    long[] assignments = Arrays.copyOfRange(longs, longOffsets[entryIndex * 3],
+        longOffsets[(entryIndex * 3) + 1]);
+    long[] unfilledDeps = Arrays.copyOfRange(longs, longOffsets[(entryIndex * 3) + 1],
+        longOffsets[(entryIndex * 3) + 2]);
+    long[] deps = Arrays.copyOfRange(longs, longOffsets[(entryIndex * 3) + 2],
+        longOffsets[(entryIndex * 3) + 3]);
+
+    int backpointerIndex = entryIndex * NUM_BACKPOINTERS;
+    if (backpointers[backpointerIndex + 5] == -1) {
+      return new ChartEntry(syntax[entryIndex], syntaxUniqueVars[entryIndex],
+          syntaxHeadVars[entryIndex], lexiconEntries[entryIndex], lexiconTriggerWords[entryIndex],
+          unaryRules[entryIndex * 3], assignmentVarIndex, assignments, unfilledDepVarIndex,
+          unfilledDeps, deps, backpointers[backpointerIndex], backpointers[backpointerIndex + 1]);
+    } else {
+      return new ChartEntry(syntax[entryIndex], syntaxUniqueVars[entryIndex],
+          syntaxHeadVars[entryIndex], unaryRules[entryIndex * 3], unaryRules[(entryIndex * 3) + 1],
+          unaryRules[(entryIndex * 3) + 2], assignmentVarIndex, assignments, unfilledDepVarIndex,
+          unfilledDeps, deps, backpointers[backpointerIndex], backpointers[backpointerIndex + 1],
+          backpointers[backpointerIndex + 2], backpointers[backpointerIndex + 3],
+          backpointers[backpointerIndex + 4], backpointers[backpointerIndex + 5],
+          combinators[entryIndex], isProducedByConjunction[entryIndex]);
+    }
+  }
+
+  /**
+   * Creates {@code ChartEntry}s for every packed entry. The returned
+   * array is indexed in the same way as the packed entries.
+   *
+   * @return
+   */
+  public ChartEntry[] getChartEntries() {
+    ChartEntry[] entries = new ChartEntry[numEntries];
+    for (int i = 0; i < numEntries; i++) {
+      entries[i] = getChartEntry(i);
+    }
+    return entries;
+  }
+
+  private static int copyInto(int[] source, int[] destination, int destinationIndex) {
+    System.arraycopy(source, 0, destination, destinationIndex, source.length);
+    return destinationIndex + source.length;
+  }
+
+  private static int copyInto(long[] source, long[] destination, int destinationIndex) {
+    System.arraycopy(source, 0, destination, destinationIndex, source.length);
+    return destinationIndex + source.length;
+  }
+}
@@ -28,6 +28,7 @@ import com.jayantkrish.jklol.ccg.DefaultCcgFeatureFactory;
 import com.jayantkrish.jklol.ccg.HeadedSyntacticCategory;
 import com.jayantkrish.jklol.ccg.ParametricCcgParser;
 import com.jayantkrish.jklol.ccg.SyntacticCategory;
+import com.jayantkrish.jklol.ccg.chart.BeamPruningStrategy;
 import com.jayantkrish.jklol.ccg.data.CcgExampleFormat;
 import com.jayantkrish.jklol.ccg.data.CcgSyntaxTreeFormat;
 import com.jayantkrish.jklol.ccg.data.CcgbankSyntaxTreeFormat;
@@ -56,7 +57,6 @@ public class TrainCcg extends AbstractCli {
   private OptionSpec<String> modelOutput;
 
   private OptionSpec<String> syntaxMap;
-  private OptionSpec<Integer> beamSize;
   private OptionSpec<Long> maxParseTimeMillis;
   private OptionSpec<Integer> maxChartSize;
   private OptionSpec<Integer> parserThreads;
@@ -70,7 +70,7 @@ public class TrainCcg extends AbstractCli {
 
   public TrainCcg() {
     super(CommonOptions.STOCHASTIC_GRADIENT, CommonOptions.MAP_REDUCE,
-        CommonOptions.PARAMETRIC_CCG_PARSER);
+        CommonOptions.PARAMETRIC_CCG_PARSER, CommonOptions.CCG_BEAM_SEARCH);
   }
 
   @Override
@@ -81,7 +81,6 @@ public class TrainCcg extends AbstractCli {
 
     // Optional options
     syntaxMap = parser.accepts("syntaxMap").withRequiredArg().ofType(String.class);
-    beamSize = parser.accepts("beamSize").withRequiredArg().ofType(Integer.class).defaultsTo(100);
     maxParseTimeMillis = parser.accepts("maxParseTimeMillis").withRequiredArg().ofType(Long.class).defaultsTo(-1L);
     maxChartSize = parser.accepts("maxChartSize").withRequiredArg().ofType(Integer.class).defaultsTo(Integer.MAX_VALUE);
     parserThreads = parser.accepts("parserThreads").withRequiredArg().ofType(Integer.class).defaultsTo(1);
@@ -141,11 +140,12 @@ public class TrainCcg extends AbstractCli {
     // all inference algorithms are compatible with all training
     // methods.
     CcgInference inferenceAlgorithm = null;
+    BeamPruningStrategy pruningStrategy = createBeamPruningStrategy();
     if (options.has(exactInference)) {
       inferenceAlgorithm = new CcgExactInference(null, options.valueOf(maxParseTimeMillis),
           options.valueOf(maxChartSize), options.valueOf(parserThreads));
     } else {
-      inferenceAlgorithm = new CcgBeamSearchInference(null, options.valueOf(beamSize),
+      inferenceAlgorithm = new CcgBeamSearchInference(null, pruningStrategy,
           options.valueOf(maxParseTimeMillis), options.valueOf(maxChartSize), options.valueOf(parserThreads), true);
     }
 
@@ -155,7 +155,7 @@ public class TrainCcg extends AbstractCli {
       oracle = new CcgPerceptronOracle(family, inferenceAlgorithm,
           options.valueOf(maxMargin));
     } else {
-      oracle = new CcgLoglikelihoodOracle(family, options.valueOf(beamSize));
+      oracle = new CcgLoglikelihoodOracle(family, pruningStrategy);
     }
     GradientOptimizer trainer = createGradientOptimizer(trainingExamples.size());
     SufficientStatistics parameters = trainer.train(oracle, oracle.initializeGradient(),
@@ -1,6 +1,9 @@
 package com.jayantkrish.jklol.ccg.lexicon;
 
+import java.util.List;
+
 import com.jayantkrish.jklol.ccg.CcgParse;
+import com.jayantkrish.jklol.ccg.LexiconEntry;
 import com.jayantkrish.jklol.models.parametric.ParametricFamily;
 import com.jayantkrish.jklol.models.parametric.SufficientStatistics;
 
@@ -8,4 +11,23 @@ public interface ParametricCcgLexicon extends ParametricFamily<CcgLexicon> {
 
   void incrementLexiconSufficientStatistics(SufficientStatistics gradient,
       SufficientStatistics currentParameters, CcgParse parse, double count);
+
+  /**
+   * Increments {@code gradient} by {@code count} times the features
+   * of using {@code entry} for the word at {@code wordIndex} of a
+   * sentence with the given words and part-of-speech tags.
+   * {@code wordIndex} is the index of the last word of
+   * {@code entry}.
+   *
+   * @param gradient
+   * @param currentParameters
+   * @param entry
+   * @param wordIndex
+   * @param sentenceWords
+   * @param sentencePosTags
+   * @param count
+   */
+  void incrementLexiconSufficientStatistics(SufficientStatistics gradient,
+      SufficientStatistics currentParameters, LexiconEntry entry, int wordIndex,
+      List<String> sentenceWords, List<String> sentencePosTags, double count);
 }
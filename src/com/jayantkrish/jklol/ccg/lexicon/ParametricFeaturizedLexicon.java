@@ -95,14 +95,6 @@ public class ParametricFeaturizedLexicon implements ParametricCcgLexicon {
   @Override
   public void incrementLexiconSufficientStatistics(SufficientStatistics gradient, 
       SufficientStatistics currentParameters, CcgParse parse, double count) {
-    SufficientStatistics terminalGradient = gradient.coerceToList().getStatisticByName(TERMINAL_PARAMETERS);
-    SufficientStatistics featureGradient = gradient.coerceToList().getStatisticByName(TERMINAL_FEATURE_PARAMETERS);
-    
-    SufficientStatistics terminalCurrentParameters = currentParameters.coerceToList()
-        .getStatisticByName(TERMINAL_PARAMETERS);
-    SufficientStatistics featureCurrentParameters = currentParameters.coerceToList()
-        .getStatisticByName(TERMINAL_FEATURE_PARAMETERS);
-
     List<String> originalWords = parse.getSentenceWords();
     List<String> posTags = parse.getSentencePosTags();
     List<WordAndPos> wordAndPosList = WordAndPos.createExample(originalWords, posTags);
@@ -110,25 +102,47 @@ public class ParametricFeaturizedLexicon implements ParametricCcgLexicon {
     List<LexiconEntry> lexiconEntries = parse.getSpannedLexiconEntries();
     Preconditions.checkArgument(wordIndexes.size() == lexiconEntries.size());
     for (int i = 0; i < lexiconEntries.size(); i++) {
-      CcgCategory ccgCategory = lexiconEntries.get(i).getCategory();
-      List<String> terminals = lexiconEntries.get(i).getWords();
-      // Update the word -> ccg category features.
-      Assignment assignment = Assignment.unionAll(
-          terminalVar.outcomeArrayToAssignment(terminals),
-          ccgCategoryVar.outcomeArrayToAssignment(ccgCategory));
-      terminalFamily.incrementSufficientStatisticsFromAssignment(terminalGradient,
-          terminalCurrentParameters, assignment, count);
-
-      // Update the feature weights for the generated feature vectors.
-      int sentenceIndex = wordIndexes.get(i);
-      LocalContext<WordAndPos> context = new ListLocalContext<WordAndPos>(wordAndPosList, sentenceIndex);
-      Tensor featureWeights = featureGenerator.apply(context);
-
-      assignment = Assignment.unionAll(
-          ccgSyntaxVar.outcomeArrayToAssignment(lexiconEntries.get(i).getCategory().getSyntax()),
-          featureVar.outcomeArrayToAssignment(featureWeights));
-      featureFamily.incrementSufficientStatisticsFromAssignment(featureGradient,
-          featureCurrentParameters, assignment, count);
+      incrementLexiconSufficientStatistics(gradient, currentParameters, lexiconEntries.get(i),
+          wordIndexes.get(i), wordAndPosList, count);
     }
   }
+
+  @Override
+  public void incrementLexiconSufficientStatistics(SufficientStatistics gradient,
+      SufficientStatistics currentParameters, LexiconEntry entry, int wordIndex,
+      List<String> sentenceWords, List<String> sentencePosTags, double count) {
+    incrementLexiconSufficientStatistics(gradient, currentParameters, entry, wordIndex,
+        WordAndPos.createExample(sentenceWords, sentencePosTags), count);
+  }
+
+  private void incrementLexiconSufficientStatistics(SufficientStatistics gradient,
+      SufficientStatistics currentParameters, LexiconEntry entry, int wordIndex,
+      List<WordAndPos> wordAndPosList, double count) {
+    SufficientStatistics terminalGradient = gradient.coerceToList().getStatisticByName(TERMINAL_PARAMETERS);
+    SufficientStatistics featureGradient = gradient.coerceToList().getStatisticByName(TERMINAL_FEATURE_PARAMETERS);
+    
+    SufficientStatistics terminalCurrentParameters = currentParameters.coerceToList()
+        .getStatisticByName(TERMINAL_PARAMETERS);
+    SufficientStatistics featureCurrentParameters = currentParameters.coerceToList()
+        .getStatisticByName(TERMINAL_FEATURE_PARAMETERS);
+
+    CcgCategory ccgCategory = entry.getCategory();
+    List<String> terminals = entry.getWords();
+    // Update the word -> ccg category features.
+    Assignment assignment = Assignment.unionAll(
+        terminalVar.outcomeArrayToAssignment(terminals),
+        ccgCategoryVar.outcomeArrayToAssignment(ccgCategory));
+    terminalFamily.incrementSufficientStatisticsFromAssignment(terminalGradient,
+        terminalCurrentParameters, assignment, count);
+
+    // Update the feature weights for the generated feature vectors.
+    LocalContext<WordAndPos> context = new ListLocalContext<WordAndPos>(wordAndPosList, wordIndex);
+    Tensor featureWeights = featureGenerator.apply(context);
+
+    assignment = Assignment.unionAll(
+        ccgSyntaxVar.outcomeArrayToAssignment(ccgCategory.getSyntax()),
+        featureVar.outcomeArrayToAssignment(featureWeights));
+    featureFamily.incrementSufficientStatisticsFromAssignment(featureGradient,
+        featureCurrentParameters, assignment, count);
+  }
 }
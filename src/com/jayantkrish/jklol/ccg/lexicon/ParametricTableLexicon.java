@@ -133,6 +133,17 @@ public class ParametricTableLexicon implements ParametricCcgLexicon {
     }
   }
 
+  @Override
+  public void incrementLexiconSufficientStatistics(SufficientStatistics gradient,
+      SufficientStatistics currentParameters, LexiconEntry entry, int wordIndex,
+      List<String> sentenceWords, List<String> sentencePosTags, double count) {
+    incrementLexiconEntrySufficientStatistics(gradient, currentParameters, entry, count);
+    incrementPosSufficientStatistics(gradient, currentParameters, sentencePosTags.get(wordIndex),
+        entry.getCategory().getSyntax(), count);
+    incrementLexiconSyntaxSufficientStatistics(gradient, currentParameters,
+        entry.getWords(), entry.getCategory().getSyntax(), count);
+  }
+
   public void incrementLexiconEntrySufficientStatistics(SufficientStatistics gradient, 
       SufficientStatistics currentParameters, LexiconEntry entry, double count) {
     SufficientStatistics terminalGradient = gradient.coerceToList().getStatisticByName(TERMINAL_PARAMETERS);
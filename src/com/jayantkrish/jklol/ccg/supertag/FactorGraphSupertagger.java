@@ -4,7 +4,6 @@ import java.util.List;
 
 import com.google.common.base.Function;
 import com.jayantkrish.jklol.ccg.HeadedSyntacticCategory;
-import com.jayantkrish.jklol.inference.JunctionTree;
 import com.jayantkrish.jklol.inference.MarginalCalculator;
 import com.jayantkrish.jklol.models.dynamic.DynamicFactorGraph;
 import com.jayantkrish.jklol.models.parametric.ParametricFactorGraph;
@@ -29,7 +28,7 @@ FactorGraphSequenceTagger<WordAndPos, HeadedSyntacticCategory> implements Supert
       SufficientStatistics parameters, DynamicFactorGraph instantiatedModel,
       FeatureVectorGenerator<LocalContext<WordAndPos>> featureGenerator,
       Function<? super LocalContext<WordAndPos>, ? extends Object> inputGen,
-      MarginalCalculator maxMarginalCalculator, JunctionTree marginalCalculator,
+      MarginalCalculator maxMarginalCalculator, MarginalCalculator marginalCalculator,
       WordAndPos startWordAndPos, HeadedSyntacticCategory startCategory) {
     super(modelFamily, parameters, instantiatedModel, featureGenerator, inputGen,
         HeadedSyntacticCategory.class, maxMarginalCalculator, marginalCalculator, startWordAndPos,
@@ -15,10 +15,12 @@ import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
 import com.jayantkrish.jklol.boost.FunctionalGradientAscent;
 import com.jayantkrish.jklol.ccg.CcgFeatureFactory;
 import com.jayantkrish.jklol.ccg.CcgRuleSchema;
 import com.jayantkrish.jklol.ccg.ParametricCcgParser;
+import com.jayantkrish.jklol.ccg.chart.BeamPruningStrategy;
 import com.jayantkrish.jklol.dtree.RegressionTreeTrainer;
 import com.jayantkrish.jklol.parallel.LocalMapReduceExecutor;
 import com.jayantkrish.jklol.parallel.MapReduceConfiguration;
@@ -79,6 +81,11 @@ public abstract class AbstractCli {
      * providing a lexicon and CCG rules.
      */
     PARAMETRIC_CCG_PARSER,
+    /**
+     * Enables options for pruning the chart during CCG beam search,
+     * e.g., the beam size and the chart budget.
+     */
+    CCG_BEAM_SEARCH,
     /**
      * Enables options for performing boosting via functional gradient
      * ascent.
@@ -137,6 +144,12 @@ public abstract class AbstractCli {
   protected OptionSpec<Void> ccgApplicationOnly;
   protected OptionSpec<Void> ccgNormalFormOnly;
 
+  // CCG beam search options
+  protected OptionSpec<Integer> ccgBeamSize;
+  protected OptionSpec<Double> ccgBeamThreshold;
+  protected OptionSpec<Integer> ccgBeamSizeSchedule;
+  protected OptionSpec<Integer> ccgChartBudget;
+
   // Functional gradient ascent options
   protected OptionSpec<Integer> fgaIterations;
   protected OptionSpec<Integer> fgaBatchSize;
@@ -346,6 +359,19 @@ public abstract class AbstractCli {
           "Only permit CCG derivations in Eisner normal form.");
     }
 
+    if (opts.contains(CommonOptions.CCG_BEAM_SEARCH)) {
+      ccgBeamSize = parser.accepts("beamSize").withRequiredArg().ofType(Integer.class).defaultsTo(100);
+      ccgBeamThreshold = parser.accepts("beamThreshold", "Prune chart entries whose probability is less "
+          + "than this fraction of the best entry's probability in the same span.")
+          .withRequiredArg().ofType(Double.class).defaultsTo(0.0);
+      ccgBeamSizeSchedule = parser.accepts("beamSizeSchedule", "Comma-separated beam sizes for spans of "
+          + "length 1, 2, ...; longer spans use the last beam size.")
+          .withRequiredArg().ofType(Integer.class).withValuesSeparatedBy(',');
+      ccgChartBudget = parser.accepts("chartBudget", "Maximum total number of entries in each chart, "
+          + "which is divided among the chart's spans during beam search.")
+          .withRequiredArg().ofType(Integer.class).defaultsTo(Integer.MAX_VALUE);
+    }
+
     if (opts.contains(CommonOptions.FUNCTIONAL_GRADIENT_ASCENT)) {
       fgaIterations = parser.accepts("fgaIterations",
           "Number of iterations of functional gradient ascent to perform.").withRequiredArg()
@@ -489,6 +515,23 @@ public abstract class AbstractCli {
         posTagSet, !parsedOptions.has(ccgApplicationOnly), rules, false, parsedOptions.has(ccgNormalFormOnly));
   }
 
+  /**
+   * Creates the strategy for pruning the chart during CCG beam
+   * search. To use this method, pass
+   * {@link CommonOptions#CCG_BEAM_SEARCH} to the constructor.
+   *
+   * @return
+   */
+  protected BeamPruningStrategy createBeamPruningStrategy() {
+    Preconditions.checkState(opts.contains(CommonOptions.CCG_BEAM_SEARCH));
+
+    int[] beamSizeSchedule = parsedOptions.has(ccgBeamSizeSchedule) ?
+        Ints.toArray(parsedOptions.valuesOf(ccgBeamSizeSchedule)) : null;
+    return new BeamPruningStrategy(parsedOptions.valueOf(ccgBeamSize),
+        parsedOptions.valueOf(ccgBeamThreshold), beamSizeSchedule,
+        parsedOptions.valueOf(ccgChartBudget));
+  }
+
   protected FunctionalGradientAscent createFunctionalGradientAscent(int numExamples) {
     Preconditions.checkState(opts.contains(CommonOptions.FUNCTIONAL_GRADIENT_ASCENT));
 
@@ -14,6 +14,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.google.common.primitives.Doubles;
+import com.jayantkrish.jklol.ccg.CcgAStarInference;
 import com.jayantkrish.jklol.ccg.CcgBeamSearchInference;
 import com.jayantkrish.jklol.ccg.CcgExactInference;
 import com.jayantkrish.jklol.ccg.CcgExample;
@@ -29,6 +30,7 @@ import com.jayantkrish.jklol.ccg.ParametricCcgParser;
 import com.jayantkrish.jklol.ccg.SupertaggingCcgParser;
 import com.jayantkrish.jklol.ccg.SupertaggingCcgParser.CcgParseResult;
 import com.jayantkrish.jklol.ccg.SyntacticCategory;
+import com.jayantkrish.jklol.ccg.chart.BeamPruningStrategy;
 import com.jayantkrish.jklol.ccg.chart.CcgChart;
 import com.jayantkrish.jklol.ccg.chart.CcgExactHashTableChart;
 import com.jayantkrish.jklol.ccg.chart.SyntacticChartCost;
@@ -42,6 +44,7 @@ import com.jayantkrish.jklol.parallel.Mapper;
 import com.jayantkrish.jklol.parallel.Reducer.SimpleReducer;
 import com.jayantkrish.jklol.training.LogFunction;
 import com.jayantkrish.jklol.training.LogFunctions;
+import com.jayantkrish.jklol.training.NullLogFunction;
 import com.jayantkrish.jklol.util.IoUtils;
 
 /**
@@ -53,7 +56,6 @@ public class ParseCcg extends AbstractCli {
   
   private OptionSpec<String> model;
   
-  private OptionSpec<Integer> beamSize;
   private OptionSpec<Integer> numParses;
   private OptionSpec<Long> maxParseTimeMillis;
   private OptionSpec<Integer> maxChartSize;
@@ -62,6 +64,7 @@ public class ParseCcg extends AbstractCli {
   private OptionSpec<Void> pos;
   private OptionSpec<Void> printLf;
   private OptionSpec<Void> exactInference;
+  private OptionSpec<Void> astarInference;
   
   private OptionSpec<String> testFile;
   private OptionSpec<String> syntaxMap;
@@ -73,7 +76,7 @@ public class ParseCcg extends AbstractCli {
   private OptionSpec<Double> multitagThresholds;
   
   public ParseCcg() {
-    super(CommonOptions.MAP_REDUCE);
+    super(CommonOptions.MAP_REDUCE, CommonOptions.CCG_BEAM_SEARCH);
   }
 
   @Override
@@ -82,7 +85,6 @@ public class ParseCcg extends AbstractCli {
     model = parser.accepts("model", "File containing serialized CCG parser.").withRequiredArg()
         .ofType(String.class).required();
     // Optional arguments
-    beamSize = parser.accepts("beamSize").withRequiredArg().ofType(Integer.class).defaultsTo(100);
     numParses = parser.accepts("numParses").withRequiredArg().ofType(Integer.class).defaultsTo(1);
     maxParseTimeMillis = parser.accepts("maxParseTimeMillis").withRequiredArg().ofType(Long.class).defaultsTo(-1L);
     maxChartSize = parser.accepts("maxChartSize").withRequiredArg().ofType(Integer.class).defaultsTo(Integer.MAX_VALUE);
@@ -91,6 +93,8 @@ public class ParseCcg extends AbstractCli {
     pos = parser.accepts("pos", "Treat input as POS-tagged text, in the format word/POS.");
     printLf = parser.accepts("printLf", "Print logical forms for the generated parses.");
     exactInference = parser.accepts("exactInference");
+    astarInference = parser.accepts("astarInference", "Use A* search to find the best parse, "
+        + "which stops after finding the first complete parse.");
 
     testFile = parser.accepts("test", "If provided, running this program computes test error using " +
     		"the given file. Otherwise, this program parses a string provided on the command line. " +
@@ -112,11 +116,15 @@ public class ParseCcg extends AbstractCli {
 
     // Configure inference options
     CcgInference inferenceAlgorithm = null;
+    BeamPruningStrategy pruningStrategy = createBeamPruningStrategy();
     if (options.has(exactInference)) {
       inferenceAlgorithm = new CcgExactInference(null, options.valueOf(maxParseTimeMillis),
           options.valueOf(maxChartSize), options.valueOf(parserThreads));
+    } else if (options.has(astarInference)) {
+      inferenceAlgorithm = new CcgAStarInference(null, options.valueOf(maxParseTimeMillis),
+          options.valueOf(maxChartSize));
     } else {
-      inferenceAlgorithm = new CcgBeamSearchInference(null, options.valueOf(beamSize),
+      inferenceAlgorithm = new CcgBeamSearchInference(null, pruningStrategy,
           options.valueOf(maxParseTimeMillis), options.valueOf(maxChartSize), options.valueOf(parserThreads), true);
     }
     
@@ -155,7 +163,8 @@ public class ParseCcg extends AbstractCli {
       SupertaggedSentence sentence = ListSupertaggedSentence.createWithUnobservedSupertags(
           sentenceToParse, posTags);
 
-      List<CcgParse> parses = ccgParser.beamSearch(sentence, options.valueOf(beamSize));
+      List<CcgParse> parses = ccgParser.beamSearch(sentence, pruningStrategy, null,
+          new NullLogFunction(), -1, Integer.MAX_VALUE, 1);
       printCcgParses(parses, options.valueOf(numParses), options.has(atomic), options.has(printLf));
     }
   }
@@ -0,0 +1,63 @@
+package com.jayantkrish.jklol.tensor;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * GWT replacement for {@code DenseMatrixMultiply}, which computes
+ * products in a single thread, ignoring the requested number of
+ * threads. The cache-blocking is identical to the
+ * JVM version, so both produce the same result.
+ * 
+ * @author jayantk
+ */
+public class DenseMatrixMultiply {
+
+  public static final String THREADS_PROPERTY = "jklol.tensor.multiplyThreads";
+
+  private static final int KBLOCK = 64;
+  private static final int NBLOCK = 256;
+
+  public static void multiply(double[] first, double[] second, double[] result,
+      int numP, int numA, int numS, int numO) {
+    multiply(first, second, result, numP, numA, numS, numO, 1);
+  }
+
+  public static void multiply(double[] first, double[] second, double[] result,
+      int numP, int numA, int numS, int numO, int numThreads) {
+    Preconditions.checkArgument(first.length == numP * numA * numS);
+    Preconditions.checkArgument(second.length == numA * numO);
+    Preconditions.checkArgument(result.length == numP * numO * numS);
+    Preconditions.checkArgument(numThreads > 0);
+
+    if (numS == 1) {
+      multiplyRows(first, 0, numA, 1, second, 0, result, 0, 0, numP, numA, numO);
+    } else {
+      for (int p = 0; p < numP; p++) {
+        multiplyRows(second, 0, 1, numO, first, p * numA * numS, result,
+            p * numO * numS, 0, numO, numA, numS);
+      }
+    }
+  }
+
+  private static void multiplyRows(double[] lhs, int lhsOffset, int lhsRowStride,
+      int lhsColStride, double[] rhs, int rhsOffset, double[] out, int outOffset,
+      int rowStart, int rowEnd, int k, int n) {
+    DenseKernels kernels = DenseKernels.getInstance();
+    for (int colBlock = 0; colBlock < n; colBlock += NBLOCK) {
+      int colBlockSize = Math.min(NBLOCK, n - colBlock);
+      for (int kBlock = 0; kBlock < k; kBlock += KBLOCK) {
+        int kBlockEnd = Math.min(kBlock + KBLOCK, k);
+        for (int row = rowStart; row < rowEnd; row++) {
+          int lhsRowIndex = lhsOffset + row * lhsRowStride;
+          int outIndex = outOffset + row * n + colBlock;
+          for (int i = kBlock; i < kBlockEnd; i++) {
+            // Zero entries are not skipped, so that 0 * NaN and
+            // 0 * Inf produce NaN, as in the general inner product.
+            kernels.axpy(lhs[lhsRowIndex + i * lhsColStride], rhs,
+                rhsOffset + i * n + colBlock, out, outIndex, colBlockSize);
+          }
+        }
+      }
+    }
+  }
+}
@@ -1,6 +1,7 @@
 package com.jayantkrish.jklol.inference;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -9,20 +10,29 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import com.google.common.base.Preconditions;
+import com.google.common.base.Predicates;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 import com.google.common.collect.TreeMultimap;
+import com.google.common.primitives.Ints;
+import com.jayantkrish.jklol.models.DiscreteFactor;
 import com.jayantkrish.jklol.models.Factor;
 import com.jayantkrish.jklol.models.FactorGraph;
 import com.jayantkrish.jklol.models.SeparatorSet;
 import com.jayantkrish.jklol.models.TableFactor;
 import com.jayantkrish.jklol.models.VariableNumMap;
+import com.jayantkrish.jklol.parallel.ForkJoinPools;
 import com.jayantkrish.jklol.training.LogFunction;
 import com.jayantkrish.jklol.training.LogFunctions;
 import com.jayantkrish.jklol.util.Assignment;
@@ -39,12 +49,41 @@ import com.jayantkrish.jklol.util.Assignment;
  * to the original model. Essentially all graphical models where inference is
  * tractable should fall into this class. If an input factor graph cannot be
  * simplified, the marginal computation will throw an exception.
+ * <p>
+ * Factor graphs with the same structure, e.g., the factor graphs for
+ * different training examples of a {@code DynamicFactorGraph}, have
+ * the same clique tree. Therefore, this class caches the structure
+ * of the clique tree (including its message passing schedule) for
+ * each factor graph containing only {@code DiscreteFactor}s, and
+ * only binds the new factors for subsequent factor graphs with the
+ * same structure.
+ * <p>
+ * Message passing can optionally use multiple threads. In this mode,
+ * each connected component of the clique tree is rooted, and messages
+ * are passed as soon as they are computable: upward messages once a
+ * clique has received messages from all of its children, and
+ * downward messages once its parent's marginal is complete. Messages
+ * in disjoint subtrees are passed concurrently. Each message is
+ * computed from the same inputs in the same order regardless of
+ * thread scheduling, so the results are deterministic.
  */
 public class JunctionTree implements MarginalCalculator {
   private static final long serialVersionUID = 1L;
 
+  // Maximum number of clique tree structures to cache. Once
+  // the cache is full, new structures are not cached.
+  private static final int MAX_CACHED_STRUCTURES = 10000;
+
   private final boolean renormalize;
   private final PruningStrategy pruningStrategy;
+  // Number of threads used for message passing. Values less than 2
+  // (including the default value of deserialized junction trees)
+  // pass messages sequentially.
+  private final int numThreads;
+
+  // Clique tree structures of previously seen factor graphs. Created
+  // lazily, since this cache is not serialized.
+  private transient volatile ConcurrentMap<StructureSignature, CliqueTreeStructure> structureCache;
 
   /**
    * Creates a new junction tree without renormalization.
@@ -52,6 +91,7 @@ public class JunctionTree implements MarginalCalculator {
   public JunctionTree() {
     this.renormalize = false;
     this.pruningStrategy = null;
+    this.numThreads = 1;
   }
 
   /**
@@ -65,11 +105,28 @@ public class JunctionTree implements MarginalCalculator {
   public JunctionTree(boolean renormalize) {
     this.renormalize = renormalize;
     this.pruningStrategy = null;
+    this.numThreads = 1;
   }
 
   public JunctionTree(boolean renormalize, PruningStrategy pruningStrategy) {
     this.renormalize = renormalize;
     this.pruningStrategy = pruningStrategy;
+    this.numThreads = 1;
+  }
+
+  /**
+   * Creates a new junction tree which passes messages using
+   * {@code numThreads} threads.
+   * 
+   * @param renormalize see {@link #JunctionTree(boolean)}.
+   * @param pruningStrategy may be {@code null}.
+   * @param numThreads
+   */
+  public JunctionTree(boolean renormalize, PruningStrategy pruningStrategy, int numThreads) {
+    Preconditions.checkArgument(numThreads > 0);
+    this.renormalize = renormalize;
+    this.pruningStrategy = pruningStrategy;
+    this.numThreads = numThreads;
   }
 
   @Override
@@ -90,13 +147,9 @@ public class JunctionTree implements MarginalCalculator {
     }
 
     // long time = System.nanoTime();
-    CliqueTree cliqueTree = CliqueTree.fromHeuristicVariableElimination(factorGraph);
+    Set<Integer> rootFactorNums = Sets.newHashSet();
+    CliqueTree cliqueTree = runMessagePassing(factorGraph, true, rootFactorNums);
     // long delta = (System.nanoTime() - time) / 1000;
-    // System.out.println("building clique tree: " + delta);
-    
-    // time = System.nanoTime();
-    Set<Integer> rootFactorNums = runMessagePassing(cliqueTree, true);
-    // delta = (System.nanoTime() - time) / 1000;
     // System.out.println("Running message passing: " + delta);
 
     // time = System.nanoTime();
@@ -118,12 +171,8 @@ public class JunctionTree implements MarginalCalculator {
 
     LogFunction log = LogFunctions.getLogFunction();
 
-    log.startTimer("inference/build_clique_tree");
-    CliqueTree cliqueTree = CliqueTree.fromHeuristicVariableElimination(factorGraph);
-    log.stopTimer("inference/build_clique_tree");
-
     log.startTimer("inference/message_passing");
-    runMessagePassing(cliqueTree, false);
+    CliqueTree cliqueTree = runMessagePassing(factorGraph, false, Sets.<Integer>newHashSet());
     log.stopTimer("inference/message_passing");
 
     log.startTimer("inference/build_max_marginals");
@@ -132,12 +181,100 @@ public class JunctionTree implements MarginalCalculator {
     return maxMarginals;
   }
 
+  /**
+   * Constructs the clique tree for {@code factorGraph} and runs the
+   * junction tree message-passing algorithm on it, using a cached
+   * clique tree structure if one exists. The root factors of the
+   * junction forest are added to {@code rootFactorNums}.
+   */
+  private CliqueTree runMessagePassing(FactorGraph factorGraph, boolean useSumProduct,
+      Set<Integer> rootFactorNums) {
+    StructureSignature signature = StructureSignature.fromFactorGraph(factorGraph);
+    CliqueTreeStructure structure = (signature == null) ? null : getStructureCache().get(signature);
+
+    if (numThreads > 1) {
+      CliqueTree cliqueTree = null;
+      if (structure != null) {
+        cliqueTree = structure.instantiate(factorGraph);
+      } else {
+        cliqueTree = CliqueTree.fromHeuristicVariableElimination(factorGraph);
+        // Parallel message passing does not use the sequential
+        // message schedule.
+        cacheStructure(signature, factorGraph, cliqueTree, null, null);
+      }
+      rootFactorNums.addAll(runParallelMessagePassing(cliqueTree, useSumProduct));
+      return cliqueTree;
+    }
+
+    if (structure != null && structure.getMessageSchedule() != null) {
+      CliqueTree cliqueTree = structure.instantiate(factorGraph);
+      int[] messageSchedule = structure.getMessageSchedule();
+      for (int i = 0; i < messageSchedule.length; i += 2) {
+        passMessage(cliqueTree, messageSchedule[i], messageSchedule[i + 1], useSumProduct);
+      }
+      rootFactorNums.addAll(Ints.asList(structure.getRootFactorNums()));
+      return cliqueTree;
+    }
+
+    CliqueTree cliqueTree = CliqueTree.fromHeuristicVariableElimination(factorGraph);
+    List<Integer> messageSchedule = Lists.newArrayList();
+    rootFactorNums.addAll(runMessagePassing(cliqueTree, useSumProduct, messageSchedule));
+
+    cacheStructure(signature, factorGraph, cliqueTree, Ints.toArray(messageSchedule),
+        Ints.toArray(rootFactorNums));
+    return cliqueTree;
+  }
+
+  private void cacheStructure(StructureSignature signature, FactorGraph factorGraph,
+      CliqueTree cliqueTree, int[] messageSchedule, int[] rootFactorNums) {
+    if (signature != null) {
+      ConcurrentMap<StructureSignature, CliqueTreeStructure> cache = getStructureCache();
+      if (cache.size() < MAX_CACHED_STRUCTURES) {
+        cache.putIfAbsent(signature, new CliqueTreeStructure(factorGraph.getMinimalFactorGroups(),
+            cliqueTree, messageSchedule, rootFactorNums));
+      }
+    }
+  }
+
+  /**
+   * Runs the junction tree message-passing algorithm on
+   * {@code cliqueTree} using {@code numThreads} threads, then sets the
+   * marginal of every factor in {@code cliqueTree}. Returns the root
+   * factors of the junction forest.
+   */
+  private Set<Integer> runParallelMessagePassing(CliqueTree cliqueTree, boolean useSumProduct) {
+    ParallelMessagePassing schedule = new ParallelMessagePassing(cliqueTree, useSumProduct,
+        renormalize, pruningStrategy);
+    ForkJoinPools.getPool(numThreads).invoke(schedule);
+
+    for (int i = 0; i < cliqueTree.numFactors(); i++) {
+      cliqueTree.setMarginal(i, schedule.marginals[i]);
+      cliqueTree.addFactorsToMarginal(i, cliqueTree.getNeighboringFactors(i));
+    }
+    return Sets.newHashSet(Ints.asList(schedule.roots));
+  }
+
+  private ConcurrentMap<StructureSignature, CliqueTreeStructure> getStructureCache() {
+    ConcurrentMap<StructureSignature, CliqueTreeStructure> cache = structureCache;
+    if (cache == null) {
+      synchronized (this) {
+        if (structureCache == null) {
+          structureCache = new ConcurrentHashMap<StructureSignature, CliqueTreeStructure>();
+        }
+        cache = structureCache;
+      }
+    }
+    return cache;
+  }
+
   /**
    * Runs the junction tree message-passing algorithm on {@code cliqueTree}. If
    * {@code useSumProduct == true}, then uses sum-product. Otherwise uses
-   * max-product.
+   * max-product. The start and end factor of each passed message are
+   * appended to {@code messageSchedule}.
    */
-  private Set<Integer> runMessagePassing(CliqueTree cliqueTree, boolean useSumProduct) {
+  private Set<Integer> runMessagePassing(CliqueTree cliqueTree, boolean useSumProduct,
+      List<Integer> messageSchedule) {
     Set<Integer> rootFactors = Sets.newHashSet();
     int numFactors = cliqueTree.numFactors();
 
@@ -158,6 +295,8 @@ public class JunctionTree implements MarginalCalculator {
       for (SeparatorSet possibleOutboundMessage : possibleOutboundMessages) {
         if (!alreadyPassedMessages.contains(possibleOutboundMessage.getEndFactor())) {
           passMessage(cliqueTree, possibleOutboundMessage.getStartFactor(), possibleOutboundMessage.getEndFactor(), useSumProduct);
+          messageSchedule.add(possibleOutboundMessage.getStartFactor());
+          messageSchedule.add(possibleOutboundMessage.getEndFactor());
         }
       }
 
@@ -200,6 +339,28 @@ public class JunctionTree implements MarginalCalculator {
       factorIndicesToCombine.remove(destFactor);
     }
 
+    Factor marginal = cliqueTree.getMarginal(startFactor);
+    if (cliqueTree.getOutboundFactors(startFactor).size() > 0 && marginal instanceof DiscreteFactor) {
+      // This factor's marginal is not renormalized or pruned, so the
+      // message can be computed without updating the marginal. In this
+      // case, the product of the marginal and the inbound messages is
+      // marginalized in a single operation that never constructs the
+      // (potentially large) product. The remaining inbound messages are
+      // multiplied into the marginal in computeMarginal.
+      List<Factor> messagesToCombine = Lists.newArrayList();
+      for (Integer adjacentFactorNum : factorIndicesToCombine) {
+        if (adjacentFactorNum != destFactor) {
+          messagesToCombine.add(cliqueTree.getMessage(adjacentFactorNum, startFactor));
+        }
+      }
+
+      if (Iterables.all(messagesToCombine, Predicates.instanceOf(DiscreteFactor.class))) {
+        passFusedMessage(cliqueTree, startFactor, destFactor, (DiscreteFactor) marginal,
+            messagesToCombine, sharedVars, useSumProduct);
+        return;
+      }
+    }
+
     List<Factor> factorsToCombine = new ArrayList<Factor>();
     for (Integer adjacentFactorNum : factorIndicesToCombine) {
       factorsToCombine.add(cliqueTree.getMessage(adjacentFactorNum, startFactor));
@@ -210,7 +371,7 @@ public class JunctionTree implements MarginalCalculator {
     }
 
     // Update the marginal distribution of startFactor in the clique tree.
-    Factor updatedMarginal = cliqueTree.getMarginal(startFactor).product(factorsToCombine);
+    Factor updatedMarginal = marginal.product(factorsToCombine);
     if (cliqueTree.getOutboundFactors(startFactor).size() == 0) {
       // If this factor has yet to send any outbound messages, we can 
       // use it to renormalize the probability distribution to avoid
@@ -248,6 +409,33 @@ public class JunctionTree implements MarginalCalculator {
     cliqueTree.addMessage(startFactor, destFactor, messageFactor);
   }
 
+  /**
+   * Computes the message from {@code startFactor} to {@code destFactor}
+   * by marginalizing the product of {@code marginal} and
+   * {@code messagesToCombine} in a single operation. Unlike
+   * {@link #passMessage}, this does not update the marginal of
+   * {@code startFactor} in {@code cliqueTree}.
+   */
+  private static void passFusedMessage(CliqueTree cliqueTree, int startFactor, int destFactor,
+      DiscreteFactor marginal, List<Factor> messagesToCombine, VariableNumMap sharedVars,
+      boolean useSumProduct) {
+    Collection<Integer> varNumsToEliminate = marginal.getVars().removeAll(sharedVars).getVariableNums();
+    Factor messageFactor = null;
+    if (useSumProduct) {
+      messageFactor = marginal.productMarginalize(messagesToCombine, varNumsToEliminate);
+    } else {
+      messageFactor = marginal.productMaxMarginalize(messagesToCombine, varNumsToEliminate);
+    }
+
+    // The marginal may already include the destFactor -> startFactor
+    // message, in which case it must be divided out.
+    if (cliqueTree.getFactorsInMarginal(startFactor).contains(destFactor)) {
+      messageFactor = messageFactor.product(cliqueTree.getMessage(destFactor, startFactor).inverse());
+    }
+
+    cliqueTree.addMessage(startFactor, destFactor, messageFactor);
+  }
+
   /**
    * Computes the marginal distribution over the {@code factorNum}'th factor in
    * {@code cliqueTree}. If {@code useSumProduct} is {@code true}, this computes
@@ -318,6 +506,382 @@ public class JunctionTree implements MarginalCalculator {
     return new FactorMaxMarginalSet(cliqueTree, originalFactorGraph.getConditionedValues());
   }
   
+  /**
+   * Schedules message passing on a clique tree onto a fork-join pool.
+   * Each connected component of the clique tree is rooted at its
+   * lowest-numbered factor. A factor's upward message is
+   * computed once all of its children's upward messages have been
+   * computed, which is tracked by counting each factor's pending
+   * children. Once the upward pass reaches a root, the downward pass
+   * computes the marginal of each factor from its parent's marginal,
+   * in parallel for all children of a factor.
+   * <p>
+   * The partial marginal of each factor (the product of the factor
+   * and its children's messages) is renormalized and pruned exactly
+   * as in sequential message passing, i.e., before the factor sends
+   * its first outbound message.
+   * 
+   * @author jayantk
+   */
+  private static class ParallelMessagePassing extends CountedCompleter<Void> {
+    private static final long serialVersionUID = 1L;
+
+    private final CliqueTree cliqueTree;
+    private final boolean useSumProduct;
+    private final boolean renormalize;
+    private final PruningStrategy pruningStrategy;
+
+    // Parent of each factor (-1 for roots), and the children of each
+    // factor in ascending order.
+    private final int[] parents;
+    private final int[][] children;
+    private final int[] roots;
+    private final AtomicIntegerArray numPendingChildren;
+
+    // Messages from each factor to its parent, and from each factor's
+    // parent to the factor.
+    private final Factor[] upwardMessages;
+    private final Factor[] downwardMessages;
+    private final Factor[] partialMarginals;
+    private final Factor[] marginals;
+
+    public ParallelMessagePassing(CliqueTree cliqueTree, boolean useSumProduct,
+        boolean renormalize, PruningStrategy pruningStrategy) {
+      this.cliqueTree = cliqueTree;
+      this.useSumProduct = useSumProduct;
+      this.renormalize = renormalize;
+      this.pruningStrategy = pruningStrategy;
+
+      int numFactors = cliqueTree.numFactors();
+      this.parents = new int[numFactors];
+      Arrays.fill(parents, -2);
+      this.children = new int[numFactors][];
+      List<Integer> rootList = Lists.newArrayList();
+      for (int root = 0; root < numFactors; root++) {
+        if (parents[root] != -2) {
+          continue;
+        }
+        rootList.add(root);
+        parents[root] = -1;
+
+        // Depth-first search from the root to assign parents.
+        List<Integer> stack = Lists.newArrayList(root);
+        while (stack.size() > 0) {
+          int factorNum = stack.remove(stack.size() - 1);
+          int[] neighbors = Ints.toArray(cliqueTree.getNeighboringFactors(factorNum));
+          Arrays.sort(neighbors);
+          int[] factorChildren = new int[neighbors.length];
+          int numChildren = 0;
+          for (int neighbor : neighbors) {
+            if (neighbor != parents[factorNum]) {
+              parents[neighbor] = factorNum;
+              factorChildren[numChildren] = neighbor;
+              numChildren++;
+              stack.add(neighbor);
+            }
+          }
+          children[factorNum] = Arrays.copyOf(factorChildren, numChildren);
+        }
+      }
+      this.roots = Ints.toArray(rootList);
+
+      this.numPendingChildren = new AtomicIntegerArray(numFactors);
+      for (int i = 0; i < numFactors; i++) {
+        numPendingChildren.set(i, children[i].length);
+      }
+
+      this.upwardMessages = new Factor[numFactors];
+      this.downwardMessages = new Factor[numFactors];
+      this.partialMarginals = new Factor[numFactors];
+      this.marginals = new Factor[numFactors];
+    }
+
+    @Override
+    public void compute() {
+      for (int i = 0; i < children.length; i++) {
+        if (children[i].length == 0) {
+          submit(new UpwardTask(this, i));
+        }
+      }
+      tryComplete();
+    }
+
+    private void submit(CountedCompleter<Void> task) {
+      addToPendingCount(1);
+      task.fork();
+    }
+
+    /**
+     * Computes the partial marginal of {@code factorNum} and its
+     * message to its parent. Requires the messages from all of its
+     * children.
+     */
+    private void passUpward(int factorNum) {
+      List<Factor> inboundMessages = Lists.newArrayListWithCapacity(children[factorNum].length);
+      for (int child : children[factorNum]) {
+        inboundMessages.add(upwardMessages[child]);
+      }
+
+      Factor partialMarginal = cliqueTree.getFactor(factorNum).product(inboundMessages);
+      if (renormalize) {
+        partialMarginal = partialMarginal.product(1.0 / partialMarginal.getTotalUnnormalizedProbability());
+      }
+      if (pruningStrategy != null) {
+        partialMarginal = pruningStrategy.apply(partialMarginal);
+      }
+      partialMarginals[factorNum] = partialMarginal;
+
+      int parent = parents[factorNum];
+      if (parent >= 0) {
+        upwardMessages[factorNum] = eliminateUnsharedVars(partialMarginal, parent);
+      }
+    }
+
+    /**
+     * Computes the marginal of {@code factorNum}. Requires the
+     * marginal of its parent.
+     */
+    private void passDownward(int factorNum) {
+      int parent = parents[factorNum];
+      if (parent >= 0) {
+        // Divide out the message from factorNum to its parent, which is
+        // included in the parent's marginal.
+        downwardMessages[factorNum] = eliminateUnsharedVars(marginals[parent], factorNum)
+            .product(upwardMessages[factorNum].inverse());
+        marginals[factorNum] = partialMarginals[factorNum].product(downwardMessages[factorNum]);
+      } else {
+        marginals[factorNum] = partialMarginals[factorNum];
+      }
+    }
+
+    /**
+     * Sums or maxes out the variables of {@code factor} which are not
+     * shared with factor {@code destFactor}.
+     */
+    private Factor eliminateUnsharedVars(Factor factor, int destFactor) {
+      VariableNumMap sharedVars = factor.getVars().intersection(
+          cliqueTree.getFactor(destFactor).getVars());
+      Collection<Integer> varNumsToEliminate = factor.getVars().removeAll(sharedVars).getVariableNums();
+      if (useSumProduct) {
+        return factor.marginalize(varNumsToEliminate);
+      } else {
+        return factor.maxMarginalize(varNumsToEliminate);
+      }
+    }
+  }
+
+  /**
+   * Passes upward messages, starting from a single factor and
+   * continuing with each parent whose children have all been
+   * processed. Starts the downward pass after processing a root.
+   */
+  private static class UpwardTask extends CountedCompleter<Void> {
+    private static final long serialVersionUID = 1L;
+
+    private final ParallelMessagePassing schedule;
+    private final int factorNum;
+
+    public UpwardTask(ParallelMessagePassing schedule, int factorNum) {
+      super(schedule);
+      this.schedule = schedule;
+      this.factorNum = factorNum;
+    }
+
+    @Override
+    public void compute() {
+      int cur = factorNum;
+      while (true) {
+        schedule.passUpward(cur);
+        int parent = schedule.parents[cur];
+        if (parent < 0) {
+          schedule.submit(new DownwardTask(schedule, cur));
+          break;
+        } else if (schedule.numPendingChildren.decrementAndGet(parent) == 0) {
+          cur = parent;
+        } else {
+          break;
+        }
+      }
+      tryComplete();
+    }
+  }
+
+  /**
+   * Computes the marginal of a factor, then the marginals of its
+   * descendants. The children of each factor are processed in
+   * parallel.
+   */
+  private static class DownwardTask extends CountedCompleter<Void> {
+    private static final long serialVersionUID = 1L;
+
+    private final ParallelMessagePassing schedule;
+    private final int factorNum;
+
+    public DownwardTask(ParallelMessagePassing schedule, int factorNum) {
+      super(schedule);
+      this.schedule = schedule;
+      this.factorNum = factorNum;
+    }
+
+    @Override
+    public void compute() {
+      int cur = factorNum;
+      while (true) {
+        schedule.passDownward(cur);
+        int[] curChildren = schedule.children[cur];
+        if (curChildren.length == 0) {
+          break;
+        }
+        // Continue in this thread with the last child, and let other
+        // threads steal the rest.
+        for (int i = 0; i < curChildren.length - 1; i++) {
+          schedule.submit(new DownwardTask(schedule, curChildren[i]));
+        }
+        cur = curChildren[curChildren.length - 1];
+      }
+      tryComplete();
+    }
+  }
+
+  /**
+   * The variables of each factor in a factor graph, which determine
+   * the structure of its clique tree.
+   */
+  private static class StructureSignature {
+    private final int[] factorVarNums;
+    private final int hashCode;
+
+    private StructureSignature(int[] factorVarNums) {
+      this.factorVarNums = factorVarNums;
+      this.hashCode = Arrays.hashCode(factorVarNums);
+    }
+
+    /**
+     * Gets the signature of {@code factorGraph}, or {@code null} if
+     * the structure of {@code factorGraph} cannot be cached. The
+     * message passing schedule is only known to depend on the factor
+     * graph's structure if every factor is a {@code DiscreteFactor}.
+     *
+     * @param factorGraph
+     * @return
+     */
+    public static StructureSignature fromFactorGraph(FactorGraph factorGraph) {
+      List<Factor> factors = factorGraph.getFactors();
+      int size = factors.size();
+      for (Factor factor : factors) {
+        if (!(factor instanceof DiscreteFactor)) {
+          return null;
+        }
+        size += factor.getVars().size();
+      }
+
+      // Each factor is encoded as its number of variables followed
+      // by its variable numbers.
+      int[] factorVarNums = new int[size];
+      int index = 0;
+      for (Factor factor : factors) {
+        int[] varNums = factor.getVars().getVariableNumsArray();
+        factorVarNums[index] = varNums.length;
+        System.arraycopy(varNums, 0, factorVarNums, index + 1, varNums.length);
+        index += varNums.length + 1;
+      }
+      return new StructureSignature(factorVarNums);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      } else if (other instanceof StructureSignature) {
+        StructureSignature otherSignature = (StructureSignature) other;
+        return hashCode == otherSignature.hashCode
+            && Arrays.equals(factorVarNums, otherSignature.factorVarNums);
+      }
+      return false;
+    }
+  }
+
+  /**
+   * The structure of a clique tree, without any factors. The clique
+   * tree for any factor graph with the same {@link StructureSignature}
+   * is constructed by multiplying together the factor graph's factors
+   * according to {@code factorGroups}.
+   */
+  private static class CliqueTreeStructure {
+    // The factors of the factor graph which are multiplied to create
+    // each of the initial cliques.
+    private final int[][] factorGroups;
+    // Variables of each clique created during variable elimination.
+    private final int[][] addedCliqueVarNums;
+    private final int[][] cliqueEdges;
+    private final List<Integer> cliqueEliminationOrder;
+
+    // Pairs of start and end factors of each message, in the order
+    // they are passed.
+    private final int[] messageSchedule;
+    private final int[] rootFactorNums;
+
+    public CliqueTreeStructure(List<int[]> factorGroups, CliqueTree cliqueTree,
+        int[] messageSchedule, int[] rootFactorNums) {
+      this.factorGroups = factorGroups.toArray(new int[0][]);
+
+      int numCliques = cliqueTree.numFactors();
+      this.addedCliqueVarNums = new int[numCliques - factorGroups.size()][];
+      for (int i = factorGroups.size(); i < numCliques; i++) {
+        addedCliqueVarNums[i - factorGroups.size()] = cliqueTree.getFactor(i).getVars()
+            .getVariableNumsArray();
+      }
+
+      this.cliqueEdges = new int[numCliques][];
+      for (int i = 0; i < numCliques; i++) {
+        cliqueEdges[i] = Ints.toArray(cliqueTree.getNeighboringFactors(i));
+      }
+      this.cliqueEliminationOrder = ImmutableList.copyOf(cliqueTree.getFactorEliminationOrder());
+
+      this.messageSchedule = messageSchedule;
+      this.rootFactorNums = rootFactorNums;
+    }
+
+    public int[] getMessageSchedule() {
+      return messageSchedule;
+    }
+
+    public int[] getRootFactorNums() {
+      return rootFactorNums;
+    }
+
+    /**
+     * Creates a clique tree with this structure containing the
+     * factors of {@code factorGraph}.
+     *
+     * @param factorGraph
+     * @return
+     */
+    public CliqueTree instantiate(FactorGraph factorGraph) {
+      List<Factor> cliqueFactors = Lists.newArrayListWithCapacity(cliqueEdges.length);
+      for (int i = 0; i < factorGroups.length; i++) {
+        cliqueFactors.add(factorGraph.getFactorProduct(factorGroups[i]));
+      }
+      VariableNumMap vars = factorGraph.getVariables();
+      for (int i = 0; i < addedCliqueVarNums.length; i++) {
+        cliqueFactors.add(TableFactor.unity(vars.intersection(addedCliqueVarNums[i])));
+      }
+
+      HashMultimap<Integer, Integer> factorEdges = HashMultimap.create();
+      for (int i = 0; i < cliqueEdges.length; i++) {
+        for (int j = 0; j < cliqueEdges[i].length; j++) {
+          factorEdges.put(i, cliqueEdges[i][j]);
+        }
+      }
+      return new CliqueTree(cliqueFactors, factorEdges, cliqueEliminationOrder);
+    }
+  }
+
   /**
    * Clique tree data structure used to implement the junction tree
    * algorithm. Represents factors over cliques of variables in the graphical
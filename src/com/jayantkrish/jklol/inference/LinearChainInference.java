@@ -0,0 +1,490 @@
+package com.jayantkrish.jklol.inference;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.jayantkrish.jklol.models.DiscreteVariable;
+import com.jayantkrish.jklol.models.Factor;
+import com.jayantkrish.jklol.models.FactorGraph;
+import com.jayantkrish.jklol.models.TableFactor;
+import com.jayantkrish.jklol.models.VariableNumMap;
+import com.jayantkrish.jklol.tensor.DenseTensor;
+import com.jayantkrish.jklol.tensor.Tensor;
+import com.jayantkrish.jklol.util.Assignment;
+
+/**
+ * Exact inference for chain-structured factor graphs using the
+ * forward-backward and Viterbi algorithms. Sequence models, such as
+ * those constructed by
+ * {@link com.jayantkrish.jklol.sequence.TaggerUtils#buildFeaturizedSequenceModel},
+ * become chains after conditioning on their inputs: every factor
+ * contains either a single label variable or a pair of adjacent
+ * label variables. For such graphs, this class copies the factor
+ * weights into primitive arrays of emission and transition scores
+ * and runs message passing directly on these arrays, which avoids
+ * constructing a clique tree and a {@code Factor} for every message.
+ * <p>
+ * Factor graphs which are not chains (or forests of chains) are
+ * passed to a fallback {@code MarginalCalculator}, by default a
+ * {@link JunctionTree}.
+ *
+ * @author jayantk
+ */
+public class LinearChainInference implements MarginalCalculator {
+  private static final long serialVersionUID = 1L;
+
+  private final MarginalCalculator fallback;
+
+  /**
+   * Creates a chain inference algorithm which uses a
+   * {@code JunctionTree} for factor graphs which are not chains.
+   */
+  public LinearChainInference() {
+    this.fallback = new JunctionTree();
+  }
+
+  /**
+   * Creates a chain inference algorithm which uses {@code fallback}
+   * for factor graphs which are not chains.
+   *
+   * @param fallback
+   */
+  public LinearChainInference(MarginalCalculator fallback) {
+    this.fallback = Preconditions.checkNotNull(fallback);
+  }
+
+  @Override
+  public MarginalSet computeMarginals(FactorGraph factorGraph) {
+    Chain chain = Chain.fromFactorGraph(factorGraph);
+    if (chain == null) {
+      return fallback.computeMarginals(factorGraph);
+    }
+
+    int numVars = chain.numVars;
+    int[] sizes = chain.sizes;
+    double[][] emissions = chain.emissions;
+    double[][] transitions = chain.transitions;
+
+    // Forward pass. Each alpha vector is normalized to sum to 1; the
+    // normalizing constants multiply to the partition function.
+    double[][] alphas = new double[numVars][];
+    double[] scales = new double[numVars];
+    double logPartitionFunction = chain.logConstant;
+    for (int i = 0; i < numVars; i++) {
+      double[] alpha = Arrays.copyOf(emissions[i], sizes[i]);
+      if (i > 0 && transitions[i - 1] != null) {
+        double[] prevAlpha = alphas[i - 1];
+        double[] transition = transitions[i - 1];
+        int size = sizes[i];
+        for (int b = 0; b < size; b++) {
+          if (alpha[b] == 0.0) {
+            continue;
+          }
+          double inbound = 0.0;
+          for (int a = 0; a < prevAlpha.length; a++) {
+            inbound += prevAlpha[a] * transition[a * size + b];
+          }
+          alpha[b] *= inbound;
+        }
+      }
+      // If variable i is not adjacent to variable i - 1, the inbound
+      // message is the sum of the previous (normalized) alpha, i.e., 1.
+
+      scales[i] = normalize(alpha);
+      alphas[i] = alpha;
+      logPartitionFunction += Math.log(scales[i]);
+    }
+
+    // Backward pass, scaled by the same constants as the forward pass.
+    double[][] betas = new double[numVars][];
+    betas[numVars - 1] = new double[sizes[numVars - 1]];
+    Arrays.fill(betas[numVars - 1], 1.0);
+    for (int i = numVars - 2; i >= 0; i--) {
+      double[] nextBeta = betas[i + 1];
+      double[] nextEmission = emissions[i + 1];
+      int nextSize = sizes[i + 1];
+      double[] weightedNext = new double[nextSize];
+      for (int b = 0; b < nextSize; b++) {
+        weightedNext[b] = nextEmission[b] * nextBeta[b] / scales[i + 1];
+      }
+
+      double[] beta = new double[sizes[i]];
+      double[] transition = transitions[i];
+      if (transition == null) {
+        double total = 0.0;
+        for (int b = 0; b < nextSize; b++) {
+          total += weightedNext[b];
+        }
+        Arrays.fill(beta, total);
+      } else {
+        for (int a = 0; a < beta.length; a++) {
+          double total = 0.0;
+          int offset = a * nextSize;
+          for (int b = 0; b < nextSize; b++) {
+            total += transition[offset + b] * weightedNext[b];
+          }
+          beta[a] = total;
+        }
+      }
+      betas[i] = beta;
+    }
+
+    // Single variable marginals are listed first, so that
+    // FactorMarginalSet retrieves them without marginalizing a
+    // pairwise marginal.
+    List<Factor> marginals = Lists.newArrayList();
+    for (int i = 0; i < numVars; i++) {
+      double[] marginal = new double[sizes[i]];
+      for (int a = 0; a < sizes[i]; a++) {
+        marginal[a] = alphas[i][a] * betas[i][a];
+      }
+      marginals.add(chain.getUnaryFactor(i, marginal));
+    }
+
+    for (int i = 0; i < numVars - 1; i++) {
+      double[] transition = transitions[i];
+      if (transition == null) {
+        continue;
+      }
+      int size = sizes[i];
+      int nextSize = sizes[i + 1];
+      double[] marginal = new double[size * nextSize];
+      for (int a = 0; a < size; a++) {
+        int offset = a * nextSize;
+        for (int b = 0; b < nextSize; b++) {
+          marginal[offset + b] = alphas[i][a] * transition[offset + b] * emissions[i + 1][b]
+              * betas[i + 1][b] / scales[i + 1];
+        }
+      }
+      marginals.add(chain.getPairwiseFactor(i, marginal));
+    }
+
+    return new FactorMarginalSet(marginals, logPartitionFunction,
+        factorGraph.getConditionedVariables(), factorGraph.getConditionedValues());
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * For chain-structured factor graphs, the returned
+   * {@code MaxMarginalSet} only supports retrieving the single best
+   * assignment.
+   */
+  @Override
+  public MaxMarginalSet computeMaxMarginals(FactorGraph factorGraph) {
+    Chain chain = Chain.fromFactorGraph(factorGraph);
+    if (chain == null) {
+      return fallback.computeMaxMarginals(factorGraph);
+    }
+
+    int numVars = chain.numVars;
+    int[] sizes = chain.sizes;
+    double[][] emissions = chain.emissions;
+    double[][] transitions = chain.transitions;
+
+    // Viterbi. deltas[i][b] is proportional to the weight of the best
+    // assignment to variables 0..i in which variable i takes value b.
+    // backpointers[i][b] is the value of variable i - 1 in this
+    // assignment.
+    double[] delta = null;
+    int[][] backpointers = new int[numVars][];
+    for (int i = 0; i < numVars; i++) {
+      double[] nextDelta = Arrays.copyOf(emissions[i], sizes[i]);
+      int[] backpointer = new int[sizes[i]];
+      if (i > 0) {
+        if (transitions[i - 1] == null) {
+          int best = argmax(delta);
+          double bestWeight = delta[best];
+          for (int b = 0; b < nextDelta.length; b++) {
+            nextDelta[b] *= bestWeight;
+            backpointer[b] = best;
+          }
+        } else {
+          double[] transition = transitions[i - 1];
+          int size = sizes[i];
+          for (int b = 0; b < size; b++) {
+            double bestWeight = -1.0;
+            int best = -1;
+            for (int a = 0; a < delta.length; a++) {
+              double weight = delta[a] * transition[a * size + b];
+              if (weight > bestWeight) {
+                bestWeight = weight;
+                best = a;
+              }
+            }
+            nextDelta[b] *= bestWeight;
+            backpointer[b] = best;
+          }
+        }
+      }
+
+      // Rescale to prevent underflow.
+      double maxWeight = nextDelta[argmax(nextDelta)];
+      if (maxWeight <= 0.0) {
+        throw new ZeroProbabilityError();
+      }
+      for (int b = 0; b < nextDelta.length; b++) {
+        nextDelta[b] /= maxWeight;
+      }
+
+      delta = nextDelta;
+      backpointers[i] = backpointer;
+    }
+
+    int[] bestValues = new int[numVars];
+    bestValues[numVars - 1] = argmax(delta);
+    for (int i = numVars - 1; i > 0; i--) {
+      bestValues[i - 1] = backpointers[i][bestValues[i]];
+    }
+
+    Assignment best = chain.getAssignment(bestValues);
+    return new AssignmentMaxMarginalSet(best.union(factorGraph.getConditionedValues()));
+  }
+
+  /**
+   * Divides {@code values} by its sum, returning the sum. Throws a
+   * {@code ZeroProbabilityError} if the sum is 0.
+   */
+  private static double normalize(double[] values) {
+    double total = 0.0;
+    for (int i = 0; i < values.length; i++) {
+      total += values[i];
+    }
+    if (total <= 0.0) {
+      throw new ZeroProbabilityError();
+    }
+    for (int i = 0; i < values.length; i++) {
+      values[i] /= total;
+    }
+    return total;
+  }
+
+  private static int argmax(double[] values) {
+    int best = 0;
+    for (int i = 1; i < values.length; i++) {
+      if (values[i] > values[best]) {
+        best = i;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * The weights of a chain-structured factor graph, represented as
+   * primitive arrays. The variables of the graph are ordered so that
+   * every factor contains either a single variable or two
+   * consecutive variables. Consecutive variables which do not share a
+   * factor have a {@code null} transition array.
+   */
+  private static class Chain {
+    private final int numVars;
+    // Variable number, variable and number of values of the variable
+    // at each position of the chain.
+    private final int[] varNums;
+    private final VariableNumMap[] vars;
+    private final int[] sizes;
+
+    // emissions[i][a] is the product of the single variable factors
+    // for variable i taking value a. transitions[i][a * sizes[i + 1] + b]
+    // is the product of the factors containing variables i and i + 1,
+    // for values a and b.
+    private final double[][] emissions;
+    private final double[][] transitions;
+
+    // Log weight of factors which contain no variables.
+    private final double logConstant;
+
+    private Chain(int[] varNums, VariableNumMap[] vars, int[] sizes, double[][] emissions,
+        double[][] transitions, double logConstant) {
+      this.numVars = varNums.length;
+      this.varNums = varNums;
+      this.vars = vars;
+      this.sizes = sizes;
+      this.emissions = emissions;
+      this.transitions = transitions;
+      this.logConstant = logConstant;
+    }
+
+    /**
+     * Copies the factors of {@code factorGraph} into a chain, or
+     * returns {@code null} if {@code factorGraph} is not a forest of
+     * chains over discrete variables.
+     *
+     * @param factorGraph
+     * @return
+     */
+    public static Chain fromFactorGraph(FactorGraph factorGraph) {
+      VariableNumMap graphVars = factorGraph.getVariables();
+      int numVars = graphVars.size();
+      if (numVars == 0 || graphVars.getDiscreteVariables().size() != numVars) {
+        return null;
+      }
+      int[] graphVarNums = graphVars.getVariableNumsArray();
+
+      // Find the (at most two) neighbors of each variable.
+      int[] neighbors = new int[2 * numVars];
+      Arrays.fill(neighbors, -1);
+      List<Factor> factors = factorGraph.getFactors();
+      for (Factor factor : factors) {
+        int[] factorVarNums = factor.getVars().getVariableNumsArray();
+        if (factorVarNums.length > 2) {
+          return null;
+        } else if (factorVarNums.length == 2) {
+          int first = Arrays.binarySearch(graphVarNums, factorVarNums[0]);
+          int second = Arrays.binarySearch(graphVarNums, factorVarNums[1]);
+          if (!addNeighbor(neighbors, first, second) || !addNeighbor(neighbors, second, first)) {
+            return null;
+          }
+        }
+      }
+
+      // Order the variables by walking along each chain, starting
+      // from one of its endpoints. Any variable which is not reached
+      // lies on a cycle.
+      int[] positions = new int[numVars];
+      Arrays.fill(positions, -1);
+      int[] order = new int[numVars];
+      boolean[] linked = new boolean[numVars];
+      int numOrdered = 0;
+      for (int i = 0; i < numVars; i++) {
+        if (positions[i] != -1 || neighbors[2 * i + 1] != -1) {
+          continue;
+        }
+        int prev = -1;
+        int cur = i;
+        while (cur != -1) {
+          positions[cur] = numOrdered;
+          order[numOrdered] = cur;
+          linked[numOrdered] = prev != -1;
+          numOrdered++;
+
+          int next = neighbors[2 * cur] != prev ? neighbors[2 * cur] : neighbors[2 * cur + 1];
+          prev = cur;
+          cur = next;
+        }
+      }
+      if (numOrdered != numVars) {
+        return null;
+      }
+
+      int[] varNums = new int[numVars];
+      VariableNumMap[] vars = new VariableNumMap[numVars];
+      int[] sizes = new int[numVars];
+      double[][] emissions = new double[numVars][];
+      double[][] transitions = new double[numVars - 1][];
+      for (int i = 0; i < numVars; i++) {
+        varNums[i] = graphVarNums[order[i]];
+        vars[i] = graphVars.intersection(varNums[i]);
+        sizes[i] = ((DiscreteVariable) vars[i].getOnlyVariable()).numValues();
+        emissions[i] = new double[sizes[i]];
+        Arrays.fill(emissions[i], 1.0);
+        if (i > 0 && linked[i]) {
+          transitions[i - 1] = new double[sizes[i - 1] * sizes[i]];
+          Arrays.fill(transitions[i - 1], 1.0);
+        }
+      }
+
+      // Multiply the weights of each factor into the arrays.
+      double logConstant = 0.0;
+      for (Factor factor : factors) {
+        int[] factorVarNums = factor.getVars().getVariableNumsArray();
+        if (factorVarNums.length == 0) {
+          logConstant += factor.getUnnormalizedLogProbability(Assignment.EMPTY);
+          continue;
+        }
+
+        Tensor weights = factor.coerceToDiscrete().getWeights();
+        long[] offsets = weights.getDimensionOffsets();
+        if (factorVarNums.length == 1) {
+          int position = positions[Arrays.binarySearch(graphVarNums, factorVarNums[0])];
+          double[] emission = emissions[position];
+          for (int a = 0; a < emission.length; a++) {
+            emission[a] *= weights.get(a * offsets[0]);
+          }
+        } else {
+          int firstPosition = positions[Arrays.binarySearch(graphVarNums, factorVarNums[0])];
+          int secondPosition = positions[Arrays.binarySearch(graphVarNums, factorVarNums[1])];
+          // The tensor's dimensions are sorted by variable number,
+          // which may differ from their order in the chain.
+          int position = Math.min(firstPosition, secondPosition);
+          long leftOffset = firstPosition < secondPosition ? offsets[0] : offsets[1];
+          long rightOffset = firstPosition < secondPosition ? offsets[1] : offsets[0];
+
+          double[] transition = transitions[position];
+          int size = sizes[position];
+          int nextSize = sizes[position + 1];
+          for (int a = 0; a < size; a++) {
+            for (int b = 0; b < nextSize; b++) {
+              transition[a * nextSize + b] *= weights.get(a * leftOffset + b * rightOffset);
+            }
+          }
+        }
+      }
+
+      return new Chain(varNums, vars, sizes, emissions, transitions, logConstant);
+    }
+
+    /**
+     * Records {@code neighbor} as a neighbor of {@code varIndex},
+     * returning {@code false} if {@code varIndex} already has two
+     * other neighbors.
+     */
+    private static boolean addNeighbor(int[] neighbors, int varIndex, int neighbor) {
+      int index = 2 * varIndex;
+      if (neighbors[index] == -1 || neighbors[index] == neighbor) {
+        neighbors[index] = neighbor;
+        return true;
+      } else if (neighbors[index + 1] == -1 || neighbors[index + 1] == neighbor) {
+        neighbors[index + 1] = neighbor;
+        return true;
+      }
+      return false;
+    }
+
+    public Factor getUnaryFactor(int position, double[] weights) {
+      return new TableFactor(vars[position], new DenseTensor(new int[] { varNums[position] },
+          new int[] { sizes[position] }, weights));
+    }
+
+    /**
+     * Gets a factor over the variables at {@code position} and
+     * {@code position + 1}, where {@code weights} is formatted like
+     * {@code transitions}.
+     */
+    public Factor getPairwiseFactor(int position, double[] weights) {
+      int leftVarNum = varNums[position];
+      int rightVarNum = varNums[position + 1];
+      int leftSize = sizes[position];
+      int rightSize = sizes[position + 1];
+      VariableNumMap factorVars = vars[position].union(vars[position + 1]);
+      if (leftVarNum < rightVarNum) {
+        return new TableFactor(factorVars, new DenseTensor(new int[] { leftVarNum, rightVarNum },
+            new int[] { leftSize, rightSize }, weights));
+      } else {
+        double[] transposed = new double[weights.length];
+        for (int a = 0; a < leftSize; a++) {
+          for (int b = 0; b < rightSize; b++) {
+            transposed[b * leftSize + a] = weights[a * rightSize + b];
+          }
+        }
+        return new TableFactor(factorVars, new DenseTensor(new int[] { rightVarNum, leftVarNum },
+            new int[] { rightSize, leftSize }, transposed));
+      }
+    }
+
+    /**
+     * Gets the assignment where the variable at each position {@code i}
+     * takes the value with index {@code valueIndexes[i]}.
+     */
+    public Assignment getAssignment(int[] valueIndexes) {
+      int[] assignmentVarNums = Arrays.copyOf(varNums, numVars);
+      Object[] values = new Object[numVars];
+      for (int i = 0; i < numVars; i++) {
+        values[i] = ((DiscreteVariable) vars[i].getOnlyVariable()).getValue(valueIndexes[i]);
+      }
+      return Assignment.fromUnsortedArrays(assignmentVarNums, values);
+    }
+  }
+}
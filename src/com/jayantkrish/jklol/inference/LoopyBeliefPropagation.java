@@ -0,0 +1,501 @@
+package com.jayantkrish.jklol.inference;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.RecursiveAction;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Ints;
+import com.jayantkrish.jklol.models.DiscreteFactor;
+import com.jayantkrish.jklol.models.Factor;
+import com.jayantkrish.jklol.models.FactorGraph;
+import com.jayantkrish.jklol.models.TableFactor;
+import com.jayantkrish.jklol.models.VariableNumMap;
+import com.jayantkrish.jklol.parallel.ForkJoinPools;
+import com.jayantkrish.jklol.tensor.SparseTensor;
+import com.jayantkrish.jklol.tensor.Tensor;
+import com.jayantkrish.jklol.util.Assignment;
+
+/**
+ * Loopy belief propagation, an approximate inference algorithm for
+ * discrete factor graphs whose clique trees are too large for
+ * {@link JunctionTree}. Messages are passed between factors and
+ * variables until they converge, and the marginals are estimated from
+ * the converged messages. Both sum-product and max-product are
+ * supported. On tree-structured factor graphs, the computed marginals
+ * are exact.
+ * <p>
+ * Messages are updated using residual scheduling: the next message to
+ * update is the one whose value would change the most, as measured by
+ * the L2 norm of the difference between its current and updated value.
+ * Message passing stops once every message's residual is below a
+ * convergence threshold, or after a fixed budget of updates. Updates
+ * may also be damped, i.e., the new value of a message is a weighted
+ * average of its old and updated value, which helps message passing
+ * converge on graphs with strong loops.
+ * <p>
+ * With multiple threads, each round of message passing updates the
+ * {@code numThreads} messages with the largest residuals, then
+ * recomputes the messages which depend on them in parallel. The result
+ * depends on the number of threads, but not on thread scheduling.
+ *
+ * @author jayantk
+ */
+public class LoopyBeliefPropagation implements MarginalCalculator {
+  private static final long serialVersionUID = 1L;
+
+  // Number of messages computed sequentially by a single task.
+  private static final int MESSAGES_PER_TASK = 16;
+
+  private final double convergenceThreshold;
+  private final double damping;
+  private final int maxUpdatesPerMessage;
+  private final int numThreads;
+
+  /**
+   * Creates loopy belief propagation with a convergence threshold of
+   * {@code 1e-8}, no damping, a budget of 100 updates per message,
+   * and a single thread.
+   */
+  public LoopyBeliefPropagation() {
+    this(1e-8, 0.0, 100, 1);
+  }
+
+  /**
+   *
+   * @param convergenceThreshold message passing stops when no message
+   * would change by more than this amount (in L2 norm).
+   * @param damping weight of each message's previous value in its
+   * updated value. Must be in {@code [0, 1)}; {@code 0.0} disables
+   * damping.
+   * @param maxUpdatesPerMessage the budget for message passing, as a
+   * multiple of the number of messages in the factor graph. If message
+   * passing has not converged after this many updates, the marginals
+   * are estimated from the current messages.
+   * @param numThreads
+   */
+  public LoopyBeliefPropagation(double convergenceThreshold, double damping,
+      int maxUpdatesPerMessage, int numThreads) {
+    Preconditions.checkArgument(convergenceThreshold >= 0.0);
+    Preconditions.checkArgument(damping >= 0.0 && damping < 1.0);
+    Preconditions.checkArgument(maxUpdatesPerMessage > 0);
+    Preconditions.checkArgument(numThreads > 0);
+    this.convergenceThreshold = convergenceThreshold;
+    this.damping = damping;
+    this.maxUpdatesPerMessage = maxUpdatesPerMessage;
+    this.numThreads = numThreads;
+  }
+
+  @Override
+  public MarginalSet computeMarginals(FactorGraph factorGraph) {
+    MessagePassing messages = runMessagePassing(factorGraph, true);
+
+    // Variable marginals are listed first, so that FactorMarginalSet
+    // retrieves them without marginalizing a factor marginal.
+    List<Factor> marginals = Lists.newArrayList();
+    DiscreteFactor[] variableBeliefs = new DiscreteFactor[messages.numVars()];
+    for (int i = 0; i < variableBeliefs.length; i++) {
+      variableBeliefs[i] = messages.getVariableBelief(i);
+      marginals.add(variableBeliefs[i]);
+    }
+
+    // Estimate the partition function using the Bethe free energy,
+    // which is exact for tree-structured factor graphs.
+    double logPartitionFunction = 0.0;
+    for (int i = 0; i < messages.numFactors(); i++) {
+      DiscreteFactor factor = messages.factors[i];
+      if (factor.getVars().size() == 0) {
+        logPartitionFunction += Math.log(factor.getTotalUnnormalizedProbability());
+        continue;
+      }
+
+      DiscreteFactor belief = messages.getFactorBelief(i);
+      if (factor.getVars().size() > 1) {
+        marginals.add(belief);
+      }
+      Tensor beliefWeights = belief.getWeights();
+      Tensor factorWeights = factor.getWeights();
+      for (int j = 0; j < beliefWeights.size(); j++) {
+        double prob = beliefWeights.getByIndex(j);
+        if (prob > 0.0) {
+          double weight = factorWeights.get(beliefWeights.indexToKeyNum(j));
+          logPartitionFunction += prob * (Math.log(weight) - Math.log(prob));
+        }
+      }
+    }
+
+    for (int i = 0; i < variableBeliefs.length; i++) {
+      int degree = messages.variableEdges[i].length;
+      Tensor beliefWeights = variableBeliefs[i].getWeights();
+      for (int j = 0; j < beliefWeights.size(); j++) {
+        double prob = beliefWeights.getByIndex(j);
+        if (prob > 0.0) {
+          logPartitionFunction += (degree - 1) * prob * Math.log(prob);
+        }
+      }
+    }
+
+    return new FactorMarginalSet(marginals, logPartitionFunction,
+        factorGraph.getConditionedVariables(), factorGraph.getConditionedValues());
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The returned {@code MaxMarginalSet} only supports retrieving the
+   * single best assignment, which assigns each variable its value
+   * with the largest max-marginal. On loopy graphs, this assignment
+   * may not be the true best assignment.
+   */
+  @Override
+  public MaxMarginalSet computeMaxMarginals(FactorGraph factorGraph) {
+    MessagePassing messages = runMessagePassing(factorGraph, false);
+
+    Assignment bestAssignment = factorGraph.getConditionedValues();
+    for (int i = 0; i < messages.numVars(); i++) {
+      DiscreteFactor belief = messages.getVariableBelief(i);
+      List<Assignment> best = belief.getMostLikelyAssignments(1);
+      if (best.size() == 0 || belief.getUnnormalizedProbability(best.get(0)) == 0.0) {
+        throw new ZeroProbabilityError();
+      }
+      bestAssignment = bestAssignment.union(best.get(0));
+    }
+    return new AssignmentMaxMarginalSet(bestAssignment);
+  }
+
+  private MessagePassing runMessagePassing(FactorGraph factorGraph, boolean useSumProduct) {
+    MessagePassing messages = new MessagePassing(factorGraph, useSumProduct);
+    int numEdges = messages.numEdges();
+
+    // Messages ordered by decreasing residual. Ties are broken by
+    // message index, which makes the schedule deterministic.
+    final double[] residuals = messages.residuals;
+    SortedSet<Integer> queue = new TreeSet<Integer>(new Comparator<Integer>() {
+      public int compare(Integer e1, Integer e2) {
+        int cmp = Double.compare(residuals[e2], residuals[e1]);
+        return cmp != 0 ? cmp : Ints.compare(e1, e2);
+      }
+    });
+
+    int[] allEdges = new int[numEdges];
+    for (int i = 0; i < numEdges; i++) {
+      allEdges[i] = i;
+    }
+    computeCandidates(messages, allEdges);
+    for (int i = 0; i < numEdges; i++) {
+      queue.add(i);
+    }
+
+    long maxUpdates = ((long) maxUpdatesPerMessage) * numEdges;
+    long numUpdates = 0;
+    // Marks the messages in toCompute. Only the marked messages are
+    // cleared after each round, so a round takes time proportional to
+    // the number of recomputed messages, not the number of edges.
+    boolean[] needsUpdate = new boolean[numEdges];
+    while (numUpdates < maxUpdates && queue.size() > 0
+        && residuals[queue.first()] > convergenceThreshold) {
+      // Update the messages with the largest residuals.
+      List<Integer> updated = Lists.newArrayList();
+      while (updated.size() < numThreads && queue.size() > 0
+          && residuals[queue.first()] > convergenceThreshold) {
+        int edge = queue.first();
+        queue.remove(edge);
+        messages.update(edge, damping);
+        updated.add(edge);
+      }
+      numUpdates += updated.size();
+
+      // Recompute every message which depends on an updated message,
+      // including the updated messages themselves, whose residuals are
+      // nonzero if damping is used.
+      List<Integer> toCompute = Lists.newArrayList();
+      for (int edge : updated) {
+        if (!needsUpdate[edge]) {
+          needsUpdate[edge] = true;
+          toCompute.add(edge);
+        }
+        for (int dependent : messages.getDependentEdges(edge)) {
+          if (!needsUpdate[dependent]) {
+            needsUpdate[dependent] = true;
+            toCompute.add(dependent);
+          }
+        }
+      }
+      // Messages must leave the queue before their residuals change.
+      int[] toComputeArray = Ints.toArray(toCompute);
+      Arrays.sort(toComputeArray);
+      for (int edge : toComputeArray) {
+        needsUpdate[edge] = false;
+        queue.remove(edge);
+      }
+
+      computeCandidates(messages, toComputeArray);
+      queue.addAll(toCompute);
+    }
+    return messages;
+  }
+
+  /**
+   * Computes the updated value and residual of each message in
+   * {@code edges}, using {@code numThreads} threads.
+   */
+  private void computeCandidates(MessagePassing messages, int[] edges) {
+    if (numThreads == 1 || edges.length <= MESSAGES_PER_TASK) {
+      for (int edge : edges) {
+        messages.computeCandidate(edge);
+      }
+    } else {
+      ForkJoinPools.getPool(numThreads).invoke(
+          new CandidateTask(messages, edges, 0, edges.length));
+    }
+  }
+
+  /**
+   * Normalizes {@code factor} to sum to 1.
+   */
+  private static DiscreteFactor normalize(DiscreteFactor factor) {
+    double total = factor.getTotalUnnormalizedProbability();
+    if (total == 0.0) {
+      throw new ZeroProbabilityError();
+    }
+    return factor.product(1.0 / total);
+  }
+
+  /**
+   * The state of message passing on a factor graph. Each edge of the
+   * factor graph connects a factor and one of its variables. The
+   * message from the factor to the variable is stored with the edge;
+   * messages from variables to factors are computed from these
+   * messages when needed. Each edge also stores the updated value of
+   * its message, computed from the current values of the other
+   * messages, and its residual.
+   *
+   * @author jayantk
+   */
+  private static class MessagePassing {
+    private final boolean useSumProduct;
+
+    private final VariableNumMap variables;
+    private final int[] varNums;
+    private final DiscreteFactor[] factors;
+
+    // The factor and variable (as an index into variables) of each
+    // edge.
+    private final int[] edgeFactors;
+    private final int[] edgeVariables;
+    // Edges of each factor, in the order of the factor's variables,
+    // and edges of each variable.
+    private final int[][] factorEdges;
+    private final int[][] variableEdges;
+
+    private final DiscreteFactor[] messages;
+    private final DiscreteFactor[] candidates;
+    private final double[] residuals;
+
+    public MessagePassing(FactorGraph factorGraph, boolean useSumProduct) {
+      this.useSumProduct = useSumProduct;
+      this.variables = factorGraph.getVariables();
+      Preconditions.checkArgument(variables.getDiscreteVariables().size() == variables.size(),
+          "Loopy belief propagation requires discrete variables.");
+      this.varNums = variables.getVariableNumsArray();
+
+      List<Factor> factorList = factorGraph.getFactors();
+      this.factors = new DiscreteFactor[factorList.size()];
+      this.factorEdges = new int[factors.length][];
+      List<Integer> edgeFactorList = Lists.newArrayList();
+      List<Integer> edgeVariableList = Lists.newArrayList();
+      List<List<Integer>> variableEdgeLists = Lists.newArrayList();
+      for (int i = 0; i < variables.size(); i++) {
+        variableEdgeLists.add(Lists.<Integer>newArrayList());
+      }
+      for (int i = 0; i < factors.length; i++) {
+        factors[i] = factorList.get(i).coerceToDiscrete();
+        int[] factorVarNums = factors[i].getVars().getVariableNumsArray();
+        factorEdges[i] = new int[factorVarNums.length];
+        for (int j = 0; j < factorVarNums.length; j++) {
+          int varIndex = Arrays.binarySearch(varNums, factorVarNums[j]);
+          factorEdges[i][j] = edgeFactorList.size();
+          variableEdgeLists.get(varIndex).add(edgeFactorList.size());
+          edgeFactorList.add(i);
+          edgeVariableList.add(varIndex);
+        }
+      }
+      this.edgeFactors = Ints.toArray(edgeFactorList);
+      this.edgeVariables = Ints.toArray(edgeVariableList);
+      this.variableEdges = new int[variables.size()][];
+      for (int i = 0; i < variableEdges.length; i++) {
+        variableEdges[i] = Ints.toArray(variableEdgeLists.get(i));
+      }
+
+      int numEdges = edgeFactors.length;
+      this.messages = new DiscreteFactor[numEdges];
+      this.candidates = new DiscreteFactor[numEdges];
+      this.residuals = new double[numEdges];
+      for (int i = 0; i < numEdges; i++) {
+        messages[i] = normalize(TableFactor.unity(getEdgeVariable(i)));
+      }
+    }
+
+    public int numVars() {
+      return variables.size();
+    }
+
+    public int numFactors() {
+      return factors.length;
+    }
+
+    public int numEdges() {
+      return edgeFactors.length;
+    }
+
+    private VariableNumMap getEdgeVariable(int edge) {
+      return variables.intersection(varNums[edgeVariables[edge]]);
+    }
+
+    /**
+     * Gets the message from the variable of {@code edge} to its
+     * factor, which is the product of the messages from the
+     * variable's other factors.
+     */
+    private DiscreteFactor getVariableMessage(int edge) {
+      int[] edges = variableEdges[edgeVariables[edge]];
+      List<Factor> inbound = Lists.newArrayListWithCapacity(edges.length);
+      for (int otherEdge : edges) {
+        if (otherEdge != edge) {
+          inbound.add(messages[otherEdge]);
+        }
+      }
+      if (inbound.size() == 0) {
+        return TableFactor.unity(getEdgeVariable(edge));
+      }
+      return normalize(((DiscreteFactor) inbound.get(0)).product(inbound.subList(1, inbound.size())));
+    }
+
+    /**
+     * Computes the message from the factor of {@code edge} to its
+     * variable using the current messages from the factor's other
+     * variables, and the residual of this message.
+     */
+    public void computeCandidate(int edge) {
+      int factorNum = edgeFactors[edge];
+      DiscreteFactor factor = factors[factorNum];
+      List<Factor> inbound = Lists.newArrayList();
+      List<Integer> varNumsToEliminate = Lists.newArrayList();
+      for (int otherEdge : factorEdges[factorNum]) {
+        if (otherEdge != edge) {
+          inbound.add(getVariableMessage(otherEdge));
+          varNumsToEliminate.add(varNums[edgeVariables[otherEdge]]);
+        }
+      }
+
+      DiscreteFactor candidate = null;
+      if (useSumProduct) {
+        candidate = factor.productMarginalize(inbound, varNumsToEliminate);
+      } else {
+        candidate = factor.productMaxMarginalize(inbound, varNumsToEliminate);
+      }
+      candidate = normalize(candidate);
+
+      candidates[edge] = candidate;
+      residuals[edge] = candidate.getWeights().elementwiseAddition(messages[edge].getWeights()
+          .elementwiseProduct(SparseTensor.getScalarConstant(-1.0))).getL2Norm();
+    }
+
+    /**
+     * Replaces the message of {@code edge} with its updated value,
+     * which is averaged with its previous value using weight
+     * {@code damping}.
+     */
+    public void update(int edge, double damping) {
+      if (damping == 0.0) {
+        messages[edge] = candidates[edge];
+      } else {
+        messages[edge] = candidates[edge].product(1.0 - damping)
+            .add(messages[edge].product(damping));
+      }
+    }
+
+    /**
+     * Gets the edges whose messages are computed using the message of
+     * {@code edge}. These are the edges from each other factor of the
+     * variable of {@code edge} to the factor's other variables.
+     */
+    public List<Integer> getDependentEdges(int edge) {
+      List<Integer> dependents = Lists.newArrayList();
+      for (int variableEdge : variableEdges[edgeVariables[edge]]) {
+        if (variableEdge != edge) {
+          for (int factorEdge : factorEdges[edgeFactors[variableEdge]]) {
+            if (factorEdge != variableEdge) {
+              dependents.add(factorEdge);
+            }
+          }
+        }
+      }
+      return dependents;
+    }
+
+    /**
+     * Gets the (normalized) belief about the variable with index
+     * {@code varIndex}, the product of its inbound messages.
+     */
+    public DiscreteFactor getVariableBelief(int varIndex) {
+      int[] edges = variableEdges[varIndex];
+      List<Factor> inbound = Lists.newArrayListWithCapacity(edges.length);
+      for (int edge : edges) {
+        inbound.add(messages[edge]);
+      }
+      VariableNumMap var = variables.intersection(varNums[varIndex]);
+      return normalize(TableFactor.unity(var).product(inbound));
+    }
+
+    /**
+     * Gets the (normalized) belief about the variables of factor
+     * {@code factorNum}, the product of the factor and the messages
+     * from its variables.
+     */
+    public DiscreteFactor getFactorBelief(int factorNum) {
+      List<Factor> inbound = Lists.newArrayList();
+      for (int edge : factorEdges[factorNum]) {
+        inbound.add(getVariableMessage(edge));
+      }
+      return normalize(factors[factorNum].product(inbound));
+    }
+  }
+
+  /**
+   * Computes updated messages for a range of edges, splitting the
+   * range across threads.
+   */
+  private static class CandidateTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final MessagePassing messages;
+    private final int[] edges;
+    private final int start;
+    private final int end;
+
+    public CandidateTask(MessagePassing messages, int[] edges, int start, int end) {
+      this.messages = messages;
+      this.edges = edges;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    public void compute() {
+      if (end - start <= MESSAGES_PER_TASK) {
+        for (int i = start; i < end; i++) {
+          messages.computeCandidate(edges[i]);
+        }
+      } else {
+        int mid = (start + end) / 2;
+        invokeAll(new CandidateTask(messages, edges, start, mid),
+            new CandidateTask(messages, edges, mid, end));
+      }
+    }
+  }
+}
@@ -0,0 +1,433 @@
+package com.jayantkrish.jklol.inference;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.RecursiveAction;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Ints;
+import com.jayantkrish.jklol.models.DiscreteFactor;
+import com.jayantkrish.jklol.models.DiscreteVariable;
+import com.jayantkrish.jklol.models.Factor;
+import com.jayantkrish.jklol.models.FactorGraph;
+import com.jayantkrish.jklol.models.VariableNumMap;
+import com.jayantkrish.jklol.parallel.ForkJoinPools;
+import com.jayantkrish.jklol.tensor.Tensor;
+import com.jayantkrish.jklol.util.Assignment;
+import com.jayantkrish.jklol.util.Pseudorandom;
+
+/**
+ * Gibbs sampling for discrete factor graphs, which runs several
+ * independent Markov chains in parallel. Compared to
+ * {@link GibbsSampler}, this sampler avoids constructing
+ * {@code Assignment}s and {@code Factor}s while sampling. The state of
+ * each chain is an array of value indexes, and the weights of each
+ * factor are copied into a dense array before sampling. Resampling a
+ * variable multiplies together one slice of each factor in the
+ * variable's Markov blanket, which is located using precomputed
+ * strides.
+ * <p>
+ * Within each chain, variables are partitioned using a greedy graph
+ * coloring such that no two variables of the same color share a
+ * factor. Variables of the same color are conditionally independent
+ * given the others, so each sweep resamples the variables of each
+ * color in parallel. The random numbers for each sweep are drawn
+ * before sampling, so the samples do not depend on the number of
+ * threads or thread scheduling. Each chain's random number generator
+ * is seeded from {@link Pseudorandom}.
+ * <p>
+ * Each chain begins in the state where every variable takes its first
+ * value. If every value of a variable has zero probability given the
+ * other variables, which can only happen while the chain is in a zero
+ * probability state, the variable's value is drawn uniformly. Hence
+ * chains can leave a zero probability initial state, but may not mix
+ * well on factor graphs with many zero probability outcomes.
+ *
+ * @author jayantk
+ */
+public class ParallelGibbsSampler implements MarginalCalculator {
+  private static final long serialVersionUID = 1L;
+
+  // Number of variables of a single color resampled sequentially by
+  // a single task.
+  private static final int VARIABLES_PER_TASK = 64;
+
+  private final int burnInSamples;
+  private final int numDrawsInMarginal;
+  private final int samplesBetweenDraws;
+  private final int numChains;
+  private final int numThreads;
+
+  /**
+   *
+   * @param burnInSamples number of sweeps over all variables before
+   * drawing samples in each chain.
+   * @param numDrawsInMarginal number of samples drawn from each chain.
+   * @param samplesBetweenDraws number of sweeps between consecutive
+   * samples of a chain.
+   * @param numChains number of independent chains.
+   * @param numThreads
+   */
+  public ParallelGibbsSampler(int burnInSamples, int numDrawsInMarginal, int samplesBetweenDraws,
+      int numChains, int numThreads) {
+    Preconditions.checkArgument(burnInSamples >= 0);
+    Preconditions.checkArgument(numDrawsInMarginal > 0);
+    Preconditions.checkArgument(samplesBetweenDraws >= 0);
+    Preconditions.checkArgument(numChains > 0);
+    Preconditions.checkArgument(numThreads > 0);
+    this.burnInSamples = burnInSamples;
+    this.numDrawsInMarginal = numDrawsInMarginal;
+    this.samplesBetweenDraws = samplesBetweenDraws;
+    this.numChains = numChains;
+    this.numThreads = numThreads;
+  }
+
+  @Override
+  public MarginalSet computeMarginals(FactorGraph factorGraph) {
+    SamplingModel model = new SamplingModel(factorGraph);
+
+    Random seeds = Pseudorandom.get();
+    final ChainTask[] chains = new ChainTask[numChains];
+    for (int i = 0; i < numChains; i++) {
+      chains[i] = new ChainTask(model, new Random(seeds.nextLong()));
+    }
+
+    if (numThreads == 1) {
+      for (int i = 0; i < numChains; i++) {
+        chains[i].compute();
+      }
+    } else {
+      ForkJoinPools.getPool(numThreads).invoke(new RecursiveAction() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void compute() {
+          invokeAll(chains);
+        }
+      });
+    }
+
+    List<Assignment> samples = Lists.newArrayListWithCapacity(numChains * numDrawsInMarginal);
+    for (int i = 0; i < numChains; i++) {
+      samples.addAll(chains[i].samples);
+    }
+    return new SampleMarginalSet(factorGraph.getVariables(), samples,
+        factorGraph.getConditionedVariables(), factorGraph.getConditionedValues());
+  }
+
+  /**
+   * ParallelGibbsSampler cannot compute max marginals. Throws a
+   * runtime exception if called.
+   */
+  @Override
+  public MaxMarginalSet computeMaxMarginals(FactorGraph factorGraph) {
+    throw new UnsupportedOperationException("Max marginals are not supported by Gibbs sampling");
+  }
+
+  /**
+   * The factors of a factor graph, stored in primitive arrays for
+   * efficient sampling. Variables are identified by their index in
+   * the factor graph's variables.
+   *
+   * @author jayantk
+   */
+  private static class SamplingModel {
+    private final VariableNumMap variables;
+    private final DiscreteVariable[] variableTypes;
+    private final int[] variableSizes;
+
+    // The weights of each factor, indexed by the factor's key numbers,
+    // and the variables and strides of each factor's dimensions.
+    private final double[][] factorWeights;
+    private final int[][] factorVariables;
+    private final int[][] factorStrides;
+
+    // The factors containing each variable, and the stride of the
+    // variable in each of these factors.
+    private final int[][] blanketFactors;
+    private final int[][] blanketStrides;
+
+    // Variables of each color, in increasing order.
+    private final int[][] colors;
+
+    public SamplingModel(FactorGraph factorGraph) {
+      this.variables = factorGraph.getVariables();
+      Preconditions.checkArgument(variables.getDiscreteVariables().size() == variables.size(),
+          "Gibbs sampling requires discrete variables.");
+      int[] varNums = variables.getVariableNumsArray();
+      int numVars = varNums.length;
+      this.variableTypes = variables.getDiscreteVariables().toArray(new DiscreteVariable[0]);
+      this.variableSizes = new int[numVars];
+      for (int i = 0; i < numVars; i++) {
+        variableSizes[i] = variableTypes[i].numValues();
+      }
+
+      List<double[]> weightList = Lists.newArrayList();
+      List<int[]> variableList = Lists.newArrayList();
+      List<int[]> strideList = Lists.newArrayList();
+      List<List<Integer>> blanketFactorLists = Lists.newArrayList();
+      List<List<Integer>> blanketStrideLists = Lists.newArrayList();
+      for (int i = 0; i < numVars; i++) {
+        blanketFactorLists.add(Lists.<Integer>newArrayList());
+        blanketStrideLists.add(Lists.<Integer>newArrayList());
+      }
+
+      for (Factor factor : factorGraph.getFactors()) {
+        DiscreteFactor discreteFactor = factor.coerceToDiscrete();
+        int[] factorVarNums = discreteFactor.getVars().getVariableNumsArray();
+        if (factorVarNums.length == 0) {
+          // Constant factors do not affect the distribution.
+          continue;
+        }
+
+        // Key numbers are in row-major order of the factor's
+        // variables, which are sorted by variable number.
+        int[] factorVars = new int[factorVarNums.length];
+        int[] strides = new int[factorVarNums.length];
+        long size = 1;
+        for (int j = factorVarNums.length - 1; j >= 0; j--) {
+          factorVars[j] = Arrays.binarySearch(varNums, factorVarNums[j]);
+          strides[j] = (int) size;
+          size *= variableSizes[factorVars[j]];
+          Preconditions.checkArgument(size <= Integer.MAX_VALUE, "Factor is too large: %s",
+              discreteFactor.getVars());
+        }
+
+        double[] weights = new double[(int) size];
+        Tensor tensor = discreteFactor.getWeights();
+        for (int j = 0; j < tensor.size(); j++) {
+          weights[(int) tensor.indexToKeyNum(j)] = tensor.getByIndex(j);
+        }
+
+        int factorNum = weightList.size();
+        weightList.add(weights);
+        variableList.add(factorVars);
+        strideList.add(strides);
+        for (int j = 0; j < factorVars.length; j++) {
+          blanketFactorLists.get(factorVars[j]).add(factorNum);
+          blanketStrideLists.get(factorVars[j]).add(strides[j]);
+        }
+      }
+
+      this.factorWeights = weightList.toArray(new double[0][]);
+      this.factorVariables = variableList.toArray(new int[0][]);
+      this.factorStrides = strideList.toArray(new int[0][]);
+      this.blanketFactors = new int[numVars][];
+      this.blanketStrides = new int[numVars][];
+      for (int i = 0; i < numVars; i++) {
+        blanketFactors[i] = Ints.toArray(blanketFactorLists.get(i));
+        blanketStrides[i] = Ints.toArray(blanketStrideLists.get(i));
+      }
+
+      this.colors = colorVariables();
+    }
+
+    public int numVars() {
+      return variableSizes.length;
+    }
+
+    public int maxVariableSize() {
+      return variableSizes.length == 0 ? 0 : Ints.max(variableSizes);
+    }
+
+    /**
+     * Greedily colors the variables such that no two variables of the
+     * same color share a factor.
+     */
+    private int[][] colorVariables() {
+      int numVars = variableSizes.length;
+      int[] variableColors = new int[numVars];
+      List<List<Integer>> colorLists = Lists.newArrayList();
+      boolean[] usedColors = new boolean[numVars + 1];
+      for (int i = 0; i < numVars; i++) {
+        Arrays.fill(usedColors, false);
+        for (int factorNum : blanketFactors[i]) {
+          for (int neighbor : factorVariables[factorNum]) {
+            if (neighbor < i) {
+              usedColors[variableColors[neighbor]] = true;
+            }
+          }
+        }
+
+        int color = 0;
+        while (usedColors[color]) {
+          color++;
+        }
+        variableColors[i] = color;
+        if (color == colorLists.size()) {
+          colorLists.add(Lists.<Integer>newArrayList());
+        }
+        colorLists.get(color).add(i);
+      }
+
+      int[][] colorArrays = new int[colorLists.size()][];
+      for (int i = 0; i < colorArrays.length; i++) {
+        colorArrays[i] = Ints.toArray(colorLists.get(i));
+      }
+      return colorArrays;
+    }
+
+    /**
+     * Resamples {@code var} given the values of the other variables
+     * in {@code state}. {@code uniform} is a uniform random number in
+     * {@code [0, 1)}, and {@code scratch} is an array with at least
+     * as many elements as the variable has values.
+     */
+    public void sample(int[] state, int var, double uniform, double[] scratch) {
+      int size = variableSizes[var];
+      Arrays.fill(scratch, 0, size, 1.0);
+      int[] factors = blanketFactors[var];
+      int[] strides = blanketStrides[var];
+      for (int i = 0; i < factors.length; i++) {
+        int factorNum = factors[i];
+        int[] factorVars = factorVariables[factorNum];
+        int[] factorStrideArray = factorStrides[factorNum];
+        // Offset of the slice of the factor containing the current
+        // values of the other variables.
+        int offset = 0;
+        for (int j = 0; j < factorVars.length; j++) {
+          if (factorVars[j] != var) {
+            offset += state[factorVars[j]] * factorStrideArray[j];
+          }
+        }
+
+        double[] weights = factorWeights[factorNum];
+        int stride = strides[i];
+        for (int value = 0; value < size; value++) {
+          scratch[value] *= weights[offset + value * stride];
+        }
+      }
+
+      double total = 0.0;
+      for (int value = 0; value < size; value++) {
+        total += scratch[value];
+      }
+
+      if (total == 0.0) {
+        state[var] = Math.min((int) (uniform * size), size - 1);
+        return;
+      }
+
+      double draw = uniform * total;
+      int value = 0;
+      double cumulative = scratch[0];
+      while (cumulative <= draw && value < size - 1) {
+        value++;
+        cumulative += scratch[value];
+      }
+      state[var] = value;
+    }
+
+    /**
+     * Converts a state of the sampler into an assignment.
+     */
+    public Assignment toAssignment(int[] state) {
+      Object[] values = new Object[state.length];
+      for (int i = 0; i < state.length; i++) {
+        values[i] = variableTypes[i].getValue(state[i]);
+      }
+      return Assignment.fromSortedArrays(variables.getVariableNumsArray(), values);
+    }
+  }
+
+  /**
+   * Runs a single Markov chain and records its samples.
+   */
+  private class ChainTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final SamplingModel model;
+    private final Random random;
+
+    private final int[] state;
+    private final double[] uniforms;
+    private final double[] scratch;
+
+    private final List<Assignment> samples;
+
+    public ChainTask(SamplingModel model, Random random) {
+      this.model = model;
+      this.random = random;
+
+      this.state = new int[model.numVars()];
+      this.uniforms = new double[model.numVars()];
+      this.scratch = new double[model.maxVariableSize()];
+      this.samples = Lists.newArrayListWithCapacity(numDrawsInMarginal);
+    }
+
+    @Override
+    public void compute() {
+      for (int i = 0; i < burnInSamples; i++) {
+        sweep();
+      }
+
+      for (int numDraws = 0; numDraws < numDrawsInMarginal; numDraws++) {
+        for (int i = 0; i < samplesBetweenDraws; i++) {
+          sweep();
+        }
+        sweep();
+        samples.add(model.toAssignment(state));
+      }
+    }
+
+    /**
+     * Resamples every variable once, one color at a time.
+     */
+    private void sweep() {
+      for (int[] color : model.colors) {
+        for (int var : color) {
+          uniforms[var] = random.nextDouble();
+        }
+
+        if (numThreads == 1 || color.length <= VARIABLES_PER_TASK) {
+          for (int var : color) {
+            model.sample(state, var, uniforms[var], scratch);
+          }
+        } else {
+          new ColorTask(model, state, uniforms, color, 0, color.length).invoke();
+        }
+      }
+    }
+  }
+
+  /**
+   * Resamples a range of variables of a single color, splitting the
+   * range across threads.
+   */
+  private static class ColorTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final SamplingModel model;
+    private final int[] state;
+    private final double[] uniforms;
+    private final int[] color;
+    private final int start;
+    private final int end;
+
+    public ColorTask(SamplingModel model, int[] state, double[] uniforms, int[] color,
+        int start, int end) {
+      this.model = model;
+      this.state = state;
+      this.uniforms = uniforms;
+      this.color = color;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    public void compute() {
+      if (end - start <= VARIABLES_PER_TASK) {
+        double[] scratch = new double[model.maxVariableSize()];
+        for (int i = start; i < end; i++) {
+          model.sample(state, color[i], uniforms[color[i]], scratch);
+        }
+      } else {
+        int mid = (start + end) / 2;
+        invokeAll(new ColorTask(model, state, uniforms, color, start, mid),
+            new ColorTask(model, state, uniforms, color, mid, end));
+      }
+    }
+  }
+}
@@ -3,6 +3,7 @@ package com.jayantkrish.jklol.models;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -14,8 +15,6 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Ordering;
 import com.google.common.collect.Sets;
-import com.google.common.collect.SortedSetMultimap;
-import com.google.common.collect.TreeMultimap;
 import com.jayantkrish.jklol.tensor.CachedSparseTensor;
 import com.jayantkrish.jklol.tensor.SparseTensor;
 import com.jayantkrish.jklol.tensor.SparseTensorBuilder;
@@ -187,26 +186,67 @@ public abstract class DiscreteFactor extends AbstractFactor {
 
   @Override
   public DiscreteFactor product(List<Factor> factors) {
-    List<DiscreteFactor> discreteFactors = Factors.coerceToDiscrete(factors);
+    // The product of all tensors is computed in a single operation,
+    // which avoids constructing intermediate tensors.
+    return new TableFactor(getVars(), getWeights().elementwiseProduct(getWeightsBySize(factors)));
+  }
 
-    // TODO: multiply together factors defined over a subset of
-    // the variables of this factor, to reduce computation time.
+  /**
+   * Computes the product of {@code this} and {@code factors}, then
+   * marginalizes out {@code varNumsToEliminate}. The result is the
+   * same as {@code product(factors).marginalize(varNumsToEliminate)},
+   * but the product of the factors may not be constructed. Each factor
+   * in {@code factors} must be defined over a subset of the variables
+   * of {@code this}.
+   * 
+   * @param factors
+   * @param varNumsToEliminate
+   * @return
+   */
+  public DiscreteFactor productMarginalize(List<Factor> factors,
+      Collection<Integer> varNumsToEliminate) {
+    return new TableFactor(getVars().removeAll(varNumsToEliminate),
+        getWeights().productSumOutDimensions(getWeightsBySize(factors),
+            Sets.newHashSet(varNumsToEliminate)));
+  }
 
-    // Multiply the factors in order from smallest to largest to keep
-    // the intermediate results as sparse as possible.
-    SortedSetMultimap<Double, DiscreteFactor> factorsBySize =
-        TreeMultimap.create(Ordering.natural(), Ordering.arbitrary());
-    for (DiscreteFactor factor : discreteFactors) {
-      factorsBySize.put(factor.size(), factor);
-    }
+  /**
+   * Same as {@link #productMarginalize(List, Collection)}, except
+   * max-marginalizes instead of marginalizing.
+   * 
+   * @param factors
+   * @param varNumsToEliminate
+   * @return
+   */
+  public DiscreteFactor productMaxMarginalize(List<Factor> factors,
+      Collection<Integer> varNumsToEliminate) {
+    return new TableFactor(getVars().removeAll(varNumsToEliminate),
+        getWeights().productMaxOutDimensions(getWeightsBySize(factors),
+            Sets.newHashSet(varNumsToEliminate), null));
+  }
 
-    Tensor result = getWeights();
-    for (Double size : factorsBySize.keySet()) {
-      for (DiscreteFactor factor : factorsBySize.get(size)) {
-        result = result.elementwiseProduct(factor.getWeights());
+  /**
+   * Gets the weights of {@code factors}, ordered from smallest to
+   * largest. Multiplying in this order keeps the intermediate results
+   * of sparse products as small as possible.
+   */
+  private static List<Tensor> getWeightsBySize(List<Factor> factors) {
+    List<DiscreteFactor> discreteFactors = Lists.newArrayList(Factors.coerceToDiscrete(factors));
+
+    // The sort is stable, so factors of the same size are multiplied
+    // in the given order. This makes the product deterministic, as
+    // floating point multiplication is not associative.
+    Collections.sort(discreteFactors, new Comparator<DiscreteFactor>() {
+      public int compare(DiscreteFactor f1, DiscreteFactor f2) {
+        return Double.compare(f1.size(), f2.size());
       }
+    });
+
+    List<Tensor> tensors = Lists.newArrayListWithCapacity(discreteFactors.size());
+    for (DiscreteFactor factor : discreteFactors) {
+      tensors.add(factor.getWeights());
     }
-    return new TableFactor(getVars(), result);
+    return tensors;
   }
 
   @Override
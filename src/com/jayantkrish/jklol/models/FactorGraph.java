@@ -227,18 +227,40 @@ public class FactorGraph implements Serializable {
    * @return
    */
   public List<Factor> getMinimalFactors() {
+    List<int[]> factorGroups = getMinimalFactorGroups();
+    List<Factor> finalFactors = Lists.newArrayListWithCapacity(factorGroups.size());
+    for (int[] factorGroup : factorGroups) {
+      finalFactors.add(getFactorProduct(factorGroup));
+    }
+    return finalFactors;
+  }
+
+  /**
+   * Gets the indexes of the factors which are merged to create each
+   * factor returned by {@link #getMinimalFactors()}. The ith returned
+   * array contains the indexes (as in {@link #getFactor(int)}) of the
+   * factors whose product is the ith minimal factor. The returned
+   * groups depend only on the variables of each factor.
+   * 
+   * @return
+   */
+  public List<int[]> getMinimalFactorGroups() {
     // Sort factors in descending order of size.
-    List<Factor> sortedFactors = Lists.newArrayList(factors);
-    Collections.sort(sortedFactors, new Comparator<Factor>() {
-      public int compare(Factor f1, Factor f2) {
-        return f2.getVars().size() - f1.getVars().size();
+    List<Integer> sortedFactorNums = Lists.newArrayList();
+    for (int i = 0; i < factors.length; i++) {
+      sortedFactorNums.add(i);
+    }
+    Collections.sort(sortedFactorNums, new Comparator<Integer>() {
+      public int compare(Integer f1, Integer f2) {
+        return factors[f2].getVars().size() - factors[f1].getVars().size();
       }
     });
 
-    List<List<Factor>> factorsToMerge = Lists.newArrayList();
+    List<List<Integer>> factorsToMerge = Lists.newArrayList();
     Set<Integer> factorNums = Sets.newHashSet();
     Multimap<Integer, Integer> varFactorIndex = HashMultimap.create();
-    for (Factor f : sortedFactors) {
+    for (int factorNum : sortedFactorNums) {
+      Factor f = factors[factorNum];
       Set<Integer> mergeableFactors = Sets.newHashSet(factorNums);
       for (int varNum : f.getVars().getVariableNumsArray()) {
         mergeableFactors.retainAll(varFactorIndex.get(varNum));
@@ -246,29 +268,43 @@ public class FactorGraph implements Serializable {
 
       if (mergeableFactors.size() > 0) {
         int factorIndex = Iterables.getFirst(mergeableFactors, -1);
-        factorsToMerge.get(factorIndex).add(f);
+        factorsToMerge.get(factorIndex).add(factorNum);
       } else {
         for (int varNum : f.getVars().getVariableNumsArray()) {
           varFactorIndex.put(varNum, factorsToMerge.size());
         }
         factorNums.add(factorsToMerge.size());
-        factorsToMerge.add(Lists.newArrayList(f));
+        factorsToMerge.add(Lists.newArrayList(factorNum));
       }
     }
 
-    // Merge factors using size as a guideline
-    List<Factor> finalFactors = Lists.newArrayListWithCapacity(factorsToMerge.size());
-    for (List<Factor> toMerge : factorsToMerge) {
-      // Sort the factors by their .size() attribute, sparsest factors
-      // first.
-      Collections.sort(toMerge, new Comparator<Factor>() {
-        public int compare(Factor f1, Factor f2) {
-          return (int) (f1.size() - f2.size());
-        }
-      });
-      finalFactors.add(Factors.product(toMerge));
+    List<int[]> factorGroups = Lists.newArrayListWithCapacity(factorsToMerge.size());
+    for (List<Integer> toMerge : factorsToMerge) {
+      factorGroups.add(Ints.toArray(toMerge));
     }
-    return finalFactors;
+    return factorGroups;
+  }
+
+  /**
+   * Gets the product of the factors with indexes {@code factorNums}.
+   * 
+   * @param factorNums
+   * @return
+   */
+  public Factor getFactorProduct(int[] factorNums) {
+    List<Factor> toMerge = Lists.newArrayListWithCapacity(factorNums.length);
+    for (int factorNum : factorNums) {
+      toMerge.add(factors[factorNum]);
+    }
+
+    // Sort the factors by their .size() attribute, sparsest factors
+    // first.
+    Collections.sort(toMerge, new Comparator<Factor>() {
+      public int compare(Factor f1, Factor f2) {
+        return (int) (f1.size() - f2.size());
+      }
+    });
+    return Factors.product(toMerge);
   }
 
   /**
@@ -13,9 +13,11 @@ import com.jayantkrish.jklol.models.VariableNumMap;
 import com.jayantkrish.jklol.models.parametric.AbstractParametricFactor;
 import com.jayantkrish.jklol.models.parametric.SufficientStatistics;
 import com.jayantkrish.jklol.models.parametric.TensorSufficientStatistics;
+import com.jayantkrish.jklol.tensor.DenseTensor;
 import com.jayantkrish.jklol.tensor.DenseTensorBuilder;
 import com.jayantkrish.jklol.tensor.SparseTensor;
 import com.jayantkrish.jklol.tensor.Tensor;
+import com.jayantkrish.jklol.tensor.TensorFactory;
 import com.jayantkrish.jklol.util.Assignment;
 
 /**
@@ -45,6 +47,8 @@ public class ConditionalLogLinearFactor extends AbstractParametricFactor {
   private final int[] dimensionNums;
   private final int[] dimensionSizes;
   private final VariableNumMap sufficientStatisticVars;
+  // Constructs the parameter tensor.
+  private final TensorFactory tensorFactory;
 
   /**
    * Create a factor which represents a conditional distribution over outputVars
@@ -58,6 +62,24 @@ public class ConditionalLogLinearFactor extends AbstractParametricFactor {
    */
   public ConditionalLogLinearFactor(VariableNumMap inputVar, VariableNumMap outputVars, 
       VariableNumMap conditionalVars, DiscreteVariable featureDictionary) {
+    this(inputVar, outputVars, conditionalVars, featureDictionary, DenseTensorBuilder.getFactory());
+  }
+
+  /**
+   * Same as the other constructor, except the parameters are stored in
+   * tensors created by {@code tensorFactory}. For example, use
+   * {@code FloatDenseTensorBuilder.getFactory()} to store the parameters
+   * in single precision.
+   * 
+   * @param inputVar
+   * @param outputVars
+   * @param conditionalVars
+   * @param featureDictionary
+   * @param tensorFactory
+   */
+  public ConditionalLogLinearFactor(VariableNumMap inputVar, VariableNumMap outputVars, 
+      VariableNumMap conditionalVars, DiscreteVariable featureDictionary,
+      TensorFactory tensorFactory) {
     super(inputVar.union(outputVars));
     Preconditions.checkArgument(inputVar.size() == 1);
     Preconditions.checkArgument(outputVars.getDiscreteVariables().size() == outputVars.size());
@@ -84,6 +106,20 @@ public class ConditionalLogLinearFactor extends AbstractParametricFactor {
     VariableNumMap featureVar = VariableNumMap.singleton(inputVar.getOnlyVariableNum(), 
         inputVar.getOnlyVariableName(), featureDictionary);
     this.sufficientStatisticVars = featureVar.union(outputVars);
+    this.tensorFactory = Preconditions.checkNotNull(tensorFactory);
+  }
+
+  /**
+   * Families serialized before {@code tensorFactory} was added
+   * deserialize with a {@code null} factory; these families used
+   * dense tensors.
+   */
+  private Object readResolve() {
+    if (tensorFactory == null) {
+      return new ConditionalLogLinearFactor(inputVar, outputVars, conditionalVars,
+          featureDictionary, DenseTensorBuilder.getFactory());
+    }
+    return this;
   }
 
   public DiscreteVariable getFeatureDictionary() {
@@ -92,8 +128,10 @@ public class ConditionalLogLinearFactor extends AbstractParametricFactor {
 
   @Override
   public ClassifierFactor getModelFromParameters(SufficientStatistics parameters) {
+    // The classifier repeatedly multiplies the weights with feature vectors,
+    // so convert them to a DenseTensor (if necessary) once up front.
     return new LinearClassifierFactor(inputVar, outputVars, conditionalVars, featureDictionary, 
-        getWeightTensorFromStatistics(parameters));
+        DenseTensor.copyOf(getWeightTensorFromStatistics(parameters)));
   }
   
   @Override
@@ -117,7 +155,7 @@ public class ConditionalLogLinearFactor extends AbstractParametricFactor {
       */
 
     return TensorSufficientStatistics.createDense(sufficientStatisticVars,
-        new DenseTensorBuilder(dimensionNums, dimensionSizes));
+        tensorFactory.getBuilder(dimensionNums, dimensionSizes));
   }
 
   @Override
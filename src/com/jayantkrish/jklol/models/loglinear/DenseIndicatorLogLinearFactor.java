@@ -16,6 +16,7 @@ import com.jayantkrish.jklol.tensor.LogSpaceTensorAdapter;
 import com.jayantkrish.jklol.tensor.SparseLogSpaceTensorAdapter;
 import com.jayantkrish.jklol.tensor.SparseTensor;
 import com.jayantkrish.jklol.tensor.Tensor;
+import com.jayantkrish.jklol.tensor.TensorFactory;
 import com.jayantkrish.jklol.util.Assignment;
 
 /**
@@ -31,10 +32,41 @@ public class DenseIndicatorLogLinearFactor extends AbstractParametricFactor {
 
   private static final long serialVersionUID = 1L;
   private final boolean isSparse;
+  // Constructs the parameter tensor when isSparse is false.
+  private final TensorFactory denseTensorFactory;
 
   public DenseIndicatorLogLinearFactor(VariableNumMap variables, boolean isSparse) {
+    this(variables, isSparse, DenseTensorBuilder.getFactory());
+  }
+
+  /**
+   * Creates a factor whose parameters are stored in tensors created
+   * by {@code denseTensorFactory} if {@code isSparse} is false. For
+   * example, use {@code FloatDenseTensorBuilder.getFactory()} to store
+   * the parameters in single precision.
+   * 
+   * @param variables
+   * @param isSparse
+   * @param denseTensorFactory
+   */
+  public DenseIndicatorLogLinearFactor(VariableNumMap variables, boolean isSparse,
+      TensorFactory denseTensorFactory) {
     super(variables);
     this.isSparse = isSparse;
+    this.denseTensorFactory = Preconditions.checkNotNull(denseTensorFactory);
+  }
+
+  /**
+   * Families serialized before {@code denseTensorFactory} was added
+   * deserialize with a {@code null} factory; these families used
+   * dense tensors.
+   */
+  private Object readResolve() {
+    if (denseTensorFactory == null) {
+      return new DenseIndicatorLogLinearFactor(getVars(), isSparse,
+          DenseTensorBuilder.getFactory());
+    }
+    return this;
   }
 
   @Override
@@ -62,8 +94,8 @@ public class DenseIndicatorLogLinearFactor extends AbstractParametricFactor {
       return TensorSufficientStatistics.createSparse(getVars(), 
           SparseTensor.empty(getVars().getVariableNumsArray(), getVars().getVariableSizes()));
     } else {
-      return TensorSufficientStatistics.createDense(getVars(), 
-          new DenseTensorBuilder(getVars().getVariableNumsArray(), getVars().getVariableSizes()));
+      return TensorSufficientStatistics.createDense(getVars(), denseTensorFactory.getBuilder(
+          getVars().getVariableNumsArray(), getVars().getVariableSizes()));
     }
   }
 
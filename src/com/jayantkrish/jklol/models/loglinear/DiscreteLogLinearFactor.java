@@ -21,6 +21,7 @@ import com.jayantkrish.jklol.tensor.DenseTensorBuilder;
 import com.jayantkrish.jklol.tensor.LogSpaceTensorAdapter;
 import com.jayantkrish.jklol.tensor.SparseTensorBuilder;
 import com.jayantkrish.jklol.tensor.Tensor;
+import com.jayantkrish.jklol.tensor.TensorFactory;
 import com.jayantkrish.jklol.util.AllAssignmentIterator;
 import com.jayantkrish.jklol.util.Assignment;
 
@@ -45,6 +46,8 @@ public class DiscreteLogLinearFactor extends AbstractParametricFactor {
   // a set of 0 probability assignments). If null, then no sparsity pattern is
   // enforced.
   private final DiscreteFactor initialWeights;
+  // Constructs the parameter tensor.
+  private final TensorFactory tensorFactory;
 
   /**
    * Creates a {@code DiscreteLogLinearFactor} over {@code variables},
@@ -58,13 +61,7 @@ public class DiscreteLogLinearFactor extends AbstractParametricFactor {
    */
   public DiscreteLogLinearFactor(VariableNumMap variables,
       VariableNumMap featureVariables, DiscreteFactor featureValues) {
-    super(variables);
-    this.featureVariables = featureVariables;
-    this.featureValues = Preconditions.checkNotNull(featureValues);
-    Preconditions.checkArgument(featureValues.getVars().equals(
-        variables.union(featureVariables)));
-
-    this.initialWeights = null;
+    this(variables, featureVariables, featureValues, null);
   }
 
   /**
@@ -81,12 +78,44 @@ public class DiscreteLogLinearFactor extends AbstractParametricFactor {
    */
   public DiscreteLogLinearFactor(VariableNumMap variables, VariableNumMap featureVariables, 
       DiscreteFactor featureValues, DiscreteFactor initialWeights) {
+    this(variables, featureVariables, featureValues, initialWeights,
+        DenseTensorBuilder.getFactory());
+  }
+
+  /**
+   * Same as the other constructors, except the parameters are stored in
+   * tensors created by {@code tensorFactory}. For example, use
+   * {@code FloatDenseTensorBuilder.getFactory()} to store the parameters
+   * in single precision.
+   * 
+   * @param variables
+   * @param featureVariables
+   * @param featureValues
+   * @param initialWeights
+   * @param tensorFactory
+   */
+  public DiscreteLogLinearFactor(VariableNumMap variables, VariableNumMap featureVariables, 
+      DiscreteFactor featureValues, DiscreteFactor initialWeights, TensorFactory tensorFactory) {
     super(variables);
     this.featureVariables = featureVariables;
     this.featureValues = Preconditions.checkNotNull(featureValues);
     Preconditions.checkArgument(featureValues.getVars().equals(
         variables.union(featureVariables)));
     this.initialWeights = initialWeights;
+    this.tensorFactory = Preconditions.checkNotNull(tensorFactory);
+  }
+
+  /**
+   * Families serialized before {@code tensorFactory} was added
+   * deserialize with a {@code null} factory; these families used
+   * dense tensors.
+   */
+  private Object readResolve() {
+    if (tensorFactory == null) {
+      return new DiscreteLogLinearFactor(getVars(), featureVariables, featureValues,
+          initialWeights, DenseTensorBuilder.getFactory());
+    }
+    return this;
   }
 
   public DiscreteFactor getFeatureValues() {
@@ -157,7 +186,7 @@ public class DiscreteLogLinearFactor extends AbstractParametricFactor {
   @Override
   public TensorSufficientStatistics getNewSufficientStatistics() {
     return new TensorSufficientStatistics(featureVariables, 
-        new DenseTensorBuilder(featureVariables.getVariableNumsArray(),
+        tensorFactory.getBuilder(featureVariables.getVariableNumsArray(),
             featureVariables.getVariableSizes()));
   }
 
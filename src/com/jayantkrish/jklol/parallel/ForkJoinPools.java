@@ -0,0 +1,38 @@
+package com.jayantkrish.jklol.parallel;
+
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+/**
+ * Shared fork-join thread pools for parallel inference and parsing.
+ * Pools are created on first use and retained, so repeatedly running
+ * a parallel algorithm does not repeatedly create threads.
+ *
+ * @author jayantk
+ */
+public class ForkJoinPools {
+
+  // Pools keyed by their number of threads.
+  private static final Map<Integer, ForkJoinPool> POOLS = Maps.newHashMap();
+
+  /**
+   * Gets the shared pool with {@code numThreads} threads.
+   *
+   * @param numThreads
+   * @return
+   */
+  public static synchronized ForkJoinPool getPool(int numThreads) {
+    Preconditions.checkArgument(numThreads > 0);
+    ForkJoinPool pool = POOLS.get(numThreads);
+    if (pool == null) {
+      // Fork-join worker threads are daemons and exit when idle, so
+      // these pools never prevent the program from terminating.
+      pool = new ForkJoinPool(numThreads);
+      POOLS.put(numThreads, pool);
+    }
+    return pool;
+  }
+}
@@ -3,7 +3,6 @@ package com.jayantkrish.jklol.pos;
 import java.util.List;
 
 import com.google.common.base.Function;
-import com.jayantkrish.jklol.inference.JunctionTree;
 import com.jayantkrish.jklol.inference.MarginalCalculator;
 import com.jayantkrish.jklol.models.dynamic.DynamicFactorGraph;
 import com.jayantkrish.jklol.models.parametric.ParametricFactorGraph;
@@ -20,7 +19,7 @@ public class TrainedPosTagger extends FactorGraphSequenceTagger<String, String>
       SufficientStatistics parameters, DynamicFactorGraph instantiatedModel,
       FeatureVectorGenerator<LocalContext<String>> featureGenerator,
       Function<? super LocalContext<String>, ? extends Object> inputGenerator,
-      MarginalCalculator maxMarginalCalculator, JunctionTree marginalCalculator) {
+      MarginalCalculator maxMarginalCalculator, MarginalCalculator marginalCalculator) {
     super(modelFamily, parameters, instantiatedModel, featureGenerator, inputGenerator,
         String.class, maxMarginalCalculator, marginalCalculator, null, null);
   }
@@ -6,9 +6,8 @@ import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import com.jayantkrish.jklol.cli.TrainedModelSet;
-import com.jayantkrish.jklol.inference.FactorMarginalSet;
-import com.jayantkrish.jklol.inference.JunctionTree;
 import com.jayantkrish.jklol.inference.MarginalCalculator;
+import com.jayantkrish.jklol.inference.MarginalSet;
 import com.jayantkrish.jklol.models.DiscreteFactor;
 import com.jayantkrish.jklol.models.FactorGraph;
 import com.jayantkrish.jklol.models.VariableNumMap;
@@ -39,7 +38,7 @@ public class FactorGraphSequenceTagger<I, O> extends TrainedModelSet implements
   private final Class<O> outputClass;
   
   private final MarginalCalculator maxMarginalCalculator;
-  private final JunctionTree marginalCalculator;
+  private final MarginalCalculator marginalCalculator;
   
   // If provided, the tagger automatically adds special start
   // symbols to each sequence.
@@ -50,7 +49,7 @@ public class FactorGraphSequenceTagger<I, O> extends TrainedModelSet implements
       SufficientStatistics parameters, DynamicFactorGraph instantiatedModel,
       FeatureVectorGenerator<LocalContext<I>> featureGenerator, 
       Function<? super LocalContext<I>, ? extends Object> inputGen, Class<O> outputClass,
-      MarginalCalculator maxMarginalCalculator, JunctionTree marginalCalculator,
+      MarginalCalculator maxMarginalCalculator, MarginalCalculator marginalCalculator,
       I startInput, O startLabel) {
     super(modelFamily, parameters, instantiatedModel);
     this.featureGenerator = Preconditions.checkNotNull(featureGenerator);
@@ -81,7 +80,7 @@ public class FactorGraphSequenceTagger<I, O> extends TrainedModelSet implements
     return maxMarginalCalculator;
   }
   
-  public JunctionTree getMarginalCalculator() {
+  public MarginalCalculator getMarginalCalculator() {
     return marginalCalculator;
   }
   
@@ -131,7 +130,7 @@ public class FactorGraphSequenceTagger<I, O> extends TrainedModelSet implements
     DynamicVariableSet dynamicVariables = dfg.getVariables();
     FactorGraph fg = dfg.conditional(input);
 
-    FactorMarginalSet marginals = marginalCalculator.computeMarginals(fg);
+    MarginalSet marginals = marginalCalculator.computeMarginals(fg);
 
     List<VariableMatch> matches = dynamicVariables.getPlateInstantiations(
         marginals.getVariables(), TaggerUtils.PLATE_NAME);
@@ -147,7 +146,7 @@ public class FactorGraphSequenceTagger<I, O> extends TrainedModelSet implements
     for (int i = startIndex; i < matches.size(); i++) {
       VariableMatch match = matches.get(i);
       int varNum = match.getMatchedVariablesFromTemplateVariables(templateLabelVar).getOnlyVariableNum();
-      DiscreteFactor marginal = marginals.getUnnormalizedMarginal(varNum).coerceToDiscrete();
+      DiscreteFactor marginal = marginals.getMarginal(varNum).coerceToDiscrete();
       List<Assignment> bestAssignments = marginal.getMostLikelyAssignments(-1);
 
       List<O> curLabels = Lists.newArrayList();
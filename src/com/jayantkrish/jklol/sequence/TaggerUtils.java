@@ -13,6 +13,7 @@ import com.google.common.collect.Lists;
 import com.google.common.primitives.Ints;
 import com.jayantkrish.jklol.evaluation.Example;
 import com.jayantkrish.jklol.inference.JunctionTree;
+import com.jayantkrish.jklol.inference.LinearChainInference;
 import com.jayantkrish.jklol.models.DiscreteFactor;
 import com.jayantkrish.jklol.models.DiscreteVariable;
 import com.jayantkrish.jklol.models.ObjectVariable;
@@ -337,7 +338,7 @@ public class TaggerUtils {
 
     DynamicFactorGraph factorGraph = sequenceModelFamily.getModelFromParameters(parameters);
     return new FactorGraphSequenceTagger<I, O>(sequenceModelFamily, parameters,
-        factorGraph, featureGen, inputGen, outputClass, new JunctionTree(), new JunctionTree(true), 
+        factorGraph, featureGen, inputGen, outputClass, new LinearChainInference(), new LinearChainInference(new JunctionTree(true)), 
         startInput, startLabel);
   }
 
@@ -352,9 +353,9 @@ public class TaggerUtils {
     initialParameters.makeDense();
     System.out.println("Training...");
     if (useMaxMargin) {
-      oracle = new MaxMarginOracle(sequenceModel, new MaxMarginOracle.HammingCost(), new JunctionTree());
+      oracle = new MaxMarginOracle(sequenceModel, new MaxMarginOracle.HammingCost(), new LinearChainInference());
     } else {
-      oracle = new LoglikelihoodOracle(sequenceModel, new JunctionTree());
+      oracle = new LoglikelihoodOracle(sequenceModel, new LinearChainInference());
     }
 
     SufficientStatistics parameters = optimizer.train(oracle, initialParameters, trainingData);
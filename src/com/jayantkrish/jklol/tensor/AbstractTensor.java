@@ -50,6 +50,18 @@ public abstract class AbstractTensor extends AbstractTensorBase implements Tenso
     return maxOutDimensions(Ints.asList(dimensionsToEliminate), backpointers);
   }
 
+  @Override
+  public Tensor productSumOutDimensions(Collection<Tensor> others,
+      Collection<Integer> dimensionsToEliminate) {
+    return elementwiseProduct(others).sumOutDimensions(dimensionsToEliminate);
+  }
+
+  @Override
+  public Tensor productMaxOutDimensions(Collection<Tensor> others,
+      Collection<Integer> dimensionsToEliminate, Backpointers backpointers) {
+    return elementwiseProduct(others).maxOutDimensions(dimensionsToEliminate, backpointers);
+  }
+
   @Override
   public Tensor logSumOutDimensions(Collection<Integer> dimensionsToEliminate) {
     return AbstractTensor.logSumOutDimensions(this, dimensionsToEliminate);
@@ -146,6 +158,17 @@ public abstract class AbstractTensor extends AbstractTensorBase implements Tenso
     long resultMiddleOffset = resultDimensionOffsets[firstAlignedDim + numOtherUnalignedDims - 1];
     long resultSuffixOffset = 1L;
 
+    if (first instanceof DenseTensorBase && second instanceof DenseTensorBase
+        && builder instanceof DenseTensorBuilder) {
+      // Dense tensors can be folded into matrices and multiplied directly.
+      DenseTensorBuilder denseBuilder = (DenseTensorBuilder) builder;
+      DenseMatrixMultiply.multiply(((DenseTensorBase) first).values,
+          ((DenseTensorBase) second).values, denseBuilder.values,
+          (int) (first.getMaxKeyNum() / keyNumModulo), (int) (keyNumModulo / keyNumDivisor),
+          (int) keyNumDivisor, (int) otherKeyNumOffset);
+      return denseBuilder.buildNoCopy();
+    }
+
     while (myInd < mySize) {
       long myKeyNum = first.indexToKeyNum(myInd);
       double myValue = first.getByIndex(myInd);
@@ -28,12 +28,7 @@ public class AppendOnlySparseTensorBuilder extends AbstractTensorBase implements
   }
   
   public static TensorFactory getFactory() {
-    return new TensorFactory() {
-      @Override
-      public TensorBuilder getBuilder(int[] dimNums, int[] dimSizes) {
-        return new AppendOnlySparseTensorBuilder(dimNums, dimSizes);
-      }
-    };
+    return new AppendOnlySparseTensorFactory();
   }
 
   @Override
@@ -206,4 +201,13 @@ public class AppendOnlySparseTensorBuilder extends AbstractTensorBase implements
   public TensorBuilder getCopy() {
     throw new UnsupportedOperationException();
   }
+
+  private static class AppendOnlySparseTensorFactory implements TensorFactory {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public TensorBuilder getBuilder(int[] dimNums, int[] dimSizes) {
+      return new AppendOnlySparseTensorBuilder(dimNums, dimSizes);
+    }
+  }
 }
@@ -63,12 +63,7 @@ public class CachedSparseTensor extends SparseTensor {
   }
 
   public static TensorFactory getFactory() {
-    return new TensorFactory() {
-      @Override
-      public TensorBuilder getBuilder(int[] dimNums, int[] dimSizes) {
-        return new CachedSparseTensorBuilder(dimNums, dimSizes);
-      }
-    };
+    return new CachedSparseTensorFactory();
   }
 
   private int[] getLeftAlignedPermutation(int[] dimensionNumbers) {
@@ -180,4 +175,13 @@ public class CachedSparseTensor extends SparseTensor {
       return CachedSparseTensor.cacheAllPermutations(tensor);
     }
   }
-}
\ No newline at end of file
+
+  private static class CachedSparseTensorFactory implements TensorFactory {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public TensorBuilder getBuilder(int[] dimNums, int[] dimSizes) {
+      return new CachedSparseTensorBuilder(dimNums, dimSizes);
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package com.jayantkrish.jklol.tensor;
+
+/**
+ * Numerical kernels over {@code double[]} arrays which implement the
+ * inner loops of {@link DenseTensor} and {@link DenseTensorBuilder}
+ * operations. Routing these loops through a single class allows the
+ * implementation to be chosen based on the host. The implementation is
+ * selected once, at class initialization time, using the
+ * {@code jklol.tensor.kernels} system property, which may be either
+ * {@code scalar} or {@code unrolled} (the default).
+ * 
+ * <p> All methods operate on the {@code length} elements of each array
+ * beginning at the given offset. Output arrays may be the same as
+ * input arrays.
+ * 
+ * @author jayantk
+ */
+public abstract class DenseKernels {
+
+  public static final String KERNELS_PROPERTY = "jklol.tensor.kernels";
+
+  private static final DenseKernels INSTANCE = select(System.getProperty(KERNELS_PROPERTY));
+
+  /**
+   * Gets the kernels used by all dense tensors in this JVM.
+   * 
+   * @return
+   */
+  public static DenseKernels getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Gets the kernels named {@code name}, which must be either
+   * {@code "scalar"} or {@code "unrolled"}. If {@code name} is
+   * {@code null}, returns the default kernels.
+   * 
+   * @param name
+   * @return
+   */
+  public static DenseKernels select(String name) {
+    if (name == null || name.equals("unrolled")) {
+      return new UnrolledDenseKernels();
+    } else if (name.equals("scalar")) {
+      return new ScalarDenseKernels();
+    } else {
+      throw new IllegalArgumentException("Unknown dense tensor kernels: " + name);
+    }
+  }
+
+  /**
+   * Returns the inner product of {@code x} and {@code y}.
+   */
+  public abstract double dot(double[] x, int xOffset, double[] y, int yOffset, int length);
+
+  /**
+   * Sets {@code y = y + alpha * x}.
+   */
+  public abstract void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset,
+      int length);
+
+  /**
+   * Sets {@code dest = x * y}, where the product is elementwise.
+   */
+  public abstract void multiply(double[] x, double[] y, double[] dest, int length);
+
+  /**
+   * Sets {@code dest = alpha * x}.
+   */
+  public abstract void scale(double alpha, double[] x, double[] dest, int length);
+
+  public abstract void exp(double[] x, double[] dest, int length);
+
+  public abstract void log(double[] x, double[] dest, int length);
+
+  public abstract void tanh(double[] x, double[] dest, int length);
+}
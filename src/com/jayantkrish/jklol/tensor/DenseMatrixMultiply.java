@@ -0,0 +1,194 @@
+package com.jayantkrish.jklol.tensor;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.jayantkrish.jklol.parallel.ForkJoinPools;
+
+/**
+ * Cache-blocked matrix multiplication for dense tensors, which may
+ * use multiple threads. Used to implement
+ * {@link Tensor#matrixInnerProduct} when both tensors are dense.
+ * 
+ * <p> {@code matrixInnerProduct} of a tensor with dimensions
+ * {@code [P, A, S]} and a tensor with dimensions {@code [A, O]}
+ * produces a tensor with dimensions {@code [P, O, S]}, where each of
+ * these is a (possibly empty) contiguous block of dimensions. Folding
+ * each block into a single index turns the operation into a collection
+ * of ordinary matrix products:
+ * <pre>
+ * result[p, o, s] = sum_a first[p, a, s] * second[a, o]
+ * </pre>
+ * These products are computed in blocks sized so that the block of the
+ * right-hand matrix being accumulated remains in cache. The innermost
+ * loop is an {@link DenseKernels#axpy} over a contiguous row.
+ * 
+ * <p> By default, products are computed in the calling thread, as
+ * callers such as training algorithms are frequently parallel
+ * themselves. Setting the {@code jklol.tensor.multiplyThreads} system
+ * property to a number greater than 1 splits large products into row
+ * ranges which are computed in parallel in the shared
+ * {@link ForkJoinPools} pool with that many threads. Products
+ * requested from within a fork-join task are always computed in the
+ * calling thread. The number of threads does not affect the result.
+ * 
+ * <p> GWT uses the single-threaded replacement for this class in
+ * {@code gwt/translatable}, which must be kept in sync with it.
+ * 
+ * @author jayantk
+ */
+public class DenseMatrixMultiply {
+
+  public static final String THREADS_PROPERTY = "jklol.tensor.multiplyThreads";
+
+  // Block sizes for the inner (summed out) and column dimensions.
+  // A KBLOCK x NBLOCK block of the right-hand matrix is 128KB.
+  private static final int KBLOCK = 64;
+  private static final int NBLOCK = 256;
+
+  // Products with fewer multiplications than this are computed in the
+  // calling thread.
+  private static final long PARALLEL_THRESHOLD = 1L << 20;
+
+  private static final int NUM_THREADS = Integer.parseInt(
+      System.getProperty(THREADS_PROPERTY, "1"));
+
+  /**
+   * Computes {@code result[p, o, s] += sum_a first[p, a, s] * second[a, o]},
+   * where each array is stored in row-major order. Uses the number of
+   * threads given by the {@code jklol.tensor.multiplyThreads} system
+   * property.
+   * 
+   * @param first values of an array of size {@code numP x numA x numS}
+   * @param second values of an array of size {@code numA x numO}
+   * @param result values of an array of size {@code numP x numO x numS}
+   * @param numP
+   * @param numA
+   * @param numS
+   * @param numO
+   */
+  public static void multiply(double[] first, double[] second, double[] result,
+      int numP, int numA, int numS, int numO) {
+    multiply(first, second, result, numP, numA, numS, numO, NUM_THREADS);
+  }
+
+  /**
+   * Same as {@link #multiply(double[], double[], double[], int, int, int, int)},
+   * using up to {@code numThreads} threads.
+   */
+  public static void multiply(double[] first, double[] second, double[] result,
+      int numP, int numA, int numS, int numO, int numThreads) {
+    Preconditions.checkArgument(first.length == numP * numA * numS);
+    Preconditions.checkArgument(second.length == numA * numO);
+    Preconditions.checkArgument(result.length == numP * numO * numS);
+    Preconditions.checkArgument(numThreads > 0);
+
+    long numMultiplies = ((long) numP) * numA * numS * numO;
+    if (numMultiplies < PARALLEL_THRESHOLD || ForkJoinTask.inForkJoinPool()) {
+      numThreads = 1;
+    }
+
+    List<RowBlock> blocks = Lists.newArrayList();
+    if (numS == 1) {
+      // A single product of a (numP x numA) and a (numA x numO) matrix.
+      int rowsPerBlock = Math.max((numP + numThreads - 1) / numThreads, 1);
+      for (int i = 0; i < numP; i += rowsPerBlock) {
+        blocks.add(new RowBlock(first, 0, numA, 1, second, 0, result, 0,
+            i, Math.min(i + rowsPerBlock, numP), numA, numO));
+      }
+    } else {
+      // For each p, a product of the transpose of second (numO x numA) and
+      // the (numA x numS) block of first.
+      int blocksPerP = Math.max(numThreads / Math.max(numP, 1), 1);
+      int rowsPerBlock = Math.max((numO + blocksPerP - 1) / blocksPerP, 1);
+      for (int p = 0; p < numP; p++) {
+        for (int i = 0; i < numO; i += rowsPerBlock) {
+          blocks.add(new RowBlock(second, 0, 1, numO, first, p * numA * numS, result,
+              p * numO * numS, i, Math.min(i + rowsPerBlock, numO), numA, numS));
+        }
+      }
+    }
+
+    if (numThreads == 1 || blocks.size() == 1) {
+      for (RowBlock block : blocks) {
+        block.compute();
+      }
+    } else {
+      final List<RowBlock> parallelBlocks = blocks;
+      ForkJoinPools.getPool(numThreads).invoke(new RecursiveAction() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void compute() {
+          invokeAll(parallelBlocks);
+        }
+      });
+    }
+  }
+
+  /**
+   * Computes rows {@code [rowStart, rowEnd)} of the product of a
+   * (strided) left-hand matrix with {@code k} columns and a row-major
+   * right-hand matrix with {@code n} columns.
+   */
+  private static class RowBlock extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final double[] lhs;
+    private final int lhsOffset;
+    private final int lhsRowStride;
+    private final int lhsColStride;
+
+    private final double[] rhs;
+    private final int rhsOffset;
+
+    private final double[] out;
+    private final int outOffset;
+
+    private final int rowStart;
+    private final int rowEnd;
+    private final int k;
+    private final int n;
+
+    public RowBlock(double[] lhs, int lhsOffset, int lhsRowStride, int lhsColStride,
+        double[] rhs, int rhsOffset, double[] out, int outOffset, int rowStart, int rowEnd,
+        int k, int n) {
+      this.lhs = lhs;
+      this.lhsOffset = lhsOffset;
+      this.lhsRowStride = lhsRowStride;
+      this.lhsColStride = lhsColStride;
+      this.rhs = rhs;
+      this.rhsOffset = rhsOffset;
+      this.out = out;
+      this.outOffset = outOffset;
+      this.rowStart = rowStart;
+      this.rowEnd = rowEnd;
+      this.k = k;
+      this.n = n;
+    }
+
+    @Override
+    protected void compute() {
+      DenseKernels kernels = DenseKernels.getInstance();
+      for (int colBlock = 0; colBlock < n; colBlock += NBLOCK) {
+        int colBlockSize = Math.min(NBLOCK, n - colBlock);
+        for (int kBlock = 0; kBlock < k; kBlock += KBLOCK) {
+          int kBlockEnd = Math.min(kBlock + KBLOCK, k);
+          for (int row = rowStart; row < rowEnd; row++) {
+            int lhsRowIndex = lhsOffset + row * lhsRowStride;
+            int outIndex = outOffset + row * n + colBlock;
+            for (int i = kBlock; i < kBlockEnd; i++) {
+              // Zero entries are not skipped, so that 0 * NaN and
+              // 0 * Inf produce NaN, as in the general inner product.
+              kernels.axpy(lhs[lhsRowIndex + i * lhsColStride], rhs,
+                  rhsOffset + i * n + colBlock, out, outIndex, colBlockSize);
+            }
+          }
+        }
+      }
+    }
+  }
+}
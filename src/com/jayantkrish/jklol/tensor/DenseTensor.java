@@ -119,6 +119,15 @@ public class DenseTensor extends DenseTensorBase implements Tensor, Serializable
 
   @Override
   public DenseTensor elementwiseProduct(Tensor other) {
+    if (other instanceof DenseTensorBase
+        && Arrays.equals(other.getDimensionNumbers(), getDimensionNumbers())) {
+      double[] otherValues = ((DenseTensorBase) other).values;
+      Preconditions.checkArgument(otherValues.length == values.length);
+      double[] newValues = new double[values.length];
+      kernels.multiply(values, otherValues, newValues, values.length);
+      return new DenseTensor(getDimensionNumbers(), getDimensionSizes(), newValues);
+    }
+
     DenseTensorBuilder result = new DenseTensorBuilder(getDimensionNumbers(),
         getDimensionSizes());
     result.incrementWithMultiplier(other, 1);
@@ -126,21 +135,110 @@ public class DenseTensor extends DenseTensorBase implements Tensor, Serializable
     return result.buildNoCopy();
   }
 
+  /**
+   * {@inheritDoc}
+   * 
+   * This implementation multiplies all of {@code others} into a single
+   * result array, instead of constructing an intermediate tensor for
+   * each pairwise product.
+   */
   @Override
   public DenseTensor elementwiseProduct(Collection<Tensor> others) {
-    DenseTensor result = this;
+    double[] newValues = ArrayUtils.copyOf(values, values.length);
     for (Tensor other : others) {
-      result = result.elementwiseProduct(other);
+      multiplyInPlace(newValues, other);
+    }
+    return new DenseTensor(getDimensionNumbers(), getDimensionSizes(), newValues);
+  }
+
+  /**
+   * Multiplies {@code resultValues}, the values of a tensor with the same
+   * dimensions as {@code this}, by {@code other}. The dimensions of
+   * {@code other} must be a subset of the dimensions of {@code this};
+   * its values are replicated across any missing dimensions.
+   */
+  private void multiplyInPlace(double[] resultValues, Tensor other) {
+    int[] myDims = getDimensionNumbers();
+    int[] mySizes = getDimensionSizes();
+    int[] otherDims = other.getDimensionNumbers();
+    int length = resultValues.length;
+
+    if (otherDims.length == 0) {
+      kernels.scale(other.getByDimKey(), resultValues, resultValues, length);
+      return;
+    } else if (Arrays.equals(otherDims, myDims)) {
+      if (other instanceof DenseTensorBase) {
+        double[] otherValues = ((DenseTensorBase) other).values;
+        Preconditions.checkArgument(otherValues.length == length);
+        kernels.multiply(resultValues, otherValues, resultValues, length);
+      } else {
+        // Only the keys of a sparse tensor can have nonzero values.
+        int nextKeyNum = 0;
+        int otherSize = other.size();
+        for (int i = 0; i < otherSize; i++) {
+          int keyNum = (int) other.indexToKeyNum(i);
+          Arrays.fill(resultValues, nextKeyNum, keyNum, 0.0);
+          resultValues[keyNum] *= other.getByIndex(i);
+          nextKeyNum = keyNum + 1;
+        }
+        Arrays.fill(resultValues, nextKeyNum, length, 0.0);
+      }
+      return;
+    }
+
+    long[] strides = getStrides(other);
+    double[] otherValues = (other instanceof DenseTensorBase) ? ((DenseTensorBase) other).values : null;
+    int[] key = new int[myDims.length];
+    long otherKeyNum = 0;
+    int lastDim = myDims.length - 1;
+    for (int i = 0; i < length; i++) {
+      resultValues[i] *= (otherValues != null) ? otherValues[(int) otherKeyNum] : other.get(otherKeyNum);
+
+      // Advance key to the key of the next value, updating otherKeyNum.
+      for (int j = lastDim; j >= 0; j--) {
+        key[j]++;
+        otherKeyNum += strides[j];
+        if (key[j] < mySizes[j]) {
+          break;
+        }
+        otherKeyNum -= strides[j] * mySizes[j];
+        key[j] = 0;
+      }
+    }
+  }
+
+  /**
+   * Gets the change in {@code other}'s keyNum when the key of each
+   * dimension of this tensor increases by 1. The dimensions of
+   * {@code other} must be a subset of the dimensions of {@code this};
+   * the stride of every dimension not in {@code other} is 0.
+   */
+  private long[] getStrides(Tensor other) {
+    int[] myDims = getDimensionNumbers();
+    int[] mySizes = getDimensionSizes();
+    int[] otherDims = other.getDimensionNumbers();
+    int[] otherSizes = other.getDimensionSizes();
+
+    long[] otherOffsets = other.getDimensionOffsets();
+    long[] strides = new long[myDims.length];
+    int otherIndex = 0;
+    for (int i = 0; i < myDims.length && otherIndex < otherDims.length; i++) {
+      if (myDims[i] == otherDims[otherIndex]) {
+        Preconditions.checkArgument(mySizes[i] == otherSizes[otherIndex],
+            "Tensor dimension sizes do not agree: %s and %s", Ints.asList(mySizes),
+            Ints.asList(otherSizes));
+        strides[i] = otherOffsets[otherIndex];
+        otherIndex++;
+      }
     }
-    return result;
+    Preconditions.checkArgument(otherIndex == otherDims.length, "Dimensions not a superset");
+    return strides;
   }
 
   @Override
   public DenseTensor elementwiseProduct(double constant) {
-    double[] newValues = Arrays.copyOf(values, values.length);
-    for (int i = 0; i < values.length; i++) {
-      newValues[i] *= constant;
-    }
+    double[] newValues = new double[values.length];
+    kernels.scale(constant, values, newValues, values.length);
 
     return new DenseTensor(getDimensionNumbers(), getDimensionSizes(), newValues);
   }
@@ -217,12 +315,7 @@ public class DenseTensor extends DenseTensorBase implements Tensor, Serializable
     double[] otherValues = other.values;
     int length = values.length;
     Preconditions.checkArgument(otherValues.length == length);
-    
-    double innerProduct = 0.0;
-    for (int i = 0; i < length; i++) {
-      innerProduct += values[i] * otherValues[i];
-    }
-    return innerProduct;
+    return kernels.dot(values, 0, otherValues, 0, length);
   }
 
   /**
@@ -243,6 +336,16 @@ public class DenseTensor extends DenseTensorBase implements Tensor, Serializable
     double innerProd;
     int otherIndex;
     int finalIndex = (int) (maxKeyNum / keyNumIncrement);
+    if (other instanceof DenseTensorBase) {
+      // The keys of other are contiguous, so each value of the result
+      // is the inner product of a contiguous block of values with other.
+      for (int i = 0; i < finalIndex; i++) {
+        resultBuilder.values[i] = kernels.dot(values, (int) (i * keyNumIncrement),
+            otherValues, 0, otherSize);
+      }
+      return resultBuilder.buildNoCopy();
+    }
+
     long myKeyNum;
     for (int i = 0; i < finalIndex; i++) {
       myKeyNum = i * keyNumIncrement;
@@ -270,9 +373,7 @@ public class DenseTensor extends DenseTensorBase implements Tensor, Serializable
     for (int otherIndex = 0; otherIndex < otherSize; otherIndex++) {
       otherKeyNum = (int) (other.indexToKeyNum(otherIndex) * maxKeyNum);
       otherValue = otherValues[otherIndex];
-      for (int i = 0; i < finalIndex; i++) {
-        resultBuilder.incrementEntryByKeyNum(values[i + otherKeyNum] * otherValue, i);
-      }
+      kernels.axpy(otherValue, values, otherKeyNum, resultBuilder.values, 0, finalIndex);
     }
     return resultBuilder.buildNoCopy();
   }
@@ -353,9 +454,7 @@ public class DenseTensor extends DenseTensorBase implements Tensor, Serializable
   public DenseTensor elementwiseLog() {
     DenseTensorBuilder outputBuilder = new DenseTensorBuilder(getDimensionNumbers(),
         getDimensionSizes());
-    for (int i = 0; i < values.length; i++) {
-      outputBuilder.values[i] = Math.log(values[i]);
-    }
+    kernels.log(values, outputBuilder.values, values.length);
     return outputBuilder.buildNoCopy();
   }
 
@@ -363,9 +462,7 @@ public class DenseTensor extends DenseTensorBase implements Tensor, Serializable
   public DenseTensor elementwiseExp() {
     DenseTensorBuilder outputBuilder = new DenseTensorBuilder(getDimensionNumbers(),
         getDimensionSizes());
-    for (int i = 0; i < values.length; i++) {
-      outputBuilder.values[i] = Math.exp(values[i]);
-    }
+    kernels.exp(values, outputBuilder.values, values.length);
     return outputBuilder.buildNoCopy();
   }
 
@@ -373,9 +470,7 @@ public class DenseTensor extends DenseTensorBase implements Tensor, Serializable
   public DenseTensor elementwiseTanh() {
     DenseTensorBuilder outputBuilder = new DenseTensorBuilder(getDimensionNumbers(),
         getDimensionSizes());
-    for (int i = 0; i < values.length; i++) {
-      outputBuilder.values[i] = Math.tanh(values[i]);
-    }
+    kernels.tanh(values, outputBuilder.values, values.length);
     return outputBuilder.buildNoCopy();
   }
   
@@ -430,14 +525,21 @@ public class DenseTensor extends DenseTensorBase implements Tensor, Serializable
     return sumOutDimensions(Ints.asList(dimensionsToEliminate));
   }
   
+  /**
+   * {@inheritDoc}
+   * 
+   * This implementation computes each sum with a single-pass logsumexp
+   * over the values of this tensor (see {@link LogSpaceTensor}).
+   */
   @Override
   public Tensor logSumOutDimensions(Collection<Integer> dimensionsToEliminate) {
-    return AbstractTensor.logSumOutDimensions(this, dimensionsToEliminate);
+    return LogSpaceTensor.fromLogWeights(this).sumOutDimensions(dimensionsToEliminate)
+        .elementwiseLog();
   }
 
   @Override 
   public Tensor logSumOutDimensions(int[] dimensionsToEliminate) {
-    return AbstractTensor.logSumOutDimensions(this, Ints.asList(dimensionsToEliminate));
+    return logSumOutDimensions(Ints.asList(dimensionsToEliminate));
   }
 
 
@@ -462,6 +564,132 @@ public class DenseTensor extends DenseTensorBase implements Tensor, Serializable
     return maxOutDimensions(Ints.asList(dimensionsToEliminate), backpointers);
   }
 
+  /**
+   * {@inheritDoc}
+   * 
+   * This implementation computes each value of the product and
+   * immediately adds it to the corresponding value of the result, so
+   * the product tensor is never constructed.
+   */
+  @Override
+  public DenseTensor productSumOutDimensions(Collection<Tensor> others,
+      Collection<Integer> dimensionsToEliminate) {
+    return productReduceDimensions(others, dimensionsToEliminate, true, null);
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * This implementation computes each value of the product and
+   * immediately compares it to the corresponding value of the result,
+   * so the product tensor is never constructed.
+   */
+  @Override
+  public DenseTensor productMaxOutDimensions(Collection<Tensor> others,
+      Collection<Integer> dimensionsToEliminate, Backpointers backpointers) {
+    return productReduceDimensions(others, dimensionsToEliminate, false, backpointers);
+  }
+
+  /**
+   * Multiplies {@code this} by {@code others}, eliminating
+   * {@code dimensionsToEliminate} from the product by either summing
+   * or maximizing. Makes a single pass over the values of this,
+   * tracking the corresponding keyNum of the result and of each
+   * tensor in {@code others}.
+   */
+  private DenseTensor productReduceDimensions(Collection<Tensor> others,
+      Collection<Integer> dimensionsToEliminate, boolean useSum, Backpointers backpointers) {
+    int[] myDims = getDimensionNumbers();
+    int[] mySizes = getDimensionSizes();
+
+    // resultStrides[i] is the change in the result's keyNum when the
+    // key of dimension i of this tensor increases by 1.
+    long[] resultStrides = new long[myDims.length];
+    List<Integer> resultDims = Lists.newArrayList();
+    List<Integer> resultSizes = Lists.newArrayList();
+    long resultLength = 1;
+    for (int i = myDims.length - 1; i >= 0; i--) {
+      if (!dimensionsToEliminate.contains(myDims[i])) {
+        resultDims.add(0, myDims[i]);
+        resultSizes.add(0, mySizes[i]);
+        resultStrides[i] = resultLength;
+        resultLength *= mySizes[i];
+      }
+    }
+
+    int numOthers = others.size();
+    Tensor[] otherTensors = others.toArray(new Tensor[numOthers]);
+    long[][] otherStrides = new long[numOthers][];
+    double[][] otherValues = new double[numOthers][];
+    for (int k = 0; k < numOthers; k++) {
+      otherStrides[k] = getStrides(otherTensors[k]);
+      if (otherTensors[k] instanceof DenseTensorBase) {
+        otherValues[k] = ((DenseTensorBase) otherTensors[k]).values;
+      }
+    }
+
+    double[] resultValues = new double[(int) resultLength];
+    long[] oldBackpointerNums = null;
+    if (!useSum) {
+      Arrays.fill(resultValues, Double.NEGATIVE_INFINITY);
+      if (backpointers != null) {
+        oldBackpointerNums = new long[resultValues.length];
+        Arrays.fill(oldBackpointerNums, -1L);
+      }
+    }
+
+    int[] key = new int[myDims.length];
+    long[] otherKeyNums = new long[numOthers];
+    long resultKeyNum = 0;
+    int lastDim = myDims.length - 1;
+    for (int i = 0; i < values.length; i++) {
+      double value = values[i];
+      for (int k = 0; k < numOthers && value != 0.0; k++) {
+        value *= (otherValues[k] != null) ? otherValues[k][(int) otherKeyNums[k]]
+            : otherTensors[k].get(otherKeyNums[k]);
+      }
+
+      int resultIndex = (int) resultKeyNum;
+      if (useSum) {
+        resultValues[resultIndex] += value;
+      } else if (value > resultValues[resultIndex]) {
+        resultValues[resultIndex] = value;
+        if (oldBackpointerNums != null) {
+          oldBackpointerNums[resultIndex] = i;
+        }
+      }
+
+      // Advance key to the key of the next value, updating the
+      // keyNums of the result and others.
+      for (int j = lastDim; j >= 0; j--) {
+        key[j]++;
+        resultKeyNum += resultStrides[j];
+        for (int k = 0; k < numOthers; k++) {
+          otherKeyNums[k] += otherStrides[k][j];
+        }
+        if (key[j] < mySizes[j]) {
+          break;
+        }
+        resultKeyNum -= resultStrides[j] * mySizes[j];
+        for (int k = 0; k < numOthers; k++) {
+          otherKeyNums[k] -= otherStrides[k][j] * mySizes[j];
+        }
+        key[j] = 0;
+      }
+    }
+
+    if (oldBackpointerNums != null) {
+      long[] newBackpointerNums = new long[resultValues.length];
+      for (int i = 0; i < newBackpointerNums.length; i++) {
+        newBackpointerNums[i] = i;
+      }
+      backpointers.setBackpointers(newBackpointerNums, oldBackpointerNums,
+          newBackpointerNums.length, this);
+    }
+
+    return new DenseTensor(Ints.toArray(resultDims), Ints.toArray(resultSizes), resultValues);
+  }
+
   /**
    * Performs reduction operations which eliminate some subset of the existing
    * dimensions.
@@ -27,6 +27,8 @@ public class DenseTensorBase extends AbstractTensorBase {
   // Stores the values of each key in this. Accessible to subclasses for
   // fast mathematical operations.
   protected final double[] values;
+  // Implementations of the inner loops of operations on values.
+  protected static final DenseKernels kernels = DenseKernels.getInstance();
 
   /**
    * Creates a tensor with an uninitialized values array.
@@ -199,10 +199,7 @@ public class DenseTensorBuilder extends DenseTensorBase implements TensorBuilder
     if (other instanceof DenseTensorBase) {
       double[] otherTensorValues = ((DenseTensorBase) other).values;
       Preconditions.checkArgument(otherTensorValues.length == values.length);
-      int length = values.length;
-      for (int i = 0; i < length; i++) {
-        values[i] += otherTensorValues[i] * multiplier;
-      }
+      kernels.axpy(multiplier, otherTensorValues, 0, values, 0, values.length);
     } else {
       int otherSize = other.size();
       for (int i = 0; i < otherSize; i++) {
@@ -299,11 +296,7 @@ public class DenseTensorBuilder extends DenseTensorBase implements TensorBuilder
       DenseTensorBase otherTensor = (DenseTensorBase) other;
       Preconditions.checkArgument(otherTensor.values.length == values.length);
 
-      // info.yeppp.Core.Multiply_V64fV64f_V64f(values, 0, otherTensor.values, 0, values, 0, values.length);
-
-      for (int i = 0; i < values.length; i++) {
-        values[i] *= otherTensor.values[i];
-      }
+      kernels.multiply(values, otherTensor.values, values, values.length);
     } else {
       Iterator<KeyValue> keyValueIter = keyValueIterator();
       while (keyValueIter.hasNext()) {
@@ -315,11 +308,7 @@ public class DenseTensorBuilder extends DenseTensorBase implements TensorBuilder
 
   @Override
   public void multiply(double amount) {
-    // Not optimized.
-    // info.yeppp.Core.Multiply_V64fS64f_V64f(values, 0, amount, values, 0, values.length);
-    for (int i = 0; i < values.length; i++) {
-      values[i] *= amount;
-    }
+    kernels.scale(amount, values, values, values.length);
   }
 
   @Override
@@ -387,11 +376,7 @@ public class DenseTensorBuilder extends DenseTensorBase implements TensorBuilder
     if (other instanceof DenseTensorBase) {
       DenseTensorBase otherTensor = (DenseTensorBase) other;
       Preconditions.checkArgument(otherTensor.values.length == values.length);
-      double total = 0.0;
-      for (int i = 0; i < values.length; i++) {
-        total += otherTensor.values[i] * values[i];
-      }
-      return total;
+      return kernels.dot(values, 0, otherTensor.values, 0, values.length);
     } else {
       double total = 0.0;
       
@@ -408,9 +393,7 @@ public class DenseTensorBuilder extends DenseTensorBase implements TensorBuilder
 
   @Override
   public void exp() {
-    for (int i = 0; i < values.length; i++) {
-      values[i] = Math.exp(values[i]);
-    }
+    kernels.exp(values, values, values.length);
   }
 
   @Override
@@ -450,12 +433,7 @@ public class DenseTensorBuilder extends DenseTensorBase implements TensorBuilder
    * @return
    */
   public static TensorFactory getFactory() {
-    return new TensorFactory() {
-      @Override
-      public TensorBuilder getBuilder(int[] dimNums, int[] dimSizes) {
-        return new DenseTensorBuilder(dimNums, dimSizes);
-      }
-    };
+    return new DenseTensorFactory();
   }
 
   /**
@@ -474,4 +452,13 @@ public class DenseTensorBuilder extends DenseTensorBase implements TensorBuilder
     }
     return builder;
   }
-}
\ No newline at end of file
+
+  private static class DenseTensorFactory implements TensorFactory {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public TensorBuilder getBuilder(int[] dimNums, int[] dimSizes) {
+      return new DenseTensorBuilder(dimNums, dimSizes);
+    }
+  }
+}
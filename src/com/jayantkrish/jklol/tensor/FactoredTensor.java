@@ -47,6 +47,15 @@ public class FactoredTensor extends AbstractTensor {
     }
   }
 
+  /**
+   * Gets the tensors whose product is this tensor.
+   * 
+   * @return
+   */
+  public Tensor[] getTensors() {
+    return Arrays.copyOf(tensors, tensors.length);
+  }
+
   @Override
   public Tensor slice(int[] dimensionNumbers, int[] keys) {
     throw new UnsupportedOperationException("Not implemented.");
@@ -0,0 +1,289 @@
+package com.jayantkrish.jklol.tensor;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Immutable single-precision dense tensor. {@code FloatDenseTensor}
+ * stores its values using half the memory of a {@link DenseTensor},
+ * and is intended for storing large parameter vectors. These tensors
+ * are typically constructed using a {@link FloatDenseTensorBuilder}.
+ * 
+ * <p> Accessing values (e.g., {@link #get(long)}) reads directly from
+ * the single-precision representation. Mathematical operations are
+ * performed in double precision by converting this tensor to a
+ * {@code DenseTensor}. Dense results are converted back to single
+ * precision, so the result of an operation on a {@code FloatDenseTensor}
+ * is also a {@code FloatDenseTensor}.
+ * 
+ * @author jayantk
+ */
+public class FloatDenseTensor extends FloatDenseTensorBase implements Tensor {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Creates a tensor that spans {@code dimensions}, and each dimension has the
+   * corresponding size from {@code sizes}. Most users should use a
+   * {@link FloatDenseTensorBuilder} instead of this constructor.
+   * 
+   * @param dimensions
+   * @param sizes
+   * @param values
+   */
+  public FloatDenseTensor(int[] dimensions, int[] sizes, float[] values) {
+    super(dimensions, sizes, values);
+  }
+
+  /**
+   * Gets a double-precision copy of this tensor.
+   * 
+   * @return
+   */
+  public Tensor toDenseTensor() {
+    return new DenseTensor(getDimensionNumbers(), getDimensionSizes(), getDoubleValues());
+  }
+
+  @Override
+  public int getNearestIndex(long keyNum) {
+    // Dense tensors contain values for all keyNums.
+    return (int) keyNum;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * This implementation returns a double-precision copy of the values
+   * of this tensor, which must be allocated on every call.
+   */
+  @Override
+  public double[] getValues() {
+    return getDoubleValues();
+  }
+
+  @Override
+  public Tensor slice(int[] dimensionNumbers, int[] keys) {
+    return fromDense(toDenseTensor().slice(dimensionNumbers, keys));
+  }
+
+  @Override
+  public Tensor retainKeys(Tensor indicatorTensor) {
+    return fromDense(toDenseTensor().retainKeys(indicatorTensor));
+  }
+
+  @Override
+  public Tensor findKeysLargerThan(double thresholdValue) {
+    return fromDense(toDenseTensor().findKeysLargerThan(thresholdValue));
+  }
+
+  @Override
+  public Tensor elementwiseProduct(Tensor other) {
+    return fromDense(toDenseTensor().elementwiseProduct(other));
+  }
+
+  @Override
+  public Tensor elementwiseProduct(Collection<Tensor> others) {
+    return fromDense(toDenseTensor().elementwiseProduct(others));
+  }
+
+  @Override
+  public Tensor elementwiseProduct(double value) {
+    return fromDense(toDenseTensor().elementwiseProduct(value));
+  }
+
+  @Override
+  public Tensor innerProduct(Tensor other) {
+    return fromDense(toDenseTensor().innerProduct(other));
+  }
+
+  @Override
+  public Tensor matrixInnerProduct(Tensor other) {
+    return fromDense(toDenseTensor().matrixInnerProduct(other));
+  }
+
+  @Override
+  public Tensor outerProduct(Tensor other) {
+    return fromDense(toDenseTensor().outerProduct(other));
+  }
+
+  @Override
+  public Tensor elementwiseAddition(Tensor other) {
+    return fromDense(toDenseTensor().elementwiseAddition(other));
+  }
+
+  @Override
+  public Tensor elementwiseAddition(double value) {
+    return fromDense(toDenseTensor().elementwiseAddition(value));
+  }
+
+  @Override
+  public Tensor elementwiseMaximum(Tensor other) {
+    return fromDense(toDenseTensor().elementwiseMaximum(other));
+  }
+
+  @Override
+  public Tensor elementwiseInverse() {
+    return fromDense(toDenseTensor().elementwiseInverse());
+  }
+
+  @Override
+  public Tensor elementwiseSqrt() {
+    return fromDense(toDenseTensor().elementwiseSqrt());
+  }
+
+  @Override
+  public Tensor elementwiseLog() {
+    return fromDense(toDenseTensor().elementwiseLog());
+  }
+
+  @Override
+  public Tensor elementwiseExp() {
+    return fromDense(toDenseTensor().elementwiseExp());
+  }
+
+  @Override
+  public Tensor elementwiseTanh() {
+    return fromDense(toDenseTensor().elementwiseTanh());
+  }
+
+  @Override
+  public Tensor elementwiseAbs() {
+    return fromDense(toDenseTensor().elementwiseAbs());
+  }
+
+  @Override
+  public Tensor elementwiseLaplaceSigmoid(double smoothness) {
+    return fromDense(toDenseTensor().elementwiseLaplaceSigmoid(smoothness));
+  }
+
+  @Override
+  public Tensor softThreshold(double threshold) {
+    return fromDense(toDenseTensor().softThreshold(threshold));
+  }
+
+  @Override
+  public Tensor getEntriesLargerThan(double threshold) {
+    return fromDense(toDenseTensor().getEntriesLargerThan(threshold));
+  }
+
+  @Override
+  public Tensor sumOutDimensions(Collection<Integer> dimensionsToEliminate) {
+    return fromDense(toDenseTensor().sumOutDimensions(dimensionsToEliminate));
+  }
+
+  @Override
+  public Tensor sumOutDimensions(int... dimensionsToEliminate) {
+    return fromDense(toDenseTensor().sumOutDimensions(dimensionsToEliminate));
+  }
+
+  @Override
+  public Tensor logSumOutDimensions(Collection<Integer> dimensionsToEliminate) {
+    return fromDense(toDenseTensor().logSumOutDimensions(dimensionsToEliminate));
+  }
+
+  @Override
+  public Tensor logSumOutDimensions(int[] dimensionsToEliminate) {
+    return fromDense(toDenseTensor().logSumOutDimensions(dimensionsToEliminate));
+  }
+
+  @Override
+  public Tensor maxOutDimensions(Collection<Integer> dimensionsToEliminate) {
+    return fromDense(toDenseTensor().maxOutDimensions(dimensionsToEliminate));
+  }
+
+  @Override
+  public Tensor maxOutDimensions(int[] dimensionsToEliminate) {
+    return fromDense(toDenseTensor().maxOutDimensions(dimensionsToEliminate));
+  }
+
+  @Override
+  public Tensor maxOutDimensions(Collection<Integer> dimensionsToEliminate,
+      Backpointers backpointers) {
+    return fromDense(toDenseTensor().maxOutDimensions(dimensionsToEliminate, backpointers));
+  }
+
+  @Override
+  public Tensor maxOutDimensions(int[] dimensionsToEliminate, Backpointers backpointers) {
+    return fromDense(toDenseTensor().maxOutDimensions(dimensionsToEliminate, backpointers));
+  }
+
+  @Override
+  public Tensor productSumOutDimensions(Collection<Tensor> others,
+      Collection<Integer> dimensionsToEliminate) {
+    return fromDense(toDenseTensor().productSumOutDimensions(others, dimensionsToEliminate));
+  }
+
+  @Override
+  public Tensor productMaxOutDimensions(Collection<Tensor> others,
+      Collection<Integer> dimensionsToEliminate, Backpointers backpointers) {
+    return fromDense(toDenseTensor().productMaxOutDimensions(others, dimensionsToEliminate,
+        backpointers));
+  }
+
+  @Override
+  public Tensor relabelDimensions(int[] newDimensions) {
+    return fromDense(toDenseTensor().relabelDimensions(newDimensions));
+  }
+
+  @Override
+  public Tensor relabelDimensions(Map<Integer, Integer> relabeling) {
+    return fromDense(toDenseTensor().relabelDimensions(relabeling));
+  }
+
+  @Override
+  public Tensor replaceValues(double[] newValues) {
+    return new DenseTensor(getDimensionNumbers(), getDimensionSizes(), newValues);
+  }
+
+  /**
+   * Converts {@code result} to single precision if it is dense.
+   */
+  private static Tensor fromDense(Tensor result) {
+    if (result instanceof DenseTensor) {
+      double[] resultValues = result.getValues();
+      float[] newValues = new float[resultValues.length];
+      for (int i = 0; i < resultValues.length; i++) {
+        newValues[i] = (float) resultValues[i];
+      }
+      return new FloatDenseTensor(result.getDimensionNumbers(), result.getDimensionSizes(),
+          newValues);
+    }
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    } else if (other instanceof FloatDenseTensor) {
+      FloatDenseTensor otherTensor = (FloatDenseTensor) other;
+      if (Arrays.equals(otherTensor.getDimensionNumbers(), getDimensionNumbers()) &&
+          Arrays.equals(otherTensor.getDimensionSizes(), getDimensionSizes())) {
+        for (int i = 0; i < values.length; i++) {
+          if (values[i] != otherTensor.values[i]) {
+            return false;
+          }
+        }
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = 31 * Arrays.hashCode(getDimensionNumbers()) + Arrays.hashCode(getDimensionSizes());
+    for (int i = 0; i < values.length; i++) {
+      // equals() treats 0.0 and -0.0 as equal, so they must hash identically.
+      int valueHash = values[i] == 0.0f ? 0 : Float.floatToIntBits(values[i]);
+      result = 31 * result + valueHash;
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "[FloatDenseTensor " + toDenseTensor().toString().substring("[DenseTensor ".length());
+  }
+}
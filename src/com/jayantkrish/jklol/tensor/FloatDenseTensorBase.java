@@ -0,0 +1,158 @@
+package com.jayantkrish.jklol.tensor;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import com.google.common.base.Preconditions;
+import com.google.common.primitives.Ints;
+import com.jayantkrish.jklol.util.HeapUtils;
+import com.jayantkrish.jklol.util.IntegerArrayIterator;
+
+/**
+ * Common implementation of a single-precision dense tensor
+ * representation. This class is identical to {@link DenseTensorBase},
+ * except that values are stored as {@code float}s. Single precision
+ * halves the memory required to store the tensor (both in memory and
+ * when serialized), at the cost of numerical precision. Values are
+ * converted to {@code double} when read.
+ * 
+ * @author jayantk
+ */
+public class FloatDenseTensorBase extends AbstractTensorBase {
+
+  private static final long serialVersionUID = 1L;
+  // Stores the values of each key in this. Accessible to subclasses for
+  // fast mathematical operations.
+  protected final float[] values;
+
+  /**
+   * Creates a tensor whose values are initialized to 0.
+   * 
+   * @param dimensions
+   * @param sizes
+   */
+  public FloatDenseTensorBase(int[] dimensions, int[] sizes) {
+    super(dimensions, sizes);
+
+    long size = 1;
+    for (int i = 0; i < sizes.length; i++) {
+      size *= sizes[i];
+    }
+    Preconditions.checkArgument(size <= Integer.MAX_VALUE, "Tensor size too big: %s",
+        Ints.asList(sizes));
+    values = new float[(int) size];
+  }
+
+  /**
+   * Creates a tensor with the given values array.
+   * 
+   * @param dimensions
+   * @param sizes
+   * @param values
+   */
+  protected FloatDenseTensorBase(int[] dimensions, int[] sizes, float[] values) {
+    super(dimensions, sizes);
+
+    int size = 1;
+    for (int i = 0; i < sizes.length; i++) {
+      size *= sizes[i];
+    }
+    Preconditions.checkArgument(values.length == size, "Expected size: %s, was: %s", size,
+        values.length);
+
+    this.values = values;
+  }
+
+  @Override
+  public final int size() {
+    return values.length;
+  }
+
+  @Override
+  public final double getByIndex(int index) {
+    return values[index];
+  }
+
+  @Override
+  public final double getLogByIndex(int index) {
+    return Math.log(values[index]);
+  }
+
+  @Override
+  public final long indexToKeyNum(int index) {
+    return (long) index;
+  }
+
+  @Override
+  public final int keyNumToIndex(long keyNum) {
+    return (int) keyNum;
+  }
+
+  public final int dimKeyToIndex(int[] dimKey) {
+    return (int) dimKeyToKeyNum(dimKey);
+  }
+
+  @Override
+  public Iterator<KeyValue> keyValueIterator() {
+    return new KeyToKeyValueIterator(new IntegerArrayIterator(getDimensionSizes(), new int[0]),
+        this);
+  }
+
+  @Override
+  public Iterator<KeyValue> keyValuePrefixIterator(int[] keyPrefix) {
+    return new KeyToKeyValueIterator(IntegerArrayIterator.createFromKeyPrefix(
+        getDimensionSizes(), keyPrefix), this);
+  }
+
+  @Override
+  public double getL2Norm() {
+    double sumSquares = 0.0;
+    for (int i = 0; i < values.length; i++) {
+      sumSquares += ((double) values[i]) * values[i];
+    }
+    return Math.sqrt(sumSquares);
+  }
+
+  @Override
+  public double getTrace() {
+    double sum = 0.0;
+    for (int i = 0; i < values.length; i++) {
+      sum += values[i];
+    }
+    return sum;
+  }
+
+  @Override
+  public long[] getLargestValues(int n) {
+    return HeapUtils.findLargestItemIndexes(getDoubleValues(), n);
+  }
+
+  /**
+   * Gets a copy of the values of this tensor, converted to
+   * double precision.
+   * 
+   * @return
+   */
+  protected double[] getDoubleValues() {
+    double[] doubleValues = new double[values.length];
+    for (int i = 0; i < values.length; i++) {
+      doubleValues[i] = values[i];
+    }
+    return doubleValues;
+  }
+
+  protected int[] getDimensionMapping(int[] otherDimensionNums) {
+    int[] mapping = new int[otherDimensionNums.length];
+    int otherInd = 0;
+    for (int i = 0; i < getDimensionNumbers().length; i++) {
+      if (otherInd < otherDimensionNums.length && getDimensionNumbers()[i] == otherDimensionNums[otherInd]) {
+        mapping[otherInd] = i;
+        otherInd++;
+      }
+    }
+    // Ensure that the mapping is fully initialized.
+    Preconditions.checkArgument(otherInd == otherDimensionNums.length, "Cannot map tensor dimensions. My dimensions: %s. Other dimensions %s",
+        Arrays.toString(getDimensionNumbers()), Arrays.toString(otherDimensionNums));
+    return mapping;
+  }
+}
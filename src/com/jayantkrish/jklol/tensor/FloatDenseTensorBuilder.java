@@ -0,0 +1,377 @@
+package com.jayantkrish.jklol.tensor;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import com.google.common.base.Preconditions;
+import com.jayantkrish.jklol.util.IntegerArrayIterator;
+
+/**
+ * Builder for incrementally constructing single-precision dense
+ * tensors. This builder is a drop-in replacement for
+ * {@link DenseTensorBuilder} which uses half as much memory. It is
+ * useful for storing large parameter vectors, e.g., as the
+ * {@code TensorBuilder} of a {@code TensorSufficientStatistics}.
+ * 
+ * <p> Values are stored in single precision, but all arithmetic is
+ * performed in double precision, so rounding occurs only when a value
+ * is stored.
+ * 
+ * @author jayantk
+ */
+public class FloatDenseTensorBuilder extends FloatDenseTensorBase implements TensorBuilder {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Creates a {@code FloatDenseTensorBuilder} with all values initialized
+   * to 0.
+   * 
+   * @param dimensions
+   * @param sizes
+   */
+  public FloatDenseTensorBuilder(int[] dimensions, int[] sizes) {
+    super(dimensions, sizes);
+  }
+
+  /**
+   * Copy constructor
+   * 
+   * @param builder
+   */
+  public FloatDenseTensorBuilder(FloatDenseTensorBase builder) {
+    super(builder.getDimensionNumbers(), builder.getDimensionSizes(),
+        Arrays.copyOf(builder.values, builder.values.length));
+  }
+
+  @Override
+  public final void put(int[] key, double value) {
+    values[dimKeyToIndex(key)] = (float) value;
+  }
+
+  @Override
+  public final void putByKeyNum(long keyNum, double value) {
+    values[(int) keyNum] = (float) value;
+  }
+
+  @Override
+  public void increment(TensorBase other) {
+    incrementWithMultiplier(other, 1.0);
+  }
+
+  @Override
+  public void increment(double amount) {
+    for (int i = 0; i < values.length; i++) {
+      values[i] += amount;
+    }
+  }
+
+  @Override
+  public final void incrementEntry(double amount, int... key) {
+    values[dimKeyToIndex(key)] += amount;
+  }
+
+  @Override
+  public final void incrementEntryByKeyNum(double amount, long keyNum) {
+    values[(int) keyNum] += amount;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * This implementation supports increments when {@code other} has a subset of
+   * {@code this}'s dimensions. In this case, the values in {@code other} are
+   * implicitly replicated across all dimensions of {@code this} not present in
+   * {@code other}.
+   */
+  @Override
+  public void incrementWithMultiplier(TensorBase other, double multiplier) {
+    if (Arrays.equals(other.getDimensionNumbers(), getDimensionNumbers())) {
+      if (other instanceof FloatDenseTensorBase) {
+        float[] otherValues = ((FloatDenseTensorBase) other).values;
+        Preconditions.checkArgument(otherValues.length == values.length);
+        for (int i = 0; i < values.length; i++) {
+          values[i] += otherValues[i] * multiplier;
+        }
+      } else {
+        int otherSize = other.size();
+        for (int i = 0; i < otherSize; i++) {
+          values[(int) other.indexToKeyNum(i)] += other.getByIndex(i) * multiplier;
+        }
+      }
+    } else {
+      repmatIncrement(other, multiplier);
+    }
+  }
+
+  /**
+   * Replicates the values in {@code tensor} across all dimensions of
+   * {@code this}. See {@link DenseTensorBuilder#incrementWithMultiplier}.
+   * 
+   * @param other
+   * @param multiplier
+   */
+  private void repmatIncrement(TensorBase other, double multiplier) {
+    // Maps a key of other into a partial key of this.
+    int[] dimensionMapping = getDimensionMapping(other.getDimensionNumbers());
+    int[] partialKey = Arrays.copyOf(getDimensionSizes(), getDimensionSizes().length);
+    for (int i = 0; i < dimensionMapping.length; i++) {
+      partialKey[dimensionMapping[i]] = 1;
+    }
+
+    int numValues = 1;
+    for (int i = 0; i < partialKey.length; i++) {
+      numValues *= partialKey[i];
+    }
+    int[] keyOffsets = new int[numValues];
+    Iterator<int[]> myKeyIterator = new IntegerArrayIterator(partialKey, new int[0]);
+    int ind = 0;
+    while (myKeyIterator.hasNext()) {
+      keyOffsets[ind] = dimKeyToIndex(myKeyIterator.next());
+      ind++;
+    }
+    Preconditions.checkState(ind == keyOffsets.length);
+
+    Iterator<KeyValue> otherKeyValues = other.keyValueIterator();
+    while (otherKeyValues.hasNext()) {
+      KeyValue otherKeyValue = otherKeyValues.next();
+      int baseOffset = 0;
+      for (int i = 0; i < otherKeyValue.getKey().length; i++) {
+        baseOffset += otherKeyValue.getKey()[i] * indexOffsets[dimensionMapping[i]];
+      }
+
+      for (int i = 0; i < keyOffsets.length; i++) {
+        values[baseOffset + keyOffsets[i]] += otherKeyValue.getValue() * multiplier;
+      }
+    }
+  }
+
+  @Override
+  public void incrementOuterProductWithMultiplier(Tensor leftTensor, Tensor rightTensor,
+      double multiplier) {
+    int[] leftDimensionNums = leftTensor.getDimensionNumbers();
+    int[] rightDimensionNums = rightTensor.getDimensionNumbers();
+    if (leftDimensionNums.length == 0) {
+      incrementWithMultiplier(rightTensor, multiplier * leftTensor.getByDimKey());
+      return;
+    } else if (rightDimensionNums.length == 0) {
+      incrementWithMultiplier(leftTensor, multiplier * rightTensor.getByDimKey());
+      return;
+    }
+
+    Preconditions.checkArgument(leftDimensionNums[leftDimensionNums.length - 1] < rightDimensionNums[0]);
+
+    long leftKeyNumMultiplier = rightTensor.getMaxKeyNum();
+    int leftSize = leftTensor.size();
+    int rightSize = rightTensor.size();
+    for (int i = 0; i < leftSize; i++) {
+      long leftKeyNumOffset = leftTensor.indexToKeyNum(i) * leftKeyNumMultiplier;
+      double leftValue = leftTensor.getByIndex(i) * multiplier;
+      for (int j = 0; j < rightSize; j++) {
+        double rightValue = rightTensor.getByIndex(j);
+        if (rightValue != 0.0) {
+          values[(int) (leftKeyNumOffset + rightTensor.indexToKeyNum(j))] += leftValue * rightValue;
+        }
+      }
+    }
+  }
+
+  @Override
+  public void incrementSquare(TensorBase other, double multiplier) {
+    checkSameDimensions(other);
+    double square = multiplier * multiplier;
+    for (int i = 0; i < values.length; i++) {
+      double otherVal = getDenseValue(other, i);
+      values[i] += otherVal * otherVal * square;
+    }
+  }
+
+  @Override
+  public void incrementAdagrad(TensorBase other, TensorBase squareTensor, double multiplier) {
+    checkSameDimensions(other);
+    checkSameDimensions(squareTensor);
+    for (int i = 0; i < values.length; i++) {
+      double squareVal = getDenseValue(squareTensor, i);
+      if (squareVal != 0.0) {
+        values[i] += getDenseValue(other, i) * multiplier / Math.sqrt(squareVal);
+      }
+    }
+  }
+
+  @Override
+  public void multiplyInverseAdagrad(TensorBase squareTensor, double constant, double multiplier) {
+    checkSameDimensions(squareTensor);
+    for (int i = 0; i < values.length; i++) {
+      double squareVal = getDenseValue(squareTensor, i);
+      if (squareVal != 0.0) {
+        squareVal = 1 / squareVal;
+      }
+      values[i] *= (constant + (multiplier * Math.sqrt(squareVal)));
+    }
+  }
+
+  @Override
+  public void incrementSquareAdagrad(TensorBase gradient, TensorBase parameters, double multiplier) {
+    checkSameDimensions(gradient);
+    checkSameDimensions(parameters);
+    for (int i = 0; i < values.length; i++) {
+      double val = getDenseValue(gradient, i) + (multiplier * getDenseValue(parameters, i));
+      values[i] += val * val;
+    }
+  }
+
+  @Override
+  public void multiply(TensorBase other) {
+    checkSameDimensions(other);
+    for (int i = 0; i < values.length; i++) {
+      values[i] *= getDenseValue(other, i);
+    }
+  }
+
+  @Override
+  public void multiply(double amount) {
+    for (int i = 0; i < values.length; i++) {
+      values[i] *= amount;
+    }
+  }
+
+  @Override
+  public void multiplyEntry(double amount, int... key) {
+    values[dimKeyToIndex(key)] *= amount;
+  }
+
+  @Override
+  public final void multiplyEntryByKeyNum(double amount, long keyNum) {
+    values[(int) keyNum] *= amount;
+  }
+
+  @Override
+  public void softThreshold(double threshold) {
+    double negativeThreshold = -1.0 * threshold;
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] > threshold) {
+        values[i] -= threshold;
+      } else if (values[i] < negativeThreshold) {
+        values[i] += threshold;
+      } else {
+        values[i] = 0.0f;
+      }
+    }
+  }
+
+  @Override
+  public void findEntriesLargerThan(double threshold) {
+    for (int i = 0; i < values.length; i++) {
+      values[i] = (values[i] >= threshold) ? 1.0f : 0.0f;
+    }
+  }
+
+  @Override
+  public double innerProduct(TensorBase other) {
+    checkSameDimensions(other);
+    double total = 0.0;
+    if (other instanceof FloatDenseTensorBase || other instanceof DenseTensorBase) {
+      for (int i = 0; i < values.length; i++) {
+        total += values[i] * getDenseValue(other, i);
+      }
+    } else {
+      // Iterate over only the nonzero values of other.
+      int otherSize = other.size();
+      for (int i = 0; i < otherSize; i++) {
+        total += values[(int) other.indexToKeyNum(i)] * other.getByIndex(i);
+      }
+    }
+    return total;
+  }
+
+  @Override
+  public void exp() {
+    for (int i = 0; i < values.length; i++) {
+      values[i] = (float) Math.exp(values[i]);
+    }
+  }
+
+  @Override
+  public FloatDenseTensor build() {
+    return new FloatDenseTensor(getDimensionNumbers(), getDimensionSizes(),
+        Arrays.copyOf(values, values.length));
+  }
+
+  /**
+   * Faster version of {@code build()} that does not copy the values into a new
+   * array. Use this method instead of {@code build()} when {@code this} is not
+   * modified after the call.
+   * 
+   * @return
+   */
+  @Override
+  public FloatDenseTensor buildNoCopy() {
+    return new FloatDenseTensor(getDimensionNumbers(), getDimensionSizes(), values);
+  }
+
+  @Override
+  public FloatDenseTensorBuilder getCopy() {
+    return new FloatDenseTensorBuilder(this);
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.toString(values);
+  }
+
+  private void checkSameDimensions(TensorBase other) {
+    Preconditions.checkArgument(Arrays.equals(other.getDimensionNumbers(), getDimensionNumbers()));
+  }
+
+  /**
+   * Gets the value of {@code other} at {@code index} of this tensor,
+   * using a fast path when {@code other} is dense.
+   */
+  private static double getDenseValue(TensorBase other, int index) {
+    if (other instanceof FloatDenseTensorBase) {
+      return ((FloatDenseTensorBase) other).values[index];
+    } else if (other instanceof DenseTensorBase) {
+      return ((DenseTensorBase) other).values[index];
+    } else {
+      return other.get(index);
+    }
+  }
+
+  // ///////////////////////////////////////////////////////////////////
+  // Static Methods
+  // ///////////////////////////////////////////////////////////////////
+
+  /**
+   * Gets a {@code TensorFactory} which creates
+   * {@code FloatDenseTensorBuilder}s. The returned factory is
+   * serializable, and can therefore be stored in a parametric family.
+   * 
+   * @return
+   */
+  public static TensorFactory getFactory() {
+    return new FloatDenseTensorFactory();
+  }
+
+  /**
+   * Gets a builder which contains the same key value pairs as {@code tensor}.
+   * 
+   * @param tensor
+   * @return
+   */
+  public static FloatDenseTensorBuilder copyOf(TensorBase tensor) {
+    FloatDenseTensorBuilder builder = new FloatDenseTensorBuilder(tensor.getDimensionNumbers(),
+        tensor.getDimensionSizes());
+    builder.increment(tensor);
+    return builder;
+  }
+
+  private static class FloatDenseTensorFactory implements TensorFactory, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public TensorBuilder getBuilder(int[] dimNums, int[] dimSizes) {
+      return new FloatDenseTensorBuilder(dimNums, dimSizes);
+    }
+  }
+}
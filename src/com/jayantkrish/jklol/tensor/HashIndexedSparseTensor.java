@@ -0,0 +1,145 @@
+package com.jayantkrish.jklol.tensor;
+
+import java.util.Arrays;
+
+/**
+ * A {@code SparseTensor} with a hash index from keyNums to indexes.
+ * {@code SparseTensor} looks up keys using binary search, which takes
+ * time logarithmic in the number of entries; this class performs the
+ * same lookups ({@link #keyNumToIndex(long)}, {@link #get(long)},
+ * {@link #getByDimKey(int...)}) in expected constant time. This class
+ * is useful for tensors which are queried for individual entries many
+ * times, such as the parameter tensors of a parser.
+ * <p>
+ * The keys and values of this tensor are stored exactly as in
+ * {@code SparseTensor}, so iteration order, slicing and all
+ * mathematical operations are unchanged. The returned tensors of these
+ * operations are ordinary {@code SparseTensor}s.
+ *
+ * @author jayantk
+ */
+public class HashIndexedSparseTensor extends SparseTensor {
+
+  private static final long serialVersionUID = 1L;
+
+  // Open-addressing (linear probing) hash table. Empty slots have
+  // a key of -1, which is never a valid keyNum.
+  private final long[] hashKeys;
+  private final int[] hashIndexes;
+  private final int hashMask;
+  private final int hashShift;
+
+  public HashIndexedSparseTensor(int[] dimensionNums, int[] dimensionSizes, long[] keyNums,
+      double[] values) {
+    super(dimensionNums, dimensionSizes, keyNums, values);
+
+    // Use a load factor of at most 0.5 to keep probe sequences short.
+    int numBits = 1;
+    while ((1 << numBits) < 2 * keyNums.length) {
+      numBits++;
+    }
+    int capacity = 1 << numBits;
+    hashKeys = new long[capacity];
+    hashIndexes = new int[capacity];
+    hashMask = capacity - 1;
+    hashShift = 64 - numBits;
+
+    Arrays.fill(hashKeys, -1L);
+    for (int i = 0; i < keyNums.length; i++) {
+      int slot = hash(keyNums[i]);
+      while (hashKeys[slot] != -1L) {
+        slot = (slot + 1) & hashMask;
+      }
+      hashKeys[slot] = keyNums[i];
+      hashIndexes[slot] = i;
+    }
+  }
+
+  /**
+   * Gets a hash-indexed copy of {@code tensor}. The returned tensor
+   * shares the keys and values of {@code tensor}.
+   *
+   * @param tensor
+   * @return
+   */
+  public static HashIndexedSparseTensor fromTensor(SparseTensor tensor) {
+    if (tensor instanceof HashIndexedSparseTensor) {
+      return (HashIndexedSparseTensor) tensor;
+    }
+    return new HashIndexedSparseTensor(tensor.getDimensionNumbers(), tensor.getDimensionSizes(),
+        tensor.keyNums, tensor.values);
+  }
+
+  /**
+   * Adds a hash index to {@code tensor} if it is a
+   * {@code SparseTensor}. Other tensors are returned unchanged; in
+   * particular, dense tensors already support constant-time lookups.
+   *
+   * @param tensor
+   * @return
+   */
+  public static Tensor indexIfSparse(Tensor tensor) {
+    if (tensor instanceof SparseTensor) {
+      return fromTensor((SparseTensor) tensor);
+    }
+    return tensor;
+  }
+
+  public static TensorFactory getFactory() {
+    return new HashIndexedSparseTensorFactory();
+  }
+
+  private int hash(long keyNum) {
+    // Fibonacci hashing: the high bits of the product are well-mixed
+    // even when keyNums are small or regularly spaced.
+    return (int) ((keyNum * 0x9E3779B97F4A7C15L) >>> hashShift) & hashMask;
+  }
+
+  @Override
+  public int keyNumToIndex(long keyNum) {
+    int slot = hash(keyNum);
+    long slotKey;
+    while ((slotKey = hashKeys[slot]) != -1L) {
+      if (slotKey == keyNum) {
+        return hashIndexes[slot];
+      }
+      slot = (slot + 1) & hashMask;
+    }
+    return -1;
+  }
+
+  @Override
+  public double get(long keyNum) {
+    int index = keyNumToIndex(keyNum);
+    return index == -1 ? 0.0 : values[index];
+  }
+
+  /**
+   * A builder for {@code HashIndexedSparseTensor}s, which is identical
+   * to {@code SparseTensorBuilder} except that {@code build()} indexes
+   * the constructed tensor.
+   *
+   * @author jayantk
+   */
+  private static class HashIndexedSparseTensorBuilder extends SparseTensorBuilder {
+    private static final long serialVersionUID = 1L;
+
+    public HashIndexedSparseTensorBuilder(int[] dimensionNums, int[] dimensionSizes) {
+      super(dimensionNums, dimensionSizes);
+    }
+
+    @Override
+    public HashIndexedSparseTensor build() {
+      return HashIndexedSparseTensor.fromTensor(super.build());
+    }
+  }
+
+  private static class HashIndexedSparseTensorFactory implements TensorFactory {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public TensorBuilder getBuilder(int[] dimNums, int[] dimSizes) {
+      return new HashIndexedSparseTensorBuilder(dimNums, dimSizes);
+    }
+  }
+}
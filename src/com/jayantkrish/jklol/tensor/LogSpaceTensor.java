@@ -0,0 +1,942 @@
+package com.jayantkrish.jklol.tensor;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import com.google.common.base.Preconditions;
+import com.google.common.primitives.Ints;
+import com.jayantkrish.jklol.util.ArrayUtils;
+import com.jayantkrish.jklol.util.HeapUtils;
+
+/**
+ * Immutable tensor which stores the logarithm of each of its values.
+ * Unlike {@link LogSpaceTensorAdapter}, which exponentiates its
+ * weights for most operations, the common operations of probabilistic
+ * inference are performed directly on the log values: products are
+ * computed by adding log values, and sums (e.g.,
+ * {@link #sumOutDimensions(Collection)}) are computed using a
+ * numerically stable, single-pass logsumexp. The results of these
+ * operations are also {@code LogSpaceTensor}s, so long chains of
+ * products and sums never leave log space. Other operations convert
+ * this tensor to an ordinary tensor using {@link #toTensor()}.
+ * <p>
+ * A {@code LogSpaceTensor} is either dense, storing a log value for
+ * every key, or sparse, storing log values for a sorted list of keys.
+ * The missing keys of a sparse tensor have value 0 (i.e., log value
+ * negative infinity). Since log values are stored, a
+ * {@code LogSpaceTensor} cannot contain negative values.
+ *
+ * @author jayantk
+ */
+public class LogSpaceTensor extends AbstractTensor {
+
+  private static final long serialVersionUID = 1L;
+
+  // keyNums is null if this tensor is dense, in which case the index
+  // of each value is its keyNum.
+  private final long[] keyNums;
+  private final double[] logValues;
+
+  private LogSpaceTensor(int[] dimensionNums, int[] dimensionSizes, long[] keyNums,
+      double[] logValues) {
+    super(dimensionNums, dimensionSizes);
+    Preconditions.checkArgument(keyNums == null || keyNums.length == logValues.length);
+    Preconditions.checkArgument(keyNums != null || logValues.length == getMaxKeyNum());
+    this.keyNums = keyNums;
+    this.logValues = logValues;
+  }
+
+  /**
+   * Gets a {@code LogSpaceTensor} with the same values as
+   * {@code tensor}, which must be nonnegative. If {@code tensor}
+   * contains a value for every key, the returned tensor is dense;
+   * otherwise it is sparse, omitting any zero values.
+   *
+   * @param tensor
+   * @return
+   */
+  public static LogSpaceTensor fromTensor(Tensor tensor) {
+    if (tensor instanceof LogSpaceTensor) {
+      return (LogSpaceTensor) tensor;
+    }
+
+    int size = tensor.size();
+    if (size == tensor.getMaxKeyNum()) {
+      double[] logValues = new double[size];
+      for (int i = 0; i < size; i++) {
+        double value = tensor.getByIndex(i);
+        Preconditions.checkArgument(value >= 0.0, "LogSpaceTensor values must be nonnegative");
+        logValues[i] = Math.log(value);
+      }
+      return new LogSpaceTensor(tensor.getDimensionNumbers(), tensor.getDimensionSizes(),
+          null, logValues);
+    }
+
+    long[] keyNums = new long[size];
+    double[] logValues = new double[size];
+    int numFilled = 0;
+    for (int i = 0; i < size; i++) {
+      double value = tensor.getByIndex(i);
+      Preconditions.checkArgument(value >= 0.0, "LogSpaceTensor values must be nonnegative");
+      if (value != 0.0) {
+        keyNums[numFilled] = tensor.indexToKeyNum(i);
+        logValues[numFilled] = Math.log(value);
+        numFilled++;
+      }
+    }
+    return new LogSpaceTensor(tensor.getDimensionNumbers(), tensor.getDimensionSizes(),
+        ArrayUtils.copyOf(keyNums, numFilled), ArrayUtils.copyOf(logValues, numFilled));
+  }
+
+  /**
+   * Gets a {@code LogSpaceTensor} whose log values are the values of
+   * {@code logWeights}. If {@code logWeights} contains a value for
+   * every key, the returned tensor is dense; otherwise the returned
+   * tensor is sparse, and the keys missing from {@code logWeights}
+   * have value 0 in the returned tensor. Note that this differs from
+   * interpreting the missing keys' log weights as 0.
+   *
+   * @param logWeights
+   * @return
+   */
+  public static LogSpaceTensor fromLogWeights(Tensor logWeights) {
+    int size = logWeights.size();
+    double[] logValues = (logWeights instanceof DenseTensor) ? logWeights.getValues()
+        : new double[size];
+    long[] keyNums = null;
+    if (size != logWeights.getMaxKeyNum()) {
+      keyNums = new long[size];
+      for (int i = 0; i < size; i++) {
+        keyNums[i] = logWeights.indexToKeyNum(i);
+      }
+    }
+
+    if (!(logWeights instanceof DenseTensor)) {
+      for (int i = 0; i < size; i++) {
+        logValues[i] = logWeights.getByIndex(i);
+      }
+    }
+    return new LogSpaceTensor(logWeights.getDimensionNumbers(),
+        logWeights.getDimensionSizes(), keyNums, logValues);
+  }
+
+  /**
+   * Returns {@code true} if this tensor stores a value for every key.
+   *
+   * @return
+   */
+  public boolean isDense() {
+    return keyNums == null;
+  }
+
+  /**
+   * Gets an ordinary (i.e., not log space) tensor containing the
+   * values of this tensor. The returned tensor is a
+   * {@code DenseTensor} if this tensor is dense, and a
+   * {@code SparseTensor} otherwise. Values which are too large or
+   * small to be represented outside of log space overflow or
+   * underflow.
+   *
+   * @return
+   */
+  public Tensor toTensor() {
+    if (isDense()) {
+      return new DenseTensor(getDimensionNumbers(), getDimensionSizes(), getValues());
+    } else {
+      return new SparseTensor(getDimensionNumbers(), getDimensionSizes(), keyNums, getValues());
+    }
+  }
+
+  /**
+   * Gets a tensor with the same keys as this whose values are the log
+   * values of this.
+   */
+  private Tensor getLogValueTensor() {
+    if (isDense()) {
+      return new DenseTensor(getDimensionNumbers(), getDimensionSizes(), logValues);
+    } else {
+      return new SparseTensor(getDimensionNumbers(), getDimensionSizes(), keyNums, logValues);
+    }
+  }
+
+  // /////////////////////////////////////////////////////////////////
+  // Inherited from TensorBase
+  // /////////////////////////////////////////////////////////////////
+
+  @Override
+  public int size() {
+    return logValues.length;
+  }
+
+  @Override
+  public double getByIndex(int index) {
+    if (index == -1) {
+      return 0.0;
+    }
+    return Math.exp(logValues[index]);
+  }
+
+  @Override
+  public double getLogByIndex(int index) {
+    if (index == -1) {
+      return Double.NEGATIVE_INFINITY;
+    }
+    return logValues[index];
+  }
+
+  @Override
+  public long indexToKeyNum(int index) {
+    return isDense() ? index : keyNums[index];
+  }
+
+  @Override
+  public int keyNumToIndex(long keyNum) {
+    if (isDense()) {
+      return (int) keyNum;
+    }
+    int index = Arrays.binarySearch(keyNums, keyNum);
+    return index >= 0 ? index : -1;
+  }
+
+  @Override
+  public int getNearestIndex(long keyNum) {
+    if (isDense()) {
+      return (int) keyNum;
+    }
+    int index = Arrays.binarySearch(keyNums, keyNum);
+    return index >= 0 ? index : -1 * (index + 1);
+  }
+
+  @Override
+  public Iterator<KeyValue> keyValueIterator() {
+    return new LogSpaceKeyValueIterator(0, size());
+  }
+
+  @Override
+  public Iterator<KeyValue> keyValuePrefixIterator(int[] keyPrefix) {
+    if (keyPrefix.length == 0) {
+      return keyValueIterator();
+    }
+
+    long startKeyNum = dimKeyPrefixToKeyNum(keyPrefix);
+    long endKeyNum = startKeyNum + indexOffsets[keyPrefix.length - 1];
+    return new LogSpaceKeyValueIterator(getNearestIndex(startKeyNum), getNearestIndex(endKeyNum));
+  }
+
+  @Override
+  public double getL2Norm() {
+    return Math.sqrt(Math.exp(logSumExp(logValues, 2.0)));
+  }
+
+  @Override
+  public double getTrace() {
+    return Math.exp(logSumExp(logValues, 1.0));
+  }
+
+  @Override
+  public long[] getLargestValues(int n) {
+    long[] largestKeyIndexes = HeapUtils.findLargestItemIndexes(logValues, n);
+    long[] largestKeyNums = new long[largestKeyIndexes.length];
+    for (int i = 0; i < largestKeyIndexes.length; i++) {
+      largestKeyNums[i] = indexToKeyNum((int) largestKeyIndexes[i]);
+    }
+    return largestKeyNums;
+  }
+
+  // /////////////////////////////////////////////////////////////////
+  // Inherited from Tensor
+  // /////////////////////////////////////////////////////////////////
+
+  /**
+   * Returns the (exponentiated) values of this tensor. Modifying the
+   * returned array does not affect this tensor.
+   */
+  @Override
+  public double[] getValues() {
+    double[] values = new double[logValues.length];
+    for (int i = 0; i < logValues.length; i++) {
+      values[i] = Math.exp(logValues[i]);
+    }
+    return values;
+  }
+
+  @Override
+  public LogSpaceTensor slice(int[] dimensionNumbers, int[] key) {
+    if (dimensionNumbers.length == 0) {
+      return this;
+    }
+    if (isDense()) {
+      return fromLogWeights(getLogValueTensor().slice(dimensionNumbers, key));
+    }
+
+    // Retain the keys which agree with key on dimensionNumbers.
+    int[] myDims = getDimensionNumbers();
+    int[] mySizes = getDimensionSizes();
+    int[] slicedIndexes = new int[dimensionNumbers.length];
+    for (int i = 0; i < dimensionNumbers.length; i++) {
+      slicedIndexes[i] = getDimensionIndex(dimensionNumbers[i]);
+      Preconditions.checkArgument(slicedIndexes[i] >= 0);
+    }
+    int[] keptDims = new int[myDims.length - dimensionNumbers.length];
+    int[] keptSizes = new int[keptDims.length];
+    int[] keptIndexes = new int[keptDims.length];
+    int numKept = 0;
+    for (int i = 0; i < myDims.length; i++) {
+      if (!Ints.contains(dimensionNumbers, myDims[i])) {
+        keptDims[numKept] = myDims[i];
+        keptSizes[numKept] = mySizes[i];
+        keptIndexes[numKept] = i;
+        numKept++;
+      }
+    }
+    long[] keptOffsets = computeIndexOffsets(keptSizes);
+
+    long[] resultKeyNums = new long[keyNums.length];
+    double[] resultLogValues = new double[keyNums.length];
+    int resultInd = 0;
+    outerloop: for (int i = 0; i < keyNums.length; i++) {
+      long keyNum = keyNums[i];
+      for (int j = 0; j < slicedIndexes.length; j++) {
+        if ((keyNum / indexOffsets[slicedIndexes[j]]) % mySizes[slicedIndexes[j]] != key[j]) {
+          continue outerloop;
+        }
+      }
+
+      long resultKeyNum = 0;
+      for (int j = 0; j < keptIndexes.length; j++) {
+        resultKeyNum += ((keyNum / indexOffsets[keptIndexes[j]]) % mySizes[keptIndexes[j]])
+            * keptOffsets[j];
+      }
+      resultKeyNums[resultInd] = resultKeyNum;
+      resultLogValues[resultInd] = logValues[i];
+      resultInd++;
+    }
+    return new LogSpaceTensor(keptDims, keptSizes, ArrayUtils.copyOf(resultKeyNums, resultInd),
+        ArrayUtils.copyOf(resultLogValues, resultInd));
+  }
+
+  @Override
+  public LogSpaceTensor retainKeys(Tensor indicatorTensor) {
+    return elementwiseProduct(indicatorTensor);
+  }
+
+  @Override
+  public Tensor findKeysLargerThan(double thresholdValue) {
+    double logThreshold = Math.log(thresholdValue);
+    long[] resultKeyNums = new long[logValues.length];
+    double[] resultValues = new double[logValues.length];
+    int resultInd = 0;
+    for (int i = 0; i < logValues.length; i++) {
+      if (logValues[i] > logThreshold) {
+        resultKeyNums[resultInd] = indexToKeyNum(i);
+        resultValues[resultInd] = 1.0;
+        resultInd++;
+      }
+    }
+    return new SparseTensor(getDimensionNumbers(), getDimensionSizes(),
+        ArrayUtils.copyOf(resultKeyNums, resultInd), ArrayUtils.copyOf(resultValues, resultInd));
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * This implementation adds the log values of {@code this} and
+   * {@code other}. If {@code other} is not a {@code LogSpaceTensor},
+   * its values are converted to log space as they are read.
+   */
+  @Override
+  public LogSpaceTensor elementwiseProduct(Tensor other) {
+    int[] myDims = getDimensionNumbers();
+    int[] otherDims = other.getDimensionNumbers();
+    checkDimensionsSuperset(other);
+
+    int length = logValues.length;
+    double[] resultLogValues = new double[length];
+    LogSpaceTensor logOther = (other instanceof LogSpaceTensor) ? (LogSpaceTensor) other : null;
+    if (isDense() && logOther != null && logOther.isDense() && Arrays.equals(myDims, otherDims)) {
+      for (int i = 0; i < length; i++) {
+        resultLogValues[i] = logValues[i] + logOther.logValues[i];
+      }
+      return new LogSpaceTensor(myDims, getDimensionSizes(), null, resultLogValues);
+    }
+
+    long[][] mapping = SparseTensor.getKeyNumMapping(myDims, getDimensionSizes(), otherDims);
+    long[] divisors = mapping[0];
+    long[] modulos = mapping[1];
+    long[] multipliers = mapping[2];
+    long[] resultKeyNums = isDense() ? null : new long[length];
+    int resultInd = 0;
+    for (int i = 0; i < length; i++) {
+      long keyNum = indexToKeyNum(i);
+      long otherKeyNum = 0;
+      for (int j = 0; j < divisors.length; j++) {
+        otherKeyNum += ((keyNum / divisors[j]) % modulos[j]) * multipliers[j];
+      }
+      double otherLogValue = (logOther != null) ? logOther.getLog(otherKeyNum)
+          : Math.log(other.get(otherKeyNum));
+      double logValue = logValues[i] + otherLogValue;
+
+      if (isDense()) {
+        resultLogValues[i] = logValue;
+      } else if (logValue != Double.NEGATIVE_INFINITY) {
+        resultKeyNums[resultInd] = keyNum;
+        resultLogValues[resultInd] = logValue;
+        resultInd++;
+      }
+    }
+
+    if (isDense()) {
+      return new LogSpaceTensor(myDims, getDimensionSizes(), null, resultLogValues);
+    } else {
+      return new LogSpaceTensor(myDims, getDimensionSizes(),
+          ArrayUtils.copyOf(resultKeyNums, resultInd),
+          ArrayUtils.copyOf(resultLogValues, resultInd));
+    }
+  }
+
+  @Override
+  public LogSpaceTensor elementwiseProduct(double constant) {
+    Preconditions.checkArgument(constant >= 0.0, "LogSpaceTensor values must be nonnegative");
+    double logConstant = Math.log(constant);
+    if (!isDense() && constant == 0.0) {
+      return new LogSpaceTensor(getDimensionNumbers(), getDimensionSizes(), new long[0],
+          new double[0]);
+    }
+
+    double[] resultLogValues = new double[logValues.length];
+    for (int i = 0; i < logValues.length; i++) {
+      resultLogValues[i] = logValues[i] + logConstant;
+    }
+    return new LogSpaceTensor(getDimensionNumbers(), getDimensionSizes(), keyNums,
+        resultLogValues);
+  }
+
+  @Override
+  public LogSpaceTensor innerProduct(Tensor other) {
+    return elementwiseProduct(other).sumOutDimensions(Ints.asList(other.getDimensionNumbers()));
+  }
+
+  @Override
+  public Tensor matrixInnerProduct(Tensor other) {
+    return toTensor().matrixInnerProduct(other);
+  }
+
+  @Override
+  public Tensor outerProduct(Tensor other) {
+    return toTensor().outerProduct(other);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * If {@code other} is a {@code LogSpaceTensor} with the same
+   * dimensions as this, the sum is computed in log space.
+   */
+  @Override
+  public Tensor elementwiseAddition(Tensor other) {
+    if (other instanceof LogSpaceTensor
+        && Arrays.equals(getDimensionNumbers(), other.getDimensionNumbers())) {
+      return merge((LogSpaceTensor) other, true);
+    }
+    return toTensor().elementwiseAddition(other);
+  }
+
+  @Override
+  public Tensor elementwiseAddition(double value) {
+    return toTensor().elementwiseAddition(value);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * If {@code other} is a {@code LogSpaceTensor} with the same
+   * dimensions as this, the maximum is computed in log space.
+   */
+  @Override
+  public Tensor elementwiseMaximum(Tensor other) {
+    if (other instanceof LogSpaceTensor
+        && Arrays.equals(getDimensionNumbers(), other.getDimensionNumbers())) {
+      return merge((LogSpaceTensor) other, false);
+    }
+    return toTensor().elementwiseMaximum(other);
+  }
+
+  /**
+   * Computes the elementwise sum (if {@code useSum}) or maximum of
+   * {@code this} and {@code other}, which must have the same
+   * dimensions.
+   */
+  private LogSpaceTensor merge(LogSpaceTensor other, boolean useSum) {
+    Preconditions.checkArgument(Arrays.equals(getDimensionSizes(), other.getDimensionSizes()));
+    int mySize = size();
+    int otherSize = other.size();
+    long[] resultKeyNums = new long[mySize + otherSize];
+    double[] resultLogValues = new double[mySize + otherSize];
+
+    int myInd = 0, otherInd = 0, resultInd = 0;
+    while (myInd < mySize || otherInd < otherSize) {
+      long myKeyNum = (myInd < mySize) ? indexToKeyNum(myInd) : Long.MAX_VALUE;
+      long otherKeyNum = (otherInd < otherSize) ? other.indexToKeyNum(otherInd) : Long.MAX_VALUE;
+      if (myKeyNum == otherKeyNum) {
+        double myLogValue = logValues[myInd];
+        double otherLogValue = other.logValues[otherInd];
+        resultKeyNums[resultInd] = myKeyNum;
+        resultLogValues[resultInd] = useSum ? logAddExp(myLogValue, otherLogValue)
+            : Math.max(myLogValue, otherLogValue);
+        myInd++;
+        otherInd++;
+      } else if (myKeyNum < otherKeyNum) {
+        resultKeyNums[resultInd] = myKeyNum;
+        resultLogValues[resultInd] = logValues[myInd];
+        myInd++;
+      } else {
+        resultKeyNums[resultInd] = otherKeyNum;
+        resultLogValues[resultInd] = other.logValues[otherInd];
+        otherInd++;
+      }
+      resultInd++;
+    }
+
+    return new LogSpaceTensor(getDimensionNumbers(), getDimensionSizes(),
+        (isDense() || other.isDense()) ? null : ArrayUtils.copyOf(resultKeyNums, resultInd),
+        ArrayUtils.copyOf(resultLogValues, resultInd));
+  }
+
+  @Override
+  public LogSpaceTensor elementwiseInverse() {
+    double[] resultLogValues = new double[logValues.length];
+    for (int i = 0; i < logValues.length; i++) {
+      // Like other tensors, the inverse of 0 is defined to be 0.
+      resultLogValues[i] = (logValues[i] == Double.NEGATIVE_INFINITY) ? Double.NEGATIVE_INFINITY
+          : -1.0 * logValues[i];
+    }
+    return new LogSpaceTensor(getDimensionNumbers(), getDimensionSizes(), keyNums,
+        resultLogValues);
+  }
+
+  @Override
+  public LogSpaceTensor elementwiseSqrt() {
+    double[] resultLogValues = new double[logValues.length];
+    for (int i = 0; i < logValues.length; i++) {
+      resultLogValues[i] = 0.5 * logValues[i];
+    }
+    return new LogSpaceTensor(getDimensionNumbers(), getDimensionSizes(), keyNums,
+        resultLogValues);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * If this tensor is sparse, the returned tensor is a
+   * {@code SparseTensor} whose missing keys have value 0, as with
+   * {@link SparseTensor#elementwiseLog()}.
+   */
+  @Override
+  public Tensor elementwiseLog() {
+    if (isDense()) {
+      return new DenseTensor(getDimensionNumbers(), getDimensionSizes(),
+          ArrayUtils.copyOf(logValues, logValues.length));
+    } else {
+      return new SparseTensor(getDimensionNumbers(), getDimensionSizes(), keyNums, logValues);
+    }
+  }
+
+  @Override
+  public Tensor elementwiseExp() {
+    return toTensor().elementwiseExp();
+  }
+
+  @Override
+  public Tensor elementwiseTanh() {
+    return toTensor().elementwiseTanh();
+  }
+
+  @Override
+  public LogSpaceTensor elementwiseAbs() {
+    // All values of this tensor are nonnegative.
+    return this;
+  }
+
+  @Override
+  public Tensor elementwiseLaplaceSigmoid(double smoothness) {
+    return toTensor().elementwiseLaplaceSigmoid(smoothness);
+  }
+
+  @Override
+  public Tensor softThreshold(double threshold) {
+    return toTensor().softThreshold(threshold);
+  }
+
+  @Override
+  public Tensor getEntriesLargerThan(double threshold) {
+    return toTensor().getEntriesLargerThan(threshold);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * This implementation computes each sum in log space, using a
+   * streaming logsumexp that makes a single pass over the log values.
+   */
+  @Override
+  public LogSpaceTensor sumOutDimensions(Collection<Integer> dimensionsToEliminate) {
+    return reduceDimensions(dimensionsToEliminate, true, null);
+  }
+
+  @Override
+  public LogSpaceTensor sumOutDimensions(int... dimensionsToEliminate) {
+    return sumOutDimensions(Ints.asList(dimensionsToEliminate));
+  }
+
+  @Override
+  public LogSpaceTensor maxOutDimensions(Collection<Integer> dimensionsToEliminate) {
+    return reduceDimensions(dimensionsToEliminate, false, null);
+  }
+
+  @Override
+  public LogSpaceTensor maxOutDimensions(Collection<Integer> dimensionsToEliminate,
+      Backpointers backpointers) {
+    return reduceDimensions(dimensionsToEliminate, false, backpointers);
+  }
+
+  @Override
+  public Tensor logSumOutDimensions(Collection<Integer> dimensionsToEliminate) {
+    return toTensor().logSumOutDimensions(dimensionsToEliminate);
+  }
+
+  /**
+   * Eliminates {@code dimensionsToEliminate}, either by summing or
+   * maximizing.
+   */
+  private LogSpaceTensor reduceDimensions(Collection<Integer> dimensionsToEliminate,
+      boolean useSum, Backpointers backpointers) {
+    int[] myDims = getDimensionNumbers();
+    int[] mySizes = getDimensionSizes();
+    int numEliminated = 0;
+    for (int i = 0; i < myDims.length; i++) {
+      if (dimensionsToEliminate.contains(myDims[i])) {
+        numEliminated++;
+      }
+    }
+
+    if (numEliminated == 0) {
+      if (backpointers != null) {
+        long[] allKeyNums = new long[size()];
+        for (int i = 0; i < allKeyNums.length; i++) {
+          allKeyNums[i] = indexToKeyNum(i);
+        }
+        backpointers.setBackpointers(allKeyNums, allKeyNums, allKeyNums.length, this);
+      }
+      return this;
+    }
+
+    int[] resultDims = new int[myDims.length - numEliminated];
+    int[] resultSizes = new int[resultDims.length];
+    // resultStrides[i] is the change in the result's keyNum when the
+    // key of dimension i of this tensor increases by 1.
+    long[] resultStrides = new long[myDims.length];
+    long resultLength = 1;
+    int resultDimInd = resultDims.length - 1;
+    for (int i = myDims.length - 1; i >= 0; i--) {
+      if (!dimensionsToEliminate.contains(myDims[i])) {
+        resultDims[resultDimInd] = myDims[i];
+        resultSizes[resultDimInd] = mySizes[i];
+        resultDimInd--;
+        resultStrides[i] = resultLength;
+        resultLength *= mySizes[i];
+      }
+    }
+
+    if (isDense()) {
+      return reduceDense(resultDims, resultSizes, resultStrides, (int) resultLength, useSum,
+          backpointers);
+    } else {
+      return reduceSparse(resultDims, resultSizes, resultStrides, useSum, backpointers);
+    }
+  }
+
+  private LogSpaceTensor reduceDense(int[] resultDims, int[] resultSizes, long[] resultStrides,
+      int resultLength, boolean useSum, Backpointers backpointers) {
+    int[] mySizes = getDimensionSizes();
+    // For sums, the result is maxLogValues[i] + log(scaledSums[i]).
+    double[] maxLogValues = new double[resultLength];
+    double[] scaledSums = useSum ? new double[resultLength] : null;
+    long[] oldBackpointerNums = (backpointers != null) ? new long[resultLength] : null;
+    Arrays.fill(maxLogValues, Double.NEGATIVE_INFINITY);
+    if (oldBackpointerNums != null) {
+      Arrays.fill(oldBackpointerNums, -1L);
+    }
+
+    int[] key = new int[mySizes.length];
+    long resultKeyNum = 0;
+    int lastDim = mySizes.length - 1;
+    for (int i = 0; i < logValues.length; i++) {
+      int resultIndex = (int) resultKeyNum;
+      double logValue = logValues[i];
+      if (useSum) {
+        accumulateLogSum(maxLogValues, scaledSums, resultIndex, logValue);
+      } else if (logValue > maxLogValues[resultIndex]
+          || (oldBackpointerNums != null && oldBackpointerNums[resultIndex] == -1L)) {
+        maxLogValues[resultIndex] = logValue;
+        if (oldBackpointerNums != null) {
+          oldBackpointerNums[resultIndex] = i;
+        }
+      }
+
+      // Advance key to the key of the next value, updating the result's
+      // keyNum.
+      for (int j = lastDim; j >= 0; j--) {
+        key[j]++;
+        resultKeyNum += resultStrides[j];
+        if (key[j] < mySizes[j]) {
+          break;
+        }
+        resultKeyNum -= resultStrides[j] * mySizes[j];
+        key[j] = 0;
+      }
+    }
+
+    if (useSum) {
+      for (int i = 0; i < resultLength; i++) {
+        maxLogValues[i] = finishLogSum(maxLogValues[i], scaledSums[i]);
+      }
+    }
+
+    if (oldBackpointerNums != null) {
+      long[] newBackpointerNums = new long[resultLength];
+      for (int i = 0; i < resultLength; i++) {
+        newBackpointerNums[i] = i;
+      }
+      backpointers.setBackpointers(newBackpointerNums, oldBackpointerNums, resultLength, this);
+    }
+    return new LogSpaceTensor(resultDims, resultSizes, null, maxLogValues);
+  }
+
+  private LogSpaceTensor reduceSparse(int[] resultDims, int[] resultSizes, long[] resultStrides,
+      boolean useSum, Backpointers backpointers) {
+    // Map each key to a key of the result, then group together the
+    // keys which map to the same result key.
+    int length = keyNums.length;
+    long[] mappedKeyNums = new long[length];
+    double[] mappedLogValues = ArrayUtils.copyOf(logValues, length);
+    int[] mySizes = getDimensionSizes();
+    boolean sorted = true;
+    for (int i = 0; i < length; i++) {
+      long keyNum = keyNums[i];
+      long resultKeyNum = 0;
+      for (int j = 0; j < mySizes.length; j++) {
+        if (resultStrides[j] != 0) {
+          resultKeyNum += ((keyNum / indexOffsets[j]) % mySizes[j]) * resultStrides[j];
+        }
+      }
+      mappedKeyNums[i] = resultKeyNum;
+      sorted = sorted && (i == 0 || mappedKeyNums[i - 1] <= resultKeyNum);
+    }
+
+    if (!sorted) {
+      ArrayUtils.sortKeyValuePairs(mappedKeyNums, mappedLogValues, 0, length);
+    }
+
+    long[] resultKeyNums = new long[length];
+    double[] maxLogValues = new double[length];
+    double[] scaledSums = useSum ? new double[length] : null;
+    int resultInd = -1;
+    for (int i = 0; i < length; i++) {
+      if (resultInd == -1 || mappedKeyNums[i] != resultKeyNums[resultInd]) {
+        resultInd++;
+        resultKeyNums[resultInd] = mappedKeyNums[i];
+        maxLogValues[resultInd] = Double.NEGATIVE_INFINITY;
+      }
+
+      if (useSum) {
+        accumulateLogSum(maxLogValues, scaledSums, resultInd, mappedLogValues[i]);
+      } else if (mappedLogValues[i] > maxLogValues[resultInd]) {
+        maxLogValues[resultInd] = mappedLogValues[i];
+      }
+    }
+    int resultSize = resultInd + 1;
+
+    // Remove any zero values from the result.
+    int numFilled = 0;
+    for (int i = 0; i < resultSize; i++) {
+      double logValue = useSum ? finishLogSum(maxLogValues[i], scaledSums[i]) : maxLogValues[i];
+      if (logValue != Double.NEGATIVE_INFINITY) {
+        resultKeyNums[numFilled] = resultKeyNums[i];
+        maxLogValues[numFilled] = logValue;
+        numFilled++;
+      }
+    }
+    LogSpaceTensor result = new LogSpaceTensor(resultDims, resultSizes,
+        ArrayUtils.copyOf(resultKeyNums, numFilled), ArrayUtils.copyOf(maxLogValues, numFilled));
+
+    if (backpointers != null) {
+      // Sorting loses the original keyNum of each value, so find the
+      // first key of this with the maximum value for each key of the
+      // result in a second pass.
+      long[] oldBackpointerNums = new long[numFilled];
+      Arrays.fill(oldBackpointerNums, -1L);
+      for (int i = 0; i < length; i++) {
+        long keyNum = keyNums[i];
+        long resultKeyNum = 0;
+        for (int j = 0; j < mySizes.length; j++) {
+          resultKeyNum += ((keyNum / indexOffsets[j]) % mySizes[j]) * resultStrides[j];
+        }
+        int index = result.keyNumToIndex(resultKeyNum);
+        if (index != -1 && oldBackpointerNums[index] == -1L
+            && logValues[i] == result.logValues[index]) {
+          oldBackpointerNums[index] = keyNum;
+        }
+      }
+      backpointers.setBackpointers(result.keyNums, oldBackpointerNums, numFilled, this);
+    }
+    return result;
+  }
+
+  /**
+   * Adds {@code logValue} to a streaming logsumexp. The running sum is
+   * {@code exp(maxLogValues[index]) * scaledSums[index]}, where
+   * {@code maxLogValues[index]} is the largest log value added so far.
+   * Scaling by the maximum keeps each term of the sum at most 1, which
+   * prevents overflow.
+   */
+  private static void accumulateLogSum(double[] maxLogValues, double[] scaledSums, int index,
+      double logValue) {
+    double maxLogValue = maxLogValues[index];
+    if (logValue > maxLogValue) {
+      scaledSums[index] = scaledSums[index] * Math.exp(maxLogValue - logValue) + 1.0;
+      maxLogValues[index] = logValue;
+    } else if (logValue != Double.NEGATIVE_INFINITY) {
+      scaledSums[index] += Math.exp(logValue - maxLogValue);
+    }
+  }
+
+  private static double finishLogSum(double maxLogValue, double scaledSum) {
+    if (maxLogValue == Double.NEGATIVE_INFINITY) {
+      return Double.NEGATIVE_INFINITY;
+    }
+    return maxLogValue + Math.log(scaledSum);
+  }
+
+  /**
+   * Computes {@code log(sum_i exp(logValues[i] * power))}.
+   */
+  private static double logSumExp(double[] logValues, double power) {
+    double[] maxLogValue = new double[] {Double.NEGATIVE_INFINITY};
+    double[] scaledSum = new double[1];
+    for (int i = 0; i < logValues.length; i++) {
+      accumulateLogSum(maxLogValue, scaledSum, 0, logValues[i] * power);
+    }
+    return finishLogSum(maxLogValue[0], scaledSum[0]);
+  }
+
+  private static double logAddExp(double first, double second) {
+    if (first == Double.NEGATIVE_INFINITY) {
+      return second;
+    } else if (second == Double.NEGATIVE_INFINITY) {
+      return first;
+    }
+    double max = Math.max(first, second);
+    return max + Math.log1p(Math.exp(-1.0 * Math.abs(first - second)));
+  }
+
+  /**
+   * Checks that the dimensions of {@code this} are a superset of the
+   * dimensions of {@code other}, and that shared dimensions have the
+   * same size.
+   */
+  private void checkDimensionsSuperset(Tensor other) {
+    int[] otherDims = other.getDimensionNumbers();
+    int[] otherSizes = other.getDimensionSizes();
+    int[] mySizes = getDimensionSizes();
+    for (int i = 0; i < otherDims.length; i++) {
+      int index = getDimensionIndex(otherDims[i]);
+      Preconditions.checkArgument(index >= 0, "Dimensions not a superset");
+      Preconditions.checkArgument(mySizes[index] == otherSizes[i],
+          "Tensor dimension sizes do not agree: %s and %s", Ints.asList(mySizes),
+          Ints.asList(otherSizes));
+    }
+  }
+
+  @Override
+  public LogSpaceTensor relabelDimensions(int[] newDimensions) {
+    return fromLogWeights(getLogValueTensor().relabelDimensions(newDimensions));
+  }
+
+  @Override
+  public LogSpaceTensor relabelDimensions(Map<Integer, Integer> relabeling) {
+    return fromLogWeights(getLogValueTensor().relabelDimensions(relabeling));
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * {@code values} are ordinary (not log space) values, and must be
+   * nonnegative.
+   */
+  @Override
+  public LogSpaceTensor replaceValues(double[] values) {
+    Preconditions.checkArgument(values.length == logValues.length);
+    double[] newLogValues = new double[values.length];
+    for (int i = 0; i < values.length; i++) {
+      Preconditions.checkArgument(values[i] >= 0.0, "LogSpaceTensor values must be nonnegative");
+      newLogValues[i] = Math.log(values[i]);
+    }
+    return new LogSpaceTensor(getDimensionNumbers(), getDimensionSizes(), keyNums, newLogValues);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("<");
+    for (int i = 0; i < logValues.length; i++) {
+      sb.append(Arrays.toString(keyNumToDimKey(indexToKeyNum(i))));
+      sb.append(" : log ");
+      sb.append(logValues[i]);
+      if (i != logValues.length - 1) {
+        sb.append(", ");
+      }
+    }
+    sb.append(">");
+    return sb.toString();
+  }
+
+  /**
+   * Iterates over the keys and (exponentiated) values of a range of
+   * indexes of this tensor.
+   */
+  private class LogSpaceKeyValueIterator implements Iterator<KeyValue> {
+    private int curIndex;
+    private final int finalIndex;
+    private final KeyValue keyValue;
+
+    public LogSpaceKeyValueIterator(int initialIndex, int finalIndex) {
+      this.curIndex = initialIndex;
+      this.finalIndex = finalIndex;
+      this.keyValue = new KeyValue(new int[numDimensions()], 0.0);
+    }
+
+    @Override
+    public boolean hasNext() {
+      return curIndex < finalIndex;
+    }
+
+    @Override
+    public KeyValue next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      keyNumToDimKey(indexToKeyNum(curIndex), keyValue.getKey());
+      keyValue.setValue(getByIndex(curIndex));
+      curIndex++;
+      return keyValue;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
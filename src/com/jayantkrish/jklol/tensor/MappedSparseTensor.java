@@ -0,0 +1,628 @@
+package com.jayantkrish.jklol.tensor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Ordering;
+import com.google.common.primitives.Ints;
+import com.jayantkrish.jklol.util.ArrayUtils;
+import com.jayantkrish.jklol.util.HeapUtils;
+
+/**
+ * Sparse tensor whose keys and values are stored off-heap, in a
+ * memory-mapped file. This tensor is intended for very large, read-only
+ * parameter tables: opening the file is nearly instantaneous (no
+ * deserialization is performed), the tensor does not consume Java heap
+ * space, and multiple processes that open the same file share a single
+ * copy of its contents through the operating system's page cache.
+ * <p>
+ * Lookups ({@link #get(long)}, {@link #getByDimKey(int...)},
+ * {@link #keyNumToIndex(long)}) and iteration read directly from the
+ * mapped file, as does {@link #slice(int[], int[])} when the sliced
+ * dimensions are the leading dimensions of this tensor; such slices are
+ * views that share the mapped file. All other operations copy this
+ * tensor into a {@link SparseTensor} on the heap and return the result
+ * of performing the operation on the copy.
+ * <p>
+ * The file format is a header followed by two sorted columns. All
+ * numbers are big-endian.
+ * <pre>
+ *   int magic, int version, int numDimensions,
+ *   int[numDimensions] dimensionNumbers, int[numDimensions] dimensionSizes,
+ *   long numEntries, (padding to a multiple of 8 bytes),
+ *   long[numEntries] keyNums, double[numEntries] values
+ * </pre>
+ * Files in this format are created using {@link #write}.
+ * <p>
+ * This class is not available in GWT, which cannot map files; it is
+ * excluded from the GWT module.
+ *
+ * @author jayantk
+ */
+public class MappedSparseTensor extends AbstractTensor {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final int MAGIC = 0x4a4b5354;
+  private static final int VERSION = 1;
+
+  // A single mapped buffer cannot exceed 2GB, so the columns are
+  // mapped in chunks of this many entries.
+  private static final int CHUNK_BITS = 27;
+  private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private final String filename;
+  private final transient LongBuffer[] keyChunks;
+  private final transient DoubleBuffer[] valueChunks;
+
+  // This tensor contains the entries [startIndex, startIndex + size) of
+  // the mapped columns, whose keys are offset by keyNumOffset. Slices
+  // share the columns of the tensor they are sliced from.
+  private final long startIndex;
+  private final int size;
+  private final long keyNumOffset;
+
+  private MappedSparseTensor(int[] dimensionNums, int[] dimensionSizes, String filename,
+      LongBuffer[] keyChunks, DoubleBuffer[] valueChunks, long startIndex, int size,
+      long keyNumOffset) {
+    super(dimensionNums, dimensionSizes);
+    this.filename = Preconditions.checkNotNull(filename);
+    this.keyChunks = Preconditions.checkNotNull(keyChunks);
+    this.valueChunks = Preconditions.checkNotNull(valueChunks);
+    this.startIndex = startIndex;
+    this.size = size;
+    this.keyNumOffset = keyNumOffset;
+  }
+
+  /**
+   * Memory-maps the tensor stored in {@code filename}, which must have
+   * been created by {@link #write}. The file must not be modified while
+   * the returned tensor is in use.
+   *
+   * @param filename
+   * @return
+   */
+  public static MappedSparseTensor open(String filename) {
+    RandomAccessFile file = null;
+    try {
+      file = new RandomAccessFile(filename, "r");
+      FileChannel channel = file.getChannel();
+
+      ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+          Math.min(channel.size(), 12));
+      Preconditions.checkArgument(header.remaining() == 12 && header.getInt() == MAGIC,
+          "%s is not a mapped tensor file.", filename);
+      int version = header.getInt();
+      Preconditions.checkArgument(version == VERSION,
+          "%s has unsupported version %s", filename, version);
+      int numDimensions = header.getInt();
+
+      int headerSize = getHeaderSize(numDimensions);
+      header = channel.map(FileChannel.MapMode.READ_ONLY, 12, headerSize - 12);
+      int[] dimensionNums = new int[numDimensions];
+      int[] dimensionSizes = new int[numDimensions];
+      for (int i = 0; i < numDimensions; i++) {
+        dimensionNums[i] = header.getInt();
+      }
+      for (int i = 0; i < numDimensions; i++) {
+        dimensionSizes[i] = header.getInt();
+      }
+      long numEntries = header.getLong();
+      Preconditions.checkArgument(numEntries <= Integer.MAX_VALUE,
+          "%s has too many entries: %s", filename, numEntries);
+      Preconditions.checkArgument(channel.size() == headerSize + (16 * numEntries),
+          "%s is truncated.", filename);
+
+      int numChunks = (int) ((numEntries + CHUNK_SIZE - 1) >> CHUNK_BITS);
+      LongBuffer[] keyChunks = new LongBuffer[numChunks];
+      DoubleBuffer[] valueChunks = new DoubleBuffer[numChunks];
+      long valueStart = headerSize + (8 * numEntries);
+      for (int i = 0; i < numChunks; i++) {
+        long chunkStart = ((long) i) << CHUNK_BITS;
+        long chunkEntries = Math.min(CHUNK_SIZE, numEntries - chunkStart);
+        keyChunks[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+            headerSize + (8 * chunkStart), 8 * chunkEntries).asLongBuffer();
+        valueChunks[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+            valueStart + (8 * chunkStart), 8 * chunkEntries).asDoubleBuffer();
+      }
+
+      // The mappings remain valid after the file is closed.
+      return new MappedSparseTensor(dimensionNums, dimensionSizes,
+          new File(filename).getAbsolutePath(), keyChunks, valueChunks, 0, (int) numEntries, 0);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    } finally {
+      closeQuietly(file);
+    }
+  }
+
+  /**
+   * Writes {@code tensor} to {@code filename} in the format read by
+   * {@link #open}. Any existing file with that name is overwritten.
+   *
+   * @param tensor
+   * @param filename
+   */
+  public static void write(TensorBase tensor, String filename) {
+    int[] dimensionNums = tensor.getDimensionNumbers();
+    int[] dimensionSizes = tensor.getDimensionSizes();
+    Preconditions.checkArgument(Ordering.natural().isOrdered(Ints.asList(dimensionNums)));
+    int numEntries = tensor.size();
+    int headerSize = getHeaderSize(dimensionNums.length);
+
+    RandomAccessFile file = null;
+    try {
+      file = new RandomAccessFile(filename, "rw");
+      file.setLength(0);
+      FileChannel channel = file.getChannel();
+
+      ByteBuffer header = ByteBuffer.allocate(headerSize);
+      header.putInt(MAGIC).putInt(VERSION).putInt(dimensionNums.length);
+      for (int i = 0; i < dimensionNums.length; i++) {
+        header.putInt(dimensionNums[i]);
+      }
+      for (int i = 0; i < dimensionSizes.length; i++) {
+        header.putInt(dimensionSizes[i]);
+      }
+      header.putLong(numEntries);
+      header.rewind();
+      writeFully(channel, header);
+
+      // Keys and values are each written in a single pass over the
+      // tensor through a small staging buffer.
+      ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+      long previousKeyNum = -1;
+      for (int i = 0; i < numEntries; i++) {
+        long keyNum = tensor.indexToKeyNum(i);
+        Preconditions.checkArgument(keyNum > previousKeyNum, "Keys must be sorted.");
+        previousKeyNum = keyNum;
+        if (!buffer.hasRemaining()) {
+          buffer.flip();
+          writeFully(channel, buffer);
+          buffer.clear();
+        }
+        buffer.putLong(keyNum);
+      }
+      buffer.flip();
+      writeFully(channel, buffer);
+      buffer.clear();
+
+      for (int i = 0; i < numEntries; i++) {
+        if (!buffer.hasRemaining()) {
+          buffer.flip();
+          writeFully(channel, buffer);
+          buffer.clear();
+        }
+        buffer.putDouble(tensor.getByIndex(i));
+      }
+      buffer.flip();
+      writeFully(channel, buffer);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    } finally {
+      closeQuietly(file);
+    }
+  }
+
+  private static int getHeaderSize(int numDimensions) {
+    int size = 12 + (8 * numDimensions) + 8;
+    // Pad so that the key and value columns are 8-byte aligned.
+    return (size + 7) & ~7;
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  private static void closeQuietly(RandomAccessFile file) {
+    if (file != null) {
+      try {
+        file.close();
+      } catch (IOException e) {
+        // Nothing useful to do here.
+      }
+    }
+  }
+
+  /**
+   * Gets the name of the file backing this tensor.
+   *
+   * @return
+   */
+  public String getFilename() {
+    return filename;
+  }
+
+  /**
+   * Copies the contents of this tensor onto the heap.
+   *
+   * @return
+   */
+  public SparseTensor toSparseTensor() {
+    long[] keyNums = new long[size];
+    double[] values = new double[size];
+    for (int i = 0; i < size; i++) {
+      keyNums[i] = indexToKeyNum(i);
+      values[i] = getByIndex(i);
+    }
+    return new SparseTensor(getDimensionNumbers(), getDimensionSizes(), keyNums, values);
+  }
+
+  private long getRawKeyNum(long index) {
+    return keyChunks[(int) (index >> CHUNK_BITS)].get((int) (index & CHUNK_MASK));
+  }
+
+  private double getRawValue(long index) {
+    return valueChunks[(int) (index >> CHUNK_BITS)].get((int) (index & CHUNK_MASK));
+  }
+
+  // ////////////////////////////////////////////////////////////////////
+  // Inherited from TensorBase
+  // ////////////////////////////////////////////////////////////////////
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public double getByIndex(int index) {
+    if (index == -1) {
+      return 0.0;
+    }
+    return getRawValue(startIndex + index);
+  }
+
+  @Override
+  public double getLogByIndex(int index) {
+    return Math.log(getByIndex(index));
+  }
+
+  @Override
+  public long indexToKeyNum(int index) {
+    return getRawKeyNum(startIndex + index) - keyNumOffset;
+  }
+
+  @Override
+  public int keyNumToIndex(long keyNum) {
+    int index = getNearestIndex(keyNum);
+    return (index < size && indexToKeyNum(index) == keyNum) ? index : -1;
+  }
+
+  @Override
+  public int getNearestIndex(long keyNum) {
+    long rawKeyNum = keyNum + keyNumOffset;
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (getRawKeyNum(startIndex + mid) < rawKeyNum) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  @Override
+  public Iterator<KeyValue> keyValueIterator() {
+    return new MappedKeyValueIterator(0, size);
+  }
+
+  @Override
+  public Iterator<KeyValue> keyValuePrefixIterator(int[] keyPrefix) {
+    if (keyPrefix.length == 0) {
+      return keyValueIterator();
+    }
+
+    long startKeyNum = dimKeyPrefixToKeyNum(keyPrefix);
+    long endKeyNum = startKeyNum + indexOffsets[keyPrefix.length - 1];
+    return new MappedKeyValueIterator(getNearestIndex(startKeyNum), getNearestIndex(endKeyNum));
+  }
+
+  @Override
+  public double getL2Norm() {
+    double sumSquared = 0.0;
+    for (int i = 0; i < size; i++) {
+      double value = getByIndex(i);
+      sumSquared += value * value;
+    }
+    return Math.sqrt(sumSquared);
+  }
+
+  @Override
+  public double getTrace() {
+    double sum = 0.0;
+    for (int i = 0; i < size; i++) {
+      sum += getByIndex(i);
+    }
+    return sum;
+  }
+
+  @Override
+  public long[] getLargestValues(int n) {
+    long[] largestKeyIndexes = HeapUtils.findLargestItemIndexes(getValues(), n);
+    long[] largestKeyNums = new long[largestKeyIndexes.length];
+    for (int i = 0; i < largestKeyIndexes.length; i++) {
+      largestKeyNums[i] = indexToKeyNum((int) largestKeyIndexes[i]);
+    }
+    return largestKeyNums;
+  }
+
+  // /////////////////////////////////////////////////////////////////
+  // Inherited from Tensor
+  // /////////////////////////////////////////////////////////////////
+
+  /**
+   * Returns a copy of the values of this tensor. Modifying the returned
+   * array does not affect this tensor.
+   */
+  @Override
+  public double[] getValues() {
+    double[] values = new double[size];
+    for (int i = 0; i < size; i++) {
+      values[i] = getByIndex(i);
+    }
+    return values;
+  }
+
+  @Override
+  public Tensor slice(int[] dimensionNumbers, int[] key) {
+    if (dimensionNumbers.length == 0) {
+      return this;
+    }
+
+    // Slices on the leading dimensions of this tensor correspond to a
+    // contiguous range of the mapped columns.
+    if (ArrayUtils.subarrayEquals(getDimensionNumbers(), dimensionNumbers, 0)) {
+      long minKeyNum = 0;
+      int numDimensions = dimensionNumbers.length;
+      for (int i = 0; i < numDimensions; i++) {
+        minKeyNum += indexOffsets[i] * key[i];
+      }
+      long maxKeyNum = minKeyNum + indexOffsets[numDimensions - 1];
+
+      int sliceStart = getNearestIndex(minKeyNum);
+      int sliceEnd = getNearestIndex(maxKeyNum);
+
+      int[] dims = getDimensionNumbers();
+      int[] sizes = getDimensionSizes();
+      return new MappedSparseTensor(ArrayUtils.copyOfRange(dims, numDimensions, dims.length),
+          ArrayUtils.copyOfRange(sizes, numDimensions, sizes.length), filename,
+          keyChunks, valueChunks, startIndex + sliceStart, sliceEnd - sliceStart,
+          keyNumOffset + minKeyNum);
+    }
+    return toSparseTensor().slice(dimensionNumbers, key);
+  }
+
+  @Override
+  public Tensor retainKeys(Tensor indicatorTensor) {
+    return toSparseTensor().retainKeys(indicatorTensor);
+  }
+
+  @Override
+  public Tensor findKeysLargerThan(double thresholdValue) {
+    return toSparseTensor().findKeysLargerThan(thresholdValue);
+  }
+
+  @Override
+  public Tensor elementwiseProduct(Tensor other) {
+    return toSparseTensor().elementwiseProduct(other);
+  }
+
+  @Override
+  public Tensor innerProduct(Tensor other) {
+    return toSparseTensor().innerProduct(other);
+  }
+
+  @Override
+  public Tensor matrixInnerProduct(Tensor other) {
+    return toSparseTensor().matrixInnerProduct(other);
+  }
+
+  @Override
+  public Tensor outerProduct(Tensor other) {
+    return toSparseTensor().outerProduct(other);
+  }
+
+  @Override
+  public Tensor elementwiseAddition(Tensor other) {
+    return toSparseTensor().elementwiseAddition(other);
+  }
+
+  @Override
+  public Tensor elementwiseAddition(double value) {
+    return toSparseTensor().elementwiseAddition(value);
+  }
+
+  @Override
+  public Tensor elementwiseMaximum(Tensor other) {
+    return toSparseTensor().elementwiseMaximum(other);
+  }
+
+  @Override
+  public Tensor elementwiseInverse() {
+    return toSparseTensor().elementwiseInverse();
+  }
+
+  @Override
+  public Tensor elementwiseSqrt() {
+    return toSparseTensor().elementwiseSqrt();
+  }
+
+  @Override
+  public Tensor elementwiseLog() {
+    return toSparseTensor().elementwiseLog();
+  }
+
+  @Override
+  public Tensor elementwiseExp() {
+    return toSparseTensor().elementwiseExp();
+  }
+
+  @Override
+  public Tensor elementwiseTanh() {
+    return toSparseTensor().elementwiseTanh();
+  }
+
+  @Override
+  public Tensor elementwiseAbs() {
+    return toSparseTensor().elementwiseAbs();
+  }
+
+  @Override
+  public Tensor elementwiseLaplaceSigmoid(double smoothness) {
+    return toSparseTensor().elementwiseLaplaceSigmoid(smoothness);
+  }
+
+  @Override
+  public Tensor softThreshold(double threshold) {
+    return toSparseTensor().softThreshold(threshold);
+  }
+
+  @Override
+  public Tensor getEntriesLargerThan(double threshold) {
+    return toSparseTensor().getEntriesLargerThan(threshold);
+  }
+
+  @Override
+  public Tensor sumOutDimensions(Collection<Integer> dimensionsToEliminate) {
+    return toSparseTensor().sumOutDimensions(dimensionsToEliminate);
+  }
+
+  @Override
+  public Tensor maxOutDimensions(Collection<Integer> dimensionsToEliminate) {
+    return toSparseTensor().maxOutDimensions(dimensionsToEliminate);
+  }
+
+  @Override
+  public Tensor maxOutDimensions(Collection<Integer> dimensionsToEliminate,
+      Backpointers backpointers) {
+    return toSparseTensor().maxOutDimensions(dimensionsToEliminate, backpointers);
+  }
+
+  @Override
+  public Tensor relabelDimensions(int[] newDimensions) {
+    return toSparseTensor().relabelDimensions(newDimensions);
+  }
+
+  @Override
+  public Tensor relabelDimensions(Map<Integer, Integer> relabeling) {
+    return toSparseTensor().relabelDimensions(relabeling);
+  }
+
+  @Override
+  public Tensor replaceValues(double[] values) {
+    return toSparseTensor().replaceValues(values);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("<");
+    for (int i = 0; i < size; i++) {
+      sb.append(Arrays.toString(keyNumToDimKey(indexToKeyNum(i))));
+      sb.append(" : ");
+      sb.append(getByIndex(i));
+      if (i != size - 1) {
+        sb.append(", ");
+      }
+    }
+    sb.append(">");
+    return sb.toString();
+  }
+
+  /**
+   * Serializes this tensor as a reference to its backing file, which
+   * is mapped again on deserialization. The file must therefore be
+   * accessible (at the same absolute path) to the deserializing process.
+   */
+  private Object writeReplace() throws ObjectStreamException {
+    return new SerializedForm(getDimensionNumbers(), getDimensionSizes(), filename,
+        startIndex, size, keyNumOffset);
+  }
+
+  private static class SerializedForm implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int[] dimensionNums;
+    private final int[] dimensionSizes;
+    private final String filename;
+    private final long startIndex;
+    private final int size;
+    private final long keyNumOffset;
+
+    public SerializedForm(int[] dimensionNums, int[] dimensionSizes, String filename,
+        long startIndex, int size, long keyNumOffset) {
+      this.dimensionNums = dimensionNums;
+      this.dimensionSizes = dimensionSizes;
+      this.filename = filename;
+      this.startIndex = startIndex;
+      this.size = size;
+      this.keyNumOffset = keyNumOffset;
+    }
+
+    private Object readResolve() throws ObjectStreamException {
+      MappedSparseTensor file = open(filename);
+      return new MappedSparseTensor(dimensionNums, dimensionSizes, filename,
+          file.keyChunks, file.valueChunks, startIndex, size, keyNumOffset);
+    }
+  }
+
+  /**
+   * Iterator over the keys and values of a {@code MappedSparseTensor}.
+   * Like {@link SparseKeyValueIterator}, the returned {@code KeyValue}
+   * is reused across calls to {@code next()}.
+   */
+  private class MappedKeyValueIterator implements Iterator<KeyValue> {
+    private int curIndex;
+    private final int finalIndex;
+    private final KeyValue keyValue;
+
+    public MappedKeyValueIterator(int initialIndex, int finalIndex) {
+      this.curIndex = initialIndex;
+      this.finalIndex = finalIndex;
+      this.keyValue = new KeyValue(new int[numDimensions()], 0.0);
+    }
+
+    @Override
+    public boolean hasNext() {
+      return curIndex < finalIndex;
+    }
+
+    @Override
+    public KeyValue next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      // This call mutates the key field of {@code keyValue}.
+      keyNumToDimKey(indexToKeyNum(curIndex), keyValue.getKey());
+      keyValue.setValue(getByIndex(curIndex));
+      curIndex++;
+      return keyValue;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
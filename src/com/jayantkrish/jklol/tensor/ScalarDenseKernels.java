@@ -0,0 +1,62 @@
+package com.jayantkrish.jklol.tensor;
+
+/**
+ * Reference implementation of {@link DenseKernels} using a single loop
+ * per operation. The results of these kernels are identical to the
+ * naive implementation of each operation.
+ * 
+ * @author jayantk
+ */
+public class ScalarDenseKernels extends DenseKernels {
+
+  @Override
+  public double dot(double[] x, int xOffset, double[] y, int yOffset, int length) {
+    double total = 0.0;
+    for (int i = 0; i < length; i++) {
+      total += x[xOffset + i] * y[yOffset + i];
+    }
+    return total;
+  }
+
+  @Override
+  public void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset, int length) {
+    for (int i = 0; i < length; i++) {
+      y[yOffset + i] += alpha * x[xOffset + i];
+    }
+  }
+
+  @Override
+  public void multiply(double[] x, double[] y, double[] dest, int length) {
+    for (int i = 0; i < length; i++) {
+      dest[i] = x[i] * y[i];
+    }
+  }
+
+  @Override
+  public void scale(double alpha, double[] x, double[] dest, int length) {
+    for (int i = 0; i < length; i++) {
+      dest[i] = alpha * x[i];
+    }
+  }
+
+  @Override
+  public void exp(double[] x, double[] dest, int length) {
+    for (int i = 0; i < length; i++) {
+      dest[i] = Math.exp(x[i]);
+    }
+  }
+
+  @Override
+  public void log(double[] x, double[] dest, int length) {
+    for (int i = 0; i < length; i++) {
+      dest[i] = Math.log(x[i]);
+    }
+  }
+
+  @Override
+  public void tanh(double[] x, double[] dest, int length) {
+    for (int i = 0; i < length; i++) {
+      dest[i] = Math.tanh(x[i]);
+    }
+  }
+}
@@ -218,6 +218,6 @@ public class SparseLogSpaceTensorAdapter extends AbstractTensor {
 
   @Override
   public long[] getLargestValues(int n) {
-    throw new UnsupportedOperationException("Not implemented.");
+    return logWeights.getLargestValues(n);
   }
 }
@@ -79,7 +79,7 @@ public class SparseTensor extends AbstractTensor implements Serializable {
   }
 
   @Override
-  public final int keyNumToIndex(long keyNum) {
+  public int keyNumToIndex(long keyNum) {
     int possibleIndex = Arrays.binarySearch(keyNums, keyNum);
     return possibleIndex >= 0 ? possibleIndex : -1;
   }
@@ -227,26 +227,8 @@ public class SparseTensor extends AbstractTensor implements Serializable {
   @Override
   public SparseTensor elementwiseProduct(Tensor other) {
     int[] dimensionNums = getDimensionNumbers();
-    int[] dimensionSizes = getDimensionSizes();
     int[] otherDimensions = other.getDimensionNumbers();
-    int[] otherSizes = other.getDimensionSizes();
-    
-    // Check that dimensionNums contains a superset of otherDimensions
-    int myInd = 0, otherInd = 0;
-    int myLength = dimensionNums.length;
-    int otherLength = otherDimensions.length;
-    while (myInd < myLength && otherInd < otherLength) {
-      if (dimensionNums[myInd] < otherDimensions[otherInd]) {
-        myInd++;
-      } else if (dimensionNums[myInd] == otherDimensions[otherInd]) {
-        Preconditions.checkArgument(dimensionSizes[myInd] == otherSizes[otherInd]);
-        myInd++;
-        otherInd++;
-      } else {
-        // Not a superset.
-        Preconditions.checkArgument(false, "Dimensions not a superset");
-      }
-    }
+    checkDimensionsSuperset(other);
 
     // There are three possible multiplication implementations: an extremely
     // fast one for the case when both sets of dimensions are exactly equal,
@@ -271,6 +253,134 @@ public class SparseTensor extends AbstractTensor implements Serializable {
     }
   }
 
+  /**
+   * {@inheritDoc}
+   * 
+   * This implementation multiplies all of {@code others} into a single
+   * pair of result arrays, instead of constructing an intermediate
+   * tensor for each pairwise product. Entries whose value becomes zero
+   * are removed as soon as they are found, so placing sparse tensors
+   * first in {@code others} reduces the work for the remaining tensors.
+   */
+  @Override
+  public SparseTensor elementwiseProduct(Collection<Tensor> others) {
+    long[] resultKeyNums = ArrayUtils.copyOf(keyNums, keyNums.length);
+    double[] resultValues = ArrayUtils.copyOf(values, values.length);
+    int numFilled = values.length;
+    for (Tensor other : others) {
+      checkDimensionsSuperset(other);
+      numFilled = multiplyInPlace(resultKeyNums, resultValues, numFilled, other);
+    }
+    return resizeIntoTable(getDimensionNumbers(), getDimensionSizes(), resultKeyNums,
+        resultValues, numFilled);
+  }
+
+  /**
+   * Multiplies the first {@code numFilled} entries of {@code keyNums}
+   * and {@code values}, which are the keys and values of a tensor with
+   * the same dimensions as {@code this}, by {@code other}. Entries with
+   * zero value in {@code other} are removed, and the new number of
+   * entries is returned.
+   */
+  private int multiplyInPlace(long[] keyNums, double[] values, int numFilled, Tensor other) {
+    int resultInd = 0;
+    if (other instanceof SparseTensor && isLeftAligned(other)) {
+      // Merge the two sorted key arrays. Other's keyNum for each key is
+      // a prefix of the key, which is nondecreasing in keyNum.
+      long otherKeyNumDivisor = 1;
+      int[] dimensionSizes = getDimensionSizes();
+      for (int i = other.numDimensions(); i < dimensionSizes.length; i++) {
+        otherKeyNumDivisor *= dimensionSizes[i];
+      }
+
+      long[] otherKeyNums = ((SparseTensor) other).keyNums;
+      double[] otherValues = ((SparseTensor) other).values;
+      int otherInd = 0;
+      for (int i = 0; i < numFilled && otherInd < otherKeyNums.length; i++) {
+        long otherKeyNum = keyNums[i] / otherKeyNumDivisor;
+        while (otherInd < otherKeyNums.length && otherKeyNums[otherInd] < otherKeyNum) {
+          otherInd++;
+        }
+        if (otherInd < otherKeyNums.length && otherKeyNums[otherInd] == otherKeyNum) {
+          double value = values[i] * otherValues[otherInd];
+          if (value != 0.0) {
+            keyNums[resultInd] = keyNums[i];
+            values[resultInd] = value;
+            resultInd++;
+          }
+        }
+      }
+      return resultInd;
+    }
+
+    long[][] mapping = getKeyNumMapping(getDimensionNumbers(), getDimensionSizes(),
+        other.getDimensionNumbers());
+    long[] divisors = mapping[0];
+    long[] modulos = mapping[1];
+    long[] multipliers = mapping[2];
+    for (int i = 0; i < numFilled; i++) {
+      long keyNum = keyNums[i];
+      long otherKeyNum = 0;
+      for (int j = 0; j < divisors.length; j++) {
+        otherKeyNum += ((keyNum / divisors[j]) % modulos[j]) * multipliers[j];
+      }
+      double value = values[i] * other.get(otherKeyNum);
+      if (value != 0.0) {
+        keyNums[resultInd] = keyNum;
+        values[resultInd] = value;
+        resultInd++;
+      }
+    }
+    return resultInd;
+  }
+
+  /**
+   * Returns {@code true} if the dimensions of {@code other} are the
+   * leftmost dimensions of {@code this}.
+   */
+  private boolean isLeftAligned(Tensor other) {
+    int[] dimensionNums = getDimensionNumbers();
+    int[] otherDimensions = other.getDimensionNumbers();
+    if (otherDimensions.length > dimensionNums.length) {
+      return false;
+    }
+    for (int i = 0; i < otherDimensions.length; i++) {
+      if (otherDimensions[i] != dimensionNums[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks that the dimensions of {@code this} are a superset of the
+   * dimensions of {@code other}, and that shared dimensions have the
+   * same size.
+   */
+  private void checkDimensionsSuperset(Tensor other) {
+    int[] dimensionNums = getDimensionNumbers();
+    int[] dimensionSizes = getDimensionSizes();
+    int[] otherDimensions = other.getDimensionNumbers();
+    int[] otherSizes = other.getDimensionSizes();
+
+    int myInd = 0, otherInd = 0;
+    int myLength = dimensionNums.length;
+    int otherLength = otherDimensions.length;
+    while (myInd < myLength && otherInd < otherLength) {
+      if (dimensionNums[myInd] < otherDimensions[otherInd]) {
+        myInd++;
+      } else if (dimensionNums[myInd] == otherDimensions[otherInd]) {
+        Preconditions.checkArgument(dimensionSizes[myInd] == otherSizes[otherInd]);
+        myInd++;
+        otherInd++;
+      } else {
+        // Not a superset.
+        Preconditions.checkArgument(false, "Dimensions not a superset");
+      }
+    }
+    Preconditions.checkArgument(otherInd == otherLength, "Dimensions not a superset");
+  }
+
   private static final SparseTensor elementwiseMultiplySparseDense(SparseTensor big, Tensor small) {
     Preconditions.checkArgument(Arrays.equals(big.getDimensionNumbers(), small.getDimensionNumbers()));
     long[] resultKeyNums = new long[big.size()];
@@ -393,10 +503,54 @@ public class SparseTensor extends AbstractTensor implements Serializable {
    * @return
    */
   protected static final SparseTensor elementwiseMultiplyNaive(SparseTensor big, Tensor small) {
-    // Compute a mapping from keyNums of big to keyNums of small.
-    int[] bigDimensions = big.getDimensionNumbers();
-    int[] smallDimensions = small.getDimensionNumbers();
-    int[] bigDimensionSizes = big.getDimensionSizes();
+    long[][] mapping = getKeyNumMapping(big.getDimensionNumbers(), big.getDimensionSizes(),
+        small.getDimensionNumbers());
+    long[] divisors = mapping[0];
+    long[] modulos = mapping[1];
+    long[] multipliers = mapping[2];
+    int divisorInd = divisors.length;
+
+    // The result tensor is no larger than the larger (superset of
+    // dimensions)
+    // tensor.
+    long[] resultKeyInts = new long[big.size()];
+    double[] resultValues = new double[big.size()];
+    // How many result values have been filled so far.
+    int resultInd = 0;
+
+    long bigKeyNum, smallKeyNum;
+    double value;
+    int numElements = big.size();
+    for (int bigInd = 0; bigInd < numElements; bigInd++) {
+      bigKeyNum = big.indexToKeyNum(bigInd);
+      // map bigKeyNum to a smallKeyNum
+      smallKeyNum = 0;
+      for (int i = 0; i < divisorInd; i++) {
+        smallKeyNum += ((bigKeyNum / divisors[i]) % modulos[i]) * multipliers[i];
+      }
+      value = small.get(smallKeyNum);
+
+      if (value != 0.0) {
+        resultKeyInts[resultInd] = bigKeyNum;
+        resultValues[resultInd] = value * big.getByIndex(bigInd);
+        resultInd++;
+      }
+    }
+
+    return resizeIntoTable(big.getDimensionNumbers(), big.getDimensionSizes(), resultKeyInts,
+        resultValues, resultInd);
+  }
+
+  /**
+   * Computes a mapping from the keyNums of a tensor with dimensions
+   * {@code bigDimensions} to keyNums of a tensor whose dimensions
+   * {@code smallDimensions} are a subset of {@code bigDimensions}. The
+   * returned arrays contain divisors, modulos and multipliers; the
+   * small keyNum is the sum over {@code i} of
+   * {@code ((bigKeyNum / divisors[i]) % modulos[i]) * multipliers[i]}.
+   */
+  static long[][] getKeyNumMapping(int[] bigDimensions, int[] bigDimensionSizes,
+      int[] smallDimensions) {
     int smallDimensionInd = smallDimensions.length - 1;
     int bigDimensionInd = bigDimensions.length - 1;
     // divisors, modulos and multipliers store the mapping from
@@ -433,35 +587,8 @@ public class SparseTensor extends AbstractTensor implements Serializable {
       multiplier *= modulo;
     }
 
-    // The result tensor is no larger than the larger (superset of
-    // dimensions)
-    // tensor.
-    long[] resultKeyInts = new long[big.size()];
-    double[] resultValues = new double[big.size()];
-    // How many result values have been filled so far.
-    int resultInd = 0;
-
-    long bigKeyNum, smallKeyNum;
-    double value;
-    int numElements = big.size();
-    for (int bigInd = 0; bigInd < numElements; bigInd++) {
-      bigKeyNum = big.indexToKeyNum(bigInd);
-      // map bigKeyNum to a smallKeyNum
-      smallKeyNum = 0;
-      for (int i = 0; i < divisorInd; i++) {
-        smallKeyNum += ((bigKeyNum / divisors[i]) % modulos[i]) * multipliers[i];
-      }
-      value = small.get(smallKeyNum);
-
-      if (value != 0.0) {
-        resultKeyInts[resultInd] = bigKeyNum;
-        resultValues[resultInd] = value * big.getByIndex(bigInd);
-        resultInd++;
-      }
-    }
-
-    return resizeIntoTable(big.getDimensionNumbers(), big.getDimensionSizes(), resultKeyInts,
-        resultValues, resultInd);
+    return new long[][] { ArrayUtils.copyOf(divisors, divisorInd),
+        ArrayUtils.copyOf(modulos, divisorInd), ArrayUtils.copyOf(multipliers, divisorInd) };
   }
 
   @Override
@@ -81,12 +81,7 @@ public class SparseTensorBuilder extends AbstractTensorBase implements TensorBui
    * @return
    */
   public static TensorFactory getFactory() {
-    return new TensorFactory() {
-      @Override
-      public TensorBuilder getBuilder(int[] dimNums, int[] dimSizes) {
-        return new SparseTensorBuilder(dimNums, dimSizes);
-      }
-    };
+    return new SparseTensorFactory();
   }
 
   // /////////////////////////////////////////////////////////////
@@ -380,4 +375,13 @@ public class SparseTensorBuilder extends AbstractTensorBase implements TensorBui
     builder.append("}");
     return builder.toString();
   }
+
+  private static class SparseTensorFactory implements TensorFactory {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public TensorBuilder getBuilder(int[] dimNums, int[] dimSizes) {
+      return new SparseTensorBuilder(dimNums, dimSizes);
+    }
+  }
 }
@@ -357,6 +357,39 @@ public interface Tensor extends TensorBase, Serializable {
    */
   Tensor maxOutDimensions(int[] dimensionsToEliminate, Backpointers backpointers);
 
+  /**
+   * Computes the elementwise product of {@code this} and
+   * {@code others}, then sums out {@code dimensionsToEliminate}. The
+   * returned tensor is equal to
+   * {@code elementwiseProduct(others).sumOutDimensions(dimensionsToEliminate)},
+   * but implementations may compute it without constructing the
+   * intermediate product tensor. As with
+   * {@link #elementwiseProduct(Collection)}, the dimensions of each
+   * tensor in {@code others} must be a subset of the dimensions of
+   * {@code this}.
+   *
+   * @param others
+   * @param dimensionsToEliminate
+   * @return
+   */
+  Tensor productSumOutDimensions(Collection<Tensor> others,
+      Collection<Integer> dimensionsToEliminate);
+
+  /**
+   * Same as {@link #productSumOutDimensions(Collection, Collection)},
+   * except computes the maximum instead of the sum. If
+   * {@code backpointers} is non-null, it is populated with the keys of
+   * the product tensor which determined each value in the returned
+   * tensor, as in {@link #maxOutDimensions(Collection, Backpointers)}.
+   *
+   * @param others
+   * @param dimensionsToEliminate
+   * @param backpointers
+   * @return
+   */
+  Tensor productMaxOutDimensions(Collection<Tensor> others,
+      Collection<Integer> dimensionsToEliminate, Backpointers backpointers);
+
   /**
    * Relabels the dimensions of this tensor to {@code newDimensions}.
    * The i'th dimension of {@code this} is relabeled to the i'th
@@ -1,13 +1,18 @@
 package com.jayantkrish.jklol.tensor;
 
+import java.io.Serializable;
+
 /**
  * Provides methods for retrieving {@link TensorBuilder}s. This interface
  * abstracts over different tensor implementations (specifically,
  * {@link DenseTensorBuilder} and {@link SparseTensorBuilder}).
+ * <p>
+ * Factories are serializable so that they can be stored in parametric
+ * families, which use them to construct their parameter tensors.
  * 
  * @author jayantk
  */
-public interface TensorFactory {
+public interface TensorFactory extends Serializable {
 
   /**
    * Gets a {@code TensorBuilder} which has the specified dimensions and size.
@@ -0,0 +1,57 @@
+package com.jayantkrish.jklol.tensor;
+
+/**
+ * Implementation of {@link DenseKernels} whose loops are structured so
+ * that the JIT compiler can emit SIMD instructions for them.
+ * 
+ * <p> The JIT automatically vectorizes simple elementwise loops, such
+ * as those in {@link ScalarDenseKernels}. However, it cannot vectorize
+ * reductions, because reordering floating point additions changes the
+ * result. These kernels instead compute reductions using several
+ * independent accumulators, which removes the dependency between
+ * consecutive loop iterations. As a result, inner products may differ
+ * from {@link ScalarDenseKernels} in the last few bits.
+ * 
+ * <p> The loops over {@code x} and {@code y} are unrolled 4 times, and
+ * array offsets are hoisted out of the loop body to simplify bounds
+ * check elimination.
+ * 
+ * @author jayantk
+ */
+public class UnrolledDenseKernels extends ScalarDenseKernels {
+
+  @Override
+  public double dot(double[] x, int xOffset, double[] y, int yOffset, int length) {
+    double total0 = 0.0, total1 = 0.0, total2 = 0.0, total3 = 0.0;
+    int delta = yOffset - xOffset;
+    int end = xOffset + length;
+    int unrolledEnd = xOffset + (length & ~3);
+    int i = xOffset;
+    for (; i < unrolledEnd; i += 4) {
+      total0 += x[i] * y[i + delta];
+      total1 += x[i + 1] * y[i + 1 + delta];
+      total2 += x[i + 2] * y[i + 2 + delta];
+      total3 += x[i + 3] * y[i + 3 + delta];
+    }
+    for (; i < end; i++) {
+      total0 += x[i] * y[i + delta];
+    }
+    return (total0 + total1) + (total2 + total3);
+  }
+
+  @Override
+  public void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset, int length) {
+    if (xOffset == 0 && yOffset == 0) {
+      // Simple loop form, which the JIT vectorizes.
+      for (int i = 0; i < length; i++) {
+        y[i] += alpha * x[i];
+      }
+    } else {
+      int delta = xOffset - yOffset;
+      int end = yOffset + length;
+      for (int i = yOffset; i < end; i++) {
+        y[i] += alpha * x[i + delta];
+      }
+    }
+  }
+}
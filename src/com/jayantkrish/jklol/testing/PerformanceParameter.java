@@ -0,0 +1,32 @@
+package com.jayantkrish.jklol.testing;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation which declares a field of a {@link PerformanceTestCase} as a
+ * parameter of its performance tests. {@link PerformanceTestRunner} runs
+ * each test once for every combination of parameter values, setting the
+ * annotated fields before calling {@link PerformanceTestCase#setUp()}.
+ * <p>
+ * Values are given as strings, and are converted to the type of the
+ * annotated field. Supported field types are {@code int}, {@code long},
+ * {@code double}, {@code boolean} and {@code String}.
+ * <p>
+ * By default, a parameter applies to every test of its test case. If
+ * {@code tests} is given, the parameter is only varied for the named
+ * test methods; other tests are run once with its first value.
+ *
+ * @author jayantk
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface PerformanceParameter {
+  String[] value();
+
+  // Names of the test methods which depend on this parameter. If
+  // empty, every test depends on it.
+  String[] tests() default {};
+}
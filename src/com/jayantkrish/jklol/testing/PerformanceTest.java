@@ -8,12 +8,22 @@ import java.lang.annotation.Target;
 /**
  * Annotation which declares a method as a performance test. Used for running
  * performance tests in the performance/ subdirectory.
- * 
+ * <p>
+ * Test methods may return a value (such as the result of the computation
+ * being timed). Returned values are consumed by
+ * {@link PerformanceTestRunner}, which prevents the JIT compiler from
+ * eliminating the timed computation as dead code.
+ *
  * @author jayantk
  */
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.METHOD)
 public @interface PerformanceTest {
-  // Number of times to run the test and average results over. 
+  // Number of times to run the test and average results over.
   int value() default 1;
+
+  // Number of untimed invocations of the test before measurement
+  // begins. These invocations give the JIT a chance to compile the
+  // code being tested.
+  int warmup() default 1;
 }
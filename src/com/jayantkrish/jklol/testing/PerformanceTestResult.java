@@ -0,0 +1,199 @@
+package com.jayantkrish.jklol.testing;
+
+import java.util.List;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ * Timing statistics for a single performance test, run with a single
+ * assignment to its {@link PerformanceParameter}s. Results can be
+ * converted to and from a tab-separated format, which enables results
+ * from different runs (e.g., different releases) to be compared.
+ *
+ * @author jayantk
+ */
+public class PerformanceTestResult {
+
+  private final String testClass;
+  private final String testName;
+  // Parameter assignment used for the run, formatted as
+  // "name=value,name=value". Empty if the test has no parameters.
+  private final String parameters;
+
+  private final int repetitions;
+  private final double meanMillis;
+  private final double stddevMillis;
+  private final double minMillis;
+  private final double maxMillis;
+
+  public static final String TSV_HEADER = Joiner.on("\t").join("class", "test", "parameters",
+      "repetitions", "mean_ms", "stddev_ms", "min_ms", "max_ms", "ops_per_sec");
+
+  public PerformanceTestResult(String testClass, String testName, String parameters,
+      int repetitions, double meanMillis, double stddevMillis, double minMillis, double maxMillis) {
+    this.testClass = Preconditions.checkNotNull(testClass);
+    this.testName = Preconditions.checkNotNull(testName);
+    this.parameters = Preconditions.checkNotNull(parameters);
+    this.repetitions = repetitions;
+    this.meanMillis = meanMillis;
+    this.stddevMillis = stddevMillis;
+    this.minMillis = minMillis;
+    this.maxMillis = maxMillis;
+  }
+
+  /**
+   * Computes summary statistics from the running time of each
+   * repetition of a test.
+   *
+   * @param testClass
+   * @param testName
+   * @param parameters
+   * @param nanoTimes
+   * @return
+   */
+  public static PerformanceTestResult fromNanoTimes(String testClass, String testName,
+      String parameters, long[] nanoTimes) {
+    Preconditions.checkArgument(nanoTimes.length > 0);
+    double sum = 0.0;
+    double min = Double.POSITIVE_INFINITY;
+    double max = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < nanoTimes.length; i++) {
+      double millis = nanoTimes[i] / 1000000.0;
+      sum += millis;
+      min = Math.min(min, millis);
+      max = Math.max(max, millis);
+    }
+    double mean = sum / nanoTimes.length;
+
+    double sumSquares = 0.0;
+    for (int i = 0; i < nanoTimes.length; i++) {
+      double diff = (nanoTimes[i] / 1000000.0) - mean;
+      sumSquares += diff * diff;
+    }
+    double stddev = Math.sqrt(sumSquares / nanoTimes.length);
+    return new PerformanceTestResult(testClass, testName, parameters, nanoTimes.length,
+        mean, stddev, min, max);
+  }
+
+  /**
+   * Parses a result from a line produced by {@link #toTsv()}.
+   *
+   * @param line
+   * @return
+   */
+  public static PerformanceTestResult fromTsv(String line) {
+    // -1 retains the empty parameters column.
+    String[] parts = line.split("\t", -1);
+    Preconditions.checkArgument(parts.length >= 8, "Invalid performance result: %s", line);
+    return new PerformanceTestResult(parts[0], parts[1], parts[2], Integer.parseInt(parts[3]),
+        Double.parseDouble(parts[4]), Double.parseDouble(parts[5]),
+        Double.parseDouble(parts[6]), Double.parseDouble(parts[7]));
+  }
+
+  /**
+   * Reads results from lines in the format produced by
+   * {@link #toTsv()}. Lines equal to {@link #TSV_HEADER} are skipped.
+   *
+   * @param lines
+   * @return
+   */
+  public static List<PerformanceTestResult> fromTsv(List<String> lines) {
+    List<PerformanceTestResult> results = Lists.newArrayList();
+    for (String line : lines) {
+      if (!line.equals(TSV_HEADER)) {
+        results.add(fromTsv(line));
+      }
+    }
+    return results;
+  }
+
+  public String getTestClass() {
+    return testClass;
+  }
+
+  public String getTestName() {
+    return testName;
+  }
+
+  public String getParameters() {
+    return parameters;
+  }
+
+  /**
+   * Gets a name for this result which uniquely identifies the test and
+   * its parameters. Results from different runs with the same key are
+   * comparable.
+   *
+   * @return
+   */
+  public String getKey() {
+    return testClass + "." + testName + (parameters.length() > 0 ? "[" + parameters + "]" : "");
+  }
+
+  public int getRepetitions() {
+    return repetitions;
+  }
+
+  public double getMeanMillis() {
+    return meanMillis;
+  }
+
+  public double getStddevMillis() {
+    return stddevMillis;
+  }
+
+  public double getMinMillis() {
+    return minMillis;
+  }
+
+  public double getMaxMillis() {
+    return maxMillis;
+  }
+
+  /**
+   * Gets the throughput of the test, in invocations per second.
+   *
+   * @return
+   */
+  public double getOpsPerSecond() {
+    return meanMillis > 0 ? 1000.0 / meanMillis : Double.POSITIVE_INFINITY;
+  }
+
+  public String toTsv() {
+    return Joiner.on("\t").join(testClass, testName, parameters, repetitions, meanMillis,
+        stddevMillis, minMillis, maxMillis, getOpsPerSecond());
+  }
+
+  public String toJson() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("{\"class\": \"").append(escapeJson(testClass));
+    sb.append("\", \"test\": \"").append(escapeJson(testName));
+    sb.append("\", \"parameters\": \"").append(escapeJson(parameters));
+    sb.append("\", \"repetitions\": ").append(repetitions);
+    sb.append(", \"mean_ms\": ").append(jsonNumber(meanMillis));
+    sb.append(", \"stddev_ms\": ").append(jsonNumber(stddevMillis));
+    sb.append(", \"min_ms\": ").append(jsonNumber(minMillis));
+    sb.append(", \"max_ms\": ").append(jsonNumber(maxMillis));
+    sb.append(", \"ops_per_sec\": ").append(jsonNumber(getOpsPerSecond()));
+    sb.append("}");
+    return sb.toString();
+  }
+
+  private static String escapeJson(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"");
+  }
+
+  private static String jsonNumber(double value) {
+    // JSON has no representation for infinite values.
+    return (Double.isInfinite(value) || Double.isNaN(value)) ? "null" : String.valueOf(value);
+  }
+
+  @Override
+  public String toString() {
+    String name = testName + (parameters.length() > 0 ? " [" + parameters + "]" : "");
+    return String.format("%s: %.3f ms (+/- %.3f, min %.3f, max %.3f, n=%d)", name,
+        meanMillis, stddevMillis, minMillis, maxMillis, repetitions);
+  }
+}
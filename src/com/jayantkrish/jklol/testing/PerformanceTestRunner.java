@@ -1,41 +1,209 @@
 package com.jayantkrish.jklol.testing;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
 
 /**
  * Program for running performance tests, which are methods annotated using
  * {@link PerformanceTest}.
- * 
+ * <p>
+ * Each test is run once for every combination of values of the test case's
+ * {@link PerformanceParameter} fields which apply to it; parameters which do
+ * not apply to a test are set to their first value. For each combination, the
+ * runner invokes the test {@code warmup} times without timing it, then times
+ * each of the test's repetitions individually. {@code setUp()} and
+ * {@code tearDown()} are called around every invocation, including warmup
+ * invocations, and are not timed.
+ *
  * @author jayantk
  */
 public class PerformanceTestRunner {
 
-  public static void run(PerformanceTestCase testCase) {
+  // Values returned by test methods are stored here so that the
+  // JIT cannot eliminate the computation producing them.
+  private static volatile Object sink;
+
+  /**
+   * Runs all performance tests in {@code testCase}, printing the results
+   * to standard out.
+   *
+   * @param testCase
+   * @return
+   */
+  public static List<PerformanceTestResult> run(PerformanceTestCase testCase) {
+    return run(testCase, null, -1);
+  }
+
+  /**
+   * Runs the performance tests in {@code testCase} whose names match
+   * {@code testNameFilter}, printing the results to standard out. If
+   * {@code testNameFilter} is {@code null}, all tests are run. If
+   * {@code repetitions} is positive, it overrides the number of
+   * repetitions given in each test's annotation.
+   *
+   * @param testCase
+   * @param testNameFilter
+   * @param repetitions
+   * @return
+   */
+  public static List<PerformanceTestResult> run(PerformanceTestCase testCase,
+      Pattern testNameFilter, int repetitions) {
     Class<? extends PerformanceTestCase> testCaseClass = testCase.getClass();
     Method[] methods = testCaseClass.getMethods();
+    // Run tests in a deterministic order.
+    Arrays.sort(methods, new Comparator<Method>() {
+      @Override
+      public int compare(Method first, Method second) {
+        return first.getName().compareTo(second.getName());
+      }
+    });
+
+    List<Field> parameterFields = getParameterFields(testCaseClass);
+
+    List<PerformanceTestResult> results = Lists.newArrayList();
     for (int i = 0; i < methods.length; i++) {
       PerformanceTest test = methods[i].getAnnotation(PerformanceTest.class);
-      if (test != null) {
-        runTest(testCase, methods[i], test.value());
+      if (test != null && (testNameFilter == null ||
+          testNameFilter.matcher(methods[i].getName()).find())) {
+        int numRepetitions = repetitions > 0 ? repetitions : test.value();
+        List<Field> testFields = Lists.newArrayList();
+        for (Field field : parameterFields) {
+          if (appliesToTest(field, methods[i].getName())) {
+            testFields.add(field);
+          } else {
+            String firstValue = field.getAnnotation(PerformanceParameter.class).value()[0];
+            setParameters(testCase, Arrays.asList(field), new String[] {firstValue});
+          }
+        }
+
+        for (String[] parameterValues : getParameterAssignments(testFields)) {
+          String parameterString = setParameters(testCase, testFields, parameterValues);
+          PerformanceTestResult result = runTest(testCase, methods[i], numRepetitions,
+              test.warmup(), parameterString);
+          System.out.println(result);
+          results.add(result);
+        }
       }
     }
+    return results;
   }
-  
-  public static void runTest(PerformanceTestCase testCase, Method testMethod, int repetitions) {
-    long total = 0; 
+
+  /**
+   * Runs a single performance test.
+   *
+   * @param testCase
+   * @param testMethod
+   * @param repetitions
+   * @param warmup
+   * @param parameters description of the parameter values of
+   * {@code testCase}, which is included in the returned result.
+   * @return
+   */
+  public static PerformanceTestResult runTest(PerformanceTestCase testCase, Method testMethod,
+      int repetitions, int warmup, String parameters) {
+    long[] nanoTimes = new long[repetitions];
     try {
+      // Every invocation gets a fresh fixture, as tests may mutate it.
+      for (int j = 0; j < warmup; j++) {
+        testCase.setUp();
+        sink = testMethod.invoke(testCase);
+        testCase.tearDown();
+      }
+
       for (int j = 0; j < repetitions; j++) {
         testCase.setUp();
         long start = System.nanoTime();
-        testMethod.invoke(testCase);
-        total += System.nanoTime() - start;
+        sink = testMethod.invoke(testCase);
+        nanoTimes[j] = System.nanoTime() - start;
         testCase.tearDown();
       }
-    } catch (Exception e) {
-      e.printStackTrace();
+    } catch (IllegalAccessException e) {
+      throw new RuntimeException(e);
+    } catch (InvocationTargetException e) {
+      throw new RuntimeException("Performance test " + testMethod.getName() + " failed.",
+          e.getCause());
+    }
+    sink = null;
+
+    return PerformanceTestResult.fromNanoTimes(testCase.getClass().getName(),
+        testMethod.getName(), parameters, nanoTimes);
+  }
+
+  private static List<Field> getParameterFields(Class<?> testCaseClass) {
+    List<Field> fields = Lists.newArrayList();
+    Class<?> currentClass = testCaseClass;
+    while (currentClass != null) {
+      for (Field field : currentClass.getDeclaredFields()) {
+        if (field.getAnnotation(PerformanceParameter.class) != null) {
+          field.setAccessible(true);
+          fields.add(field);
+        }
+      }
+      currentClass = currentClass.getSuperclass();
+    }
+    return fields;
+  }
+
+  private static boolean appliesToTest(Field parameterField, String testName) {
+    String[] tests = parameterField.getAnnotation(PerformanceParameter.class).tests();
+    return tests.length == 0 || Arrays.asList(tests).contains(testName);
+  }
+
+  /**
+   * Gets the cross product of the values of each parameter in
+   * {@code parameterFields}.
+   */
+  private static List<String[]> getParameterAssignments(List<Field> parameterFields) {
+    List<String[]> assignments = Lists.newArrayList();
+    assignments.add(new String[parameterFields.size()]);
+    for (int i = 0; i < parameterFields.size(); i++) {
+      String[] values = parameterFields.get(i).getAnnotation(PerformanceParameter.class).value();
+      List<String[]> newAssignments = Lists.newArrayList();
+      for (String[] assignment : assignments) {
+        for (int j = 0; j < values.length; j++) {
+          String[] newAssignment = Arrays.copyOf(assignment, assignment.length);
+          newAssignment[i] = values[j];
+          newAssignments.add(newAssignment);
+        }
+      }
+      assignments = newAssignments;
     }
+    return assignments;
+  }
 
-    double avgTime = ((double) total) / (repetitions * 1000000);
-    System.out.println(testMethod.getName() + ": " + avgTime + " ms");
+  private static String setParameters(PerformanceTestCase testCase, List<Field> parameterFields,
+      String[] values) {
+    List<String> parameterStrings = Lists.newArrayList();
+    try {
+      for (int i = 0; i < parameterFields.size(); i++) {
+        Field field = parameterFields.get(i);
+        Class<?> type = field.getType();
+        if (type.equals(int.class)) {
+          field.setInt(testCase, Integer.parseInt(values[i]));
+        } else if (type.equals(long.class)) {
+          field.setLong(testCase, Long.parseLong(values[i]));
+        } else if (type.equals(double.class)) {
+          field.setDouble(testCase, Double.parseDouble(values[i]));
+        } else if (type.equals(boolean.class)) {
+          field.setBoolean(testCase, Boolean.parseBoolean(values[i]));
+        } else if (type.equals(String.class)) {
+          field.set(testCase, values[i]);
+        } else {
+          throw new IllegalArgumentException("Unsupported parameter type: " + field);
+        }
+        parameterStrings.add(field.getName() + "=" + values[i]);
+      }
+    } catch (IllegalAccessException e) {
+      throw new RuntimeException(e);
+    }
+    return Joiner.on(",").join(parameterStrings);
   }
 }
@@ -0,0 +1,184 @@
+package com.jayantkrish.jklol.testing;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.jayantkrish.jklol.cli.AbstractCli;
+import com.jayantkrish.jklol.util.IoUtils;
+
+/**
+ * Runs the performance tests in a collection of {@link PerformanceTestCase}s
+ * and writes the results in a machine-readable format. Results can be
+ * compared against the results of a previous run (e.g., the previous
+ * release) using the {@code --baseline} option.
+ * <p>
+ * With {@code --fork}, each test case is run in a separate JVM, which
+ * prevents JIT profiles and heap state from one test case from affecting
+ * the measurements of the next.
+ *
+ * @author jayantk
+ */
+public class RunPerformanceTests extends AbstractCli {
+
+  private OptionSpec<String> filter;
+  private OptionSpec<Integer> repetitions;
+  private OptionSpec<String> format;
+  private OptionSpec<String> output;
+  private OptionSpec<String> baseline;
+  private OptionSpec<Void> fork;
+
+  public RunPerformanceTests() {
+    super();
+  }
+
+  @Override
+  public void initializeOptions(OptionParser parser) {
+    filter = parser.accepts("filter", "Only run tests whose names contain a match "
+        + "for this regular expression.").withRequiredArg().ofType(String.class);
+    repetitions = parser.accepts("repetitions", "Override the number of repetitions "
+        + "of each test.").withRequiredArg().ofType(Integer.class).defaultsTo(-1);
+    format = parser.accepts("format", "Output format for results, either tsv or json.")
+        .withRequiredArg().ofType(String.class).defaultsTo("tsv");
+    output = parser.accepts("output", "File to write results to. If unspecified, "
+        + "results are written to standard out.").withRequiredArg().ofType(String.class);
+    baseline = parser.accepts("baseline", "Results (in tsv format) of a previous run "
+        + "to compare against.").withRequiredArg().ofType(String.class);
+    fork = parser.accepts("fork", "Run each test case in a separate JVM.");
+  }
+
+  @Override
+  public void run(OptionSet options) {
+    List<String> testCaseNames = options.nonOptionArguments();
+    Preconditions.checkArgument(testCaseNames.size() > 0,
+        "Must provide the class names of performance tests to run.");
+
+    List<PerformanceTestResult> results = Lists.newArrayList();
+    for (String testCaseName : testCaseNames) {
+      if (options.has(fork)) {
+        results.addAll(runForked(testCaseName, options));
+      } else {
+        System.out.println(testCaseName);
+        Pattern testNameFilter = options.has(filter) ? Pattern.compile(options.valueOf(filter)) : null;
+        results.addAll(PerformanceTestRunner.run(instantiate(testCaseName),
+            testNameFilter, options.valueOf(repetitions)));
+      }
+    }
+
+    if (options.has(baseline)) {
+      printComparison(PerformanceTestResult.fromTsv(IoUtils.readLines(options.valueOf(baseline))),
+          results);
+    }
+
+    List<String> lines = Lists.newArrayList();
+    if (options.valueOf(format).equals("json")) {
+      lines.add("[");
+      for (int i = 0; i < results.size(); i++) {
+        lines.add("  " + results.get(i).toJson() + (i < results.size() - 1 ? "," : ""));
+      }
+      lines.add("]");
+    } else {
+      Preconditions.checkArgument(options.valueOf(format).equals("tsv"),
+          "Unknown format: %s", options.valueOf(format));
+      lines.add(PerformanceTestResult.TSV_HEADER);
+      for (PerformanceTestResult result : results) {
+        lines.add(result.toTsv());
+      }
+    }
+
+    if (options.has(output)) {
+      IoUtils.writeLines(options.valueOf(output), lines);
+    } else {
+      for (String line : lines) {
+        System.out.println(line);
+      }
+    }
+  }
+
+  private static PerformanceTestCase instantiate(String testCaseName) {
+    try {
+      return Class.forName(testCaseName).asSubclass(PerformanceTestCase.class)
+          .getDeclaredConstructor().newInstance();
+    } catch (ClassNotFoundException e) {
+      throw new IllegalArgumentException("Unknown performance test: " + testCaseName, e);
+    } catch (NoSuchMethodException e) {
+      throw new IllegalArgumentException("Performance test has no default constructor: "
+          + testCaseName, e);
+    } catch (InstantiationException e) {
+      throw new RuntimeException(e);
+    } catch (IllegalAccessException e) {
+      throw new RuntimeException(e);
+    } catch (InvocationTargetException e) {
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  /**
+   * Runs {@code testCaseName} in a child JVM with the same classpath as
+   * this one, then reads back the results.
+   */
+  private List<PerformanceTestResult> runForked(String testCaseName, OptionSet options) {
+    try {
+      File resultFile = File.createTempFile("jklol-perf", ".tsv");
+      resultFile.deleteOnExit();
+
+      String javaBinary = System.getProperty("java.home") + File.separator + "bin"
+          + File.separator + "java";
+      List<String> command = Lists.newArrayList(javaBinary, "-cp",
+          System.getProperty("java.class.path"), RunPerformanceTests.class.getName(),
+          "--noPrintOptions", "--format", "tsv", "--output", resultFile.getPath(),
+          "--repetitions", String.valueOf(options.valueOf(repetitions)));
+      if (options.has(filter)) {
+        command.add("--filter");
+        command.add(options.valueOf(filter));
+      }
+      command.add(testCaseName);
+
+      Process process = new ProcessBuilder(command).inheritIO().start();
+      int exitCode = process.waitFor();
+      Preconditions.checkState(exitCode == 0, "Performance test %s failed with exit code %s",
+          testCaseName, exitCode);
+
+      return PerformanceTestResult.fromTsv(IoUtils.readLines(resultFile.getPath()));
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static void printComparison(List<PerformanceTestResult> baselineResults,
+      List<PerformanceTestResult> results) {
+    Map<String, PerformanceTestResult> baselineMap = Maps.newHashMap();
+    for (PerformanceTestResult result : baselineResults) {
+      baselineMap.put(result.getKey(), result);
+    }
+
+    System.out.println("Comparison to baseline (positive is faster):");
+    for (PerformanceTestResult result : results) {
+      PerformanceTestResult baselineResult = baselineMap.get(result.getKey());
+      if (baselineResult != null) {
+        double change = (baselineResult.getMeanMillis() - result.getMeanMillis())
+            / baselineResult.getMeanMillis();
+        System.out.println(String.format("%s: %.3f ms -> %.3f ms (%+.1f%%)", result.getKey(),
+            baselineResult.getMeanMillis(), result.getMeanMillis(), change * 100));
+      } else {
+        System.out.println(result.getKey() + ": no baseline");
+      }
+    }
+  }
+
+  public static void main(String[] args) {
+    new RunPerformanceTests().run(args);
+  }
+}
@@ -4,9 +4,11 @@ import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.PrintWriter;
 import java.util.List;
 import java.util.Set;
 
@@ -40,6 +42,25 @@ public class IoUtils {
     return lines;
   }
 
+  /**
+   * Writes each element of {@code lines} to {@code filename}, one per
+   * line. Any existing contents of the file are overwritten.
+   *
+   * @param filename
+   * @param lines
+   */
+  public static void writeLines(String filename, Iterable<String> lines) {
+    try {
+      PrintWriter out = new PrintWriter(new FileWriter(filename));
+      for (String line : lines) {
+        out.println(line);
+      }
+      out.close();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   /**
    * Counts the number of columns in a file delimited by {@code delimiter}.
    * Assumes that the first line of the file is representative of the file as a
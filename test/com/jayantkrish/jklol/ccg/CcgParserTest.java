@@ -1,6 +1,9 @@
 package com.jayantkrish.jklol.ccg;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.Arrays;
 import java.util.Collections;
@@ -19,13 +22,20 @@ import com.google.common.collect.Sets;
 import com.google.common.io.NullOutputStream;
 import com.google.common.primitives.Doubles;
 import com.google.common.primitives.Ints;
+import com.jayantkrish.jklol.ccg.chart.AbstractCcgChart;
+import com.jayantkrish.jklol.ccg.chart.BeamPruningStrategy;
+import com.jayantkrish.jklol.ccg.chart.CcgBeamSearchChart;
+import com.jayantkrish.jklol.ccg.chart.CcgExactHashTableChart;
+import com.jayantkrish.jklol.ccg.chart.CcgPackedBeamSearchChart;
 import com.jayantkrish.jklol.ccg.chart.ChartCost;
 import com.jayantkrish.jklol.ccg.chart.ChartEntry;
+import com.jayantkrish.jklol.ccg.chart.DependencyScoreCache;
 import com.jayantkrish.jklol.ccg.lambda.Expression;
 import com.jayantkrish.jklol.ccg.lambda.ExpressionParser;
 import com.jayantkrish.jklol.ccg.lexicon.TableLexicon;
 import com.jayantkrish.jklol.ccg.supertag.ListSupertaggedSentence;
 import com.jayantkrish.jklol.ccg.supertag.SupertagChartCost;
+import com.jayantkrish.jklol.ccg.supertag.SupertaggedSentence;
 import com.jayantkrish.jklol.models.DiscreteFactor;
 import com.jayantkrish.jklol.models.DiscreteFactor.Outcome;
 import com.jayantkrish.jklol.models.DiscreteVariable;
@@ -295,6 +305,318 @@ public class CcgParserTest extends TestCase {
     assertEquals(0.3 * 4 * 2 * 3 * 4, parse.getSubtreeProbability());
   }
   
+  public void testBeamSearchHashIndexed() {
+    List<String> words = Arrays.asList("people", "that", "quickly", "eat", "berries", "in", "houses");
+    List<CcgParse> expected = beamSearch(parser, words, 10);
+    List<CcgParse> actual = beamSearch(parser.useHashIndexedTensors(true), words, 10);
+
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).getSubtreeProbability(), actual.get(i).getSubtreeProbability());
+      assertEquals(expected.get(i).getAllDependencies(), actual.get(i).getAllDependencies());
+    }
+  }
+
+  public void testBeamSearchParallel() {
+    List<String> words = Arrays.asList("people", "that", "quickly", "eat", "berries", "in", "houses");
+    SupertaggedSentence sentence = ListSupertaggedSentence.createWithUnobservedSupertags(words,
+        Collections.nCopies(words.size(), DEFAULT_POS));
+    List<CcgParse> expected = parser.beamSearch(sentence, 10, null, new NullLogFunction(),
+        -1, Integer.MAX_VALUE, 1);
+
+    for (int numThreads : new int[] {2, 3, 16}) {
+      // Repeat parsing to exercise different thread interleavings.
+      for (int i = 0; i < 5; i++) {
+        List<CcgParse> actual = parser.beamSearch(sentence, 10, null, new NullLogFunction(),
+            -1, Integer.MAX_VALUE, numThreads);
+        assertEquals(expected.size(), actual.size());
+        for (int j = 0; j < expected.size(); j++) {
+          assertEquals(expected.get(j).getSubtreeProbability(), actual.get(j).getSubtreeProbability());
+          assertEquals(expected.get(j).getAllDependencies(), actual.get(j).getAllDependencies());
+        }
+      }
+    }
+  }
+
+  public void testBeamSearchPackedChart() {
+    List<String> words = Arrays.asList("people", "that", "quickly", "eat", "berries", "in", "houses");
+    SupertaggedSentence sentence = ListSupertaggedSentence.createWithUnobservedSupertags(words,
+        Collections.nCopies(words.size(), DEFAULT_POS));
+
+    for (CcgParser ccgParser : Arrays.asList(parser, parserWithComposition, parserWithUnary)) {
+      CcgBeamSearchChart expected = new CcgBeamSearchChart(sentence, Integer.MAX_VALUE, 10);
+      ccgParser.parseCommon(expected, sentence, null, null, -1, 1);
+      CcgPackedBeamSearchChart actual = new CcgPackedBeamSearchChart(sentence, Integer.MAX_VALUE, 10);
+      ccgParser.parseCommon(actual, sentence, null, null, -1, 1);
+
+      // Every span should contain the same entries in the same order.
+      for (int i = 0; i < words.size(); i++) {
+        for (int j = i; j < words.size(); j++) {
+          int numEntries = expected.getNumChartEntriesForSpan(i, j);
+          assertEquals(numEntries, actual.getNumChartEntriesForSpan(i, j));
+          assertEquals(numEntries, actual.getPackedChartEntriesForSpan(i, j).size());
+          ChartEntry[] expectedEntries = expected.getChartEntriesForSpan(i, j);
+          ChartEntry[] actualEntries = actual.getChartEntriesForSpan(i, j);
+          for (int k = 0; k < numEntries; k++) {
+            ChartEntry expectedEntry = expectedEntries[k];
+            ChartEntry actualEntry = actualEntries[k];
+            assertEquals(expected.getChartEntryProbsForSpan(i, j)[k], actual.getChartEntryProbsForSpan(i, j)[k]);
+            assertEquals(expectedEntry.getSyntaxHeadHashCode(), actualEntry.getSyntaxHeadHashCode());
+            assertTrue(Arrays.equals(expectedEntry.getAssignmentVarIndex(), actualEntry.getAssignmentVarIndex()));
+            assertTrue(Arrays.equals(expectedEntry.getUnfilledDependencyVarIndex(),
+                actualEntry.getUnfilledDependencyVarIndex()));
+            assertTrue(Arrays.equals(expectedEntry.getDependencies(), actualEntry.getDependencies()));
+            assertEquals(expectedEntry.getLeftChartIndex(), actualEntry.getLeftChartIndex());
+            assertEquals(expectedEntry.getRightChartIndex(), actualEntry.getRightChartIndex());
+            assertEquals(expectedEntry.getCombinator(), actualEntry.getCombinator());
+            assertEquals(expectedEntry.getLexiconEntry(), actualEntry.getLexiconEntry());
+          }
+        }
+      }
+
+      List<CcgParse> expectedParses = expected.decodeBestParsesForSpan(0, words.size() - 1, 10, ccgParser);
+      List<CcgParse> actualParses = actual.decodeBestParsesForSpan(0, words.size() - 1, 10, ccgParser);
+      assertEquals(expectedParses.size(), actualParses.size());
+      for (int i = 0; i < expectedParses.size(); i++) {
+        assertEquals(expectedParses.get(i).getSubtreeProbability(), actualParses.get(i).getSubtreeProbability());
+        assertEquals(expectedParses.get(i).getAllDependencies(), actualParses.get(i).getAllDependencies());
+      }
+    }
+  }
+
+  public void testDecodeBestParses() {
+    List<String> words = Arrays.asList("people", "that", "quickly", "eat", "berries", "in", "houses");
+    SupertaggedSentence sentence = ListSupertaggedSentence.createWithUnobservedSupertags(words,
+        Collections.nCopies(words.size(), DEFAULT_POS));
+    int lastIndex = words.size() - 1;
+
+    for (CcgParser ccgParser : Arrays.asList(parser, parserWithComposition, parserWithUnary)) {
+      CcgBeamSearchChart beamChart = new CcgBeamSearchChart(sentence, Integer.MAX_VALUE, 20);
+      ccgParser.parseCommon(beamChart, sentence, null, null, -1, 1);
+      CcgExactHashTableChart exactChart = new CcgExactHashTableChart(sentence, Integer.MAX_VALUE);
+      ccgParser.parseCommon(exactChart, sentence, null, null, -1, 1);
+
+      for (AbstractCcgChart chart : Arrays.<AbstractCcgChart>asList(beamChart, exactChart)) {
+        double[] expectedProbs = Arrays.copyOf(chart.getChartEntryProbsForSpan(0, lastIndex),
+            chart.getNumChartEntriesForSpan(0, lastIndex));
+        Arrays.sort(expectedProbs);
+
+        List<CcgParse> parses = chart.decodeBestParsesForSpan(0, lastIndex, 5, ccgParser);
+        assertEquals(Math.min(5, expectedProbs.length), parses.size());
+        for (int i = 0; i < parses.size(); i++) {
+          assertEquals(expectedProbs[expectedProbs.length - (i + 1)],
+              parses.get(i).getSubtreeProbability(), 1e-10);
+        }
+
+        // Parses of subspans are also returned in order.
+        List<CcgParse> subspanParses = chart.decodeBestParsesForSubspan(0, lastIndex, 50, ccgParser);
+        assertTrue(subspanParses.size() <= 50);
+        for (int i = 1; i < subspanParses.size(); i++) {
+          assertTrue(subspanParses.get(i - 1).getSubtreeProbability() >=
+              subspanParses.get(i).getSubtreeProbability());
+        }
+      }
+
+      CcgParse exactBest = exactChart.decodeBestParseForSpan(0, lastIndex, ccgParser);
+      CcgParse kBestFirst = exactChart.decodeBestParsesForSpan(0, lastIndex, 1, ccgParser).get(0);
+      assertEquals(exactBest.getSubtreeProbability(), kBestFirst.getSubtreeProbability(), 1e-10);
+      assertEquals(exactBest.getAllDependencies(), kBestFirst.getAllDependencies());
+    }
+  }
+
+  public void testDependencyScoreCache() {
+    DependencyScoreCache cache = new DependencyScoreCache(2);
+    cache.put(5L, 0.5);
+    cache.put(7L, 2.0);
+    // The cache is full, so this value is not stored.
+    cache.put(9L, 3.0);
+    assertEquals(2, cache.size());
+    assertEquals(0.5, cache.getValue(cache.find(5L)));
+    assertEquals(2.0, cache.getValue(cache.find(7L)));
+    assertEquals(-1, cache.find(9L));
+
+    List<String> words = Arrays.asList("people", "that", "quickly", "eat", "berries", "in", "houses");
+    SupertaggedSentence sentence = ListSupertaggedSentence.createWithUnobservedSupertags(words,
+        Collections.nCopies(words.size(), DEFAULT_POS));
+    CcgBeamSearchChart chart = new CcgBeamSearchChart(sentence, Integer.MAX_VALUE, 20);
+    parser.parseCommon(chart, sentence, null, null, -1, 1);
+    assertTrue(chart.getDependencyScoreCache().size() > 0);
+
+    // Parsing in parallel shares the cache between threads.
+    CcgBeamSearchChart parallelChart = new CcgBeamSearchChart(sentence, Integer.MAX_VALUE, 20);
+    parser.parseCommon(parallelChart, sentence, null, null, -1, 3);
+    List<CcgParse> parses = chart.decodeBestParsesForSpan(0, words.size() - 1, 20, parser);
+    List<CcgParse> parallelParses = parallelChart.decodeBestParsesForSpan(0, words.size() - 1, 20,
+        parser);
+    assertEquals(parses.size(), parallelParses.size());
+    for (int i = 0; i < parses.size(); i++) {
+      assertEquals(parses.get(i).getSubtreeProbability(),
+          parallelParses.get(i).getSubtreeProbability(), 1e-10);
+    }
+  }
+
+  public void testBeamPruningStrategy() {
+    List<String> words = Arrays.asList("people", "that", "quickly", "eat", "berries", "in", "houses");
+    SupertaggedSentence sentence = ListSupertaggedSentence.createWithUnobservedSupertags(words,
+        Collections.nCopies(words.size(), DEFAULT_POS));
+    int numWords = words.size();
+
+    CcgBeamSearchChart chart = new CcgBeamSearchChart(sentence, Integer.MAX_VALUE,
+        new BeamPruningStrategy(20, 0.1, null, Integer.MAX_VALUE));
+    parser.parseCommon(chart, sentence, null, null, -1, 1);
+    assertTrue(chart.getNumChartEntriesForSpan(0, numWords - 1) > 0);
+    for (int i = 0; i < numWords; i++) {
+      for (int j = i; j < numWords; j++) {
+        int numEntries = chart.getNumChartEntriesForSpan(i, j);
+        double[] probs = chart.getChartEntryProbsForSpan(i, j);
+        double maxProb = numEntries > 0 ? Doubles.max(Arrays.copyOf(probs, numEntries)) : 0.0;
+        for (int k = 0; k < numEntries; k++) {
+          assertTrue(probs[k] >= 0.1 * maxProb);
+        }
+      }
+    }
+
+    chart = new CcgBeamSearchChart(sentence, Integer.MAX_VALUE,
+        new BeamPruningStrategy(20, 0.0, new int[] {3, 2}, Integer.MAX_VALUE));
+    parser.parseCommon(chart, sentence, null, null, -1, 1);
+    for (int i = 0; i < numWords; i++) {
+      assertTrue(chart.getNumChartEntriesForSpan(i, i) <= 3);
+      for (int j = i + 1; j < numWords; j++) {
+        assertTrue(chart.getNumChartEntriesForSpan(i, j) <= 2);
+      }
+    }
+
+    CcgBeamSearchChart unprunedChart = new CcgBeamSearchChart(sentence, Integer.MAX_VALUE,
+        BeamPruningStrategy.fixedBeam(20));
+    parser.parseCommon(unprunedChart, sentence, null, null, -1, 1);
+
+    int numSpans = (numWords * (numWords + 1)) / 2;
+    int budget = 2 * numSpans;
+    BeamPruningStrategy budgetStrategy = new BeamPruningStrategy(20, 0.0, null, budget);
+    chart = new CcgBeamSearchChart(sentence, Integer.MAX_VALUE, budgetStrategy);
+    parser.parseCommon(chart, sentence, null, null, -1, 1);
+    assertTrue(chart.getNumChartEntriesForSpan(0, numWords - 1) > 0);
+    assertTrue(chart.getTotalNumChartEntries() <= budget);
+    // Lexical spans may use more than their even share of the budget.
+    int lexicalBudget = budgetStrategy.getSpanBudget(1, numWords);
+    assertTrue(lexicalBudget > budget / numSpans);
+    for (int i = 0; i < numWords; i++) {
+      assertEquals(Math.min(lexicalBudget, unprunedChart.getNumChartEntriesForSpan(i, i)),
+          chart.getNumChartEntriesForSpan(i, i));
+    }
+
+    // The budget of each span does not depend on the order in which
+    // spans are completed, so parallel parsing prunes the same entries.
+    for (int numThreads : new int[] {2, 3, 16}) {
+      CcgBeamSearchChart parallelChart = new CcgBeamSearchChart(sentence, Integer.MAX_VALUE,
+          budgetStrategy);
+      parser.parseCommon(parallelChart, sentence, null, null, -1, numThreads);
+      for (int i = 0; i < numWords; i++) {
+        for (int j = i; j < numWords; j++) {
+          assertEquals(chart.getNumChartEntriesForSpan(i, j),
+              parallelChart.getNumChartEntriesForSpan(i, j));
+        }
+      }
+    }
+  }
+
+  public void testBestPartialParse() {
+    List<String> words = Arrays.asList("people", "that", "quickly", "eat", "berries", "in", "houses");
+    SupertaggedSentence sentence = ListSupertaggedSentence.createWithUnobservedSupertags(words,
+        Collections.nCopies(words.size(), DEFAULT_POS));
+    CcgBeamSearchInference inference = new CcgBeamSearchInference(null, 10, -1,
+        Integer.MAX_VALUE, 1, false);
+
+    CcgPartialParse result = inference.getBestPartialParse(parser, sentence, null,
+        new NullLogFunction(), new ParseCancellation());
+    List<CcgParse> expected = beamSearch(parser, words, 10);
+    assertTrue(result.isComplete());
+    assertEquals(expected.get(0).getSubtreeProbability(),
+        result.getParse().getSubtreeProbability(), 1e-10);
+    assertEquals(expected.get(0).getAllDependencies(), result.getParse().getAllDependencies());
+
+    // Cancelling the parse before it starts leaves only the lexicon
+    // entries in the chart.
+    ParseCancellation cancellation = new ParseCancellation();
+    cancellation.cancel();
+    result = inference.getBestPartialParse(parser, sentence, null, new NullLogFunction(),
+        cancellation);
+    assertFalse(result.isComplete());
+    assertNull(result.getParse());
+    assertTrue(result.getFragments().size() > 1);
+    int nextWord = 0;
+    for (CcgParse fragment : result.getFragments()) {
+      assertEquals(nextWord, fragment.getSpanStart());
+      nextWord = fragment.getSpanEnd() + 1;
+    }
+    assertEquals(words.size(), nextWord);
+
+    CcgExactInference exactInference = new CcgExactInference(null, -1, Integer.MAX_VALUE, 1);
+    result = exactInference.getBestPartialParse(parser, sentence, null, new NullLogFunction(),
+        cancellation);
+    assertFalse(result.isComplete());
+    assertEquals(words.size(), Iterables.getLast(result.getFragments()).getSpanEnd() + 1);
+  }
+
+  public void testBestPartialParseCancelledMidParse() {
+    List<String> words = Arrays.asList("people", "that", "quickly", "eat", "berries", "in", "houses");
+    SupertaggedSentence sentence = ListSupertaggedSentence.createWithUnobservedSupertags(words,
+        Collections.nCopies(words.size(), DEFAULT_POS));
+    CcgBeamSearchInference inference = new CcgBeamSearchInference(null, 10, -1,
+        Integer.MAX_VALUE, 1, false);
+
+    // Cancel the parse when it reaches the spans of 5 words, after
+    // all shorter spans have been filled. Entries of multi-word spans
+    // are penalized, so every multi-word fragment is less probable
+    // than the single-word fragments it covers.
+    final ParseCancellation cancellation = new ParseCancellation();
+    ChartCost cancelFilter = new ChartCost() {
+      @Override
+      public double apply(ChartEntry entry, int spanStart, int spanEnd,
+          DiscreteVariable syntaxVarType) {
+        if (spanEnd - spanStart >= 4) {
+          cancellation.cancel();
+        }
+        return spanEnd > spanStart ? Math.log(0.01) : 0.0;
+      }
+    };
+    CcgPartialParse result = inference.getBestPartialParse(parser, sentence, cancelFilter,
+        new NullLogFunction(), cancellation);
+    assertFalse(result.isComplete());
+    List<CcgParse> fragments = result.getFragments();
+    assertEquals(2, fragments.size());
+    assertEquals(0, fragments.get(0).getSpanStart());
+    assertEquals(4, fragments.get(0).getSpanEnd());
+    assertEquals(5, fragments.get(1).getSpanStart());
+    assertEquals(6, fragments.get(1).getSpanEnd());
+  }
+
+  public void testParseAStar() {
+    List<List<String>> sentences = Lists.newArrayList();
+    sentences.add(Arrays.asList("people", "that", "quickly", "eat", "berries", "in", "houses"));
+    sentences.add(Arrays.asList("I", "quickly", "eat", "amazingly", "tasty", "berries"));
+    sentences.add(Arrays.asList("green", "people"));
+    sentences.add(Arrays.asList("blue"));
+
+    for (CcgParser ccgParser : Arrays.asList(parser, parserWithComposition, parserWithUnary)) {
+      for (List<String> words : sentences) {
+        SupertaggedSentence sentence = ListSupertaggedSentence.createWithUnobservedSupertags(words,
+            Collections.nCopies(words.size(), DEFAULT_POS));
+        CcgParse expected = ccgParser.parse(sentence, null, null, -1L, Integer.MAX_VALUE, 1);
+        CcgParse actual = ccgParser.parseAStar(sentence, null, null, -1L, Integer.MAX_VALUE);
+
+        assertEquals(expected.getSubtreeProbability(), actual.getSubtreeProbability(), 1e-10);
+        assertEquals(expected.getAllDependencies(), actual.getAllDependencies());
+      }
+    }
+
+    // This sentence has no parse.
+    SupertaggedSentence sentence = ListSupertaggedSentence.createWithUnobservedSupertags(
+        Arrays.asList("a", "a"), Collections.nCopies(2, DEFAULT_POS));
+    assertNull(parser.parse(sentence, null, null, -1L, Integer.MAX_VALUE, 1));
+    assertNull(parser.parseAStar(sentence, null, null, -1L, Integer.MAX_VALUE));
+  }
+
   public void testExactParse2() {
     CcgParse parse = parse(parser, 
         Arrays.asList("people", "that", "quickly", "eat", "berries", "in", "houses"));
@@ -873,14 +1195,18 @@ public class CcgParserTest extends TestCase {
 
 
   public void testParseTimeout() {
-    List<CcgParse> parses = parser.beamSearch(ListSupertaggedSentence.createWithUnobservedSupertags(
-        Arrays.asList("people", "berries", "people", "berries", "berries", "berries", "berries"), 
-        Collections.nCopies(7, DEFAULT_POS)), 100, null, new NullLogFunction(), -1, Integer.MAX_VALUE, 1);
+    // The sentence must be long enough that parsing takes more than
+    // 1 millisecond, even after the JIT has warmed up.
+    List<String> words = Lists.newArrayList();
+    for (int i = 0; i < 2; i++) {
+      words.addAll(Arrays.asList("people", "berries", "people", "berries", "berries", "berries", "berries"));
+    }
+    SupertaggedSentence sentence = ListSupertaggedSentence.createWithUnobservedSupertags(
+        words, Collections.nCopies(words.size(), DEFAULT_POS));
+    List<CcgParse> parses = parser.beamSearch(sentence, 100, null, new NullLogFunction(), -1, Integer.MAX_VALUE, 1);
     assertTrue(parses.size() > 0);
-    
-    parses = parser.beamSearch(ListSupertaggedSentence.createWithUnobservedSupertags(
-        Arrays.asList("people", "berries", "people", "berries", "berries", "berries", "berries"), 
-        Collections.nCopies(7, DEFAULT_POS)), 100, null, new NullLogFunction(), 1, Integer.MAX_VALUE, 1);
+
+    parses = parser.beamSearch(sentence, 100, null, new NullLogFunction(), 1, Integer.MAX_VALUE, 1);
     assertEquals(0, parses.size());
   }
 
@@ -984,6 +1310,25 @@ public class CcgParserTest extends TestCase {
     oos.close();
   }
 
+  public void testSerializationRoundTrip() throws IOException, ClassNotFoundException {
+    CcgParser original = parserWithUnary.useHashIndexedTensors(true);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream oos = new ObjectOutputStream(bytes);
+    oos.writeObject(original);
+    oos.close();
+    ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    CcgParser deserialized = (CcgParser) ois.readObject();
+
+    List<String> words = Arrays.asList("a", "people", "eating", "berries");
+    List<CcgParse> expected = beamSearch(original, words, 10);
+    List<CcgParse> actual = beamSearch(deserialized, words, 10);
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).getSubtreeProbability(), actual.get(i).getSubtreeProbability());
+      assertEquals(expected.get(i).getAllDependencies(), actual.get(i).getAllDependencies());
+    }
+  }
+
   private List<CcgParse> beamSearch(CcgParser parser, List<String> words,
       int beamSize) {
     return parser.beamSearch(ListSupertaggedSentence.createWithUnobservedSupertags(words,
@@ -1,15 +1,20 @@
 package com.jayantkrish.jklol.ccg;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
 import junit.framework.TestCase;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.jayantkrish.jklol.ccg.chart.CcgBeamSearchChart;
 import com.jayantkrish.jklol.ccg.supertag.ListSupertaggedSentence;
+import com.jayantkrish.jklol.ccg.supertag.SupertaggedSentence;
 import com.jayantkrish.jklol.models.parametric.SufficientStatistics;
+import com.jayantkrish.jklol.util.Pseudorandom;
 
 public class ParametricCcgParserTest extends TestCase {
 
@@ -124,6 +129,103 @@ public class ParametricCcgParserTest extends TestCase {
     assertEquals(nounCat, parses.get(1).getSyntacticCategory());
   }
 
+  public void testRebindWeights() {
+    List<String> words = Arrays.asList("the", "red", "block", "near", "a", "green", "object");
+    List<String> wordPosTags = Arrays.asList("IN", "JJ", "NN", "IN", "IN", "JJ", "NN");
+
+    SufficientStatistics newParameters = family.getNewSufficientStatistics();
+    newParameters.perturb(1.0);
+    CcgParser expectedParser = family.getModelFromParameters(newParameters);
+    CcgParser actualParser = family.getModelFromParameters(newParameters, parser);
+
+    List<CcgParse> expected = beamSearch(expectedParser, words, wordPosTags, 20);
+    List<CcgParse> actual = beamSearch(actualParser, words, wordPosTags, 20);
+    assertTrue(expected.size() > 0);
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).getSubtreeProbability(), actual.get(i).getSubtreeProbability(),
+          TOLERANCE);
+      assertEquals(expected.get(i).getAllDependencies(), actual.get(i).getAllDependencies());
+    }
+  }
+
+  public void testIncrementExpectedSufficientStatistics() {
+    SufficientStatistics newParameters = family.getNewSufficientStatistics();
+    newParameters.perturb(1.0);
+    CcgParser newParser = family.getModelFromParameters(newParameters);
+
+    List<List<String>> sentences = Arrays.asList(
+        Arrays.asList("the", "red", "block", "near", "a", "green", "object"),
+        Arrays.asList("green", "block", "is", "green"),
+        Arrays.asList("green"));
+    for (List<String> words : sentences) {
+      SupertaggedSentence sentence = ListSupertaggedSentence.createWithUnobservedSupertags(words,
+          Collections.nCopies(words.size(), "JJ"));
+      CcgBeamSearchChart chart = newParser.beamSearchChart(sentence, 50, null, null, -1,
+          Integer.MAX_VALUE, 1);
+      List<CcgParse> parses = newParser.decodeBeamSearchChart(chart);
+      assertTrue(parses.size() > 0);
+
+      SufficientStatistics expected = family.getNewSufficientStatistics();
+      double partitionFunction = 0.0;
+      for (CcgParse parse : parses) {
+        partitionFunction += parse.getSubtreeProbability();
+      }
+      for (CcgParse parse : parses) {
+        family.incrementSufficientStatistics(expected, newParameters, parse,
+            2.0 * parse.getSubtreeProbability() / partitionFunction);
+      }
+      assertEquals(partitionFunction, chart.getPartitionFunction(), TOLERANCE);
+
+      SufficientStatistics actual = family.getNewSufficientStatistics();
+      family.incrementExpectedSufficientStatistics(actual, newParameters, chart, newParser, 2.0);
+
+      actual.increment(expected, -1.0);
+      assertTrue(expected.getL2Norm() > 0.0);
+      assertEquals(0.0, actual.getL2Norm(), 1e-8);
+    }
+  }
+
+  public void testParseAStar() {
+    Pseudorandom.get().setSeed(0L);
+    List<List<String>> sentences = Lists.newArrayList();
+    sentences.add(Arrays.asList("the", "red", "block", "near", "the", "green", "object"));
+    sentences.add(Arrays.asList("a", "kinda", "green", "block", "is", "the", "object", "near",
+        "2", "block"));
+    List<List<String>> sentencePos = Lists.newArrayList();
+    sentencePos.add(Arrays.asList("JJ", "JJ", "NN", "IN", "JJ", "JJ", "NN"));
+    sentencePos.add(Arrays.asList("JJ", "JJ", "JJ", "NN", "VB", "JJ", "NN", "IN", "NN", "NN"));
+
+    // All log weights are negative, so the A* outside bound is
+    // admissible.
+    SufficientStatistics negativeParameters = family.getNewSufficientStatistics();
+    negativeParameters.perturb(0.5);
+    negativeParameters.increment(-3.0);
+    CcgParser negativeParser = family.getModelFromParameters(negativeParameters);
+    assertTrue(negativeParser.hasAdmissibleAStarBound());
+
+    // Some non-lexical weights are greater than 1.
+    SufficientStatistics randomParameters = family.getNewSufficientStatistics();
+    randomParameters.perturb(1.0);
+    CcgParser randomParser = family.getModelFromParameters(randomParameters);
+    assertFalse(randomParser.hasAdmissibleAStarBound());
+
+    for (CcgParser ccgParser : Arrays.asList(negativeParser, randomParser)) {
+      for (int i = 0; i < sentences.size(); i++) {
+        SupertaggedSentence sentence = ListSupertaggedSentence.createWithUnobservedSupertags(
+            sentences.get(i), sentencePos.get(i));
+        CcgParse expected = ccgParser.parse(sentence, null, null, -1L, Integer.MAX_VALUE, 1);
+        CcgParse actual = ccgParser.parseAStar(sentence, null, null, -1L, Integer.MAX_VALUE);
+
+        assertNotNull(expected);
+        assertEquals(expected.getSubtreeProbability(), actual.getSubtreeProbability(),
+            expected.getSubtreeProbability() * TOLERANCE);
+        assertEquals(Sets.newHashSet(expected.getAllDependencies()),
+            Sets.newHashSet(actual.getAllDependencies()));
+      }
+    }
+  }
+
   private List<CcgParse> beamSearch(CcgParser parser, List<String> words,
       List<String> posTags, int beamSize) {
     return parser.beamSearch(ListSupertaggedSentence.createWithUnobservedSupertags(words, 
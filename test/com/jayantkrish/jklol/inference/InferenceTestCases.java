@@ -2,13 +2,16 @@ package com.jayantkrish.jklol.inference;
 
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.Random;
 
 import com.jayantkrish.jklol.models.DiscreteVariable;
 import com.jayantkrish.jklol.models.FactorGraph;
 import com.jayantkrish.jklol.models.InferenceHint;
+import com.jayantkrish.jklol.models.TableFactor;
 import com.jayantkrish.jklol.models.TableFactorBuilder;
 import com.jayantkrish.jklol.models.Variable;
 import com.jayantkrish.jklol.models.VariableNumMap;
+import com.jayantkrish.jklol.tensor.DenseTensor;
 import com.jayantkrish.jklol.tensor.SparseTensorBuilder;
 import com.jayantkrish.jklol.util.AllAssignmentIterator;
 import com.jayantkrish.jklol.util.Assignment;
@@ -345,6 +348,36 @@ public class InferenceTestCases {
     return testCase;
   }
 
+  /**
+   * Gets a dense factor over {@code vars} with random weights. Each
+   * weight is {@code exp(scale * g)} for a standard Gaussian {@code g},
+   * or zero with probability {@code zeroProbability}.
+   * 
+   * @param vars
+   * @param random
+   * @param scale
+   * @param zeroProbability
+   * @return
+   */
+  public static TableFactor randomFactor(VariableNumMap vars, Random random, double scale,
+      double zeroProbability) {
+    int[] sizes = new int[vars.size()];
+    int numValues = 1;
+    for (int i = 0; i < sizes.length; i++) {
+      sizes[i] = vars.getDiscreteVariables().get(i).numValues();
+      numValues *= sizes[i];
+    }
+    double[] values = new double[numValues];
+    for (int i = 0; i < numValues; i++) {
+      if (zeroProbability > 0.0 && random.nextDouble() < zeroProbability) {
+        values[i] = 0.0;
+      } else {
+        values[i] = Math.exp(scale * random.nextGaussian());
+      }
+    }
+    return new TableFactor(vars, new DenseTensor(vars.getVariableNumsArray(), sizes, values));
+  }
+
   private static TableFactorBuilder softAndFactor(VariableNumMap inputs, VariableNumMap output,
       double violationLogWeight) {
     TableFactorBuilder tf = new TableFactorBuilder(inputs.union(output),
@@ -1,11 +1,16 @@
 package com.jayantkrish.jklol.inference;
 
 import java.util.Arrays;
+import java.util.Random;
 
 import junit.framework.TestCase;
 
 import com.google.common.primitives.Ints;
+import com.jayantkrish.jklol.models.DiscreteFactor;
+import com.jayantkrish.jklol.models.DiscreteVariable;
 import com.jayantkrish.jklol.models.FactorGraph;
+import com.jayantkrish.jklol.models.VariableNumMap;
+import com.jayantkrish.jklol.util.AllAssignmentIterator;
 import com.jayantkrish.jklol.util.Assignment;
 
 /**
@@ -45,6 +50,87 @@ public class JunctionTreeTest extends TestCase {
 	  assertEquals(1.0, marginals.getMarginal(Ints.asList()).getUnnormalizedProbability(Assignment.EMPTY));
 	}
 	
+	public void testCachedStructure() {
+	  JunctionTree jt = new JunctionTree();
+	  // Populate the structure cache using a factor graph with the same
+	  // structure as the test case, but different weights.
+	  FactorGraph fg = InferenceTestCases.basicFactorGraph();
+	  FactorGraph conditional = fg.conditional(fg.outcomeToAssignment(
+	      Arrays.asList("Var2"), Arrays.asList("T")));
+	  jt.computeMarginals(conditional);
+	  jt.computeMaxMarginals(conditional);
+
+	  for (int i = 0; i < 2; i++) {
+	    InferenceTestCases.testBasicConditional().runTest(jt, TOLERANCE);
+	    InferenceTestCases.testBasicUnconditional().runTest(jt, TOLERANCE);
+	    InferenceTestCases.testTriangleFactorGraphMarginals().runTest(jt, TOLERANCE);
+	    InferenceTestCases.testConditionalMaxMarginals().runTest(jt, 0.0);
+	    InferenceTestCases.testTriangleFactorGraphMaxMarginals().runTest(jt, 0.0);
+	  }
+	}
+
+	public void testParallel() {
+	  JunctionTree jt = new JunctionTree(false, null, 4);
+	  // Run twice to test both building and reusing cached structures.
+	  for (int i = 0; i < 2; i++) {
+	    InferenceTestCases.testBasicUnconditional().runTest(jt, TOLERANCE);
+	    InferenceTestCases.testNonCliqueTreeUnconditional().runTest(jt, TOLERANCE);
+	    InferenceTestCases.testTriangleFactorGraphMarginals().runTest(jt, TOLERANCE);
+	    InferenceTestCases.testBasicConditional().runTest(jt, TOLERANCE);
+	    InferenceTestCases.testBasicMaxMarginals().runTest(jt, 0.0);
+	    InferenceTestCases.testConditionalMaxMarginals().runTest(jt, 0.0);
+	    InferenceTestCases.testTriangleFactorGraphMaxMarginals().runTest(jt, 0.0);
+	  }
+	}
+
+	public void testParallelTree() {
+	  // A binary tree of variables, which has many independent
+	  // messages in both directions.
+	  DiscreteVariable labelVar = new DiscreteVariable("labels", Arrays.asList("A", "B", "C"));
+	  int numVars = 31;
+	  FactorGraph fg = new FactorGraph();
+	  for (int i = 0; i < numVars; i++) {
+	    fg = fg.addVariable("Var" + i, labelVar);
+	  }
+	  Random random = new Random(0);
+	  VariableNumMap vars = fg.getVariables();
+	  for (int i = 0; i < numVars; i++) {
+	    fg = fg.addFactor("unary" + i, InferenceTestCases.randomFactor(
+	        vars.getVariablesByName("Var" + i), random, 1.0, 0.0));
+	    if (i > 0) {
+	      fg = fg.addFactor("pairwise" + i, InferenceTestCases.randomFactor(
+	          vars.getVariablesByName("Var" + ((i - 1) / 2), "Var" + i), random, 1.0, 0.0));
+	    }
+	  }
+
+	  MarginalSet expected = new JunctionTree(true).computeMarginals(fg);
+	  // The second run reuses the clique tree built by the first.
+	  JunctionTree jt = new JunctionTree(true, null, 4);
+	  MarginalSet actual = jt.computeMarginals(fg);
+	  MarginalSet repeated = jt.computeMarginals(fg);
+
+	  assertEquals(expected.getLogPartitionFunction(), actual.getLogPartitionFunction(), TOLERANCE);
+	  for (int i = 0; i < numVars; i++) {
+	    VariableNumMap marginalVars = vars.getVariablesByName("Var" + i);
+	    DiscreteFactor expectedMarginal = expected.getMarginal(marginalVars).coerceToDiscrete();
+	    DiscreteFactor actualMarginal = actual.getMarginal(marginalVars).coerceToDiscrete();
+	    DiscreteFactor repeatedMarginal = repeated.getMarginal(marginalVars).coerceToDiscrete();
+	    AllAssignmentIterator iter = new AllAssignmentIterator(marginalVars);
+	    while (iter.hasNext()) {
+	      Assignment a = iter.next();
+	      assertEquals(expectedMarginal.getUnnormalizedProbability(a),
+	          actualMarginal.getUnnormalizedProbability(a), TOLERANCE);
+	      // Parallel inference is deterministic for a fixed clique tree.
+	      assertEquals(actualMarginal.getUnnormalizedProbability(a),
+	          repeatedMarginal.getUnnormalizedProbability(a));
+	    }
+	  }
+
+	  Assignment expectedBest = new JunctionTree().computeMaxMarginals(fg).getNthBestAssignment(0);
+	  Assignment actualBest = new JunctionTree(false, null, 4).computeMaxMarginals(fg).getNthBestAssignment(0);
+	  assertEquals(expectedBest, actualBest);
+	}
+
 	public void testMaxMarginals() {
 		InferenceTestCases.testBasicMaxMarginals().runTest(new JunctionTree(), 0.0);
 	}
@@ -0,0 +1,107 @@
+package com.jayantkrish.jklol.inference;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.jayantkrish.jklol.models.DiscreteFactor;
+import com.jayantkrish.jklol.models.DiscreteVariable;
+import com.jayantkrish.jklol.models.FactorGraph;
+import com.jayantkrish.jklol.models.VariableNumMap;
+import com.jayantkrish.jklol.util.AllAssignmentIterator;
+import com.jayantkrish.jklol.util.Assignment;
+
+/**
+ * Unit tests for {@link LinearChainInference}.
+ *
+ * @author jayantk
+ */
+public class LinearChainInferenceTest extends TestCase {
+
+  private static final double TOLERANCE = 1e-10;
+
+  private DiscreteVariable labelVar;
+  private FactorGraph chain;
+
+  // Chain order of the variables, which differs from their order
+  // in the factor graph.
+  private static final String[] CHAIN_ORDER = new String[] {"Var0", "Var2", "Var1", "Var3", "Var5", "Var4"};
+
+  @Override
+  public void setUp() {
+    labelVar = new DiscreteVariable("labels", Arrays.asList("A", "B", "C"));
+    Random random = new Random(0);
+
+    chain = new FactorGraph();
+    for (int i = 0; i < CHAIN_ORDER.length; i++) {
+      chain = chain.addVariable("Var" + i, labelVar);
+    }
+    VariableNumMap vars = chain.getVariables();
+    for (int i = 0; i < CHAIN_ORDER.length; i++) {
+      chain = chain.addFactor("unary" + i, InferenceTestCases.randomFactor(
+          vars.getVariablesByName(CHAIN_ORDER[i]), random, 1.0, 0.2));
+      if (i > 0) {
+        chain = chain.addFactor("pairwise" + i, InferenceTestCases.randomFactor(
+            vars.getVariablesByName(CHAIN_ORDER[i - 1], CHAIN_ORDER[i]), random, 1.0, 0.2));
+      }
+    }
+  }
+
+  public void testBasicMarginals() {
+    // Not a chain, so inference uses the fallback.
+    InferenceTestCases.testBasicUnconditional().runTest(new LinearChainInference(), TOLERANCE);
+  }
+
+  public void testConditionals() {
+    // The conditional graph is a forest of chains.
+    InferenceTestCases.testBasicConditional().runTest(new LinearChainInference(), TOLERANCE);
+  }
+
+  public void testChainMarginals() {
+    runMarginalTest(chain);
+  }
+
+  public void testConditionalChainMarginals() {
+    Assignment condition = chain.outcomeToAssignment(Arrays.asList("Var1"), Arrays.asList("B"));
+    runMarginalTest(chain.conditional(condition));
+  }
+
+  public void testChainMaxMarginals() {
+    Assignment expected = new JunctionTree().computeMaxMarginals(chain).getNthBestAssignment(0);
+    Assignment actual = new LinearChainInference().computeMaxMarginals(chain).getNthBestAssignment(0);
+    assertEquals(expected, actual);
+
+    Assignment condition = chain.outcomeToAssignment(Arrays.asList("Var3"), Arrays.asList("C"));
+    FactorGraph conditional = chain.conditional(condition);
+    expected = new JunctionTree().computeMaxMarginals(conditional).getNthBestAssignment(0);
+    actual = new LinearChainInference().computeMaxMarginals(conditional).getNthBestAssignment(0);
+    assertEquals(expected, actual);
+  }
+
+  private void runMarginalTest(FactorGraph factorGraph) {
+    MarginalSet expected = new JunctionTree().computeMarginals(factorGraph);
+    MarginalSet actual = new LinearChainInference().computeMarginals(factorGraph);
+
+    assertEquals(expected.getLogPartitionFunction(), actual.getLogPartitionFunction(), TOLERANCE);
+    assertEquals(expected.getConditionedValues(), actual.getConditionedValues());
+
+    VariableNumMap vars = factorGraph.getVariables();
+    for (int i = 0; i < CHAIN_ORDER.length; i++) {
+      for (int j = i; j < Math.min(i + 2, CHAIN_ORDER.length); j++) {
+        VariableNumMap marginalVars = vars.getVariablesByName(CHAIN_ORDER[i], CHAIN_ORDER[j]);
+        if (marginalVars.size() == 0) {
+          continue;
+        }
+        DiscreteFactor expectedMarginal = expected.getMarginal(marginalVars).coerceToDiscrete();
+        DiscreteFactor actualMarginal = actual.getMarginal(marginalVars).coerceToDiscrete();
+        AllAssignmentIterator iter = new AllAssignmentIterator(marginalVars);
+        while (iter.hasNext()) {
+          Assignment a = iter.next();
+          assertEquals(expectedMarginal.getUnnormalizedProbability(a),
+              actualMarginal.getUnnormalizedProbability(a), TOLERANCE);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,125 @@
+package com.jayantkrish.jklol.inference;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.jayantkrish.jklol.models.DiscreteFactor;
+import com.jayantkrish.jklol.models.DiscreteVariable;
+import com.jayantkrish.jklol.models.FactorGraph;
+import com.jayantkrish.jklol.models.VariableNumMap;
+import com.jayantkrish.jklol.util.AllAssignmentIterator;
+import com.jayantkrish.jklol.util.Assignment;
+
+/**
+ * Unit tests for {@link LoopyBeliefPropagation}.
+ *
+ * @author jayantk
+ */
+public class LoopyBeliefPropagationTest extends TestCase {
+
+  private static final double TOLERANCE = 1e-6;
+
+  private FactorGraph grid;
+  private VariableNumMap gridVars;
+
+  @Override
+  public void setUp() {
+    // A 4x4 grid of variables, which has many loops.
+    DiscreteVariable labelVar = new DiscreteVariable("labels", Arrays.asList("A", "B", "C"));
+    Random random = new Random(0);
+    grid = new FactorGraph();
+    for (int i = 0; i < 16; i++) {
+      grid = grid.addVariable("Var" + i, labelVar);
+    }
+    gridVars = grid.getVariables();
+    for (int i = 0; i < 16; i++) {
+      grid = grid.addFactor("unary" + i, InferenceTestCases.randomFactor(
+          gridVars.getVariablesByName("Var" + i), random, 0.5, 0.0));
+      if (i % 4 != 3) {
+        grid = grid.addFactor("right" + i, InferenceTestCases.randomFactor(
+            gridVars.getVariablesByName("Var" + i, "Var" + (i + 1)), random, 0.5, 0.0));
+      }
+      if (i < 12) {
+        grid = grid.addFactor("down" + i, InferenceTestCases.randomFactor(
+            gridVars.getVariablesByName("Var" + i, "Var" + (i + 4)), random, 0.5, 0.0));
+      }
+    }
+  }
+
+  public void testTreeMarginals() {
+    // Belief propagation is exact on trees.
+    InferenceTestCases.testBasicUnconditional().runTest(new LoopyBeliefPropagation(), TOLERANCE);
+    InferenceTestCases.testBasicConditional().runTest(new LoopyBeliefPropagation(), TOLERANCE);
+  }
+
+  public void testTreePartitionFunction() {
+    FactorGraph fg = InferenceTestCases.basicFactorGraph();
+    assertEquals(new JunctionTree().computeMarginals(fg).getLogPartitionFunction(),
+        new LoopyBeliefPropagation().computeMarginals(fg).getLogPartitionFunction(), TOLERANCE);
+  }
+
+  public void testTreeMaxMarginals() {
+    FactorGraph fg = InferenceTestCases.basicFactorGraph();
+    Assignment expected = new JunctionTree().computeMaxMarginals(fg).getNthBestAssignment(0);
+    Assignment actual = new LoopyBeliefPropagation().computeMaxMarginals(fg).getNthBestAssignment(0);
+    assertEquals(expected, actual);
+
+    FactorGraph conditional = fg.conditional(fg.outcomeToAssignment(
+        Arrays.asList("Var2"), Arrays.asList("T")));
+    expected = new JunctionTree().computeMaxMarginals(conditional).getNthBestAssignment(0);
+    actual = new LoopyBeliefPropagation().computeMaxMarginals(conditional).getNthBestAssignment(0);
+    assertEquals(expected, actual);
+  }
+
+  public void testGridMarginals() {
+    // Approximate marginals on loopy graphs with weak interactions
+    // should be close to the exact marginals.
+    MarginalSet expected = new JunctionTree().computeMarginals(grid);
+    MarginalSet actual = new LoopyBeliefPropagation(1e-10, 0.5, 100, 1).computeMarginals(grid);
+    assertMarginalsEqual(expected, actual, 0.02);
+    assertEquals(expected.getLogPartitionFunction(), actual.getLogPartitionFunction(), 0.05);
+  }
+
+  public void testGridMaxMarginals() {
+    Assignment expected = new JunctionTree().computeMaxMarginals(grid).getNthBestAssignment(0);
+    Assignment actual = new LoopyBeliefPropagation().computeMaxMarginals(grid).getNthBestAssignment(0);
+    assertEquals(expected, actual);
+  }
+
+  public void testParallel() {
+    LoopyBeliefPropagation bp = new LoopyBeliefPropagation(1e-10, 0.0, 100, 4);
+    InferenceTestCases.testBasicUnconditional().runTest(bp, TOLERANCE);
+
+    // Parallel message passing converges to the same fixed point, and
+    // is deterministic.
+    MarginalSet sequential = new LoopyBeliefPropagation(1e-10, 0.0, 100, 1).computeMarginals(grid);
+    MarginalSet parallel = bp.computeMarginals(grid);
+    assertMarginalsEqual(sequential, parallel, TOLERANCE);
+    assertMarginalsEqual(parallel, bp.computeMarginals(grid), 0.0);
+  }
+
+  public void testBudget() {
+    // With a budget of one update per message, message passing stops
+    // before converging, but still produces marginals.
+    MarginalSet marginals = new LoopyBeliefPropagation(1e-10, 0.0, 1, 1).computeMarginals(grid);
+    DiscreteFactor marginal = marginals.getMarginal(
+        gridVars.getVariablesByName("Var5").getVariableNums()).coerceToDiscrete();
+    assertEquals(1.0, marginal.getTotalUnnormalizedProbability(), TOLERANCE);
+  }
+
+  private void assertMarginalsEqual(MarginalSet expected, MarginalSet actual, double tolerance) {
+    for (int varNum : gridVars.getVariableNumsArray()) {
+      VariableNumMap var = gridVars.intersection(varNum);
+      DiscreteFactor expectedMarginal = expected.getMarginal(var.getVariableNums()).coerceToDiscrete();
+      DiscreteFactor actualMarginal = actual.getMarginal(var.getVariableNums()).coerceToDiscrete();
+      AllAssignmentIterator iter = new AllAssignmentIterator(var);
+      while (iter.hasNext()) {
+        Assignment a = iter.next();
+        assertEquals(expectedMarginal.getUnnormalizedProbability(a),
+            actualMarginal.getUnnormalizedProbability(a), tolerance);
+      }
+    }
+  }
+}
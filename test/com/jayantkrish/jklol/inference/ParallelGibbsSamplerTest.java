@@ -0,0 +1,82 @@
+package com.jayantkrish.jklol.inference;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.jayantkrish.jklol.models.DiscreteFactor;
+import com.jayantkrish.jklol.models.DiscreteVariable;
+import com.jayantkrish.jklol.models.FactorGraph;
+import com.jayantkrish.jklol.models.VariableNumMap;
+import com.jayantkrish.jklol.util.AllAssignmentIterator;
+import com.jayantkrish.jklol.util.Assignment;
+import com.jayantkrish.jklol.util.Pseudorandom;
+
+/**
+ * Tests for {@link ParallelGibbsSampler}.
+ *
+ * @author jayantk
+ */
+public class ParallelGibbsSamplerTest extends TestCase {
+
+  public void testNonTreeStructuredMarginals() {
+    InferenceTestCases.testNonCliqueTreeUnconditional().runTest(
+        new ParallelGibbsSampler(1000, 1000, 1, 1, 1), 0.05);
+  }
+
+  public void testMultipleChains() {
+    InferenceTestCases.testNonCliqueTreeUnconditional().runTest(
+        new ParallelGibbsSampler(100, 500, 1, 4, 4), 0.05);
+  }
+
+  public void testTriangleMarginals() {
+    InferenceTestCases.testTriangleFactorGraphMarginals().runTest(
+        new ParallelGibbsSampler(100, 1000, 1, 4, 2), 0.05);
+  }
+
+  public void testConditionals() {
+    InferenceTestCases.testBasicConditional().runTest(
+        new ParallelGibbsSampler(100, 1000, 1, 4, 2), 0.05);
+  }
+
+  public void testDeterministic() {
+    // The samples depend only on the random seed, not on the number
+    // of threads.
+    runDeterminismTest(InferenceTestCases.nonCliqueTreeFactorGraph());
+
+    // A long chain, whose variables of each color are resampled by
+    // several tasks.
+    DiscreteVariable labelVar = new DiscreteVariable("labels", Arrays.asList("A", "B", "C"));
+    FactorGraph chain = new FactorGraph();
+    for (int i = 0; i < 300; i++) {
+      chain = chain.addVariable("Var" + i, labelVar);
+    }
+    Random random = new Random(0);
+    VariableNumMap vars = chain.getVariables();
+    for (int i = 1; i < 300; i++) {
+      chain = chain.addFactor("pairwise" + i, InferenceTestCases.randomFactor(
+          vars.getVariablesByName("Var" + (i - 1), "Var" + i), random, 1.0, 0.0));
+    }
+    runDeterminismTest(chain);
+  }
+
+  private void runDeterminismTest(FactorGraph fg) {
+    Pseudorandom.get().setSeed(0);
+    MarginalSet expected = new ParallelGibbsSampler(10, 100, 0, 3, 1).computeMarginals(fg);
+    Pseudorandom.get().setSeed(0);
+    MarginalSet actual = new ParallelGibbsSampler(10, 100, 0, 3, 4).computeMarginals(fg);
+
+    for (int varNum : fg.getVariables().getVariableNumsArray()) {
+      VariableNumMap var = fg.getVariables().intersection(varNum);
+      DiscreteFactor expectedMarginal = expected.getMarginal(Arrays.asList(varNum)).coerceToDiscrete();
+      DiscreteFactor actualMarginal = actual.getMarginal(Arrays.asList(varNum)).coerceToDiscrete();
+      AllAssignmentIterator iter = new AllAssignmentIterator(var);
+      while (iter.hasNext()) {
+        Assignment a = iter.next();
+        assertEquals(expectedMarginal.getUnnormalizedProbability(a),
+            actualMarginal.getUnnormalizedProbability(a));
+      }
+    }
+  }
+}
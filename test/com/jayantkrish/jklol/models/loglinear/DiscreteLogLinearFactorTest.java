@@ -14,6 +14,8 @@ import com.jayantkrish.jklol.models.parametric.ParametricFactor;
 import com.jayantkrish.jklol.models.parametric.ParametricNormalizingFactor;
 import com.jayantkrish.jklol.models.parametric.SufficientStatistics;
 import com.jayantkrish.jklol.models.parametric.TensorSufficientStatistics;
+import com.jayantkrish.jklol.tensor.FloatDenseTensor;
+import com.jayantkrish.jklol.tensor.FloatDenseTensorBuilder;
 import com.jayantkrish.jklol.tensor.SparseTensorBuilder;
 import com.jayantkrish.jklol.tensor.TensorBase;
 import com.jayantkrish.jklol.util.Assignment;
@@ -140,4 +142,18 @@ public class DiscreteLogLinearFactorTest extends TestCase {
     assertEquals(24.0, d.getUnnormalizedLogProbability("T", "F"), 0.00001);
     assertEquals(52.0, d.getUnnormalizedLogProbability("F", "F"), 0.00001);
   }
+
+  public void testSinglePrecisionParameters() {
+    DiscreteLogLinearFactor floatFactor = new DiscreteLogLinearFactor(vars, g.getFeatureVariables(),
+        g.getFeatureValues(), null, FloatDenseTensorBuilder.getFactory());
+    TensorSufficientStatistics floatParams = floatFactor.getNewSufficientStatistics();
+    assertTrue(floatParams.get() instanceof FloatDenseTensor);
+
+    floatFactor.incrementSufficientStatisticsFromAssignment(floatParams, floatParams, vars.outcomeArrayToAssignment("T", "T"), 1.0);
+    floatFactor.incrementSufficientStatisticsFromAssignment(floatParams, floatParams, vars.outcomeArrayToAssignment("F", "F"), 1.0);
+    DiscreteFactor d = floatFactor.getModelFromParameters(floatParams);
+    assertEquals(1.0, d.getUnnormalizedLogProbability("T", "T"), 0.00001);
+    assertEquals(24.0, d.getUnnormalizedLogProbability("T", "F"), 0.00001);
+    assertEquals(52.0, d.getUnnormalizedLogProbability("F", "F"), 0.00001);
+  }
 }
@@ -0,0 +1,72 @@
+package com.jayantkrish.jklol.tensor;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link DenseKernels}. Checks that
+ * {@link UnrolledDenseKernels} agrees with {@link ScalarDenseKernels}.
+ * 
+ * @author jayantk
+ */
+public class DenseKernelsTest extends TestCase {
+
+  DenseKernels scalar, unrolled;
+  double[] x, y;
+
+  private static final double TOLERANCE = 1e-10;
+
+  @Override
+  public void setUp() {
+    scalar = DenseKernels.select("scalar");
+    unrolled = DenseKernels.select("unrolled");
+
+    Random random = new Random(0);
+    x = new double[23];
+    y = new double[23];
+    for (int i = 0; i < x.length; i++) {
+      x[i] = random.nextGaussian();
+      y[i] = random.nextGaussian();
+    }
+  }
+
+  public void testDot() {
+    for (int length = 0; length < 10; length++) {
+      assertEquals(scalar.dot(x, 0, y, 0, length), unrolled.dot(x, 0, y, 0, length), TOLERANCE);
+      assertEquals(scalar.dot(x, 3, y, 11, length), unrolled.dot(x, 3, y, 11, length), TOLERANCE);
+    }
+  }
+
+  public void testAxpy() {
+    double[] expected = Arrays.copyOf(y, y.length);
+    double[] actual = Arrays.copyOf(y, y.length);
+    scalar.axpy(2.0, x, 5, expected, 2, 13);
+    unrolled.axpy(2.0, x, 5, actual, 2, 13);
+    assertTrue(Arrays.equals(expected, actual));
+    assertEquals(y[0], actual[0]);
+    assertEquals(y[2] + 2.0 * x[5], actual[2], TOLERANCE);
+    assertEquals(y[15], actual[15]);
+
+    unrolled.axpy(-1.0, x, 0, actual, 0, x.length);
+    assertEquals(expected[3] - x[3], actual[3], TOLERANCE);
+  }
+
+  public void testMultiplyInPlace() {
+    double[] dest = Arrays.copyOf(x, x.length);
+    unrolled.multiply(dest, y, dest, dest.length);
+    for (int i = 0; i < x.length; i++) {
+      assertEquals(x[i] * y[i], dest[i]);
+    }
+  }
+
+  public void testSelectUnknown() {
+    try {
+      DenseKernels.select("foo");
+    } catch (IllegalArgumentException e) {
+      return;
+    }
+    fail("Expected IllegalArgumentException");
+  }
+}
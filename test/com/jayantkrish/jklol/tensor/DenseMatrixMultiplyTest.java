@@ -0,0 +1,46 @@
+package com.jayantkrish.jklol.tensor;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link DenseMatrixMultiply}.
+ * 
+ * @author jayantk
+ */
+public class DenseMatrixMultiplyTest extends TestCase {
+
+  public void testParallelMatchesSerial() {
+    // Large enough to be split across threads.
+    runParallelTest(300, 200, 1, 400);
+    runParallelTest(5, 70, 40, 300);
+  }
+
+  private void runParallelTest(int numP, int numA, int numS, int numO) {
+    Random random = new Random(0);
+    double[] first = new double[numP * numA * numS];
+    double[] second = new double[numA * numO];
+    for (int i = 0; i < first.length; i++) {
+      first[i] = random.nextInt(3) == 0 ? 0.0 : random.nextGaussian();
+    }
+    for (int i = 0; i < second.length; i++) {
+      second[i] = random.nextGaussian();
+    }
+
+    double[] expected = new double[numP * numO * numS];
+    DenseMatrixMultiply.multiply(first, second, expected, numP, numA, numS, numO, 1);
+    double[] actual = new double[numP * numO * numS];
+    DenseMatrixMultiply.multiply(first, second, actual, numP, numA, numS, numO, 4);
+    assertTrue(Arrays.equals(expected, actual));
+  }
+
+  public void testZeroTimesNaN() {
+    double[] first = new double[] {0.0, 1.0};
+    double[] second = new double[] {Double.NaN, 2.0};
+    double[] result = new double[1];
+    DenseMatrixMultiply.multiply(first, second, result, 1, 2, 1, 1, 1);
+    assertTrue(Double.isNaN(result[0]));
+  }
+}
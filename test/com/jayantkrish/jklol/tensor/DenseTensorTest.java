@@ -1,5 +1,6 @@
 package com.jayantkrish.jklol.tensor;
 
+import java.util.Arrays;
 import java.util.Iterator;
 
 import com.jayantkrish.jklol.tensor.TensorBase.KeyValue;
@@ -27,4 +28,29 @@ public class DenseTensorTest extends TensorTest {
     }
     assertEquals(6, keyCount);
   }
+
+  public void testMatrixInnerProductLarge() {
+    // Large enough to be multiplied in parallel.
+    runMatrixInnerProductLarge(new int[] {0, 1}, new int[] {300, 200},
+        new int[] {1, 3}, new int[] {200, 30});
+    // Includes dimensions of first after the summed-out dimensions.
+    runMatrixInnerProductLarge(new int[] {0, 1, 4}, new int[] {2, 100, 70},
+        new int[] {1, 2}, new int[] {100, 80});
+  }
+
+  private void runMatrixInnerProductLarge(int[] firstDims, int[] firstSizes,
+      int[] secondDims, int[] secondSizes) {
+    DenseTensor first = DenseTensor.random(firstDims, firstSizes, 0.0, 1.0);
+    DenseTensor second = DenseTensor.random(secondDims, secondSizes, 0.0, 1.0);
+
+    Tensor expected = SparseTensor.copyOf(first).matrixInnerProduct(SparseTensor.copyOf(second));
+    Tensor actual = first.matrixInnerProduct(second);
+
+    assertTrue(actual instanceof DenseTensor);
+    assertTrue(Arrays.equals(expected.getDimensionNumbers(), actual.getDimensionNumbers()));
+    for (int i = 0; i < expected.size(); i++) {
+      long keyNum = expected.indexToKeyNum(i);
+      assertEquals(expected.getByIndex(i), actual.get(keyNum), 1e-8);
+    }
+  }
 }
@@ -0,0 +1,14 @@
+package com.jayantkrish.jklol.tensor;
+
+/**
+ * Unit tests for {@link FloatDenseTensorBuilder}. Actual test cases are in
+ * the superclass, {@link TensorBuilderTest}.
+ * 
+ * @author jayantk
+ */
+public class FloatDenseTensorBuilderTest extends TensorBuilderTest {
+
+  public FloatDenseTensorBuilderTest() {
+    super(FloatDenseTensorBuilder.getFactory());
+  }
+}
@@ -0,0 +1,64 @@
+package com.jayantkrish.jklol.tensor;
+
+import java.util.Arrays;
+
+/**
+ * Unit tests for {@link FloatDenseTensor}. Tests involving computations
+ * whose results are not exactly representable in single precision are
+ * overridden to compare values with a tolerance.
+ * 
+ * @author jayantk
+ */
+public class FloatDenseTensorTest extends TensorTest {
+
+  private static final double TOLERANCE = 1e-6;
+
+  public FloatDenseTensorTest() {
+    super(FloatDenseTensorBuilder.getFactory());
+  }
+
+  @Override
+  protected double getTolerance() {
+    return TOLERANCE;
+  }
+
+  @Override
+  public void testElementwiseSqrt() {
+    Tensor actual = table.elementwiseSqrt();
+
+    assertEquals(1.0, actual.getByDimKey(a1));
+    assertEquals(Math.sqrt(2.0), actual.getByDimKey(a2), TOLERANCE);
+    assertEquals(0.0, actual.getByDimKey(new int[] {5, 1, 0}));
+    assertTrue(Arrays.equals(varSizes, actual.getDimensionSizes()));
+  }
+
+  @Override
+  public void testElementwiseLog() {
+    Tensor actual = table.elementwiseLog();
+
+    assertEquals(0.0, actual.getByDimKey(a1));
+    assertEquals(Math.log(2.0), actual.getByDimKey(a2), TOLERANCE);
+    assertEquals(Double.NEGATIVE_INFINITY, actual.getByDimKey(new int[] {5, 1, 0}));
+    assertTrue(Arrays.equals(varSizes, actual.getDimensionSizes()));
+  }
+
+  public void testSinglePrecisionStorage() {
+    FloatDenseTensorBuilder builder = new FloatDenseTensorBuilder(new int[] {0}, new int[] {2});
+    builder.put(new int[] {0}, 0.1);
+    builder.incrementEntry(0.2, 1);
+
+    FloatDenseTensor tensor = builder.build();
+    assertEquals((double) 0.1f, tensor.getByDimKey(0));
+    assertEquals((double) 0.2f, tensor.getByDimKey(1));
+    assertEquals(tensor.toDenseTensor().getByDimKey(0), tensor.getByDimKey(0));
+  }
+
+  public void testHashCode() {
+    FloatDenseTensor first = new FloatDenseTensor(new int[] {0}, new int[] {2},
+        new float[] {0.0f, 1.5f});
+    FloatDenseTensor second = new FloatDenseTensor(new int[] {0}, new int[] {2},
+        new float[] {-0.0f, 1.5f});
+    assertEquals(first, second);
+    assertEquals(first.hashCode(), second.hashCode());
+  }
+}
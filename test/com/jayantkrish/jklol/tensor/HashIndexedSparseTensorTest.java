@@ -0,0 +1,41 @@
+package com.jayantkrish.jklol.tensor;
+
+import java.util.Random;
+
+public class HashIndexedSparseTensorTest extends TensorTest {
+
+  public HashIndexedSparseTensorTest() {
+    super(HashIndexedSparseTensor.getFactory());
+  }
+
+  public void testKeyNumToIndex() {
+    Random random = new Random(0);
+    SparseTensorBuilder builder = new SparseTensorBuilder(new int[] {0, 1},
+        new int[] {1000, 1000});
+    for (int i = 0; i < 5000; i++) {
+      builder.put(new int[] {random.nextInt(1000), random.nextInt(1000)}, random.nextDouble() + 1);
+    }
+    SparseTensor sparse = builder.build();
+    HashIndexedSparseTensor hashed = HashIndexedSparseTensor.fromTensor(sparse);
+
+    for (int i = 0; i < 50000; i++) {
+      long keyNum = random.nextInt(1000 * 1000);
+      assertEquals(sparse.keyNumToIndex(keyNum), hashed.keyNumToIndex(keyNum));
+      assertEquals(sparse.get(keyNum), hashed.get(keyNum));
+    }
+    for (int i = 0; i < sparse.size(); i++) {
+      assertEquals(i, hashed.keyNumToIndex(sparse.indexToKeyNum(i)));
+    }
+  }
+
+  public void testIndexIfSparse() {
+    Tensor dense = DenseTensor.constant(new int[] {0}, new int[] {3}, 1.0);
+    assertSame(dense, HashIndexedSparseTensor.indexIfSparse(dense));
+
+    Tensor sparse = SparseTensor.vector(0, 3, new double[] {0, 2, 3});
+    Tensor hashed = HashIndexedSparseTensor.indexIfSparse(sparse);
+    assertTrue(hashed instanceof HashIndexedSparseTensor);
+    assertEquals(sparse, hashed);
+    assertSame(hashed, HashIndexedSparseTensor.indexIfSparse(hashed));
+  }
+}
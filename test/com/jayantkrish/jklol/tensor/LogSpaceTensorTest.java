@@ -0,0 +1,199 @@
+package com.jayantkrish.jklol.tensor;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import com.google.common.collect.Sets;
+import com.jayantkrish.jklol.tensor.TensorBase.KeyValue;
+
+/**
+ * Unit tests for {@link LogSpaceTensor}.
+ *
+ * @author jayantk
+ */
+public class LogSpaceTensorTest extends TestCase {
+
+  private static final double TOLERANCE = 1e-10;
+
+  private SparseTensor sparse;
+  private DenseTensor dense;
+  private Tensor vector;
+
+  private LogSpaceTensor logSparse;
+  private LogSpaceTensor logDense;
+
+  @Override
+  public void setUp() {
+    SparseTensorBuilder builder = new SparseTensorBuilder(new int[] {1, 3, 4},
+        new int[] {3, 4, 5});
+    builder.put(new int[] {0, 0, 0}, 1.0);
+    builder.put(new int[] {0, 2, 1}, 2.0);
+    builder.put(new int[] {0, 2, 3}, 0.5);
+    builder.put(new int[] {1, 0, 4}, 3.0);
+    builder.put(new int[] {1, 3, 0}, 4.0);
+    builder.put(new int[] {1, 3, 2}, 5.0);
+    builder.put(new int[] {2, 1, 1}, 6.0);
+    builder.put(new int[] {2, 3, 1}, 7.0);
+    sparse = builder.build();
+
+    dense = DenseTensor.random(new int[] {1, 3, 4}, new int[] {3, 4, 5}, 0.0, 1.0)
+        .elementwiseAbs();
+    vector = DenseTensor.random(new int[] {3}, new int[] {4}, 0.0, 1.0).elementwiseAbs();
+
+    logSparse = LogSpaceTensor.fromTensor(sparse);
+    logDense = LogSpaceTensor.fromTensor(dense);
+  }
+
+  public void testFromTensor() {
+    assertFalse(logSparse.isDense());
+    assertTrue(logDense.isDense());
+    assertEquals(sparse.size(), logSparse.size());
+    assertTensorEquals(sparse, logSparse);
+    assertTensorEquals(dense, logDense);
+    assertEquals(Math.log(7.0), logSparse.getLogByDimKey(2, 3, 1), TOLERANCE);
+    assertEquals(Double.NEGATIVE_INFINITY, logSparse.getLogByDimKey(2, 3, 2));
+    assertEquals(0.0, logSparse.getByDimKey(2, 3, 2));
+  }
+
+  public void testFromLogWeights() {
+    LogSpaceTensor fromLog = LogSpaceTensor.fromLogWeights(sparse.elementwiseLog());
+    assertTensorEquals(sparse, fromLog);
+    assertTensorEquals(dense, LogSpaceTensor.fromLogWeights(dense.elementwiseLog()));
+  }
+
+  public void testSumOutDimensions() {
+    runReduceTest(Sets.<Integer>newHashSet());
+    runReduceTest(Sets.<Integer>newHashSet(1));
+    runReduceTest(Sets.<Integer>newHashSet(3));
+    runReduceTest(Sets.<Integer>newHashSet(4));
+    runReduceTest(Sets.<Integer>newHashSet(1, 4));
+    runReduceTest(Sets.<Integer>newHashSet(1, 3, 4));
+  }
+
+  public void testSumOutDimensionsUnderflow() {
+    // exp(-2000) underflows to 0, so these sums can only be computed in log space.
+    DenseTensor logWeights = DenseTensor.constant(new int[] {0, 1}, new int[] {2, 3}, -2000.0);
+    LogSpaceTensor tensor = LogSpaceTensor.fromLogWeights(logWeights);
+    assertEquals(0.0, logWeights.elementwiseExp().sumOutDimensions(1).getByDimKey(0));
+
+    LogSpaceTensor sum = tensor.sumOutDimensions(1);
+    assertEquals(-2000.0 + Math.log(3.0), sum.getLogByDimKey(0), TOLERANCE);
+    assertEquals(-2000.0 + Math.log(6.0), tensor.sumOutDimensions(0, 1).getLogByDimKey(),
+        TOLERANCE);
+
+    // Products stay in log space.
+    LogSpaceTensor product = tensor.elementwiseProduct(sum);
+    assertEquals(-4000.0 + Math.log(3.0), product.getLogByDimKey(1, 2), TOLERANCE);
+  }
+
+  public void testLogSumOutDimensions() {
+    Tensor logWeights = dense.elementwiseLog();
+    Tensor expected = logWeights.elementwiseExp().sumOutDimensions(3).elementwiseLog();
+    assertTensorEquals(expected, logWeights.logSumOutDimensions(Sets.newHashSet(3)));
+  }
+
+  public void testElementwiseProduct() {
+    assertTensorEquals(sparse.elementwiseProduct(vector), logSparse.elementwiseProduct(vector));
+    assertTensorEquals(dense.elementwiseProduct(vector), logDense.elementwiseProduct(vector));
+    assertTensorEquals(dense.elementwiseProduct(sparse), logDense.elementwiseProduct(logSparse));
+    assertTensorEquals(sparse.elementwiseProduct(dense), logSparse.elementwiseProduct(logDense));
+    assertTensorEquals(dense.elementwiseProduct(dense), logDense.elementwiseProduct(logDense));
+    assertTensorEquals(dense.elementwiseProduct(3.0), logDense.elementwiseProduct(3.0));
+    assertEquals(0, logSparse.elementwiseProduct(0.0).size());
+  }
+
+  public void testInnerProduct() {
+    assertTensorEquals(dense.innerProduct(sparse.sumOutDimensions(1)),
+        logDense.innerProduct(sparse.sumOutDimensions(1)));
+    assertTensorEquals(sparse.innerProduct(vector), logSparse.innerProduct(vector));
+  }
+
+  public void testElementwiseAddition() {
+    Tensor actual = logSparse.elementwiseAddition(logDense);
+    assertTrue(actual instanceof LogSpaceTensor);
+    assertTensorEquals(dense.elementwiseAddition(sparse), actual);
+    assertTensorEquals(sparse.elementwiseAddition(sparse), logSparse.elementwiseAddition(logSparse));
+
+    actual = logSparse.elementwiseMaximum(logDense);
+    assertTrue(actual instanceof LogSpaceTensor);
+    assertTensorEquals(dense.elementwiseMaximum(sparse), actual);
+  }
+
+  public void testElementwiseUnaryOps() {
+    assertTensorEquals(sparse.elementwiseInverse(), logSparse.elementwiseInverse());
+    assertTensorEquals(dense.elementwiseInverse(), logDense.elementwiseInverse());
+    assertTensorEquals(sparse.elementwiseSqrt(), logSparse.elementwiseSqrt());
+    assertTensorEquals(dense.elementwiseLog(), logDense.elementwiseLog());
+    assertEquals(sparse.getL2Norm(), logSparse.getL2Norm(), TOLERANCE);
+    assertEquals(dense.getTrace(), logDense.getTrace(), TOLERANCE);
+  }
+
+  public void testSlice() {
+    assertTensorEquals(sparse.slice(new int[] {3}, new int[] {3}),
+        logSparse.slice(new int[] {3}, new int[] {3}));
+    assertTensorEquals(sparse.slice(new int[] {1, 4}, new int[] {1, 0}),
+        logSparse.slice(new int[] {1, 4}, new int[] {1, 0}));
+    assertTensorEquals(dense.slice(new int[] {4}, new int[] {2}),
+        logDense.slice(new int[] {4}, new int[] {2}));
+  }
+
+  public void testRelabelDimensions() {
+    int[] newDims = new int[] {5, 2, 0};
+    assertTensorEquals(sparse.relabelDimensions(newDims), logSparse.relabelDimensions(newDims));
+    assertTensorEquals(dense.relabelDimensions(newDims), logDense.relabelDimensions(newDims));
+  }
+
+  public void testKeyValuePrefixIterator() {
+    Iterator<KeyValue> expectedIter = sparse.keyValuePrefixIterator(new int[] {1});
+    Iterator<KeyValue> actualIter = logSparse.keyValuePrefixIterator(new int[] {1});
+    while (expectedIter.hasNext()) {
+      assertTrue(actualIter.hasNext());
+      KeyValue expected = expectedIter.next();
+      KeyValue actual = actualIter.next();
+      assertTrue(Arrays.equals(expected.getKey(), actual.getKey()));
+      assertEquals(expected.getValue(), actual.getValue(), TOLERANCE);
+    }
+    assertFalse(actualIter.hasNext());
+  }
+
+  public void testGetLargestValues() {
+    assertTrue(Arrays.equals(sparse.getLargestValues(3), logSparse.getLargestValues(3)));
+  }
+
+  private void runReduceTest(Set<Integer> dimsToEliminate) {
+    assertTensorEquals(sparse.sumOutDimensions(dimsToEliminate),
+        logSparse.sumOutDimensions(dimsToEliminate));
+    assertTensorEquals(dense.sumOutDimensions(dimsToEliminate),
+        logDense.sumOutDimensions(dimsToEliminate));
+
+    for (LogSpaceTensor tensor : Arrays.asList(logSparse, logDense)) {
+      Tensor expected = tensor.toTensor().maxOutDimensions(dimsToEliminate);
+      Backpointers backpointers = new Backpointers();
+      Tensor actual = tensor.maxOutDimensions(dimsToEliminate, backpointers);
+      assertTensorEquals(expected, actual);
+
+      // Backpointers must point to keys with the maximum value.
+      Iterator<KeyValue> iter = actual.keyValueIterator();
+      while (iter.hasNext()) {
+        KeyValue k = iter.next();
+        long oldKeyNum = backpointers.getBackpointer(actual.dimKeyToKeyNum(k.getKey()));
+        assertEquals(k.getValue(), tensor.get(oldKeyNum), TOLERANCE);
+      }
+    }
+  }
+
+  /**
+   * Checks that {@code expected} and {@code actual} have the same
+   * dimensions and the same value for every key.
+   */
+  private void assertTensorEquals(Tensor expected, Tensor actual) {
+    assertTrue(Arrays.equals(expected.getDimensionNumbers(), actual.getDimensionNumbers()));
+    assertTrue(Arrays.equals(expected.getDimensionSizes(), actual.getDimensionSizes()));
+    for (long keyNum = 0; keyNum < expected.getMaxKeyNum(); keyNum++) {
+      assertEquals(expected.get(keyNum), actual.get(keyNum), TOLERANCE);
+    }
+  }
+}
@@ -0,0 +1,138 @@
+package com.jayantkrish.jklol.tensor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import junit.framework.TestCase;
+
+import com.jayantkrish.jklol.tensor.TensorBase.KeyValue;
+
+/**
+ * Unit tests for {@link MappedSparseTensor}.
+ *
+ * @author jayantk
+ */
+public class MappedSparseTensorTest extends TestCase {
+
+  private File file;
+  private SparseTensor expected;
+  private MappedSparseTensor tensor;
+
+  @Override
+  public void setUp() throws IOException {
+    SparseTensorBuilder builder = new SparseTensorBuilder(new int[] {1, 3, 4},
+        new int[] {3, 4, 5});
+    builder.put(new int[] {0, 0, 0}, 1.0);
+    builder.put(new int[] {0, 2, 1}, 2.0);
+    builder.put(new int[] {1, 0, 4}, 3.0);
+    builder.put(new int[] {1, 3, 0}, -4.0);
+    builder.put(new int[] {1, 3, 2}, 5.0);
+    builder.put(new int[] {2, 1, 1}, 6.0);
+    expected = builder.build();
+
+    file = File.createTempFile("jklol-mapped", ".tensor");
+    file.deleteOnExit();
+    MappedSparseTensor.write(expected, file.getPath());
+    tensor = MappedSparseTensor.open(file.getPath());
+  }
+
+  @Override
+  public void tearDown() {
+    file.delete();
+  }
+
+  public void testLookup() {
+    assertEquals(expected.size(), tensor.size());
+    for (int i = 0; i < 3; i++) {
+      for (int j = 0; j < 4; j++) {
+        for (int k = 0; k < 5; k++) {
+          assertEquals(expected.getByDimKey(i, j, k), tensor.getByDimKey(i, j, k));
+          long keyNum = tensor.dimKeyToKeyNum(new int[] {i, j, k});
+          assertEquals(expected.keyNumToIndex(keyNum), tensor.keyNumToIndex(keyNum));
+          assertEquals(expected.getNearestIndex(keyNum), tensor.getNearestIndex(keyNum));
+        }
+      }
+    }
+  }
+
+  public void testSliceLeadingDimensions() {
+    Tensor slice = tensor.slice(new int[] {1}, new int[] {1});
+    assertTrue(slice instanceof MappedSparseTensor);
+    assertEquals(expected.slice(new int[] {1}, new int[] {1}),
+        ((MappedSparseTensor) slice).toSparseTensor());
+    assertEquals(5.0, slice.getByDimKey(3, 2));
+    assertEquals(0.0, slice.getByDimKey(0, 0));
+
+    Tensor nested = slice.slice(new int[] {3}, new int[] {3});
+    assertTrue(nested instanceof MappedSparseTensor);
+    assertEquals(2, nested.size());
+    assertEquals(-4.0, nested.getByDimKey(0));
+    assertEquals(5.0, nested.getByDimKey(2));
+    assertEquals(0.0, nested.getByDimKey(1));
+
+    assertEquals(0, tensor.slice(new int[] {1, 3}, new int[] {2, 3}).size());
+  }
+
+  public void testSliceOtherDimensions() {
+    assertEquals(expected.slice(new int[] {4}, new int[] {1}),
+        tensor.slice(new int[] {4}, new int[] {1}));
+  }
+
+  public void testKeyValuePrefixIterator() {
+    Iterator<KeyValue> expectedIter = expected.keyValuePrefixIterator(new int[] {1});
+    Iterator<KeyValue> actualIter = tensor.keyValuePrefixIterator(new int[] {1});
+    int count = 0;
+    while (expectedIter.hasNext()) {
+      assertTrue(actualIter.hasNext());
+      KeyValue expectedKeyValue = expectedIter.next();
+      KeyValue actualKeyValue = actualIter.next();
+      assertTrue(Arrays.equals(expectedKeyValue.getKey(), actualKeyValue.getKey()));
+      assertEquals(expectedKeyValue.getValue(), actualKeyValue.getValue());
+      count++;
+    }
+    assertFalse(actualIter.hasNext());
+    assertEquals(3, count);
+  }
+
+  public void testOperations() {
+    assertEquals(expected.getL2Norm(), tensor.getL2Norm(), 1e-10);
+    assertEquals(expected.getTrace(), tensor.getTrace(), 1e-10);
+    assertEquals(expected.elementwiseProduct(2.0), tensor.elementwiseProduct(2.0));
+    assertEquals(expected.sumOutDimensions(3, 4), tensor.sumOutDimensions(3, 4));
+
+    long[] largest = tensor.getLargestValues(2);
+    assertEquals(2, largest.length);
+    assertEquals(6.0, tensor.get(largest[0]));
+    assertEquals(5.0, tensor.get(largest[1]));
+
+    // Mapped tensors can be the argument to operations on other tensors.
+    assertEquals(expected.elementwiseProduct(expected),
+        expected.elementwiseProduct(tensor));
+  }
+
+  public void testSerialization() throws Exception {
+    Tensor slice = tensor.slice(new int[] {1}, new int[] {1});
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(slice);
+    out.close();
+
+    ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    MappedSparseTensor copy = (MappedSparseTensor) in.readObject();
+    assertEquals(((MappedSparseTensor) slice).toSparseTensor(), copy.toSparseTensor());
+  }
+
+  public void testEmpty() throws IOException {
+    MappedSparseTensor.write(SparseTensor.empty(new int[] {0}, new int[] {10}), file.getPath());
+    MappedSparseTensor empty = MappedSparseTensor.open(file.getPath());
+    assertEquals(0, empty.size());
+    assertEquals(0.0, empty.getByDimKey(3));
+    assertFalse(empty.keyValueIterator().hasNext());
+  }
+}
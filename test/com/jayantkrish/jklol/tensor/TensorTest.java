@@ -1,6 +1,7 @@
 package com.jayantkrish.jklol.tensor;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -403,6 +404,24 @@ public abstract class TensorTest extends TestCase {
     }
     assertEquals(expected, actual);
   }
+
+  public void testElementwiseProductListMixed() {
+    List<Tensor> others = Lists.newArrayList();
+    others.addAll(smallTables);
+    others.addAll(missingFirsts);
+    others.addAll(missingMiddles);
+    others.addAll(missingLasts);
+    others.add(SparseTensor.getScalarConstant(2.0));
+    others.add(emptyInputTable);
+    others.addAll(addTables);
+
+    Tensor actual = table.elementwiseProduct(others);
+    Tensor expected = table;
+    for (Tensor other : others) {
+      expected = simpleMultiply(expected, other);
+    }
+    assertEquals(expected, actual);
+  }
   
   public void testInnerProductRightAligned() {
     for (Tensor missingFirst : missingFirsts) {
@@ -650,6 +669,20 @@ public abstract class TensorTest extends TestCase {
     runReduceTest(table, Sets.<Integer>newHashSet(1, 3, 4));
   }
   
+  public void testProductReduceDimensions() {
+    List<Tensor> others = Lists.newArrayList();
+    others.addAll(missingFirsts);
+    others.addAll(missingMiddles);
+    others.add(SparseTensor.getScalarConstant(2.0));
+    others.addAll(smallTables);
+
+    runProductReduceTest(table, others, Sets.<Integer>newHashSet());
+    runProductReduceTest(table, others, Sets.<Integer>newHashSet(3));
+    runProductReduceTest(table, others, Sets.<Integer>newHashSet(1, 4));
+    runProductReduceTest(table, others, Sets.<Integer>newHashSet(1, 3, 4));
+    runProductReduceTest(table, Collections.<Tensor>emptyList(), Sets.<Integer>newHashSet(4));
+  }
+
   public void testRelabelDimensionsSameOrder() {
     Tensor actual = table.relabelDimensions(new int[] {5, 6, 7});
     assertTrue(Arrays.equals(new int[] {5, 6, 7}, actual.getDimensionNumbers()));
@@ -767,7 +800,7 @@ public abstract class TensorTest extends TestCase {
  
     expected = simpleReduce(table, dimsToEliminate, ReduceType.LOG_SUM);
     actual = table.logSumOutDimensions(dimsToEliminate);    
-    assertTensorEquals(expected, actual, 10e-8);
+    assertTensorEquals(expected, actual, getTolerance());
 
     Backpointers actualBackpointers = new Backpointers();
     expected = simpleReduce(table, dimsToEliminate, ReduceType.MAX);
@@ -786,6 +819,30 @@ public abstract class TensorTest extends TestCase {
     }
   }
   
+  /**
+   * Helper method for testing productSumOutDimensions /
+   * productMaxOutDimensions.
+   */
+  private void runProductReduceTest(Tensor table, List<Tensor> others,
+      Set<Integer> dimsToEliminate) {
+    Tensor product = table.elementwiseProduct(others);
+    Tensor expected = product.sumOutDimensions(dimsToEliminate);
+    Tensor actual = table.productSumOutDimensions(others, dimsToEliminate);
+    assertTensorEquals(expected, actual, getTolerance());
+
+    Backpointers actualBackpointers = new Backpointers();
+    expected = product.maxOutDimensions(dimsToEliminate);
+    actual = table.productMaxOutDimensions(others, dimsToEliminate, actualBackpointers);
+    assertTensorEquals(expected, actual, getTolerance());
+
+    Iterator<KeyValue> iter = actual.keyValueIterator();
+    while (iter.hasNext()) {
+      KeyValue k = iter.next();
+      long oldKeyNum = actualBackpointers.getBackpointer(actual.dimKeyToKeyNum(k.getKey()));
+      assertEquals(actual.getByDimKey(k.getKey()), product.get(oldKeyNum), getTolerance());
+    }
+  }
+
   /**
    * This is a simple version of sum/max out dimensions algorithm. 
    */
@@ -837,6 +894,14 @@ public abstract class TensorTest extends TestCase {
     }
   }
   
+  /**
+   * Gets the tolerance for comparisons of computed values, which
+   * depends on the precision of the tensor implementation being tested.
+   */
+  protected double getTolerance() {
+    return 10e-8;
+  }
+
   private void assertTensorEquals(Tensor expected, Tensor actual, double tolerance) {
     assertTrue(Arrays.equals(expected.getDimensionNumbers(), actual.getDimensionNumbers()));
     